@@ -0,0 +1,262 @@
+package controllers;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Small-signal frequency sweep of a board. Around the DC operating point every element is
+ * linear, so the circuit at angular frequency w is the complex system (G + jwB) x = b: G holds
+ * the conductances of the {@link MnaSystem}, B the capacitances and inductances. Each complex
+ * unknown is stored as an adjacent real/imaginary pair, which gives a real system of twice the
+ * size whose sparsity pattern is the same at every frequency. The pattern is analyzed once, and
+ * the frequency points are split across the common ForkJoin pool; each task factors its first
+ * point and refactors the rest with the same pivot order.
+ */
+public class AcSweep {
+    // Frequency points per task before the sweep stops splitting
+    private static final int POINTS_PER_TASK = 8;
+
+    private final MnaSystem system;
+    private final Netlist netlist;
+    private final int n;
+    // Real form of G and B on one shared pattern, the matrix at w has values g + w * b
+    private final SparseMatrix pattern;
+    private final double[] conductanceValues;
+    private final double[] susceptanceValues;
+    private final SparseLU.Symbolic symbolic;
+
+    /**
+     * Frequency response of one output to one source: the complex ratio of the output element's
+     * voltage to a unit source, at every frequency of the sweep.
+     */
+    public static class Response {
+        private final double[] frequencies;
+        private final double[] real;
+        private final double[] imaginary;
+
+        Response(double[] frequencies, double[] real, double[] imaginary) {
+            this.frequencies = frequencies;
+            this.real = real;
+            this.imaginary = imaginary;
+        }
+
+        public int size() {
+            return frequencies.length;
+        }
+
+        public double frequency(int k) {
+            return frequencies[k];
+        }
+
+        public double real(int k) {
+            return real[k];
+        }
+
+        public double imaginary(int k) {
+            return imaginary[k];
+        }
+
+        public double magnitude(int k) {
+            return Math.hypot(real[k], imaginary[k]);
+        }
+
+        public double magnitudeDb(int k) {
+            return 20.0 * Math.log10(magnitude(k));
+        }
+
+        // Phase of every point in degrees, unwrapped so a Bode plot has no 360 degree jumps
+        public double[] phaseDegrees() {
+            double[] phase = new double[frequencies.length];
+            double offset = 0.0;
+            for (int k = 0; k < phase.length; k++) {
+                double wrapped = Math.toDegrees(Math.atan2(imaginary[k], real[k]));
+                if (k > 0) {
+                    double jump = wrapped + offset - phase[k - 1];
+                    offset -= 360.0 * Math.round(jump / 360.0);
+                }
+                phase[k] = wrapped + offset;
+            }
+            return phase;
+        }
+    }
+
+    public AcSweep(Netlist netlist) {
+        this.system = new MnaSystem(netlist);
+        this.netlist = netlist;
+        this.n = system.size();
+
+        // Diodes are linearized at their operating point
+        double[] operatingPoint = netlist.hasDiodes() && n > 0 ? new NewtonSolver(system).solve() : null;
+
+        SparseMatrix.Builder g = new SparseMatrix.Builder(2 * n);
+        SparseMatrix.Builder b = new SparseMatrix.Builder(2 * n);
+        SparseMatrix dc = system.getMatrix();
+        for (int col = 0; col < n; col++) {
+            for (int p = dc.colPtr[col]; p < dc.colPtr[col + 1]; p++) {
+                stamp(g, b, dc.rowIdx[p], col, dc.values[p], 0.0);
+            }
+        }
+        for (int i = 0; i < netlist.elementCount(); i++) {
+            int from = system.row(netlist.from(i));
+            int to = system.row(netlist.to(i));
+            switch (netlist.kind(i)) {
+                case Netlist.CAPACITOR:
+                    // The DC system keeps open capacitors from floating, here jwC does that
+                    stampAdmittance(g, b, from, to, -Netlist.OPEN_CONDUCTANCE, netlist.value(i));
+                    break;
+                case Netlist.INDUCTOR: {
+                    // V(start) - V(end) - jwL * i = 0 on the inductor's branch row
+                    int k = system.branchRow(i);
+                    stamp(g, b, k, k, 0.0, -netlist.value(i));
+                    break;
+                }
+                case Netlist.DIODE:
+                    if (operatingPoint != null) {
+                        double v = system.nodeVoltage(operatingPoint, netlist.from(i))
+                                - system.nodeVoltage(operatingPoint, netlist.to(i));
+                        stampAdmittance(g, b, from, to,
+                                system.diodeConductance(i, v) - system.diodeConductance(i, 0.0), 0.0);
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+        // Both builders saw the same positions, so the patterns match entry for entry
+        pattern = g.build();
+        conductanceValues = pattern.getValues();
+        susceptanceValues = b.build().getValues();
+        symbolic = n > 0 ? FactorizationCache.shared().symbolicFor(pattern) : null;
+    }
+
+    // Complex entry g + jwb at (row, col) of the complex system, as its 2x2 real block
+    private static void stamp(SparseMatrix.Builder g, SparseMatrix.Builder b, int row, int col, double gValue, double bValue) {
+        if (row < 0 || col < 0) {
+            return;
+        }
+        int r = 2 * row;
+        int c = 2 * col;
+        g.add(r, c, gValue);
+        b.add(r, c, 0.0);
+        g.add(r + 1, c + 1, gValue);
+        b.add(r + 1, c + 1, 0.0);
+        g.add(r, c + 1, 0.0);
+        b.add(r, c + 1, -bValue);
+        g.add(r + 1, c, 0.0);
+        b.add(r + 1, c, bValue);
+    }
+
+    private static void stampAdmittance(SparseMatrix.Builder g, SparseMatrix.Builder b, int from, int to, double gValue, double bValue) {
+        stamp(g, b, from, from, gValue, bValue);
+        stamp(g, b, to, to, gValue, bValue);
+        stamp(g, b, from, to, -gValue, -bValue);
+        stamp(g, b, to, from, -gValue, -bValue);
+    }
+
+    // points frequencies from start to stop in Hz, evenly spaced
+    public static double[] linearFrequencies(double start, double stop, int points) {
+        double[] frequencies = new double[points];
+        for (int k = 0; k < points; k++) {
+            frequencies[k] = points == 1 ? start : start + (stop - start) * k / (points - 1);
+        }
+        return frequencies;
+    }
+
+    // points frequencies from start to stop in Hz, evenly spaced on a log scale
+    public static double[] logFrequencies(double start, double stop, int points) {
+        if (start <= 0 || stop <= 0) {
+            throw new IllegalArgumentException("Logarithmic sweep needs positive frequencies");
+        }
+        double[] frequencies = new double[points];
+        double ratio = Math.log(stop / start);
+        for (int k = 0; k < points; k++) {
+            frequencies[k] = points == 1 ? start : start * Math.exp(ratio * k / (points - 1));
+        }
+        return frequencies;
+    }
+
+    /**
+     * Response of the voltage across the output element to a unit AC signal in the source
+     * element, a voltage or current source. Every other source is held at zero.
+     */
+    public Response sweep(double[] frequencies, int source, int output) {
+        byte kind = netlist.kind(source);
+        if (kind != Netlist.VOLTAGE_SOURCE && kind != Netlist.CURRENT_SOURCE) {
+            throw new IllegalArgumentException("AC source must be a voltage or current source");
+        }
+        double[] rhs = new double[2 * n];
+        if (kind == Netlist.VOLTAGE_SOURCE) {
+            rhs[2 * system.branchRow(source)] = 1.0;
+        } else {
+            int a = system.row(netlist.from(source));
+            int b = system.row(netlist.to(source));
+            if (a >= 0) rhs[2 * a] += 1.0;
+            if (b >= 0) rhs[2 * b] -= 1.0;
+        }
+
+        double[] real = new double[frequencies.length];
+        double[] imaginary = new double[frequencies.length];
+        if (n > 0 && frequencies.length > 0) {
+            int positive = system.row(netlist.from(output));
+            int negative = system.row(netlist.to(output));
+            ForkJoinPool.commonPool().invoke(new SweepTask(frequencies, 0, frequencies.length, rhs,
+                    positive, negative, real, imaginary));
+        }
+        return new Response(frequencies.clone(), real, imaginary);
+    }
+
+    // Solves a contiguous range of frequency points, splitting while the range is large
+    private final class SweepTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final double[] frequencies;
+        private final int from;
+        private final int to;
+        private final double[] rhs;
+        private final int positive;
+        private final int negative;
+        private final double[] real;
+        private final double[] imaginary;
+
+        SweepTask(double[] frequencies, int from, int to, double[] rhs, int positive, int negative,
+                  double[] real, double[] imaginary) {
+            this.frequencies = frequencies;
+            this.from = from;
+            this.to = to;
+            this.rhs = rhs;
+            this.positive = positive;
+            this.negative = negative;
+            this.real = real;
+            this.imaginary = imaginary;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > POINTS_PER_TASK) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new SweepTask(frequencies, from, mid, rhs, positive, negative, real, imaginary),
+                        new SweepTask(frequencies, mid, to, rhs, positive, negative, real, imaginary));
+                return;
+            }
+            // Neighbouring frequencies factor alike, so the pivot order of the first point carries over
+            SparseLU lu = null;
+            for (int k = from; k < to; k++) {
+                double omega = 2.0 * Math.PI * frequencies[k];
+                double[] values = new double[conductanceValues.length];
+                for (int p = 0; p < values.length; p++) {
+                    values[p] = conductanceValues[p] + omega * susceptanceValues[p];
+                }
+                SparseMatrix matrix = pattern.withValues(values);
+                if (lu == null || !lu.refactor(matrix)) {
+                    lu = SparseLU.factor(matrix, symbolic);
+                }
+                double[] x = lu.solve(rhs);
+                real[k] = (positive >= 0 ? x[2 * positive] : 0.0) - (negative >= 0 ? x[2 * negative] : 0.0);
+                imaginary[k] = (positive >= 0 ? x[2 * positive + 1] : 0.0) - (negative >= 0 ? x[2 * negative + 1] : 0.0);
+            }
+        }
+    }
+
+    public MnaSystem getSystem() {
+        return system;
+    }
+}
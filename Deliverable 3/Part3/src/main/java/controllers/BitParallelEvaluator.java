@@ -0,0 +1,128 @@
+package controllers;
+
+/**
+ * Evaluates a feedback-free {@link GateNetwork} on 64 input patterns at once: every signal
+ * holds a {@code long}, one pattern per bit, and each gate is a handful of bitwise operations.
+ * Gates run in levelized order, over a block of words at a time so the inner loop is a plain
+ * array sweep. Used for exhaustive truth tables and random-vector regression runs of gate designs.
+ */
+public class BitParallelEvaluator {
+    // Words evaluated per gate visit, 64 words is 4096 patterns
+    private static final int BLOCK_WORDS = 64;
+    // Bit patterns of the first six inputs of an exhaustive table, bit k of a word is row k
+    private static final long[] LOW_INPUT_PATTERNS = {
+            0xAAAAAAAAAAAAAAAAL, 0xCCCCCCCCCCCCCCCCL, 0xF0F0F0F0F0F0F0F0L,
+            0xFF00FF00FF00FF00L, 0xFFFF0000FFFF0000L, 0xFFFFFFFF00000000L
+    };
+
+    private final GateNetwork network;
+    private final int[] order;
+
+    public BitParallelEvaluator(GateNetwork network) {
+        this.network = network;
+        this.order = network.levelize();
+        if (order == null) {
+            throw new IllegalArgumentException("Gate network has a feedback loop and cannot be levelized");
+        }
+    }
+
+    /**
+     * Evaluates words patterns words of every signal. signals is laid out signal by signal, words
+     * longs each; the primary input words are read and every gate output is overwritten.
+     */
+    public void evaluate(long[] signals, int words) {
+        for (int g : order) {
+            int out = network.output(g) * words;
+            int inputs = network.inputCount(g);
+            byte type = network.type(g);
+            if (inputs == 0) {
+                long constant = GateNetwork.evaluate(type, 0, 0, false) ? -1L : 0L;
+                for (int w = 0; w < words; w++) signals[out + w] = constant;
+                continue;
+            }
+            int first = network.input(g, 0) * words;
+            switch (type) {
+                case GateNetwork.NOT:
+                    for (int w = 0; w < words; w++) signals[out + w] = ~signals[first + w];
+                    break;
+                case GateNetwork.AND:
+                case GateNetwork.NAND:
+                    System.arraycopy(signals, first, signals, out, words);
+                    for (int k = 1; k < inputs; k++) {
+                        int in = network.input(g, k) * words;
+                        for (int w = 0; w < words; w++) signals[out + w] &= signals[in + w];
+                    }
+                    break;
+                case GateNetwork.OR:
+                case GateNetwork.NOR:
+                    System.arraycopy(signals, first, signals, out, words);
+                    for (int k = 1; k < inputs; k++) {
+                        int in = network.input(g, k) * words;
+                        for (int w = 0; w < words; w++) signals[out + w] |= signals[in + w];
+                    }
+                    break;
+                case GateNetwork.XOR:
+                    System.arraycopy(signals, first, signals, out, words);
+                    for (int k = 1; k < inputs; k++) {
+                        int in = network.input(g, k) * words;
+                        for (int w = 0; w < words; w++) signals[out + w] ^= signals[in + w];
+                    }
+                    break;
+                default:
+                    break;
+            }
+            if (type == GateNetwork.NAND || type == GateNetwork.NOR) {
+                for (int w = 0; w < words; w++) signals[out + w] = ~signals[out + w];
+            }
+        }
+    }
+
+    /**
+     * Exhaustive truth table of the outputs over every combination of the inputs. Row r sets
+     * input k to bit k of r; the result holds one bit string per output, row r in bit r % 64 of
+     * word r / 64. Signals that are neither inputs nor gate outputs stay low.
+     */
+    public long[][] truthTable(int[] inputs, int[] outputs) {
+        if (inputs.length > 30) {
+            throw new IllegalArgumentException("Truth table of " + inputs.length + " inputs is too large");
+        }
+        long rows = 1L << inputs.length;
+        int totalWords = (int) Math.max(1, rows >>> 6);
+        long[][] table = new long[outputs.length][totalWords];
+        int words = Math.min(BLOCK_WORDS, totalWords);
+        long[] signals = new long[network.signalCount() * words];
+
+        for (int base = 0; base < totalWords; base += words) {
+            for (int k = 0; k < inputs.length; k++) {
+                int at = inputs[k] * words;
+                for (int w = 0; w < words; w++) {
+                    signals[at + w] = inputPattern(k, base + w);
+                }
+            }
+            evaluate(signals, words);
+            for (int o = 0; o < outputs.length; o++) {
+                System.arraycopy(signals, outputs[o] * words, table[o], base, words);
+            }
+        }
+        // Fewer than 64 rows only use the low bits of the single word
+        if (rows < 64) {
+            long mask = (1L << rows) - 1;
+            for (long[] bits : table) {
+                bits[0] &= mask;
+            }
+        }
+        return table;
+    }
+
+    // Word w of input k in an exhaustive table
+    private static long inputPattern(int k, int word) {
+        if (k < 6) {
+            return LOW_INPUT_PATTERNS[k];
+        }
+        return ((word >>> (k - 6)) & 1) != 0 ? -1L : 0L;
+    }
+
+    public GateNetwork getNetwork() {
+        return network;
+    }
+}
@@ -3,26 +3,35 @@ package controllers;
 import java.sql.Array;
 import java.sql.SQLOutput;
 import java.util.*;
-import java.util.stream.Collectors;
 
 public class CircuitAnalyzer {
     private final List<ComponentsController.Drawable> components;
     private final Map<String, Double> nodeVoltages;
     private final Map<String, Double> branchCurrents;
     private final Map<String, Double> componentValues;
+    private Netlist netlist;
     private CircuitGraph circuitGraph;
+    // How long the gate network may take to settle, oscillating networks are cut off here
+    private static final long LOGIC_SETTLE_TICKS = 1000 * GateNetwork.TICKS_PER_NANOSECOND;
+    // Conjugate gradients instead of the direct solve on grounded resistive boards, null to solve directly
+    private ConjugateGradientSolver.Preconditioner iterativePreconditioner;
+    private double iterativeTolerance = 1e-10;
+    private IterativeDcSolver iterativeSolver;
+    // Single-precision factors refined to double accuracy instead of a double factorization
+    private boolean mixedPrecision;
+    private MixedPrecisionSolver mixedPrecisionSolver;
 
     // Inner class to represent a circuit node
     private static class Node {
         String id;
+        int terminal;
         double x, y;
-        List<Edge> edges;
 
-        Node(String id, double x, double y) {
+        Node(String id, int terminal, double x, double y) {
             this.id = id;
+            this.terminal = terminal;
             this.x = x;
             this.y = y;
-            this.edges = new ArrayList<>();
         }
 
         @Override
@@ -41,20 +50,18 @@ public class CircuitAnalyzer {
 
     // Inner class to represent a circuit edge (component or wire)
     public static class Edge {
+        int index;
         Node from;
         Node to;
         ComponentsController.Drawable component;
         double resistance;
-        double voltage;
-        double current;
 
-        Edge(Node from, Node to, ComponentsController.Drawable component) {
+        Edge(int index, Node from, Node to, ComponentsController.Drawable component) {
+            this.index = index;
             this.from = from;
             this.to = to;
             this.component = component;
             this.resistance = calculateResistance(component);
-            this.voltage = 0;
-            this.current = 0;
         }
 
         private double calculateResistance(ComponentsController.Drawable component) {
@@ -76,80 +83,49 @@ public class CircuitAnalyzer {
                           comp.componentType.equals("NORGate") ||
                           comp.componentType.equals("XORGate")) {
                     return 1e3; // Logic gate internal resistance
+                } else if (comp instanceof ComponentsController.Diode) {
+                    // Chord resistance at the forward voltage, the operating point comes from NewtonSolver
+                    return ((ComponentsController.Diode) comp).forwardVoltage / Netlist.DIODE_REFERENCE_CURRENT;
                 }
             }
             return 0.001; // Default wire resistance
         }
     }
 
-    // Inner class to represent the circuit graph
+    // Inner class to represent the circuit graph, adjacency lives in a CSR graph indexed like the netlist
     private static class CircuitGraph {
-        Map<String, Node> nodes;
+        Node[] nodes;
         List<Edge> edges;
-        List<List<Node>> loops;
-
-        CircuitGraph() {
-            this.nodes = new HashMap<>();
-            this.edges = new ArrayList<>();
+        CsrGraph csr;
+        // Per edge voltage and current, indexed by Edge.index
+        double[] voltage;
+        double[] current;
+        List<int[]> loops;
+
+        CircuitGraph(Node[] nodes, List<Edge> edges, boolean[] conductive) {
+            this.nodes = nodes;
+            this.edges = edges;
+            int[] from = new int[edges.size()];
+            int[] to = new int[edges.size()];
+            for (Edge edge : edges) {
+                from[edge.index] = edge.from.terminal;
+                to[edge.index] = edge.to.terminal;
+            }
+            this.csr = new CsrGraph(nodes.length, from, to, conductive);
+            this.voltage = new double[edges.size()];
+            this.current = new double[edges.size()];
             this.loops = new ArrayList<>();
         }
 
-        void addNode(Node node) {
-            nodes.put(node.id, node);
-        }
-
-        void addEdge(Edge edge) {
-            edges.add(edge);
-            edge.from.edges.add(edge);
-            edge.to.edges.add(edge);
-        }
-
-        // Find all loops in the circuit using DFS
+        // Find a basis of independent loops in the circuit, through any kind of edge
         void findLoops() {
-            loops.clear();
-            Set<Node> visited = new HashSet<>();
-            List<Node> currentPath = new ArrayList<>();
-
-            for (Node startNode : nodes.values()) {
-                if (!visited.contains(startNode)) {
-                    findLoopsDFS(startNode, startNode, visited, currentPath);
-                }
-            }
+            loops = csr.cycleBasis(false);
         }
 
-        private void findLoopsDFS(Node current, Node start, Set<Node> visited, List<Node> currentPath) {
-            visited.add(current);
-            currentPath.add(current);
-
-            for (Edge edge : current.edges) {
-                Node next = (edge.from == current) ? edge.to : edge.from;
-                
-                if (next == start && currentPath.size() > 2) {
-                    // Found a loop
-                    List<Node> loop = new ArrayList<>(currentPath);
-                    loop.add(start);
-                    loops.add(loop);
-                } else if (!visited.contains(next)) {
-                    findLoopsDFS(next, start, visited, currentPath);
-                }
-            }
-
-            visited.remove(current);
-            currentPath.remove(currentPath.size() - 1);
-        }
-
-        // Apply Kirchhoff's Voltage Law (KVL) to all loops
+        // Apply Kirchhoff's Voltage Law (KVL) to all loops, holding on the basis means it holds everywhere
         void applyKVL() {
-            for (List<Node> loop : loops) {
-                double sumVoltage = 0;
-                for (int i = 0; i < loop.size() - 1; i++) {
-                    Node current = loop.get(i);
-                    Node next = loop.get(i + 1);
-                    Edge edge = findEdge(current, next);
-                    if (edge != null) {
-                        sumVoltage += edge.voltage;
-                    }
-                }
+            for (int[] loop : loops) {
+                double sumVoltage = csr.kvlSum(loop, voltage);
                 // KVL states that sum of voltages in a loop should be zero
                 // This can be used to verify circuit validity or solve for unknown voltages
             }
@@ -157,28 +133,9 @@ public class CircuitAnalyzer {
 
         // Apply Kirchhoff's Current Law (KCL) to all nodes
         void applyKCL() {
-            for (Node node : nodes.values()) {
-                double sumCurrent = 0;
-                for (Edge edge : node.edges) {
-                    if (edge.from == node) {
-                        sumCurrent += edge.current;
-                    } else {
-                        sumCurrent -= edge.current;
-                    }
-                }
-                // KCL states that sum of currents at a node should be zero
-                // This can be used to verify circuit validity or solve for unknown currents
-            }
-        }
-
-        private Edge findEdge(Node from, Node to) {
-            for (Edge edge : edges) {
-                if ((edge.from == from && edge.to == to) || 
-                    (edge.from == to && edge.to == from)) {
-                    return edge;
-                }
-            }
-            return null;
+            double[] sumCurrent = csr.kclResiduals(current, null);
+            // KCL states that sum of currents at a node should be zero
+            // This can be used to verify circuit validity or solve for unknown currents
         }
     }
 
@@ -187,51 +144,34 @@ public class CircuitAnalyzer {
         this.nodeVoltages = new HashMap<>();
         this.branchCurrents = new HashMap<>();
         this.componentValues = new HashMap<>();
-        this.circuitGraph = new CircuitGraph();
+        this.netlist = Netlist.compile(components);
         buildCircuitGraph();
     }
 
     private void buildCircuitGraph() {
-        // Create nodes from component endpoints
-        for (ComponentsController.Drawable component : components) {
-            if (component instanceof ComponentsController.ImageComponent) {
-                ComponentsController.ImageComponent comp = (ComponentsController.ImageComponent) component;
-                String startNodeId = comp.startX + "," + comp.startY;
-                String endNodeId = comp.endX + "," + comp.endY;
-                
-                Node startNode = new Node(startNodeId, comp.startX, comp.startY);
-                Node endNode = new Node(endNodeId, comp.endX, comp.endY);
-                
-                circuitGraph.addNode(startNode);
-                circuitGraph.addNode(endNode);
-                
-                Edge edge = new Edge(startNode, endNode, component);
-                circuitGraph.addEdge(edge);
-            } else if (component instanceof ComponentsController.Wire) {
-                ComponentsController.Wire wire = (ComponentsController.Wire) component;
-                String startNodeId = wire.startX + "," + wire.startY;
-                String endNodeId = wire.endX + "," + wire.endY;
-                
-                Node startNode = new Node(startNodeId, wire.startX, wire.startY);
-                Node endNode = new Node(endNodeId, wire.endX, wire.endY);
-                
-                circuitGraph.addNode(startNode);
-                circuitGraph.addNode(endNode);
-                
-                Edge edge = new Edge(startNode, endNode, component);
-                circuitGraph.addEdge(edge);
-            }
+        // One node per snapped terminal, so components sharing a point share the node
+        Node[] terminalNodes = new Node[netlist.terminalCount()];
+        for (int t = 0; t < terminalNodes.length; t++) {
+            terminalNodes[t] = new Node(netlist.terminalKey(t), t, netlist.terminalX(t), netlist.terminalY(t));
         }
 
+        // One edge per netlist element, in the same order
+        List<Edge> edges = new ArrayList<>(netlist.elementCount());
+        boolean[] conductive = new boolean[netlist.elementCount()];
+        for (int i = 0; i < netlist.elementCount(); i++) {
+            ComponentsController.Drawable component = netlist.element(i);
+            edges.add(new Edge(i, terminalNodes[netlist.fromTerminal(i)], terminalNodes[netlist.toTerminal(i)], component));
+            conductive[i] = !(component instanceof ComponentsController.ImageComponent)
+                    || isConductive((ComponentsController.ImageComponent) component);
+        }
+        circuitGraph = new CircuitGraph(terminalNodes, edges, conductive);
+
         // Find loops in the circuit
         circuitGraph.findLoops();
     }
 
-    // Analyze the circuit and determine which theorems to use
+    // Analyze the circuit, every board is solved by nodal analysis whatever its topology
     public void analyzeCircuit() {
-        // First, identify the circuit topology
-        CircuitTopology topology = identifyCircuitTopology();
-        
         // Apply graph-based analysis
         circuitGraph.applyKVL();
         circuitGraph.applyKCL();
@@ -239,284 +179,108 @@ public class CircuitAnalyzer {
         // Analyze logic gates
         analyzeLogicGates();
         
-        // Then apply appropriate theorems based on topology
-        switch (topology) {
-            case SERIES:
-                seriesAnalysis();
-                break;
-            case PARALLEL:
-                applyParallelAnalysis();
-                break;
-            case COMPLEX:
-                applyComplexAnalysis();
-                break;
+        // A selected iterative solver takes any board it can handle
+        if (iterativePreconditioner != null && applyIterativeAnalysis()) {
+            return;
         }
-    }
-
-    // Identify the circuit topology
-    private CircuitTopology identifyCircuitTopology() {
-        int branchCount = 0;
-        Set<String> nodes = new HashSet<>();
-
-        for (ComponentsController.Drawable component : components) {
-            String startNodeId, endNodeId;
-
-            if (component instanceof ComponentsController.ImageComponent) {
-                ComponentsController.ImageComponent comp = (ComponentsController.ImageComponent) component;
-                startNodeId = comp.startX + "," + comp.startY;
-                endNodeId = comp.endX + "," + comp.endY;
-            } else if (component instanceof ComponentsController.Wire) {
-                ComponentsController.Wire wire = (ComponentsController.Wire) component;
-                startNodeId = wire.startX + "," + wire.startY;
-                endNodeId = wire.endX + "," + wire.endY;
-            } else {
-                continue;
-            }
-
-            nodes.add(startNodeId);
-            nodes.add(endNodeId);
-            branchCount++;
+        if (mixedPrecision && applyMixedPrecisionAnalysis()) {
+            return;
         }
 
-        int nodeCount = nodes.size();
-
-        // Determine topology based on branch and node count
-        if (branchCount == nodeCount - 1) {
-            return CircuitTopology.SERIES;
-        } else if (branchCount > nodeCount - 1) {
-            return CircuitTopology.PARALLEL;
-        } else {
-            return CircuitTopology.COMPLEX;
-        }
+        applyComplexAnalysis();
     }
 
-    // Apply series circuit analysis
-    private void applySeriesAnalysis() {
-        double totalResistance = 0;
-        double totalVoltage = 0;
-        List<ComponentsController.ImageComponent> seriesComponents = new ArrayList<>();
-
-        // Find power source and series components
-        for (ComponentsController.Drawable drawable : components) {
-            if (drawable instanceof ComponentsController.ImageComponent) {
-                ComponentsController.ImageComponent component = (ComponentsController.ImageComponent) drawable;
-                if (isPowerSource(component)) {
-                    totalVoltage = component.voltage;
-                } else if (!(component instanceof ComponentsController.Voltmeter)) {
-                    // Skip voltmeters as they are treated as open circuits
-                    if (component instanceof ComponentsController.Ammeter) {
-                        // Ammeters are treated as short circuits (0 resistance)
-                        continue;
-                    }
-                    seriesComponents.add(component);
-                    if (component instanceof ComponentsController.SPSTToggleSwitch) {
-                        totalResistance += component.isClosed ? 0.001 : 1e9;
-                    } else {
-                        totalResistance += component.resistance;
-                    }
-                }
+    // Apply complex circuit analysis using Modified Nodal Analysis, one sparse system per island
+    private void applyComplexAnalysis() {
+        IslandSolver islands = new IslandSolver(netlist);
+        islands.solve();
+        for (IslandSolver.Island island : islands.getIslands()) {
+            if (island.getError() != null) {
+                System.out.println("Complex analysis error: " + island.getError());
             }
         }
+        islands.storeResults(nodeVoltages, branchCurrents);
+    }
 
-        // Calculate current through the series circuit
-        double current = totalVoltage / totalResistance;
-
-        // Update component voltages and currents
-        for (ComponentsController.ImageComponent component : seriesComponents) {
-            if (component instanceof ComponentsController.Ammeter) {
-                component.current = current;
-            } else if (!(component instanceof ComponentsController.Voltmeter)) {
-                component.current = current;
-                if (component instanceof ComponentsController.SPSTToggleSwitch) {
-                    component.voltage = current * (component.isClosed ? 0.001 : 1e9);
-                } else {
-                    component.voltage = current * component.resistance;
-                }
-            }
+    // Solves by preconditioned conjugate gradients, false when the board needs the direct solve
+    private boolean applyIterativeAnalysis() {
+        MnaSystem system = new MnaSystem(netlist);
+        iterativeSolver = IterativeDcSolver.of(system);
+        if (iterativeSolver == null) {
+            return false;
+        }
+        try {
+            double[] solution = iterativeSolver.solve(iterativePreconditioner, iterativeTolerance);
+            system.storeResults(solution, nodeVoltages, branchCurrents);
+        } catch (ArithmeticException e) {
+            System.out.println("Iterative analysis error: " + e.getMessage());
+            iterativeSolver = null;
+            return false;
         }
+        return true;
     }
 
-    // Apply parallel circuit analysis
-    private void applyParallelAnalysis() {
-        double totalVoltage = 0;
-        List<ComponentsController.ImageComponent> parallelComponents = new ArrayList<>();
+    /**
+     * Solves grounded resistive boards by preconditioned conjugate gradients to the given
+     * relative tolerance, a null preconditioner goes back to the direct solve.
+     */
+    public void useIterativeSolver(ConjugateGradientSolver.Preconditioner preconditioner, double tolerance) {
+        this.iterativePreconditioner = preconditioner;
+        this.iterativeTolerance = tolerance;
+    }
 
-        // Find power source and parallel components
-        for (ComponentsController.Drawable drawable : components) {
-            if (drawable instanceof ComponentsController.ImageComponent) {
-                ComponentsController.ImageComponent component = (ComponentsController.ImageComponent) drawable;
-                if (isPowerSource(component)) {
-                    totalVoltage = component.voltage;
-                } else if (!(component instanceof ComponentsController.Voltmeter)) {
-                    // Skip voltmeters as they are treated as open circuits
-                    if (component instanceof ComponentsController.Ammeter) {
-                        // Ammeters are treated as short circuits (0 resistance)
-                        continue;
-                    }
-                    parallelComponents.add(component);
-                }
-            }
-        }
+    // The iterative solve of the last analysis, null when the board was solved directly
+    public IterativeDcSolver getIterativeSolver() {
+        return iterativeSolver;
+    }
 
-        // Calculate equivalent resistance
-        double equivalentResistance = 0;
-        for (ComponentsController.ImageComponent component : parallelComponents) {
-            if (component instanceof ComponentsController.SPSTToggleSwitch) {
-                equivalentResistance += 1.0 / (component.isClosed ? 0.001 : 1e9);
-            } else {
-                equivalentResistance += 1.0 / component.resistance;
-            }
+    // Solves with refined single-precision factors, false when the board needs the nonlinear solve
+    private boolean applyMixedPrecisionAnalysis() {
+        if (netlist.hasDiodes()) {
+            return false;
         }
-        equivalentResistance = 1.0 / equivalentResistance;
-
-        // Calculate total current
-        double totalCurrent = totalVoltage / equivalentResistance;
-
-        // Update component voltages and currents
-        for (ComponentsController.ImageComponent component : parallelComponents) {
-            if (component instanceof ComponentsController.Ammeter) {
-                component.current = totalCurrent;
-            } else if (!(component instanceof ComponentsController.Voltmeter)) {
-                component.voltage = totalVoltage;
-                if (component instanceof ComponentsController.SPSTToggleSwitch) {
-                    component.current = totalVoltage / (component.isClosed ? 0.001 : 1e9);
-                } else {
-                    component.current = totalVoltage / component.resistance;
-                }
-            }
+        MnaSystem system = new MnaSystem(netlist);
+        if (system.size() == 0) {
+            return false;
         }
-    }
-
-    // Apply complex circuit analysis using Kirchhoff's Laws
-    private void applyComplexAnalysis() {
-        // Create conductance matrix
-        int n = components.size();
-        double[][] conductanceMatrix = new double[n][n];
-        double[] currentVector = new double[n];
-        double[] voltageVector = new double[n];
-
-        // Initialize matrices
-        for (int i = 0; i < n; i++) {
-            for (int j = 0; j < n; j++) {
-                conductanceMatrix[i][j] = 0;
-            }
-            currentVector[i] = 0;
-            voltageVector[i] = 0;
-        }
-
-        // Fill conductance matrix
-        for (int i = 0; i < n; i++) {
-            ComponentsController.Drawable drawable = components.get(i);
-            if (drawable instanceof ComponentsController.ImageComponent) {
-                ComponentsController.ImageComponent component = (ComponentsController.ImageComponent) drawable;
-                if (component instanceof ComponentsController.Voltmeter) {
-                    // Voltmeter is treated as an open circuit (infinite resistance)
-                    conductanceMatrix[i][i] = 1e-9;
-                } else if (component instanceof ComponentsController.Ammeter) {
-                    // Ammeter is treated as a short circuit (zero resistance)
-                    conductanceMatrix[i][i] = 1e9;
-                } else if (component instanceof ComponentsController.SPSTToggleSwitch) {
-                    ComponentsController.SPSTToggleSwitch spstSwitch = (ComponentsController.SPSTToggleSwitch) component;
-                    conductanceMatrix[i][i] = spstSwitch.isClosed ? 1000.0 : 1e-9;
-                } else {
-                    conductanceMatrix[i][i] = 1.0 / component.resistance;
-                }
-            }
+        mixedPrecisionSolver = new MixedPrecisionSolver(system.getMatrix());
+        try {
+            double[] solution = mixedPrecisionSolver.solve(system.getRhs());
+            system.storeResults(solution, nodeVoltages, branchCurrents);
+        } catch (ArithmeticException e) {
+            System.out.println("Mixed precision analysis error: " + e.getMessage());
+            mixedPrecisionSolver = null;
+            return false;
         }
+        return true;
+    }
 
-        // Solve the system of equations
-        double[] nodeVoltages = solveLinearSystem(conductanceMatrix, currentVector);
+    // Factorizes in single precision and refines to double accuracy, falling back to double when that stalls
+    public void useMixedPrecision(boolean mixedPrecision) {
+        this.mixedPrecision = mixedPrecision;
+    }
 
-        // Store the results
-        for (int i = 0; i < n; i++) {
-            ComponentsController.Drawable drawable = components.get(i);
-            if (drawable instanceof ComponentsController.ImageComponent) {
-                ComponentsController.ImageComponent component = (ComponentsController.ImageComponent) drawable;
-                String nodeId = component.startX + "," + component.startY;
-                this.nodeVoltages.put(nodeId, nodeVoltages[i]);
-            }
-        }
+    // The mixed-precision solve of the last analysis, null when it was not used
+    public MixedPrecisionSolver getMixedPrecisionSolver() {
+        return mixedPrecisionSolver;
+    }
 
-        // Calculate branch currents
-        for (ComponentsController.Drawable component : components) {
-            if (component instanceof ComponentsController.ImageComponent) {
-                ComponentsController.ImageComponent comp = (ComponentsController.ImageComponent) component;
-                String startNode = comp.startX + "," + comp.startY;
-                String endNode = comp.endX + "," + comp.endY;
-                
-                // Get voltages with null checks
-                Double startVoltage = this.nodeVoltages.get(startNode);
-                Double endVoltage = this.nodeVoltages.get(endNode);
-                
-                if (startVoltage != null && endVoltage != null) {
-                    double voltageDiff = startVoltage - endVoltage;
-                    
-                    if (comp instanceof ComponentsController.ResistorIEEE) {
-                        double current = voltageDiff / comp.resistance;
-                        String branchKey = startNode + "->" + endNode;
-                        this.branchCurrents.put(branchKey, current);
-                    } else if (comp instanceof ComponentsController.SPSTToggleSwitch) {
-                        ComponentsController.SPSTToggleSwitch switch_ = (ComponentsController.SPSTToggleSwitch) comp;
-                        double resistance = switch_.isClosed ? 0.001 : 1e9;
-                        double current = voltageDiff / resistance;
-                        String branchKey = startNode + "->" + endNode;
-                        this.branchCurrents.put(branchKey, current);
-                    } 
-                }
-            }
-        }
+    // Separate circuits on the board, unsolved
+    public IslandSolver islands() {
+        return new IslandSolver(netlist);
+    }
 
-        // Update component voltages and currents
-        for (int i = 0; i < n; i++) {
-            ComponentsController.Drawable drawable = components.get(i);
-            if (drawable instanceof ComponentsController.ImageComponent) {
-                ComponentsController.ImageComponent component = (ComponentsController.ImageComponent) drawable;
-                String startNode = component.startX + "," + component.startY;
-                String endNode = component.endX + "," + component.endY;
-                
-                Double startVoltage = this.nodeVoltages.get(startNode);
-                Double endVoltage = this.nodeVoltages.get(endNode);
-                
-                if (startVoltage != null && endVoltage != null) {
-                    if (component instanceof ComponentsController.Voltmeter) {
-                        component.voltage = startVoltage - endVoltage;
-                    } else if (component instanceof ComponentsController.Ammeter) {
-                        component.current = currentVector[i];
-                    } else {
-                        component.voltage = startVoltage - endVoltage;
-                        component.current = currentVector[i];
-                    }
-                }
-            }
-        }
+    // Series-parallel tree of a single-source resistive board, null for any other board
+    public SeriesParallelTree seriesParallelTree() {
+        return SeriesParallelTree.build(netlist);
     }
 
-    // Helper method to solve system of linear equations using Gaussian elimination
-    private double[] solveLinearSystem(double[][] matrix, double[] vector) {
-        int n = vector.length;
-        double[] solution = new double[n];
-        
-        // Forward elimination
-        for (int i = 0; i < n; i++) {
-            for (int j = i + 1; j < n; j++) {
-                double factor = matrix[j][i] / matrix[i][i];
-                for (int k = i; k < n; k++) {
-                    matrix[j][k] -= factor * matrix[i][k];
-                }
-                vector[j] -= factor * vector[i];
-            }
-        }
-        
-        // Back substitution
-        for (int i = n - 1; i >= 0; i--) {
-            double sum = 0;
-            for (int j = i + 1; j < n; j++) {
-                sum += matrix[i][j] * solution[j];
-            }
-            solution[i] = (vector[i] - sum) / matrix[i][i];
+    // Picks up one edited value without compiling the board again, the wiring must be unchanged
+    public void updateValue(ComponentsController.ImageComponent component) {
+        int i = netlist.indexOf(component);
+        if (i >= 0) {
+            netlist = netlist.withElement(i, Netlist.describe(component));
         }
-        
-        return solution;
     }
 
     // Get voltage across a component
@@ -527,65 +291,42 @@ public class CircuitAnalyzer {
         return current * resistance;
     }
 
+    // What the rest of the board looks like from a component's terminals, the component taken out
+    public TheveninEquivalent theveninAcross(ComponentsController.ImageComponent component) {
+        return TheveninEquivalent.across(netlist, component);
+    }
+
     // Helper method to find the component being measured by a voltmeter
     public ComponentsController.ImageComponent findMeasuredComponent(ComponentsController.ImageComponent voltmeter) {
-        // Find components connected to the same nodes as the voltmeter
-        String voltStartNode = voltmeter.startX + "," + voltmeter.startY;
-        String voltEndNode = voltmeter.endX + "," + voltmeter.endY;
-        
-        // First try exact node match
-        for (ComponentsController.Drawable drawable : components) {
-            if (drawable instanceof ComponentsController.ImageComponent) {
-                ComponentsController.ImageComponent component = (ComponentsController.ImageComponent) drawable;
-                if (component != voltmeter) {  // Don't return the voltmeter itself
-                    String compStartNode = component.startX + "," + component.startY;
-                    String compEndNode = component.endX + "," + component.endY;
-                    
-                    if ((voltStartNode.equals(compStartNode) && voltEndNode.equals(compEndNode)) ||
-                        (voltStartNode.equals(compEndNode) && voltEndNode.equals(compStartNode))) {
-                        return component;
-                    }
-                }
-            }
+        // Find components connected to the same nets as the voltmeter
+        int meter = netlist.indexOf(voltmeter);
+        if (meter < 0) {
+            return null;
         }
-        
-        // If no exact match, look for components in parallel
-        // A component is in parallel if it shares both nodes with the voltmeter
-        // but might be connected in a different order
-        for (ComponentsController.Drawable drawable : components) {
-            if (drawable instanceof ComponentsController.ImageComponent) {
-                ComponentsController.ImageComponent component = (ComponentsController.ImageComponent) drawable;
-                if (component != voltmeter) {  // Don't return the voltmeter itself
-                    String compStartNode = component.startX + "," + component.startY;
-                    String compEndNode = component.endX + "," + component.endY;
-                    
-                    // Check if the component shares both nodes with the voltmeter
-                    if ((voltStartNode.equals(compStartNode) || voltStartNode.equals(compEndNode)) &&
-                        (voltEndNode.equals(compStartNode) || voltEndNode.equals(compEndNode))) {
-                        return component;
-                    }
+        int voltStartNet = netlist.from(meter);
+        int voltEndNet = netlist.to(meter);
+
+        // First try exact node match
+        for (int i = 0; i < netlist.elementCount(); i++) {
+            if (i != meter && netlist.kind(i) != Netlist.WIRE) {  // Don't return the voltmeter itself
+                if ((netlist.from(i) == voltStartNet && netlist.to(i) == voltEndNet) ||
+                    (netlist.from(i) == voltEndNet && netlist.to(i) == voltStartNet)) {
+                    return (ComponentsController.ImageComponent) netlist.element(i);
                 }
             }
         }
-        
-        // If still no match, look for components connected to either node
+
+        // If no exact match, look for components connected to either node
         // This handles cases where the voltmeter might be measuring across multiple components
-        for (ComponentsController.Drawable drawable : components) {
-            if (drawable instanceof ComponentsController.ImageComponent) {
-                ComponentsController.ImageComponent component = (ComponentsController.ImageComponent) drawable;
-                if (component != voltmeter) {  // Don't return the voltmeter itself
-                    String compStartNode = component.startX + "," + component.startY;
-                    String compEndNode = component.endX + "," + component.endY;
-                    
-                    // Check if the component shares either node with the voltmeter
-                    if (voltStartNode.equals(compStartNode) || voltStartNode.equals(compEndNode) ||
-                        voltEndNode.equals(compStartNode) || voltEndNode.equals(compEndNode)) {
-                        return component;
-                    }
+        for (int i = 0; i < netlist.elementCount(); i++) {
+            if (i != meter && netlist.kind(i) != Netlist.WIRE) {
+                if (netlist.from(i) == voltStartNet || netlist.to(i) == voltStartNet ||
+                    netlist.from(i) == voltEndNet || netlist.to(i) == voltEndNet) {
+                    return (ComponentsController.ImageComponent) netlist.element(i);
                 }
             }
         }
-        
+
         return null;
     }
 
@@ -635,33 +376,6 @@ public class CircuitAnalyzer {
         // Debug information removed
     }
 
-    // Enum for circuit topology
-    private enum CircuitTopology {
-        SERIES,
-        PARALLEL,
-        COMPLEX
-    }
-
-    // Helper method to calculate logic gate output
-    private boolean calculateLogicGateOutput(ComponentsController.ImageComponent component, List<Boolean> inputs) {
-        switch (component.componentType) {
-            case "NOTGate":
-                return !inputs.get(0);
-            case "ANDGate":
-                return inputs.stream().allMatch(input -> input);
-            case "NANDGate":
-                return !inputs.stream().allMatch(input -> input);
-            case "ORGate":
-                return inputs.stream().anyMatch(input -> input);
-            case "NORGate":
-                return !inputs.stream().anyMatch(input -> input);
-            case "XORGate":
-                return inputs.stream().filter(input -> input).count() % 2 == 1;
-            default:
-                return false;
-        }
-    }
-
     // Helper method to convert voltage to logic level
     private boolean voltageToLogic(double voltage) {
         // Assuming 5V logic levels
@@ -674,74 +388,58 @@ public class CircuitAnalyzer {
         return logic ? 5.0 : 0.0;
     }
 
-    // Helper method to analyze logic gates
+    // Helper method to analyze logic gates: settle the gate network and drive the gate outputs
     private void analyzeLogicGates() {
-        for (ComponentsController.Drawable component : components) {
-            if (component instanceof ComponentsController.ImageComponent) {
-                ComponentsController.ImageComponent comp = (ComponentsController.ImageComponent) component;
-                if (comp.isLogicGate()) {
-                    // Get input voltages
-                    List<Boolean> inputs = new ArrayList<>();
-                    for (Edge edge : circuitGraph.edges) {
-                        if (edge.to.id.equals(comp.startX + "," + comp.startY)) {
-                            inputs.add(voltageToLogic(edge.voltage));
-                        }
-                    }
-                    
-                    // Calculate output
-                    boolean output = calculateLogicGateOutput(comp, inputs);
-                    
-                    // Set output voltage
-                    for (Edge edge : circuitGraph.edges) {
-                        if (edge.from.id.equals(comp.endX + "," + comp.endY)) {
-                            edge.voltage = logicToVoltage(output);
-                        }
-                    }
+        GateNetwork network = GateNetwork.fromNetlist(netlist);
+        if (network.gateCount() == 0) {
+            return;
+        }
+        boolean[] level = new boolean[network.signalCount()];
+        CompiledLogic compiled = CompiledLogic.compile(network);
+        if (compiled != null) {
+            // Feedback-free gates settle to one pass of the compiled evaluator
+            long[] words = new long[network.signalCount()];
+            for (int i = 0; i < netlist.elementCount(); i++) {
+                if (network.driver(i) < 0 && voltageToLogic(circuitGraph.voltage[i])) {
+                    words[i] = -1L;
                 }
             }
-        }
-    }
-
-    //TEST
-    Set<Edge> visitedEdges = new HashSet<>();
-    List<Edge> currentPath = new ArrayList<>();
-    List<List<Edge>> foundLoops = new ArrayList<>();
-    public void loopRecon(Node comp, Node start) {
-
-
-        for (Edge currentEdge: comp.edges) {
-            if (!currentPath.isEmpty() && currentEdge.equals(currentPath.get(currentPath.size() - 1))) {
-                continue;
+            compiled.evaluate(words);
+            for (int s = 0; s < level.length; s++) {
+                level[s] = words[s] != 0;
             }
-
-            if (visitedEdges.contains(currentEdge)) {
-                if (currentPath.contains(currentEdge)) {
-                    List <Edge> loop = loopMaker(currentPath, currentEdge);
-                    foundLoops.add(loop);
+        } else {
+            // Feedback loops need the event-driven kernel, every element that is not a gate feeds in its voltage
+            LogicSimulator logic = new LogicSimulator(network);
+            for (int i = 0; i < netlist.elementCount(); i++) {
+                if (network.driver(i) < 0 && voltageToLogic(circuitGraph.voltage[i])) {
+                    logic.setInput(i, true);
                 }
-                continue;
             }
-
-            if (currentEdge.component instanceof ComponentsController.ImageComponent) {
-                if(!isConductive((ComponentsController.ImageComponent) currentEdge.component)) {
-                    continue;
-                }
+            logic.runUntilIdle(LOGIC_SETTLE_TICKS);
+            for (int s = 0; s < level.length; s++) {
+                level[s] = logic.value(s);
             }
+        }
 
-            visitedEdges.add(currentEdge);
-            currentPath.add(currentEdge);
-
-            Node nextComp = (currentEdge.from == comp) ? currentEdge.to : currentEdge.from;
-            loopRecon(nextComp, comp);
-
-            currentPath.remove(currentEdge);
-            visitedEdges.remove(currentEdge);
+        // Set output voltage on everything leaving a gate output
+        int[] gateAtTerminal = new int[netlist.terminalCount()];
+        Arrays.fill(gateAtTerminal, -1);
+        for (int g = 0; g < network.gateCount(); g++) {
+            gateAtTerminal[netlist.toTerminal(network.output(g))] = network.output(g);
+        }
+        for (int i = 0; i < netlist.elementCount(); i++) {
+            int gate = gateAtTerminal[netlist.fromTerminal(i)];
+            if (gate >= 0) {
+                circuitGraph.voltage[i] = logicToVoltage(level[gate]);
+            }
         }
     }
 
-    List <Edge> loopMaker(List<Edge> loopPath, Edge lastEdge) {
-        int startingPoint = loopPath.indexOf(lastEdge);
-        return new ArrayList<>(loopPath.subList(startingPoint, loopPath.size()));
+    // Exhaustive truth table of the board's gates, from the signals feeding them to the outputs no gate reads
+    public long[][] logicTruthTable() {
+        GateNetwork network = GateNetwork.fromNetlist(netlist);
+        return new BitParallelEvaluator(network).truthTable(network.primaryInputs(), network.primaryOutputs());
     }
 
     private boolean isConductive (ComponentsController.ImageComponent comp) {
@@ -753,124 +451,98 @@ public class CircuitAnalyzer {
         }
     }
 
+    // Independent conductive loops (a fundamental cycle basis), every other loop combines these
     public List<List<Edge>> findAllLoops() {
-        visitedEdges.clear();
-        currentPath.clear();
-        foundLoops.clear();
-
-        for (Node node: getAllNodes()) {
-            if (!hasVistedEdges(node)) {
-                loopRecon(node, null);
-            }
-        }
-
-        return filterUniqueLoops(foundLoops);
-    }
-
-    private List<Node> getAllNodes() {
-        Set<Node> nodes = new HashSet<>();
-        for (Edge edge: getAllEdges()) {
-            nodes.add(edge.from);
-            nodes.add(edge.to);
-        }
-        return new ArrayList<>(nodes);
-    }
-
-    private List<Edge> getAllEdges() {
-        return new ArrayList<>(circuitGraph.edges);
-    }
-
-    private boolean hasVistedEdges(Node node) {
-        for (Edge edge : node.edges) {
-            if (visitedEdges.contains(edge)) {
-                return true;
-            }
-        }
-        return false;
+        return toEdgeLists(circuitGraph.csr.cycleBasis(true));
     }
 
-    private List<List<Edge>> filterUniqueLoops(List<List<Edge>> loops) {
-        List<Set<Edge>> uniqueLoopSets = new ArrayList<>();
-        List<List<Edge>> uniqueLoops = new ArrayList<>();
-
-        for (List<Edge> loop : loops) {
-            Set<Edge> edgeSet = new HashSet<>(loop);
-
-            if (!containsLoop(uniqueLoopSets, edgeSet)) {
-                uniqueLoopSets.add(edgeSet);
-                uniqueLoops.add(loop);
-            }
-        }
-        return uniqueLoops;
+    // Up to maxLoops distinct conductive loops for display, the basis loops first
+    public List<List<Edge>> findLoops(int maxLoops) {
+        return toEdgeLists(circuitGraph.csr.enumerateLoops(true, maxLoops));
     }
 
-    private boolean containsLoop(List<Set<Edge>> loopSets, Set<Edge> target) {
-        for (Set<Edge> exists: loopSets) {
-            if (exists.equals(target)) {
-                return true;
+    private List<List<Edge>> toEdgeLists(List<int[]> loops) {
+        List<List<Edge>> edgeLists = new ArrayList<>(loops.size());
+        for (int[] loop : loops) {
+            List<Edge> edges = new ArrayList<>(loop.length);
+            for (int e : loop) {
+                edges.add(circuitGraph.edges.get(e));
             }
+            edgeLists.add(edges);
         }
-        return false;
+        return edgeLists;
     }
 
     private Node findTerminalNode() {
+        CsrGraph csr = circuitGraph.csr;
 
         // 1 connection
-        for (Node node: circuitGraph.nodes.values()) {
-            if (getConductiveConnections(node).size() == 1) {
+        for (Node node : circuitGraph.nodes) {
+            if (csr.conductiveDegree(node.terminal) == 1) {
                 return node;
             }
         }
+        if (circuitGraph.nodes.length == 0) {
+            throw new IllegalStateException("Cannot find the terminal. The circuit is empty.");
+        }
         // No terminal
-        if (!findAllLoops().isEmpty()) {
-            return circuitGraph.nodes.values().iterator().next();
+        if (csr.cycleRank(true) > 0) {
+            return circuitGraph.nodes[0];
         }
 
-        boolean isClosedLoop = circuitGraph.nodes.values().stream()
-                .allMatch(node -> getConductiveConnections(node).size() == 2);
+        boolean isClosedLoop = true;
+        for (Node node : circuitGraph.nodes) {
+            if (csr.conductiveDegree(node.terminal) != 2) {
+                isClosedLoop = false;
+                break;
+            }
+        }
 
         if (isClosedLoop) {
             // Pick the node with the power source if exists
-            return circuitGraph.nodes.values().stream()
-                    .filter(node -> node.edges.stream().anyMatch(edge ->
-                            edge.component instanceof ComponentsController.VoltageSource))
-                    .findFirst()
-                    .orElseGet(() -> circuitGraph.nodes.values().iterator().next());
+            for (Node node : circuitGraph.nodes) {
+                for (int s = csr.firstSlot(node.terminal); s < csr.endSlot(node.terminal); s++) {
+                    if (netlist.element(csr.slotEdge(s)) instanceof ComponentsController.VoltageSource) {
+                        return node;
+                    }
+                }
+            }
+            return circuitGraph.nodes[0];
         }
         // Complex
         throw new IllegalStateException("Cannot find the terminal. It might be malformed.");
     }
 
-    private List<Edge> getConductiveConnections(Node node) {
-        return node.edges.stream().filter(edge ->{
-            if (edge.component instanceof ComponentsController.ImageComponent) {
-                ComponentsController.ImageComponent comp = (ComponentsController.ImageComponent) edge.component;
-                return isConductive(comp);
-            }
-            return true;
-        }).collect(Collectors.toList());
-    }
-
+    // Walk from the start node, always leaving through an edge other than the one we came in on
     private List<Edge> findSeriesPath(Node startNode) {
+        CsrGraph csr = circuitGraph.csr;
         List<Edge> path = new ArrayList<>();
-        Node start = startNode;
+        boolean[] used = new boolean[csr.edgeCount()];
 
-        Node current = start;
-        Edge previous = null;
+        int current = startNode.terminal;
+        int previous = -1;
 
         while (true) {
-            Edge finalPrevious = previous;
-            List<Edge> nextEdges = current.edges.stream().filter(e -> e.equals(finalPrevious)).toList();
+            int nextEdge = -1;
+            for (int s = csr.firstSlot(current); s < csr.endSlot(current); s++) {
+                int e = csr.slotEdge(s);
+                if (e != previous && !used[e]) {
+                    nextEdge = e;
+                    break;
+                }
+            }
 
-            if (nextEdges.isEmpty()) {
+            if (nextEdge < 0) {
                 break;
             }
 
-            Edge nextEdge = nextEdges.get(0);
-            path.add(nextEdge);
+            used[nextEdge] = true;
+            path.add(circuitGraph.edges.get(nextEdge));
             previous = nextEdge;
-            current = (nextEdge.from == current) ? nextEdge.to : nextEdge.from;
-
+            current = csr.other(nextEdge, current);
+            if (current == startNode.terminal) {
+                break;
+            }
         }
         return path;
     }
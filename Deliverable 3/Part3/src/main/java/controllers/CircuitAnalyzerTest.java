@@ -1,7 +1,6 @@
 package controllers;
 
 import java.util.*;
-import java.util.stream.Collectors;
 
 public class CircuitAnalyzerTest {
     private final Map<String, Double> nodeVoltages = new HashMap<>();
@@ -26,13 +25,21 @@ public class CircuitAnalyzerTest {
         private ComponentsController.Battery battery; // Reference to the single battery
         private static Node batteryPlusTerminal;
         private static Node batteryMinusTerminal;
+        // Adjacency of the static node and edge collections, rebuilt when they change
+        private static CsrGraph csr;
+        private static Node[] indexedNodes;
+        private static int version;
+        private static int builtVersion = -1;
+        private static int builtNodeCount;
+        private static int builtEdgeCount;
+
         public static class Node {
             public String id;
             double startX;
             double startY;
             double endX;
             double endY;
-            public final List<Edge> edges = new ArrayList<>();
+            int index = -1;
 
             public Node(String id, double startX, double startY, double endX, double endY) {
                 this.id = id;
@@ -47,6 +54,7 @@ public class CircuitAnalyzerTest {
             public final Node from;
             public final Node to;
             public ComponentsController.Drawable component;
+            int index = -1;
 
             public Edge(Node from, Node to, ComponentsController.Drawable component) {
                 this.from = from;
@@ -61,6 +69,7 @@ public class CircuitAnalyzerTest {
 
         public void addNode(String id, double startX, double startY, double endX, double endY) {
             nodes.putIfAbsent(id, new Node(id, startX, startY, endX, endY));
+            version++;
         }
 
         public void addEdge(String fromId, String toId, ComponentsController.Drawable component) {
@@ -69,8 +78,7 @@ public class CircuitAnalyzerTest {
             if (from != null && to != null) {
                 Edge edge = new Edge(from, to, component);
                 globalEdges.add(edge);
-                from.edges.add(edge);
-                to.edges.add(edge);
+                version++;
 
                 if (component instanceof ComponentsController.Battery) {
                     this.battery = (ComponentsController.Battery)component;
@@ -80,83 +88,98 @@ public class CircuitAnalyzerTest {
             }
         }
 
-        public List<Edge> findConductivePath(Node start, Node end) {
-            Set<Node> visited = new HashSet<>();
-            return dfsFindPath(start, end, visited, new ArrayList<>());
-        }
-
-        private List<Edge> dfsFindPath(Node current, Node end,
-                                       Set<Node> visited, List<Edge> path) {
-            if (current == end) return new ArrayList<>(path);
-            visited.add(current);
-
-            for (Edge edge : getConductiveEdges(current)) {
-                Node neighbor = edge.getOtherNode(current);
-                if (!visited.contains(neighbor)) {
-                    path.add(edge);
-                    List<Edge> result = dfsFindPath(neighbor, end, visited, path);
-                    if (result != null) return result;
-                    path.remove(edge);
+        // CSR view of the current nodes and edges, the collections can also be cleared from outside
+        static CsrGraph csr() {
+            if (csr != null && builtVersion == version
+                    && builtNodeCount == nodes.size() && builtEdgeCount == globalEdges.size()) {
+                return csr;
+            }
+            List<Node> ordered = new ArrayList<>(nodes.values());
+            for (Node node : ordered) {
+                node.index = -1;
+            }
+            for (Edge edge : globalEdges) {
+                edge.from.index = -1;
+                edge.to.index = -1;
+            }
+            for (int i = 0; i < ordered.size(); i++) {
+                ordered.get(i).index = i;
+            }
+            int[] from = new int[globalEdges.size()];
+            int[] to = new int[globalEdges.size()];
+            boolean[] conductive = new boolean[globalEdges.size()];
+            for (int e = 0; e < globalEdges.size(); e++) {
+                Edge edge = globalEdges.get(e);
+                edge.index = e;
+                for (Node end : new Node[]{edge.from, edge.to}) {
+                    if (end.index < 0) {
+                        end.index = ordered.size();
+                        ordered.add(end);
+                    }
                 }
+                from[e] = edge.from.index;
+                to[e] = edge.to.index;
+                conductive[e] = isConductive(edge.component);
+            }
+            indexedNodes = ordered.toArray(new Node[0]);
+            csr = new CsrGraph(indexedNodes.length, from, to, conductive);
+            builtVersion = version;
+            builtNodeCount = nodes.size();
+            builtEdgeCount = globalEdges.size();
+            return csr;
+        }
+
+        static List<Edge> edgesOf(int[] edgeIds) {
+            List<Edge> edges = new ArrayList<>(edgeIds.length);
+            for (int e : edgeIds) {
+                edges.add(globalEdges.get(e));
             }
-            return null;
+            return edges;
+        }
+
+        public List<Edge> findConductivePath(Node start, Node end) {
+            if (start == end) return new ArrayList<>();
+            if (start == null || end == null) return null;
+            CsrGraph graph = csr();
+            if (start.index < 0 || end.index < 0) return null;
+            int[] path = graph.findConductivePath(start.index, end.index);
+            return path == null ? null : edgesOf(path);
         }
 
         public List<List<Edge>> findAllLoops() {
             List<List<Edge>> loops = new ArrayList<>();
-            Set<Edge> visited = new HashSet<>();
-            Stack<Edge> path = new Stack<>();
-
-            for (Node node : nodes.values()) {
-                findLoopsDFS(node, null, visited, path, loops);
+            for (int[] loop : csr().cycleBasis(true)) {
+                loops.add(edgesOf(loop));
             }
             return loops;
         }
 
-        private void findLoopsDFS(Node current, Node parent,
-                                  Set<Edge> visited, Stack<Edge> path,
-                                  List<List<Edge>> loops) {
-            for (Edge edge : getConductiveEdges(current)) {
-                if (!path.isEmpty() && edge == path.peek()) continue;
-
-                if (visited.contains(edge)) {
-                    if (path.contains(edge)) {
-                        loops.add(extractLoop(path, edge));
-                    }
-                    continue;
-                }
-
-                visited.add(edge);
-                path.push(edge);
-
-                Node neighbor = edge.getOtherNode(current);
-                if (neighbor != parent) {
-                    findLoopsDFS(neighbor, current, visited, path, loops);
+        static List<Edge> getConductiveEdges(Node node) {
+            CsrGraph graph = csr();
+            List<Edge> edges = new ArrayList<>();
+            if (node == null || node.index < 0) {
+                return edges;
+            }
+            for (int s = graph.firstSlot(node.index); s < graph.endSlot(node.index); s++) {
+                if (graph.isConductive(graph.slotEdge(s))) {
+                    edges.add(globalEdges.get(graph.slotEdge(s)));
                 }
-
-                path.pop();
-                visited.remove(edge);
             }
+            return edges;
         }
 
-        private List<Edge> getConductiveEdges(Node node) {
-            return node.edges.stream()
-                    .filter(edge -> isConductive(edge.component))
-                    .collect(Collectors.toList());
+        static int conductiveDegree(Node node) {
+            CsrGraph graph = csr();
+            return node == null || node.index < 0 ? 0 : graph.conductiveDegree(node.index);
         }
 
-        private boolean isConductive(ComponentsController.Drawable comp) {
+        private static boolean isConductive(ComponentsController.Drawable comp) {
             if (comp instanceof ComponentsController.SPSTToggleSwitch) {
                 return ((ComponentsController.SPSTToggleSwitch)comp).isClosed();
             }
             return !(comp instanceof ComponentsController.Voltmeter);
         }
 
-        private List<Edge> extractLoop(Stack<Edge> path, Edge closingEdge) {
-            int startIdx = path.indexOf(closingEdge);
-            return new ArrayList<>(path.subList(startIdx, path.size()));
-        }
-
         // Getters
         public Node getBatteryPositiveTerminal() {
             return battery.positiveTerminal;
@@ -277,25 +300,7 @@ public class CircuitAnalyzerTest {
         }
 
         private List<CircuitGraph.Edge> findConductivePath(CircuitGraph.Node start, CircuitGraph.Node end) {
-            Set<CircuitGraph.Node> visited = new HashSet<>();
-            return dfsFindPath(start, end, visited, new ArrayList<>());
-        }
-
-        private List<CircuitGraph.Edge> dfsFindPath(CircuitGraph.Node current, CircuitGraph.Node end,
-                                       Set<CircuitGraph.Node> visited, List<CircuitGraph.Edge> path) {
-            if (current == end) return new ArrayList<>(path);
-            visited.add(current);
-
-            for (CircuitGraph.Edge edge : getConductiveEdges(current)) {
-                CircuitGraph.Node neighbor = (edge.from == current) ? edge.to : edge.from;
-                if (!visited.contains(neighbor)) {
-                    path.add(edge);
-                    List<CircuitGraph.Edge> result = dfsFindPath(neighbor, end, visited, path);
-                    if (result != null) return result;
-                    path.remove(edge);
-                }
-            }
-            return null;
+            return graph.findConductivePath(start, end);
         }
 
         private double calculateTotalResistance(List<CircuitGraph.Edge> path) {
@@ -313,15 +318,15 @@ public class CircuitAnalyzerTest {
         }
 
         private boolean isSeriesCircuit() {
-            return findAllLoops().isEmpty() &&
-                    getConductiveEdges(batteryPlus).size() == 1 &&
-                    getConductiveEdges(batteryMinus).size() == 1;
+            return CircuitGraph.csr().cycleRank(true) == 0 &&
+                    CircuitGraph.conductiveDegree(batteryPlus) == 1 &&
+                    CircuitGraph.conductiveDegree(batteryMinus) == 1;
         }
 
         public boolean isPureParallel() {
-            return findAllLoops().size() == 1 &&
-                    getConductiveEdges(batteryPlus).size() > 1 &&
-                    getConductiveEdges(batteryMinus).size() > 1;
+            return CircuitGraph.csr().cycleRank(true) == 1 &&
+                    CircuitGraph.conductiveDegree(batteryPlus) > 1 &&
+                    CircuitGraph.conductiveDegree(batteryMinus) > 1;
         }
 
         public void debugPrintState() {
@@ -348,7 +353,7 @@ public class CircuitAnalyzerTest {
         }
 
         public String getTopology() {
-            if (findAllLoops().isEmpty()) return "SERIES";
+            if (CircuitGraph.csr().cycleRank(true) == 0) return "SERIES";
             if (isPureParallel()) return "PARALLEL";
             return "COMPLEX";
         }
@@ -369,23 +374,25 @@ public class CircuitAnalyzerTest {
     }
 
     public Map<String, List<CircuitGraph.Edge>> groupParallelBranches() {
-        Map<String, List<CircuitGraph.Edge>> parallelGroups = new HashMap<>();
+        // Group conductive edges by their unordered pair of node indices
+        CsrGraph graph = CircuitGraph.csr();
+        Map<Long, List<CircuitGraph.Edge>> byNodePair = new HashMap<>();
+        for (int e = 0; e < graph.edgeCount(); e++) {
+            if (!graph.isConductive(e)) continue;
 
-        Set<CircuitGraph.Node> junctionNodes = CircuitGraph.nodes.values().stream()
-                .filter(node -> getConductiveEdges(node).size() > 2)
-                .collect(Collectors.toSet());
-
-
-        for (CircuitGraph.Edge edge : CircuitGraph.globalEdges) {
-            if (!isConductive(edge.component)) continue;
-
-            String key = generateEdgeKey(edge.from, edge.to);
-            parallelGroups.computeIfAbsent(key, k -> new ArrayList<>()).add(edge);
+            long a = Math.min(graph.edgeFrom(e), graph.edgeTo(e));
+            long b = Math.max(graph.edgeFrom(e), graph.edgeTo(e));
+            byNodePair.computeIfAbsent((a << 32) | b, k -> new ArrayList<>()).add(CircuitGraph.globalEdges.get(e));
         }
 
-        return parallelGroups.entrySet().stream()
-                .filter(entry -> entry.getValue().size() > 1)
-                .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
+        Map<String, List<CircuitGraph.Edge>> parallelGroups = new HashMap<>();
+        for (List<CircuitGraph.Edge> group : byNodePair.values()) {
+            if (group.size() > 1) {
+                CircuitGraph.Edge edge = group.get(0);
+                parallelGroups.put(generateEdgeKey(edge.from, edge.to), group);
+            }
+        }
+        return parallelGroups;
     }
 
     private String generateEdgeKey(CircuitGraph.Node a, CircuitGraph.Node b) {
@@ -394,50 +401,14 @@ public class CircuitAnalyzerTest {
 
     public List<List<CircuitGraph.Edge>> findAllLoops() {
         List<List<CircuitGraph.Edge>> loops = new ArrayList<>();
-        Set<CircuitGraph.Edge> visited = new HashSet<>();
-        Stack<CircuitGraph.Edge> path = new Stack<>();
-
-        for (CircuitGraph.Node node : CircuitGraph.nodes.values()) {
-            findLoopsDFS(node, null, visited, path, loops);
+        for (int[] loop : CircuitGraph.csr().cycleBasis(true)) {
+            loops.add(CircuitGraph.edgesOf(loop));
         }
         return loops;
     }
 
-    private void findLoopsDFS(CircuitGraph.Node current, CircuitGraph.Node parent,
-                              Set<CircuitGraph.Edge> visited, Stack<CircuitGraph.Edge> path,
-                              List<List<CircuitGraph.Edge>> loops) {
-        for (CircuitGraph.Edge edge : getConductiveEdges(current)) {
-            if (!path.isEmpty() && edge == path.peek()) continue;
-
-            if (visited.contains(edge)) {
-                if (path.contains(edge)) {
-                    loops.add(extractLoop(path, edge));
-                }
-                continue;
-            }
-
-            visited.add(edge);
-            path.push(edge);
-
-            CircuitGraph.Node neighbor = edge.getOtherNode(current);
-            if (neighbor != parent) {
-                findLoopsDFS(neighbor, current, visited, path, loops);
-            }
-
-            path.pop();
-            visited.remove(edge);
-        }
-    }
-
-    private List<CircuitGraph.Edge> extractLoop(Stack<CircuitGraph.Edge> path, CircuitGraph.Edge closingEdge) {
-        int startIdx = path.indexOf(closingEdge);
-        return new ArrayList<>(path.subList(startIdx, path.size()));
-    }
-
     public List<CircuitGraph.Edge> getConductiveEdges(CircuitGraph.Node node) {
-        return node.edges.stream()
-                .filter(edge -> isConductive(edge.component))
-                .collect(Collectors.toList());
+        return CircuitGraph.getConductiveEdges(node);
     }
 
     public double getEffectiveResistance(ComponentsController.Drawable component) {
@@ -453,14 +424,4 @@ public class CircuitAnalyzerTest {
         return 0.001;
     }
 
-    private boolean isConductive(ComponentsController.Drawable component) {
-        if (component instanceof ComponentsController.Voltmeter) {
-            return false;
-        }
-        if (component instanceof ComponentsController.SPSTToggleSwitch) {
-            return ((ComponentsController.SPSTToggleSwitch) component).isClosed();
-        }
-        return true;
-    }
-
 }
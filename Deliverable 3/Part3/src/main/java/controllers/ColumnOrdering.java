@@ -0,0 +1,353 @@
+package controllers;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Fill-reducing orderings for {@link SparseLU}, worked out on the pattern of A + A' since the
+ * nodal matrix is structurally symmetric apart from source branches. Column k of the
+ * factorization is column order[k] of A, and because the LU prefers the diagonal as pivot the
+ * rows follow the same order unless a pivot is too small.
+ */
+public enum ColumnOrdering {
+    // Unknowns in the order the netlist numbered them
+    NATURAL {
+        @Override
+        public int[] order(SparseMatrix a) {
+            int[] order = new int[a.n];
+            for (int k = 0; k < a.n; k++) {
+                order[k] = k;
+            }
+            return order;
+        }
+    },
+    // Reverse Cuthill-McKee: breadth-first from a peripheral node, a narrow band for little work
+    REVERSE_CUTHILL_MCKEE {
+        @Override
+        public int[] order(SparseMatrix a) {
+            return reverseCuthillMcKee(adjacency(a));
+        }
+    },
+    // Approximate minimum degree on the quotient graph, the least fill on mesh-like boards
+    APPROXIMATE_MINIMUM_DEGREE {
+        @Override
+        public int[] order(SparseMatrix a) {
+            return approximateMinimumDegree(adjacency(a));
+        }
+    };
+
+    public abstract int[] order(SparseMatrix a);
+
+    // Neighbours of every unknown in the pattern of A + A', diagonal left out
+    static int[][] adjacency(SparseMatrix a) {
+        int n = a.n;
+        int[] count = new int[n];
+        for (int j = 0; j < n; j++) {
+            for (int p = a.colPtr[j]; p < a.colPtr[j + 1]; p++) {
+                int i = a.rowIdx[p];
+                if (i != j) {
+                    count[i]++;
+                    count[j]++;
+                }
+            }
+        }
+        int[][] neighbours = new int[n][];
+        for (int i = 0; i < n; i++) {
+            neighbours[i] = new int[count[i]];
+        }
+        Arrays.fill(count, 0);
+        for (int j = 0; j < n; j++) {
+            for (int p = a.colPtr[j]; p < a.colPtr[j + 1]; p++) {
+                int i = a.rowIdx[p];
+                if (i != j) {
+                    neighbours[i][count[i]++] = j;
+                    neighbours[j][count[j]++] = i;
+                }
+            }
+        }
+        // Symmetric entries show up twice, keep each neighbour once
+        for (int i = 0; i < n; i++) {
+            int[] list = neighbours[i];
+            Arrays.sort(list);
+            int unique = 0;
+            for (int k = 0; k < list.length; k++) {
+                if (unique == 0 || list[k] != list[unique - 1]) {
+                    list[unique++] = list[k];
+                }
+            }
+            neighbours[i] = Arrays.copyOf(list, unique);
+        }
+        return neighbours;
+    }
+
+    private static int[] reverseCuthillMcKee(int[][] neighbours) {
+        int n = neighbours.length;
+        int[] order = new int[n];
+        boolean[] placed = new boolean[n];
+        int[] level = new int[n];
+        Arrays.fill(level, -1);
+        int filled = 0;
+        for (int seed = 0; seed < n; seed++) {
+            if (placed[seed]) continue;
+            int start = peripheralNode(neighbours, seed, level);
+            // Breadth-first, each node's new neighbours taken lowest degree first
+            int head = filled;
+            order[filled++] = start;
+            placed[start] = true;
+            while (head < filled) {
+                int node = order[head++];
+                int from = filled;
+                for (int next : neighbours[node]) {
+                    if (!placed[next]) {
+                        placed[next] = true;
+                        order[filled++] = next;
+                    }
+                }
+                sortByDegree(order, from, filled, neighbours);
+            }
+        }
+        for (int i = 0, j = n - 1; i < j; i++, j--) {
+            int t = order[i];
+            order[i] = order[j];
+            order[j] = t;
+        }
+        return order;
+    }
+
+    // George-Liu search: restart from the lowest-degree node of the last level while the eccentricity grows
+    private static int peripheralNode(int[][] neighbours, int seed, int[] level) {
+        int start = seed;
+        int eccentricity = -1;
+        while (true) {
+            ArrayDeque<Integer> queue = new ArrayDeque<>();
+            List<Integer> visited = new ArrayList<>();
+            queue.add(start);
+            level[start] = 0;
+            visited.add(start);
+            int deepest = 0;
+            while (!queue.isEmpty()) {
+                int node = queue.poll();
+                deepest = Math.max(deepest, level[node]);
+                for (int next : neighbours[node]) {
+                    if (level[next] < 0) {
+                        level[next] = level[node] + 1;
+                        visited.add(next);
+                        queue.add(next);
+                    }
+                }
+            }
+            int candidate = start;
+            for (int node : visited) {
+                if (level[node] == deepest && (candidate == start || neighbours[node].length < neighbours[candidate].length)) {
+                    candidate = node;
+                }
+            }
+            // Levels are only needed during one search
+            for (int node : visited) {
+                level[node] = -1;
+            }
+            if (deepest <= eccentricity || candidate == start) {
+                return start;
+            }
+            eccentricity = deepest;
+            start = candidate;
+        }
+    }
+
+    private static void sortByDegree(int[] order, int from, int to, int[][] neighbours) {
+        for (int i = from + 1; i < to; i++) {
+            int node = order[i];
+            int j = i - 1;
+            while (j >= from && neighbours[order[j]].length > neighbours[node].length) {
+                order[j + 1] = order[j];
+                j--;
+            }
+            order[j + 1] = node;
+        }
+    }
+
+    /*
+     * Minimum degree on the quotient graph: an eliminated unknown becomes an element standing for
+     * the clique its elimination creates, so the graph never grows. Variable i keeps its remaining
+     * variable neighbours A_i and its elements E_i, and its degree is bounded the way AMD does it,
+     * |A_i| + |L_p \ i| + sum over the other elements e of |L_e \ L_p|, instead of counting the
+     * union exactly. Elements swallowed by the new one are absorbed.
+     */
+    private static int[] approximateMinimumDegree(int[][] neighbours) {
+        int n = neighbours.length;
+        int[][] variables = new int[n][];
+        int[] variableCount = new int[n];
+        int[][] elements = new int[n][];
+        int[] elementCount = new int[n];
+        // Members of element e, eliminated ones pruned when the element is next looked at
+        int[][] members = new int[n][];
+        int[] memberCount = new int[n];
+        int[] degree = new int[n];
+        for (int i = 0; i < n; i++) {
+            variables[i] = neighbours[i].clone();
+            variableCount[i] = variables[i].length;
+            elements[i] = new int[4];
+            degree[i] = variableCount[i];
+        }
+
+        // Doubly linked lists of variables by degree
+        int[] head = new int[n + 1];
+        int[] next = new int[n];
+        int[] previous = new int[n];
+        Arrays.fill(head, -1);
+        for (int i = 0; i < n; i++) {
+            link(i, degree[i], head, next, previous);
+        }
+
+        boolean[] eliminated = new boolean[n];
+        boolean[] absorbed = new boolean[n];
+        int[] mark = new int[n];
+        Arrays.fill(mark, -1);
+        int[] w = new int[n];
+        Arrays.fill(w, -1);
+        int[] touched = new int[n];
+        int[] order = new int[n];
+        int minimum = 0;
+        int[] pivotClique = new int[n];
+
+        for (int k = 0; k < n; k++) {
+            while (head[minimum] < 0) {
+                minimum++;
+            }
+            int p = head[minimum];
+            unlink(p, degree[p], head, next, previous);
+            order[k] = p;
+            eliminated[p] = true;
+
+            // L_p: the remaining variables next to p, directly or through its elements
+            int size = 0;
+            mark[p] = k;
+            for (int t = 0; t < variableCount[p]; t++) {
+                int i = variables[p][t];
+                if (!eliminated[i] && mark[i] != k) {
+                    mark[i] = k;
+                    pivotClique[size++] = i;
+                }
+            }
+            for (int t = 0; t < elementCount[p]; t++) {
+                int e = elements[p][t];
+                if (absorbed[e]) continue;
+                for (int s = 0; s < memberCount[e]; s++) {
+                    int i = members[e][s];
+                    if (!eliminated[i] && mark[i] != k) {
+                        mark[i] = k;
+                        pivotClique[size++] = i;
+                    }
+                }
+                absorbed[e] = true;
+                members[e] = null;
+            }
+            members[p] = Arrays.copyOf(pivotClique, size);
+            memberCount[p] = size;
+            variables[p] = null;
+            elements[p] = null;
+
+            // Neighbours drop p and everything L_p now covers, and gain element p
+            for (int s = 0; s < size; s++) {
+                int i = pivotClique[s];
+                unlink(i, degree[i], head, next, previous);
+                int kept = 0;
+                for (int t = 0; t < variableCount[i]; t++) {
+                    int j = variables[i][t];
+                    if (!eliminated[j] && mark[j] != k) {
+                        variables[i][kept++] = j;
+                    }
+                }
+                variableCount[i] = kept;
+                kept = 0;
+                for (int t = 0; t < elementCount[i]; t++) {
+                    int e = elements[i][t];
+                    if (!absorbed[e]) {
+                        elements[i][kept++] = e;
+                    }
+                }
+                if (kept == elements[i].length) {
+                    elements[i] = Arrays.copyOf(elements[i], 2 * kept + 1);
+                }
+                elements[i][kept++] = p;
+                elementCount[i] = kept;
+            }
+
+            // w(e) = |L_e \ L_p| for every element next to L_p
+            int touchedCount = 0;
+            for (int s = 0; s < size; s++) {
+                int i = pivotClique[s];
+                for (int t = 0; t < elementCount[i]; t++) {
+                    int e = elements[i][t];
+                    if (e == p) continue;
+                    if (w[e] < 0) {
+                        w[e] = prune(e, members, memberCount, eliminated);
+                        touched[touchedCount++] = e;
+                    }
+                    w[e]--;
+                }
+            }
+
+            for (int s = 0; s < size; s++) {
+                int i = pivotClique[s];
+                int bound = variableCount[i] + size - 1;
+                int kept = 0;
+                for (int t = 0; t < elementCount[i]; t++) {
+                    int e = elements[i][t];
+                    if (e != p && w[e] == 0) {
+                        // Aggressive absorption: e lies inside L_p
+                        absorbed[e] = true;
+                        continue;
+                    }
+                    if (e != p) {
+                        bound += w[e];
+                    }
+                    elements[i][kept++] = e;
+                }
+                elementCount[i] = kept;
+                degree[i] = Math.max(0, Math.min(Math.min(bound, degree[i] + size - 1), n - k - 2));
+                link(i, degree[i], head, next, previous);
+                minimum = Math.min(minimum, degree[i]);
+            }
+            for (int t = 0; t < touchedCount; t++) {
+                w[touched[t]] = -1;
+            }
+        }
+        return order;
+    }
+
+    // Drops eliminated members from element e and returns how many are left
+    private static int prune(int e, int[][] members, int[] memberCount, boolean[] eliminated) {
+        int kept = 0;
+        for (int s = 0; s < memberCount[e]; s++) {
+            int i = members[e][s];
+            if (!eliminated[i]) {
+                members[e][kept++] = i;
+            }
+        }
+        memberCount[e] = kept;
+        return kept;
+    }
+
+    private static void link(int i, int degree, int[] head, int[] next, int[] previous) {
+        next[i] = head[degree];
+        previous[i] = -1;
+        if (head[degree] >= 0) {
+            previous[head[degree]] = i;
+        }
+        head[degree] = i;
+    }
+
+    private static void unlink(int i, int degree, int[] head, int[] next, int[] previous) {
+        if (previous[i] >= 0) {
+            next[previous[i]] = next[i];
+        } else {
+            head[degree] = next[i];
+        }
+        if (next[i] >= 0) {
+            previous[next[i]] = previous[i];
+        }
+    }
+}
@@ -0,0 +1,304 @@
+package controllers;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A feedback-free {@link GateNetwork} compiled into one {@link MethodHandle} for repeated
+ * cycle-based evaluation. The gates are levelized once; within each level they are grouped by
+ * type and input count, and every group becomes a kernel bound to its own output and input index
+ * arrays. The kernels are folded into a single handle that runs them level by level, so an
+ * evaluation is a straight sequence of tight loops with no per-gate dispatch. Signals are 64
+ * patterns wide like in {@link BitParallelEvaluator}. Compiled networks are cached by topology,
+ * so edits that only change gate delays or analog values do not recompile.
+ */
+public final class CompiledLogic {
+    private static final int MAX_TOPOLOGIES = 8;
+    private static final MethodType STEP = MethodType.methodType(void.class, long[].class);
+    private static final MethodHandle NOT;
+    private static final MethodHandle AND2;
+    private static final MethodHandle OR2;
+    private static final MethodHandle XOR2;
+    private static final MethodHandle AND_N;
+    private static final MethodHandle OR_N;
+    private static final MethodHandle XOR_N;
+    private static final MethodHandle INVERT;
+    private static final MethodHandle CONSTANT;
+
+    static {
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        MethodType unary = MethodType.methodType(void.class, int[].class, int[].class, long[].class);
+        MethodType nary = MethodType.methodType(void.class, int.class, int[].class, int[].class, long[].class);
+        try {
+            NOT = lookup.findStatic(CompiledLogic.class, "not", unary);
+            AND2 = lookup.findStatic(CompiledLogic.class, "and2", unary);
+            OR2 = lookup.findStatic(CompiledLogic.class, "or2", unary);
+            XOR2 = lookup.findStatic(CompiledLogic.class, "xor2", unary);
+            AND_N = lookup.findStatic(CompiledLogic.class, "andN", nary);
+            OR_N = lookup.findStatic(CompiledLogic.class, "orN", nary);
+            XOR_N = lookup.findStatic(CompiledLogic.class, "xorN", nary);
+            INVERT = lookup.findStatic(CompiledLogic.class, "invert",
+                    MethodType.methodType(void.class, int[].class, long[].class));
+            CONSTANT = lookup.findStatic(CompiledLogic.class, "constant",
+                    MethodType.methodType(void.class, long.class, int[].class, long[].class));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    // Identifies a gate topology: types, outputs and inputs, but not delays
+    private static final class TopologyKey {
+        private final int signalCount;
+        private final byte[] types;
+        private final int[] outputs;
+        private final int[] inputStart;
+        private final int[] inputs;
+        private final int hash;
+
+        TopologyKey(GateNetwork network) {
+            int gates = network.gateCount();
+            signalCount = network.signalCount();
+            types = new byte[gates];
+            outputs = new int[gates];
+            for (int g = 0; g < gates; g++) {
+                types[g] = network.type(g);
+                outputs[g] = network.output(g);
+            }
+            inputStart = network.inputStart();
+            inputs = network.inputSignals();
+            hash = 31 * (31 * (31 * signalCount + Arrays.hashCode(types)) + Arrays.hashCode(outputs))
+                    + Arrays.hashCode(inputs);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof TopologyKey)) return false;
+            TopologyKey other = (TopologyKey) o;
+            return hash == other.hash && signalCount == other.signalCount && Arrays.equals(types, other.types)
+                    && Arrays.equals(outputs, other.outputs) && Arrays.equals(inputStart, other.inputStart)
+                    && Arrays.equals(inputs, other.inputs);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    private static final Map<TopologyKey, CompiledLogic> compiled = Collections.synchronizedMap(
+            new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<TopologyKey, CompiledLogic> eldest) {
+                    return size() > MAX_TOPOLOGIES;
+                }
+            });
+
+    private final MethodHandle program;
+    private final int signalCount;
+    private final int levels;
+    private final int kernels;
+
+    private CompiledLogic(MethodHandle program, int signalCount, int levels, int kernels) {
+        this.program = program;
+        this.signalCount = signalCount;
+        this.levels = levels;
+        this.kernels = kernels;
+    }
+
+    /**
+     * Compiled evaluator for the network, reused when the same topology was compiled before.
+     * Returns null when the gates form a feedback loop, which needs the event-driven kernel.
+     */
+    public static CompiledLogic compile(GateNetwork network) {
+        TopologyKey key = new TopologyKey(network);
+        CompiledLogic logic = compiled.get(key);
+        if (logic == null) {
+            logic = build(network);
+            if (logic == null) {
+                return null;
+            }
+            compiled.put(key, logic);
+        }
+        return logic;
+    }
+
+    private static CompiledLogic build(GateNetwork network) {
+        int[] order = network.levelize();
+        if (order == null) {
+            return null;
+        }
+        int gates = network.gateCount();
+        int[] level = new int[gates];
+        int levels = 0;
+        for (int g : order) {
+            for (int k = 0; k < network.inputCount(g); k++) {
+                int driver = network.driver(network.input(g, k));
+                if (driver >= 0) level[g] = Math.max(level[g], level[driver] + 1);
+            }
+            levels = Math.max(levels, level[g] + 1);
+        }
+
+        // Sort by level, then type, then input count, so every run of equal keys is one kernel
+        long[] keys = new long[gates];
+        for (int g = 0; g < gates; g++) {
+            keys[g] = ((long) level[g] << 40) | ((long) network.type(g) << 32) | network.inputCount(g);
+        }
+        Integer[] sorted = new Integer[gates];
+        for (int g = 0; g < gates; g++) sorted[g] = g;
+        Arrays.sort(sorted, (a, b) -> Long.compare(keys[a], keys[b]));
+
+        List<MethodHandle> steps = new ArrayList<>();
+        for (int start = 0; start < gates; ) {
+            int end = start;
+            while (end < gates && keys[sorted[end]] == keys[sorted[start]]) end++;
+            steps.add(kernel(network, sorted, start, end));
+            start = end;
+        }
+        return new CompiledLogic(sequence(steps, 0, steps.size()), network.signalCount(), levels, steps.size());
+    }
+
+    // One handle evaluating gates sorted[from, to), which share type and input count
+    private static MethodHandle kernel(GateNetwork network, Integer[] sorted, int from, int to) {
+        int first = sorted[from];
+        byte type = network.type(first);
+        int arity = network.inputCount(first);
+        int count = to - from;
+        int[] outputs = new int[count];
+        int[] inputs = new int[count * arity];
+        for (int k = 0; k < count; k++) {
+            int g = sorted[from + k];
+            outputs[k] = network.output(g);
+            for (int j = 0; j < arity; j++) {
+                inputs[k * arity + j] = network.input(g, j);
+            }
+        }
+
+        if (arity == 0) {
+            long constant = GateNetwork.evaluate(type, 0, 0, false) ? -1L : 0L;
+            return MethodHandles.insertArguments(CONSTANT, 0, constant, outputs);
+        }
+        if (type == GateNetwork.NOT) {
+            // Only the first input counts, like the analyzer always did
+            int[] firstInputs = new int[count];
+            for (int k = 0; k < count; k++) firstInputs[k] = inputs[k * arity];
+            return MethodHandles.insertArguments(NOT, 0, outputs, firstInputs);
+        }
+
+        MethodHandle base;
+        if (arity == 1) {
+            // A single input passes through AND, OR and XOR alike
+            base = MethodHandles.insertArguments(AND_N, 0, 1, outputs, inputs);
+        } else if (arity == 2) {
+            MethodHandle two = type == GateNetwork.AND || type == GateNetwork.NAND ? AND2
+                    : type == GateNetwork.OR || type == GateNetwork.NOR ? OR2 : XOR2;
+            base = MethodHandles.insertArguments(two, 0, outputs, inputs);
+        } else {
+            MethodHandle wide = type == GateNetwork.AND || type == GateNetwork.NAND ? AND_N
+                    : type == GateNetwork.OR || type == GateNetwork.NOR ? OR_N : XOR_N;
+            base = MethodHandles.insertArguments(wide, 0, arity, outputs, inputs);
+        }
+        if (type == GateNetwork.NAND || type == GateNetwork.NOR) {
+            return MethodHandles.foldArguments(MethodHandles.insertArguments(INVERT, 0, outputs), base);
+        }
+        return base;
+    }
+
+    // Runs steps[from, to) in order, as a balanced tree of folds so deep networks stay shallow
+    private static MethodHandle sequence(List<MethodHandle> steps, int from, int to) {
+        if (from == to) {
+            return MethodHandles.empty(STEP);
+        }
+        if (to - from == 1) {
+            return steps.get(from);
+        }
+        int mid = (from + to) >>> 1;
+        return MethodHandles.foldArguments(sequence(steps, mid, to), sequence(steps, from, mid));
+    }
+
+    private static void not(int[] out, int[] in, long[] v) {
+        for (int k = 0; k < out.length; k++) v[out[k]] = ~v[in[k]];
+    }
+
+    private static void and2(int[] out, int[] in, long[] v) {
+        for (int k = 0; k < out.length; k++) v[out[k]] = v[in[2 * k]] & v[in[2 * k + 1]];
+    }
+
+    private static void or2(int[] out, int[] in, long[] v) {
+        for (int k = 0; k < out.length; k++) v[out[k]] = v[in[2 * k]] | v[in[2 * k + 1]];
+    }
+
+    private static void xor2(int[] out, int[] in, long[] v) {
+        for (int k = 0; k < out.length; k++) v[out[k]] = v[in[2 * k]] ^ v[in[2 * k + 1]];
+    }
+
+    private static void andN(int arity, int[] out, int[] in, long[] v) {
+        for (int k = 0, p = 0; k < out.length; k++) {
+            long x = v[in[p++]];
+            for (int j = 1; j < arity; j++) x &= v[in[p++]];
+            v[out[k]] = x;
+        }
+    }
+
+    private static void orN(int arity, int[] out, int[] in, long[] v) {
+        for (int k = 0, p = 0; k < out.length; k++) {
+            long x = v[in[p++]];
+            for (int j = 1; j < arity; j++) x |= v[in[p++]];
+            v[out[k]] = x;
+        }
+    }
+
+    private static void xorN(int arity, int[] out, int[] in, long[] v) {
+        for (int k = 0, p = 0; k < out.length; k++) {
+            long x = v[in[p++]];
+            for (int j = 1; j < arity; j++) x ^= v[in[p++]];
+            v[out[k]] = x;
+        }
+    }
+
+    private static void invert(int[] out, long[] v) {
+        for (int k : out) v[k] = ~v[k];
+    }
+
+    private static void constant(long value, int[] out, long[] v) {
+        for (int k : out) v[k] = value;
+    }
+
+    /**
+     * One evaluation cycle: reads the primary input words of signals (one long per signal,
+     * 64 patterns) and overwrites every gate output.
+     */
+    public void evaluate(long[] signals) {
+        if (signals.length < signalCount) {
+            throw new IllegalArgumentException("Expected " + signalCount + " signals, got " + signals.length);
+        }
+        try {
+            program.invokeExact(signals);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new IllegalStateException(t);
+        }
+    }
+
+    public int signalCount() {
+        return signalCount;
+    }
+
+    // Logic depth of the network
+    public int levels() {
+        return levels;
+    }
+
+    // Kernels in the compiled program, one per (level, type, input count) group
+    public int kernels() {
+        return kernels;
+    }
+}
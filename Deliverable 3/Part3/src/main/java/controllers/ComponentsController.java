@@ -284,7 +284,7 @@ public class ComponentsController {
                 // Get the SimulationController instance and update circuit analysis
                 SimulationController simulationController = (SimulationController) container.getProperties().get("simulationController");
                 if (simulationController != null) {
-                    simulationController.updateCircuitAnalysis();
+                    simulationController.updateComponentValue(switch_);
                 }
             });
         }
@@ -340,7 +340,7 @@ public class ComponentsController {
                         // Get the SimulationController instance and update circuit analysis
                         SimulationController simulationController = (SimulationController) container.getProperties().get("simulationController");
                         if (simulationController != null) {
-                            simulationController.updateCircuitAnalysis();
+                            simulationController.updateComponentValue(resistor);
                         }
                     }
                 } catch (NumberFormatException ex) {
@@ -404,6 +404,11 @@ public class ComponentsController {
                         double position = Double.parseDouble(wiperField.getText());
                         component.wiperPosition = Math.max(0, Math.min(1, position));
                         wiperField.setText(String.valueOf(component.wiperPosition));
+                        // Get the SimulationController instance and update circuit analysis
+                        SimulationController simulationController = (SimulationController) container.getProperties().get("simulationController");
+                        if (simulationController != null) {
+                            simulationController.updateComponentValue(component);
+                        }
                 } catch (NumberFormatException ex) {
                         wiperField.setText(String.valueOf(component.wiperPosition));
                     }
@@ -508,7 +513,7 @@ public class ComponentsController {
                     // Get the SimulationController instance and update circuit analysis
                     SimulationController simulationController = (SimulationController) container.getProperties().get("simulationController");
                     if (simulationController != null) {
-                        simulationController.updateCircuitAnalysis();
+                        simulationController.updateComponentValue(source);
                     }
                 } catch (NumberFormatException ex) {
                     // Invalid input, revert to previous value
@@ -605,7 +610,7 @@ public class ComponentsController {
                         // Get the SimulationController instance and update circuit analysis
                         SimulationController simulationController = (SimulationController) container.getProperties().get("simulationController");
                         if (simulationController != null) {
-                            simulationController.updateCircuitAnalysis();
+                            simulationController.updateComponentValue(battery);
                         }
                     }
                 } catch (NumberFormatException ex) {
@@ -0,0 +1,231 @@
+package controllers;
+
+import java.util.Arrays;
+
+/**
+ * Preconditioned conjugate gradients for a symmetric positive definite {@link SparseMatrix},
+ * such as the node conductances of a grounded resistor network. Memory stays at the matrix
+ * plus a few vectors (and a copy of its lower triangle for incomplete Cholesky), where a direct
+ * factorization of a large mesh grows with the fill. Iteration stops once the residual is
+ * below the tolerance relative to the right-hand side.
+ */
+public class ConjugateGradientSolver {
+    // Diagonal shift tried first when incomplete Cholesky meets a non-positive pivot
+    private static final double INITIAL_SHIFT = 1e-3;
+
+    public enum Preconditioner {
+        // Scales by the inverse diagonal, nothing to factor
+        JACOBI,
+        // IC(0): Cholesky restricted to the pattern of A, applied as two triangular solves
+        INCOMPLETE_CHOLESKY
+    }
+
+    private final SparseMatrix a;
+    private final Preconditioner preconditioner;
+    private double[] inverseDiagonal;
+    // Incomplete factor L, lower triangular in CSC with the diagonal first in each column
+    private int[] lColPtr;
+    private int[] lRowIdx;
+    private double[] lValues;
+    private double tolerance = 1e-10;
+    private int maxIterations;
+    private int iterations;
+    private double relativeResidual;
+
+    public ConjugateGradientSolver(SparseMatrix a, Preconditioner preconditioner) {
+        this.a = a;
+        this.preconditioner = preconditioner;
+        this.maxIterations = Math.max(10 * a.n, 100);
+        if (preconditioner == Preconditioner.INCOMPLETE_CHOLESKY) {
+            factorIncompleteCholesky();
+        } else {
+            inverseDiagonal = new double[a.n];
+            for (int j = 0; j < a.n; j++) {
+                double d = a.get(j, j);
+                inverseDiagonal[j] = d > 0 ? 1.0 / d : 1.0;
+            }
+        }
+    }
+
+    public void setTolerance(double tolerance) {
+        this.tolerance = tolerance;
+    }
+
+    public void setMaxIterations(int maxIterations) {
+        this.maxIterations = maxIterations;
+    }
+
+    public Preconditioner getPreconditioner() {
+        return preconditioner;
+    }
+
+    // Iterations taken by the last solve
+    public int getIterations() {
+        return iterations;
+    }
+
+    // ||b - A x|| / ||b|| when the last solve stopped
+    public double getRelativeResidual() {
+        return relativeResidual;
+    }
+
+    /**
+     * Solves A x = b starting from start, or from zero when start is null. Throws
+     * ArithmeticException when the tolerance is not reached within the iteration limit.
+     */
+    public double[] solve(double[] b, double[] start) {
+        int n = a.n;
+        double[] x = start != null ? start.clone() : new double[n];
+        double[] r = b.clone();
+        double[] q = new double[n];
+        multiply(x, q);
+        for (int i = 0; i < n; i++) {
+            r[i] -= q[i];
+        }
+        double bNorm = Math.sqrt(dot(b, b));
+        iterations = 0;
+        if (bNorm == 0) {
+            relativeResidual = 0.0;
+            return new double[n];
+        }
+        double[] z = new double[n];
+        precondition(r, z);
+        double[] p = z.clone();
+        double rz = dot(r, z);
+        relativeResidual = Math.sqrt(dot(r, r)) / bNorm;
+        while (relativeResidual > tolerance) {
+            if (iterations == maxIterations) {
+                throw new ArithmeticException("Conjugate gradients did not converge in " + maxIterations
+                        + " iterations, relative residual " + relativeResidual);
+            }
+            multiply(p, q);
+            double pq = dot(p, q);
+            if (pq <= 0) {
+                throw new ArithmeticException("Matrix is not positive definite");
+            }
+            double alpha = rz / pq;
+            for (int i = 0; i < n; i++) {
+                x[i] += alpha * p[i];
+                r[i] -= alpha * q[i];
+            }
+            precondition(r, z);
+            double rzNext = dot(r, z);
+            double beta = rzNext / rz;
+            rz = rzNext;
+            for (int i = 0; i < n; i++) {
+                p[i] = z[i] + beta * p[i];
+            }
+            iterations++;
+            relativeResidual = Math.sqrt(dot(r, r)) / bNorm;
+        }
+        return x;
+    }
+
+    private void multiply(double[] x, double[] y) {
+        Arrays.fill(y, 0.0);
+        for (int j = 0; j < a.n; j++) {
+            double xj = x[j];
+            if (xj == 0) continue;
+            for (int p = a.colPtr[j]; p < a.colPtr[j + 1]; p++) {
+                y[a.rowIdx[p]] += a.values[p] * xj;
+            }
+        }
+    }
+
+    private static double dot(double[] u, double[] v) {
+        double sum = 0.0;
+        for (int i = 0; i < u.length; i++) {
+            sum += u[i] * v[i];
+        }
+        return sum;
+    }
+
+    // z = M^-1 r
+    private void precondition(double[] r, double[] z) {
+        if (inverseDiagonal != null) {
+            for (int i = 0; i < r.length; i++) {
+                z[i] = r[i] * inverseDiagonal[i];
+            }
+            return;
+        }
+        // L y = r, then L' z = y
+        System.arraycopy(r, 0, z, 0, r.length);
+        for (int j = 0; j < a.n; j++) {
+            z[j] /= lValues[lColPtr[j]];
+            double zj = z[j];
+            for (int p = lColPtr[j] + 1; p < lColPtr[j + 1]; p++) {
+                z[lRowIdx[p]] -= lValues[p] * zj;
+            }
+        }
+        for (int j = a.n - 1; j >= 0; j--) {
+            double sum = z[j];
+            for (int p = lColPtr[j] + 1; p < lColPtr[j + 1]; p++) {
+                sum -= lValues[p] * z[lRowIdx[p]];
+            }
+            z[j] = sum / lValues[lColPtr[j]];
+        }
+    }
+
+    // IC(0), shifting the diagonal up until every pivot is positive
+    private void factorIncompleteCholesky() {
+        int n = a.n;
+        lColPtr = new int[n + 1];
+        for (int j = 0; j < n; j++) {
+            lColPtr[j + 1] = lColPtr[j] + 1;
+            for (int p = a.colPtr[j]; p < a.colPtr[j + 1]; p++) {
+                if (a.rowIdx[p] > j) lColPtr[j + 1]++;
+            }
+        }
+        lRowIdx = new int[lColPtr[n]];
+        lValues = new double[lColPtr[n]];
+        int[] position = new int[n];
+        Arrays.fill(position, -1);
+        for (double shift = 0.0; ; shift = shift == 0.0 ? INITIAL_SHIFT : 2 * shift) {
+            for (int j = 0; j < n; j++) {
+                int next = lColPtr[j];
+                lRowIdx[next] = j;
+                lValues[next++] = a.get(j, j) * (1 + shift);
+                for (int p = a.colPtr[j]; p < a.colPtr[j + 1]; p++) {
+                    if (a.rowIdx[p] > j) {
+                        lRowIdx[next] = a.rowIdx[p];
+                        lValues[next++] = a.values[p];
+                    }
+                }
+            }
+            if (eliminateInPattern(position)) {
+                return;
+            }
+        }
+    }
+
+    // Right-looking elimination that drops every update falling outside the pattern
+    private boolean eliminateInPattern(int[] position) {
+        for (int k = 0; k < a.n; k++) {
+            int diag = lColPtr[k];
+            if (!(lValues[diag] > 0)) {
+                return false;
+            }
+            double pivot = Math.sqrt(lValues[diag]);
+            lValues[diag] = pivot;
+            for (int p = diag + 1; p < lColPtr[k + 1]; p++) {
+                lValues[p] /= pivot;
+            }
+            for (int p = diag + 1; p < lColPtr[k + 1]; p++) {
+                int i = lRowIdx[p];
+                for (int s = lColPtr[i]; s < lColPtr[i + 1]; s++) {
+                    position[lRowIdx[s]] = s;
+                }
+                for (int t = p; t < lColPtr[k + 1]; t++) {
+                    int target = position[lRowIdx[t]];
+                    if (target >= 0) {
+                        lValues[target] -= lValues[t] * lValues[p];
+                    }
+                }
+                for (int s = lColPtr[i]; s < lColPtr[i + 1]; s++) {
+                    position[lRowIdx[s]] = -1;
+                }
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,398 @@
+package controllers;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Undirected multigraph of circuit nodes and two-terminal elements stored as
+ * compressed sparse rows. The incident edges of node v are
+ * {@code slotEdge(firstSlot(v)) .. slotEdge(endSlot(v) - 1)}, which edges conduct is a
+ * bitmask, and traversals run on work arrays owned by the graph so a search does
+ * not allocate per visited node or edge. A graph instance is not thread safe.
+ */
+public final class CsrGraph {
+    private final int nodeCount;
+    private final int[] edgeFrom;
+    private final int[] edgeTo;
+    // offsets[v] .. offsets[v + 1] index the adjacency slots of node v
+    private final int[] offsets;
+    private final int[] adjEdge;
+    private final int[] adjNode;
+    private final long[] conductive;
+    private final int[] conductiveDegree;
+
+    // Traversal work arrays, reused between calls
+    private final int[] mark;
+    private int stamp;
+    private final int[] stack;
+    private final int[] cursor;
+    private final int[] viaEdge;
+
+    public CsrGraph(int nodeCount, int[] from, int[] to, boolean[] isConductive) {
+        int edgeCount = from.length;
+        this.nodeCount = nodeCount;
+        this.edgeFrom = from.clone();
+        this.edgeTo = to.clone();
+        this.offsets = new int[nodeCount + 1];
+        this.adjEdge = new int[2 * edgeCount];
+        this.adjNode = new int[2 * edgeCount];
+        this.conductive = new long[(edgeCount + 63) >>> 6];
+        this.conductiveDegree = new int[nodeCount];
+
+        for (int e = 0; e < edgeCount; e++) {
+            offsets[from[e] + 1]++;
+            offsets[to[e] + 1]++;
+            if (isConductive[e]) {
+                conductive[e >>> 6] |= 1L << e;
+                conductiveDegree[from[e]]++;
+                conductiveDegree[to[e]]++;
+            }
+        }
+        for (int v = 0; v < nodeCount; v++) {
+            offsets[v + 1] += offsets[v];
+        }
+        int[] next = Arrays.copyOf(offsets, nodeCount);
+        for (int e = 0; e < edgeCount; e++) {
+            int s = next[from[e]]++;
+            adjEdge[s] = e;
+            adjNode[s] = to[e];
+            s = next[to[e]]++;
+            adjEdge[s] = e;
+            adjNode[s] = from[e];
+        }
+
+        this.mark = new int[Math.max(nodeCount, edgeCount)];
+        this.stack = new int[Math.max(nodeCount, edgeCount) + 1];
+        this.cursor = new int[Math.max(nodeCount, edgeCount) + 1];
+        this.viaEdge = new int[Math.max(nodeCount, edgeCount) + 1];
+    }
+
+    public int nodeCount() {
+        return nodeCount;
+    }
+
+    public int edgeCount() {
+        return edgeFrom.length;
+    }
+
+    public int edgeFrom(int e) {
+        return edgeFrom[e];
+    }
+
+    public int edgeTo(int e) {
+        return edgeTo[e];
+    }
+
+    // End of edge e that is not v
+    public int other(int e, int v) {
+        return edgeFrom[e] == v ? edgeTo[e] : edgeFrom[e];
+    }
+
+    public int firstSlot(int v) {
+        return offsets[v];
+    }
+
+    public int endSlot(int v) {
+        return offsets[v + 1];
+    }
+
+    public int slotEdge(int slot) {
+        return adjEdge[slot];
+    }
+
+    public int slotNode(int slot) {
+        return adjNode[slot];
+    }
+
+    public int degree(int v) {
+        return offsets[v + 1] - offsets[v];
+    }
+
+    public int conductiveDegree(int v) {
+        return conductiveDegree[v];
+    }
+
+    public boolean isConductive(int e) {
+        return (conductive[e >>> 6] & (1L << e)) != 0;
+    }
+
+    private int nextStamp() {
+        if (++stamp == Integer.MAX_VALUE) {
+            Arrays.fill(mark, 0);
+            stamp = 1;
+        }
+        return stamp;
+    }
+
+    /**
+     * Edges of a conductive path from start to end found by depth-first search, in walking
+     * order. Returns an empty array when start == end and null when end cannot be reached.
+     */
+    public int[] findConductivePath(int start, int end) {
+        if (start == end) {
+            return new int[0];
+        }
+        int visit = nextStamp();
+        int depth = 0;
+        stack[0] = start;
+        cursor[0] = offsets[start];
+        mark[start] = visit;
+        while (depth >= 0) {
+            int v = stack[depth];
+            if (cursor[depth] == offsets[v + 1]) {
+                depth--;
+                continue;
+            }
+            int s = cursor[depth]++;
+            int e = adjEdge[s];
+            int w = adjNode[s];
+            if (!isConductive(e) || mark[w] == visit) {
+                continue;
+            }
+            mark[w] = visit;
+            viaEdge[depth + 1] = e;
+            if (w == end) {
+                return Arrays.copyOfRange(viaEdge, 1, depth + 2);
+            }
+            depth++;
+            stack[depth] = w;
+            cursor[depth] = offsets[w];
+        }
+        return null;
+    }
+
+    /**
+     * Grows a spanning forest breadth first over the selected edges. Afterwards parent[v] and
+     * parentEdge[v] lead towards the root of v's tree (-1 at a root), depth[v] is the distance
+     * to it, and mark[v] == stamp for every node. Returns the number of trees. O(V + E).
+     */
+    private int spanningForest(boolean conductiveOnly, int[] parent, int[] parentEdge, int[] depth) {
+        int visit = nextStamp();
+        int trees = 0;
+        for (int root = 0; root < nodeCount; root++) {
+            if (mark[root] == visit) continue;
+            trees++;
+            mark[root] = visit;
+            parent[root] = -1;
+            parentEdge[root] = -1;
+            depth[root] = 0;
+            int head = 0;
+            int tail = 0;
+            stack[tail++] = root;
+            while (head < tail) {
+                int v = stack[head++];
+                for (int s = offsets[v]; s < offsets[v + 1]; s++) {
+                    int e = adjEdge[s];
+                    int w = adjNode[s];
+                    if ((conductiveOnly && !isConductive(e)) || mark[w] == visit) continue;
+                    mark[w] = visit;
+                    parent[w] = v;
+                    parentEdge[w] = e;
+                    depth[w] = depth[v] + 1;
+                    stack[tail++] = w;
+                }
+            }
+        }
+        return trees;
+    }
+
+    /**
+     * Number of independent loops, E - V + number of connected pieces, counting only
+     * conductive edges when conductiveOnly is set. Zero means the edges form a forest.
+     */
+    public int cycleRank(boolean conductiveOnly) {
+        int edges = 0;
+        for (int e = 0; e < edgeFrom.length; e++) {
+            if (!conductiveOnly || isConductive(e)) edges++;
+        }
+        int trees = spanningForest(conductiveOnly, new int[nodeCount], new int[nodeCount], new int[nodeCount]);
+        return edges - nodeCount + trees;
+    }
+
+    /**
+     * Fundamental cycle basis: every edge left out of a breadth first spanning forest closes
+     * exactly one loop with the tree path between its ends. The loops are independent, every
+     * loop of the circuit is a combination of them, and KVL holds on all loops as soon as it
+     * holds on these. Each loop is given as consecutive edge ids in walking order, starting
+     * with the non-tree edge. Finding the forest is O(V + E), the output is the loops' length.
+     */
+    public List<int[]> cycleBasis(boolean conductiveOnly) {
+        int[] parent = new int[nodeCount];
+        int[] parentEdge = new int[nodeCount];
+        int[] depth = new int[nodeCount];
+        spanningForest(conductiveOnly, parent, parentEdge, depth);
+
+        List<int[]> loops = new ArrayList<>();
+        int[] up = new int[nodeCount];
+        int[] down = new int[nodeCount];
+        for (int e = 0; e < edgeFrom.length; e++) {
+            if (conductiveOnly && !isConductive(e)) continue;
+            int u = edgeFrom[e];
+            int v = edgeTo[e];
+            if (parentEdge[v] == e || parentEdge[u] == e) continue; // Tree edge
+
+            // Walk u -> v over e, then v up to the common ancestor and back down to u
+            int upCount = 0;
+            int downCount = 0;
+            while (depth[v] > depth[u]) {
+                up[upCount++] = parentEdge[v];
+                v = parent[v];
+            }
+            while (depth[u] > depth[v]) {
+                down[downCount++] = parentEdge[u];
+                u = parent[u];
+            }
+            while (u != v) {
+                up[upCount++] = parentEdge[v];
+                v = parent[v];
+                down[downCount++] = parentEdge[u];
+                u = parent[u];
+            }
+            int[] loop = new int[1 + upCount + downCount];
+            loop[0] = e;
+            System.arraycopy(up, 0, loop, 1, upCount);
+            for (int k = 0; k < downCount; k++) {
+                loop[1 + upCount + k] = down[downCount - 1 - k];
+            }
+            loops.add(loop);
+        }
+        return loops;
+    }
+
+    /**
+     * Up to maxLoops distinct simple loops, for display. The basis loops come first, then
+     * combinations of basis loops (symmetric differences of their edge sets) that form a
+     * single simple loop, in order of how many basis loops they combine. The search gives up
+     * after examining a bounded number of combinations, so it may return fewer than maxLoops
+     * even if more loops exist.
+     */
+    public List<int[]> enumerateLoops(boolean conductiveOnly, int maxLoops) {
+        List<int[]> basis = cycleBasis(conductiveOnly);
+        List<int[]> loops = new ArrayList<>();
+        for (int k = 0; k < basis.size() && loops.size() < maxLoops; k++) {
+            loops.add(basis.get(k));
+        }
+        if (loops.size() >= maxLoops) {
+            return loops;
+        }
+
+        List<BitSet> basisSets = new ArrayList<>(basis.size());
+        for (int[] loop : basis) {
+            BitSet set = new BitSet(edgeFrom.length);
+            for (int e : loop) set.set(e);
+            basisSets.add(set);
+        }
+        // Breadth first over combinations, each extended only with later basis loops
+        ArrayDeque<BitSet> queue = new ArrayDeque<>();
+        ArrayDeque<Integer> lastUsed = new ArrayDeque<>();
+        for (int k = 0; k < basisSets.size(); k++) {
+            queue.add(basisSets.get(k));
+            lastUsed.add(k);
+        }
+        long budget = 64L * maxLoops + 1024;
+        while (!queue.isEmpty() && loops.size() < maxLoops && budget-- > 0) {
+            BitSet combination = queue.poll();
+            int last = lastUsed.poll();
+            for (int k = last + 1; k < basisSets.size() && loops.size() < maxLoops; k++) {
+                BitSet next = (BitSet) combination.clone();
+                next.xor(basisSets.get(k));
+                int[] loop = asSimpleLoop(next);
+                if (loop != null) {
+                    loops.add(loop);
+                }
+                queue.add(next);
+                lastUsed.add(k);
+            }
+        }
+        return loops;
+    }
+
+    // Edge set as a walk if it is one simple loop (every touched node of degree 2, connected), else null
+    private int[] asSimpleLoop(BitSet edges) {
+        int count = edges.cardinality();
+        if (count == 0) return null;
+        int visit = nextStamp();
+        for (int e = edges.nextSetBit(0); e >= 0; e = edges.nextSetBit(e + 1)) {
+            for (int v : new int[]{edgeFrom[e], edgeTo[e]}) {
+                if (mark[v] != visit) {
+                    mark[v] = visit;
+                    cursor[v] = 0;
+                }
+            }
+            cursor[edgeFrom[e]]++;
+            cursor[edgeTo[e]]++;
+        }
+        for (int e = edges.nextSetBit(0); e >= 0; e = edges.nextSetBit(e + 1)) {
+            if (cursor[edgeFrom[e]] != 2 || cursor[edgeTo[e]] != 2) return null;
+        }
+        // Walk the loop from its first edge, it must come back after using every edge
+        int[] loop = new int[count];
+        int first = edges.nextSetBit(0);
+        int start = edgeFrom[first];
+        int at = edgeTo[first];
+        int previous = first;
+        loop[0] = first;
+        for (int k = 1; k < count; k++) {
+            int next = -1;
+            for (int s = offsets[at]; s < offsets[at + 1]; s++) {
+                if (adjEdge[s] != previous && edges.get(adjEdge[s])) {
+                    next = adjEdge[s];
+                    break;
+                }
+            }
+            if (next < 0 || at == start) return null;
+            loop[k] = next;
+            previous = next;
+            at = other(next, at);
+        }
+        return at == start ? loop : null;
+    }
+
+    /**
+     * Net current leaving every node for the given edge currents (positive from the edge's
+     * from node to its to node). Kirchhoff's current law holds where the residual is zero.
+     */
+    public double[] kclResiduals(double[] edgeCurrent, double[] residual) {
+        if (residual == null || residual.length < nodeCount) {
+            residual = new double[nodeCount];
+        } else {
+            Arrays.fill(residual, 0, nodeCount, 0.0);
+        }
+        for (int e = 0; e < edgeFrom.length; e++) {
+            residual[edgeFrom[e]] += edgeCurrent[e];
+            residual[edgeTo[e]] -= edgeCurrent[e];
+        }
+        return residual;
+    }
+
+    /**
+     * Sum of the edge voltages (from node minus to node) around a loop given as consecutive
+     * edges, each taken in the direction the walk crosses it. Kirchhoff's voltage law holds
+     * when the sum is zero.
+     */
+    public double kvlSum(int[] loop, double[] edgeVoltage) {
+        if (loop.length == 0) {
+            return 0.0;
+        }
+        // Start at the end of the first edge that is not shared with the second one
+        int first = loop[0];
+        int at = edgeFrom[first];
+        if (loop.length > 1 && (at == edgeFrom[loop[1]] || at == edgeTo[loop[1]])) {
+            at = edgeTo[first];
+        }
+        double sum = 0.0;
+        for (int e : loop) {
+            if (edgeFrom[e] == at) {
+                sum += edgeVoltage[e];
+                at = edgeTo[e];
+            } else {
+                sum -= edgeVoltage[e];
+                at = edgeFrom[e];
+            }
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,307 @@
+package controllers;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * DC operating points of a board while one or two component fields step through a range, for
+ * questions like "current through R3 as the battery goes from 0 to 24 V". The swept parts are
+ * described once per point up front, on the calling thread, so the components themselves are
+ * only touched there. The points are then solved on the common ForkJoin pool in contiguous
+ * runs, each with its own {@link OperatingPointWorkspace}, so neighbouring points refactor the
+ * same LU and diode boards start every Newton solve from the previous point.
+ */
+public class DcSweep {
+    // Smallest run of neighbouring points solved by one task
+    private static final int MIN_POINTS_PER_TASK = 16;
+    // Description slots per point, as returned by Netlist.describe
+    private static final int DESCRIPTION = 4;
+
+    private final Netlist netlist;
+
+    /**
+     * A numeric field of one component stepped from start to stop. The field is looked up from
+     * the component's own class upwards, so fields that a part redeclares (Battery.voltage) are
+     * the ones that change.
+     */
+    public static class Parameter {
+        private final ComponentsController.ImageComponent component;
+        private final Field field;
+        private final double start;
+        private final double step;
+        private final int count;
+
+        public Parameter(ComponentsController.ImageComponent component, String fieldName, double start, double stop, double step) {
+            if (step == 0 || Double.isNaN(step) || (stop - start) / step < 0) {
+                throw new IllegalArgumentException("Step " + step + " does not lead from " + start + " to " + stop);
+            }
+            this.component = component;
+            this.field = findField(component.getClass(), fieldName);
+            this.start = start;
+            this.step = step;
+            // Tolerate the rounding of decimal steps such as 0.01
+            this.count = (int) Math.floor((stop - start) / step + 1e-9) + 1;
+        }
+
+        private static Field findField(Class<?> type, String name) {
+            for (Class<?> c = type; c != null; c = c.getSuperclass()) {
+                try {
+                    Field field = c.getDeclaredField(name);
+                    Class<?> fieldType = field.getType();
+                    if (Modifier.isStatic(field.getModifiers()) || !Modifier.isPublic(field.getModifiers())
+                            || (fieldType != double.class && fieldType != int.class)) {
+                        break;
+                    }
+                    return field;
+                } catch (NoSuchFieldException e) {
+                    // Keep looking in the superclass
+                }
+            }
+            throw new IllegalArgumentException(type.getSimpleName() + " has no numeric field " + name);
+        }
+
+        public ComponentsController.ImageComponent getComponent() {
+            return component;
+        }
+
+        public String getName() {
+            return component.componentType + "." + field.getName();
+        }
+
+        public int count() {
+            return count;
+        }
+
+        public double value(int k) {
+            return start + k * step;
+        }
+
+        double get() {
+            try {
+                return field.getDouble(component);
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        void set(double v) {
+            try {
+                if (field.getType() == int.class) {
+                    field.setInt(component, (int) Math.round(v));
+                } else {
+                    field.setDouble(component, v);
+                }
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    /**
+     * Voltage across and current through every probe at every point. Points run over the inner
+     * parameter first, so point k has outer value k / inner count and inner value k % inner count.
+     */
+    public static class Result {
+        private final Parameter first;
+        private final Parameter second;
+        private final ComponentsController.ImageComponent[] probes;
+        private final double[][] voltage;
+        private final double[][] current;
+        private final int points;
+        private final boolean[] failed;
+        private int failedPoints;
+
+        Result(Parameter first, Parameter second, ComponentsController.ImageComponent[] probes, int points) {
+            this.points = points;
+            this.first = first;
+            this.second = second;
+            this.probes = probes;
+            this.voltage = new double[probes.length][points];
+            this.current = new double[probes.length][points];
+            this.failed = new boolean[points];
+        }
+
+        public int size() {
+            return points;
+        }
+
+        // Value of the first (outer) parameter at a point
+        public double first(int k) {
+            return first.value(second == null ? k : k / second.count());
+        }
+
+        // Value of the second (inner) parameter at a point, NaN for a single parameter sweep
+        public double second(int k) {
+            return second == null ? Double.NaN : second.value(k % second.count());
+        }
+
+        public double voltage(int probe, int k) {
+            return voltage[probe][k];
+        }
+
+        public double current(int probe, int k) {
+            return current[probe][k];
+        }
+
+        // Points whose solve failed, their values are NaN
+        public int getFailedPoints() {
+            return failedPoints;
+        }
+
+        // Tab separated table with a header row, one row per point
+        public String toTable() {
+            StringBuilder table = new StringBuilder(first.getName());
+            if (second != null) {
+                table.append('\t').append(second.getName());
+            }
+            for (ComponentsController.ImageComponent probe : probes) {
+                table.append('\t').append(probe.componentType).append(" V\t").append(probe.componentType).append(" A");
+            }
+            table.append('\n');
+            for (int k = 0; k < size(); k++) {
+                table.append(first(k));
+                if (second != null) {
+                    table.append('\t').append(second(k));
+                }
+                for (int p = 0; p < probes.length; p++) {
+                    table.append('\t').append(voltage[p][k]).append('\t').append(current[p][k]);
+                }
+                table.append('\n');
+            }
+            return table.toString();
+        }
+    }
+
+    public DcSweep(Netlist netlist) {
+        this.netlist = netlist;
+    }
+
+    /**
+     * Sweeps the first parameter, and for each of its values the second one when it is not null,
+     * recording the voltage and current of every probe. The swept fields are restored afterwards.
+     */
+    public Result run(Parameter first, Parameter second, ComponentsController.ImageComponent... probes) {
+        int firstElement = elementOf(first);
+        int secondElement = second == null ? -1 : elementOf(second);
+        int inner = second == null ? 1 : second.count();
+        int points = first.count() * inner;
+        int[] probeElements = new int[probes.length];
+        for (int p = 0; p < probes.length; p++) {
+            probeElements[p] = netlist.indexOf(probes[p]);
+            if (probeElements[p] < 0) {
+                throw new IllegalArgumentException(probes[p].componentType + " is not on the swept board");
+            }
+        }
+
+        // Describe the swept parts at every point, then put the fields back
+        boolean twoElements = secondElement >= 0 && secondElement != firstElement;
+        double[] firstDescriptions = new double[points * DESCRIPTION];
+        double[] secondDescriptions = twoElements ? new double[points * DESCRIPTION] : null;
+        double firstSaved = first.get();
+        double secondSaved = second == null ? 0.0 : second.get();
+        try {
+            for (int k = 0; k < points; k++) {
+                first.set(first.value(k / inner));
+                if (second != null) {
+                    second.set(second.value(k % inner));
+                }
+                System.arraycopy(Netlist.describe(first.getComponent()), 0, firstDescriptions, k * DESCRIPTION, DESCRIPTION);
+                if (twoElements) {
+                    System.arraycopy(Netlist.describe(second.getComponent()), 0, secondDescriptions, k * DESCRIPTION, DESCRIPTION);
+                }
+            }
+        } finally {
+            if (second != null) {
+                second.set(secondSaved);
+            }
+            first.set(firstSaved);
+        }
+
+        Result result = new Result(first, second, probes, points);
+        int perTask = Math.max(MIN_POINTS_PER_TASK, points / (4 * ForkJoinPool.getCommonPoolParallelism()) + 1);
+        ForkJoinPool.commonPool().invoke(new SweepTask(0, points, perTask, firstElement, firstDescriptions,
+                twoElements ? secondElement : -1, secondDescriptions, probeElements, result));
+        for (boolean failed : result.failed) {
+            if (failed) result.failedPoints++;
+        }
+        return result;
+    }
+
+    private int elementOf(Parameter parameter) {
+        int element = netlist.indexOf(parameter.getComponent());
+        if (element < 0) {
+            throw new IllegalArgumentException(parameter.getName() + " is not on the swept board");
+        }
+        return element;
+    }
+
+    // Solves points [from, to) in order, splitting while the run is long
+    private final class SweepTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final int from;
+        private final int to;
+        private final int perTask;
+        private final int firstElement;
+        private final double[] firstDescriptions;
+        private final int secondElement;
+        private final double[] secondDescriptions;
+        private final int[] probes;
+        private final Result result;
+
+        SweepTask(int from, int to, int perTask, int firstElement, double[] firstDescriptions, int secondElement,
+                  double[] secondDescriptions, int[] probes, Result result) {
+            this.from = from;
+            this.to = to;
+            this.perTask = perTask;
+            this.firstElement = firstElement;
+            this.firstDescriptions = firstDescriptions;
+            this.secondElement = secondElement;
+            this.secondDescriptions = secondDescriptions;
+            this.probes = probes;
+            this.result = result;
+        }
+
+        private SweepTask part(int start, int end) {
+            return new SweepTask(start, end, perTask, firstElement, firstDescriptions, secondElement,
+                    secondDescriptions, probes, result);
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > perTask) {
+                int mid = (from + to) >>> 1;
+                invokeAll(part(from, mid), part(mid, to));
+                return;
+            }
+            OperatingPointWorkspace workspace = new OperatingPointWorkspace();
+            for (int k = from; k < to; k++) {
+                Netlist point = netlist.withElement(firstElement,
+                        Arrays.copyOfRange(firstDescriptions, k * DESCRIPTION, (k + 1) * DESCRIPTION));
+                if (secondElement >= 0) {
+                    point = point.withElement(secondElement,
+                            Arrays.copyOfRange(secondDescriptions, k * DESCRIPTION, (k + 1) * DESCRIPTION));
+                }
+                MnaSystem system = new MnaSystem(point);
+                double[] solution = workspace.solve(system);
+                result.failed[k] = solution == null;
+                for (int p = 0; p < probes.length; p++) {
+                    int i = probes[p];
+                    if (solution == null) {
+                        result.voltage[p][k] = Double.NaN;
+                        result.current[p][k] = Double.NaN;
+                    } else {
+                        result.voltage[p][k] = system.nodeVoltage(solution, point.from(i)) - system.nodeVoltage(solution, point.to(i));
+                        result.current[p][k] = system.elementCurrent(solution, i);
+                    }
+                }
+            }
+        }
+    }
+
+    public Netlist getNetlist() {
+        return netlist;
+    }
+}
@@ -0,0 +1,202 @@
+package controllers;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Keeps symbolic analyses and the latest numeric factorization for recently seen circuit
+ * topologies. A new CircuitAnalyzer is built for every parameter edit, but as long as the
+ * board is wired the same way the matrix pattern is identical, so only the numbers have to
+ * be refactorized. When only a few columns changed (a switch toggle, a wiper move) the old
+ * factors are kept and the change is applied as a low-rank update instead.
+ */
+public class FactorizationCache {
+    private static final int MAX_TOPOLOGIES = 8;
+    // Changed columns accumulated on top of one factorization before refactorizing
+    public static final int MAX_UPDATE_RANK = 8;
+    // Normwise backward error a low-rank solve must reach, past it the matrix is refactorized
+    private static final double UPDATE_BACKWARD_ERROR = 1e-12;
+    private static final FactorizationCache SHARED = new FactorizationCache();
+
+    // Identifies a sparsity pattern, the hash is computed once and the arrays confirm equality
+    static final class TopologyKey {
+        private final int n;
+        private final int[] colPtr;
+        private final int[] rowIdx;
+        private final int hash;
+
+        TopologyKey(SparseMatrix matrix) {
+            this.n = matrix.n;
+            this.colPtr = matrix.colPtr;
+            this.rowIdx = matrix.rowIdx;
+            this.hash = 31 * (31 * n + Arrays.hashCode(colPtr)) + Arrays.hashCode(rowIdx);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof TopologyKey)) return false;
+            TopologyKey other = (TopologyKey) o;
+            return n == other.n && hash == other.hash
+                    && Arrays.equals(colPtr, other.colPtr) && Arrays.equals(rowIdx, other.rowIdx);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    // Everything remembered about one topology
+    static final class Entry {
+        final SparseLU.Symbolic symbolic;
+        SparseLU lu;
+        double[] factoredValues;
+        LowRankUpdate update;
+
+        Entry(SparseLU.Symbolic symbolic) {
+            this.symbolic = symbolic;
+        }
+    }
+
+    private final Map<TopologyKey, Entry> entries = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<TopologyKey, Entry> eldest) {
+            return size() > MAX_TOPOLOGIES;
+        }
+    };
+
+    // Statistics, mostly useful when profiling edits on large boards
+    private long symbolicAnalyses;
+    private long fullFactorizations;
+    private long refactorizations;
+    private long lowRankSolves;
+    private long reuses;
+
+    public static FactorizationCache shared() {
+        return SHARED;
+    }
+
+    private synchronized Entry entryFor(SparseMatrix matrix) {
+        TopologyKey key = new TopologyKey(matrix);
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            entry = new Entry(SparseLU.analyze(matrix));
+            entries.put(key, entry);
+            symbolicAnalyses++;
+        }
+        return entry;
+    }
+
+    // Symbolic analysis for the pattern of the matrix, computed on first sight
+    public SparseLU.Symbolic symbolicFor(SparseMatrix matrix) {
+        return entryFor(matrix).symbolic;
+    }
+
+    // Solve A * x = b, factorizing only as much as changed since the last solve of this topology
+    public double[] solve(SparseMatrix matrix, double[] rhs) {
+        Entry entry = entryFor(matrix);
+        synchronized (entry) {
+            if (entry.lu != null && !Arrays.equals(entry.factoredValues, matrix.values)) {
+                LowRankUpdate update = LowRankUpdate.build(entry.lu, matrix, entry.factoredValues,
+                        entry.update, MAX_UPDATE_RANK);
+                if (update != null) {
+                    // The update can lose digits on badly scaled boards, check it before trusting it
+                    double[] x = update.solve(rhs);
+                    if (!accurate(matrix, rhs, x)) {
+                        // A closed switch is a huge conductance next to the board's, one refinement step recovers it
+                        double[] correction = update.solve(residual(matrix, rhs, x));
+                        for (int i = 0; i < x.length; i++) {
+                            x[i] += correction[i];
+                        }
+                    }
+                    if (accurate(matrix, rhs, x)) {
+                        entry.update = update;
+                        countLowRankSolve();
+                        return x;
+                    }
+                }
+            }
+            return factorization(entry, matrix).solve(rhs);
+        }
+    }
+
+    // Whether ||b - A x|| is within UPDATE_BACKWARD_ERROR of ||A|| ||x|| + ||b||, infinity norms
+    private static boolean accurate(SparseMatrix matrix, double[] rhs, double[] x) {
+        double[] residual = residual(matrix, rhs, x);
+        double[] rowNorm = new double[matrix.n];
+        for (int j = 0; j < matrix.n; j++) {
+            for (int p = matrix.colPtr[j]; p < matrix.colPtr[j + 1]; p++) {
+                rowNorm[matrix.rowIdx[p]] += Math.abs(matrix.values[p]);
+            }
+        }
+        double rNorm = 0.0;
+        double aNorm = 0.0;
+        double xNorm = 0.0;
+        double bNorm = 0.0;
+        for (int i = 0; i < matrix.n; i++) {
+            rNorm = Math.max(rNorm, Math.abs(residual[i]));
+            aNorm = Math.max(aNorm, rowNorm[i]);
+            xNorm = Math.max(xNorm, Math.abs(x[i]));
+            bNorm = Math.max(bNorm, Math.abs(rhs[i]));
+        }
+        return rNorm <= UPDATE_BACKWARD_ERROR * (aNorm * xNorm + bNorm);
+    }
+
+    // b - A x
+    private static double[] residual(SparseMatrix matrix, double[] rhs, double[] x) {
+        double[] residual = rhs.clone();
+        for (int j = 0; j < matrix.n; j++) {
+            for (int p = matrix.colPtr[j]; p < matrix.colPtr[j + 1]; p++) {
+                residual[matrix.rowIdx[p]] -= matrix.values[p] * x[j];
+            }
+        }
+        return residual;
+    }
+
+    private SparseLU factorization(Entry entry, SparseMatrix matrix) {
+        if (entry.lu != null && Arrays.equals(entry.factoredValues, matrix.values)) {
+            countReuse();
+            return entry.lu;
+        }
+        entry.update = null;
+        if (entry.lu != null && entry.lu.refactor(matrix)) {
+            countRefactorization();
+        } else {
+            entry.lu = SparseLU.factor(matrix, entry.symbolic);
+            countFullFactorization();
+        }
+        entry.factoredValues = matrix.values.clone();
+        return entry.lu;
+    }
+
+    private synchronized void countReuse() {
+        reuses++;
+    }
+
+    private synchronized void countLowRankSolve() {
+        lowRankSolves++;
+    }
+
+    private synchronized void countRefactorization() {
+        refactorizations++;
+    }
+
+    private synchronized void countFullFactorization() {
+        fullFactorizations++;
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    public synchronized long getLowRankSolves() {
+        return lowRankSolves;
+    }
+
+    public synchronized String getStatistics() {
+        return "symbolic=" + symbolicAnalyses + ", full=" + fullFactorizations
+                + ", refactor=" + refactorizations + ", lowRank=" + lowRankSolves + ", reused=" + reuses;
+    }
+}
@@ -0,0 +1,311 @@
+package controllers;
+
+import java.util.Arrays;
+
+/**
+ * Immutable gate-level view of the logic gates on a board, the digital counterpart of
+ * {@link Netlist}. Signals are dense ints; every gate has a type, a propagation delay in ticks,
+ * the signal it drives and its input signals, and every signal knows the gates it fans out to,
+ * both stored as compressed index arrays. Signals without a driving gate are primary inputs.
+ */
+public final class GateNetwork {
+    // Gate types
+    public static final byte NOT = 0;
+    public static final byte AND = 1;
+    public static final byte NAND = 2;
+    public static final byte OR = 3;
+    public static final byte NOR = 4;
+    public static final byte XOR = 5;
+
+    // Simulation time unit, gate delays are entered in nanoseconds
+    public static final long TICKS_PER_NANOSECOND = 1000;
+
+    private final int signalCount;
+    private final byte[] type;
+    private final long[] delay;
+    private final int[] output;
+    private final int[] inputStart;
+    private final int[] inputSignal;
+    private final int[] fanoutStart;
+    private final int[] fanoutGate;
+    // Gate driving each signal, -1 for primary inputs
+    private final int[] driver;
+
+    private GateNetwork(int signalCount, byte[] type, long[] delay, int[] output, int[] inputStart, int[] inputSignal) {
+        this.signalCount = signalCount;
+        this.type = type;
+        this.delay = delay;
+        this.output = output;
+        this.inputStart = inputStart;
+        this.inputSignal = inputSignal;
+
+        driver = new int[signalCount];
+        Arrays.fill(driver, -1);
+        for (int g = 0; g < type.length; g++) {
+            driver[output[g]] = g;
+        }
+
+        // Counting sort of (signal, gate) pairs into the fanout lists
+        fanoutStart = new int[signalCount + 1];
+        for (int s : inputSignal) {
+            fanoutStart[s + 1]++;
+        }
+        for (int s = 0; s < signalCount; s++) {
+            fanoutStart[s + 1] += fanoutStart[s];
+        }
+        fanoutGate = new int[inputSignal.length];
+        int[] next = Arrays.copyOf(fanoutStart, signalCount);
+        for (int g = 0; g < type.length; g++) {
+            for (int p = inputStart[g]; p < inputStart[g + 1]; p++) {
+                fanoutGate[next[inputSignal[p]]++] = g;
+            }
+        }
+    }
+
+    // Accumulates gates and compresses them into a network
+    public static class Builder {
+        private final int signalCount;
+        private int gateCount;
+        private byte[] type = new byte[16];
+        private long[] delay = new long[16];
+        private int[] output = new int[16];
+        private int[] inputStart = new int[17];
+        private int[] inputSignal = new int[32];
+
+        public Builder(int signalCount) {
+            this.signalCount = signalCount;
+        }
+
+        // Adds a gate driving output from the inputs, returns its index
+        public int addGate(byte gateType, long delayTicks, int outputSignal, int... inputs) {
+            if (gateCount == type.length) {
+                int capacity = gateCount * 2;
+                type = Arrays.copyOf(type, capacity);
+                delay = Arrays.copyOf(delay, capacity);
+                output = Arrays.copyOf(output, capacity);
+                inputStart = Arrays.copyOf(inputStart, capacity + 1);
+            }
+            int start = inputStart[gateCount];
+            if (start + inputs.length > inputSignal.length) {
+                inputSignal = Arrays.copyOf(inputSignal, Math.max(2 * inputSignal.length, start + inputs.length));
+            }
+            System.arraycopy(inputs, 0, inputSignal, start, inputs.length);
+            type[gateCount] = gateType;
+            delay[gateCount] = delayTicks;
+            output[gateCount] = outputSignal;
+            inputStart[gateCount + 1] = start + inputs.length;
+            return gateCount++;
+        }
+
+        public GateNetwork build() {
+            return new GateNetwork(signalCount, Arrays.copyOf(type, gateCount), Arrays.copyOf(delay, gateCount),
+                    Arrays.copyOf(output, gateCount), Arrays.copyOf(inputStart, gateCount + 1),
+                    Arrays.copyOf(inputSignal, inputStart[gateCount]));
+        }
+    }
+
+    /**
+     * Gate network of a compiled board. There is one signal per netlist element, the level at the
+     * element's end terminal: gates drive their own signal, and the inputs of a gate are the
+     * signals of every element ending on its start terminal, as the analyzer has always read them.
+     */
+    public static GateNetwork fromNetlist(Netlist netlist) {
+        int count = netlist.elementCount();
+        // Elements ending on each terminal
+        int[] endStart = new int[netlist.terminalCount() + 1];
+        for (int i = 0; i < count; i++) {
+            endStart[netlist.toTerminal(i) + 1]++;
+        }
+        for (int t = 0; t < netlist.terminalCount(); t++) {
+            endStart[t + 1] += endStart[t];
+        }
+        int[] endElement = new int[count];
+        int[] next = Arrays.copyOf(endStart, netlist.terminalCount());
+        for (int i = 0; i < count; i++) {
+            endElement[next[netlist.toTerminal(i)]++] = i;
+        }
+
+        Builder builder = new Builder(count);
+        for (int g = 0; g < count; g++) {
+            if (!netlist.isLogicGate(g)) {
+                continue;
+            }
+            ComponentsController.ImageComponent gate = (ComponentsController.ImageComponent) netlist.element(g);
+            int terminal = netlist.fromTerminal(g);
+            int[] inputs = Arrays.copyOfRange(endElement, endStart[terminal], endStart[terminal + 1]);
+            long ticks = Math.max(0, Math.round(propagationDelay(gate) * TICKS_PER_NANOSECOND));
+            builder.addGate(gateType(gate), ticks, g, inputs);
+        }
+        return builder.build();
+    }
+
+    // Type code of a logic gate component, -1 for anything else
+    static byte gateType(ComponentsController.ImageComponent component) {
+        switch (component.componentType) {
+            case "NOTGate":
+                return NOT;
+            case "ANDGate":
+                return AND;
+            case "NANDGate":
+                return NAND;
+            case "ORGate":
+                return OR;
+            case "NORGate":
+                return NOR;
+            case "XORGate":
+                return XOR;
+            default:
+                return -1;
+        }
+    }
+
+    // Propagation delay in nanoseconds, the gate classes each declare their own field
+    static double propagationDelay(ComponentsController.ImageComponent component) {
+        if (component instanceof ComponentsController.NOTGate) {
+            return ((ComponentsController.NOTGate) component).propagationDelay;
+        } else if (component instanceof ComponentsController.ANDGate) {
+            return ((ComponentsController.ANDGate) component).propagationDelay;
+        } else if (component instanceof ComponentsController.NANDGate) {
+            return ((ComponentsController.NANDGate) component).propagationDelay;
+        } else if (component instanceof ComponentsController.ORGate) {
+            return ((ComponentsController.ORGate) component).propagationDelay;
+        } else if (component instanceof ComponentsController.NORGate) {
+            return ((ComponentsController.NORGate) component).propagationDelay;
+        } else if (component instanceof ComponentsController.XORGate) {
+            return ((ComponentsController.XORGate) component).propagationDelay;
+        }
+        return component.propagationDelay;
+    }
+
+    // Output of a gate type given its input count, how many inputs are high and the first input
+    static boolean evaluate(byte type, int inputs, int high, boolean first) {
+        switch (type) {
+            case NOT:
+                return !first;
+            case AND:
+                return high == inputs;
+            case NAND:
+                return high != inputs;
+            case OR:
+                return high > 0;
+            case NOR:
+                return high == 0;
+            case XOR:
+                return (high & 1) == 1;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Gates in order of logic level: primary inputs are level 0 and every gate comes after the
+     * gates driving its inputs, so evaluating in this order needs a single pass. Returns null when
+     * the gates form a feedback loop and no such order exists.
+     */
+    public int[] levelize() {
+        int gates = type.length;
+        // Inputs still waiting for their driving gate
+        int[] waiting = new int[gates];
+        for (int g = 0; g < gates; g++) {
+            for (int p = inputStart[g]; p < inputStart[g + 1]; p++) {
+                if (driver[inputSignal[p]] >= 0) waiting[g]++;
+            }
+        }
+        int[] order = new int[gates];
+        int head = 0;
+        int tail = 0;
+        for (int g = 0; g < gates; g++) {
+            if (waiting[g] == 0) order[tail++] = g;
+        }
+        while (head < tail) {
+            int signal = output[order[head++]];
+            for (int p = fanoutStart[signal]; p < fanoutStart[signal + 1]; p++) {
+                if (--waiting[fanoutGate[p]] == 0) order[tail++] = fanoutGate[p];
+            }
+        }
+        return tail == gates ? order : null;
+    }
+
+    // Signals without a driving gate that feed at least one gate
+    public int[] primaryInputs() {
+        int count = 0;
+        for (int s = 0; s < signalCount; s++) {
+            if (driver[s] < 0 && fanoutCount(s) > 0) count++;
+        }
+        int[] inputs = new int[count];
+        for (int s = 0, k = 0; s < signalCount; s++) {
+            if (driver[s] < 0 && fanoutCount(s) > 0) inputs[k++] = s;
+        }
+        return inputs;
+    }
+
+    // Gate outputs that no other gate reads
+    public int[] primaryOutputs() {
+        int count = 0;
+        for (int g = 0; g < type.length; g++) {
+            if (fanoutCount(output[g]) == 0) count++;
+        }
+        int[] outputs = new int[count];
+        for (int g = 0, k = 0; g < type.length; g++) {
+            if (fanoutCount(output[g]) == 0) outputs[k++] = output[g];
+        }
+        return outputs;
+    }
+
+    public int signalCount() {
+        return signalCount;
+    }
+
+    public int gateCount() {
+        return type.length;
+    }
+
+    public byte type(int gate) {
+        return type[gate];
+    }
+
+    public long delay(int gate) {
+        return delay[gate];
+    }
+
+    public int output(int gate) {
+        return output[gate];
+    }
+
+    public int inputCount(int gate) {
+        return inputStart[gate + 1] - inputStart[gate];
+    }
+
+    public int input(int gate, int k) {
+        return inputSignal[inputStart[gate] + k];
+    }
+
+    public int fanoutCount(int signal) {
+        return fanoutStart[signal + 1] - fanoutStart[signal];
+    }
+
+    public int fanout(int signal, int k) {
+        return fanoutGate[fanoutStart[signal] + k];
+    }
+
+    // Gate driving the signal, -1 for a primary input
+    public int driver(int signal) {
+        return driver[signal];
+    }
+
+    int[] inputStart() {
+        return inputStart;
+    }
+
+    int[] inputSignals() {
+        return inputSignal;
+    }
+
+    int[] fanoutStart() {
+        return fanoutStart;
+    }
+
+    int[] fanoutGates() {
+        return fanoutGate;
+    }
+}
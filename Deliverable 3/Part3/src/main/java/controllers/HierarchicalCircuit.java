@@ -0,0 +1,161 @@
+package controllers;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Board made of flat components plus placed {@link Subcircuit} instances. The flat part is
+ * stamped as usual and every instance adds its definition's port-level macro model, so the
+ * solve only has the top-level nets and the instance ports as unknowns. A port that lands on
+ * no top-level terminal gets a net of its own, which is how two instances connect directly.
+ * The board editor cannot define blocks yet, so SimulationController still analyzes its flat
+ * drawables list; until it can, this class is only reachable from code.
+ */
+public class HierarchicalCircuit {
+    private final List<ComponentsController.Drawable> components;
+    private final List<Subcircuit.Instance> instances = new ArrayList<>();
+
+    /**
+     * Node voltages of one solve. Top-level components read as on a flat board, instance
+     * interiors are recovered from their ports on request.
+     */
+    public static class Result {
+        private final MnaSystem system;
+        private final double[] solution;
+        private final Map<Subcircuit.Instance, int[]> portRows;
+        private final Map<Subcircuit, Subcircuit.MacroModel> models;
+
+        Result(MnaSystem system, double[] solution, Map<Subcircuit.Instance, int[]> portRows,
+               Map<Subcircuit, Subcircuit.MacroModel> models) {
+            this.system = system;
+            this.solution = solution;
+            this.portRows = portRows;
+            this.models = models;
+        }
+
+        // Unknowns of the top level, the top-level nets first and the port-only nets after them
+        public double[] getSolution() {
+            return solution;
+        }
+
+        public double voltageAcross(ComponentsController.Drawable component) {
+            Netlist netlist = system.getNetlist();
+            int i = netlist.indexOf(component);
+            return system.nodeVoltage(solution, netlist.from(i)) - system.nodeVoltage(solution, netlist.to(i));
+        }
+
+        public double currentThrough(ComponentsController.Drawable component) {
+            return system.elementCurrent(solution, system.getNetlist().indexOf(component));
+        }
+
+        public double portVoltage(Subcircuit.Instance instance, int port) {
+            int row = portRows.get(instance)[port];
+            return row < 0 ? 0.0 : solution[row];
+        }
+
+        // Voltage across a component inside an instance, from one interior solve
+        public double voltageAcross(Subcircuit.Instance instance, ComponentsController.Drawable component) {
+            Subcircuit.MacroModel model = models.get(instance.getDefinition());
+            double[] ports = new double[model.portCount()];
+            for (int k = 0; k < ports.length; k++) {
+                ports[k] = portVoltage(instance, k);
+            }
+            double[] interior = model.interiorSolution(ports);
+            MnaSystem inside = model.getSystem();
+            Netlist netlist = inside.getNetlist();
+            int i = netlist.indexOf(component);
+            if (i < 0) {
+                throw new IllegalArgumentException("Component is not part of " + instance.getDefinition().getName());
+            }
+            return inside.nodeVoltage(interior, netlist.from(i)) - inside.nodeVoltage(interior, netlist.to(i));
+        }
+    }
+
+    public HierarchicalCircuit(List<ComponentsController.Drawable> components) {
+        this.components = components;
+    }
+
+    public Subcircuit.Instance place(Subcircuit definition, double x, double y) {
+        Subcircuit.Instance instance = definition.place(x, y);
+        instances.add(instance);
+        return instance;
+    }
+
+    public List<Subcircuit.Instance> getInstances() {
+        return instances;
+    }
+
+    public Result solve() {
+        Netlist netlist = Netlist.compile(components);
+        MnaSystem top = new MnaSystem(netlist);
+
+        // Rows of every port: a top-level net where one ends there, otherwise a net of its own
+        Map<Subcircuit.Instance, int[]> portRows = new IdentityHashMap<>();
+        Map<String, Integer> extraRows = new HashMap<>();
+        // A board with no top-level nets takes the first port-only net as its reference
+        boolean needReference = netlist.netCount() == 0;
+        String referenceKey = null;
+        int size = top.size();
+        for (Subcircuit.Instance instance : instances) {
+            int[] rows = new int[instance.getDefinition().portCount()];
+            for (int k = 0; k < rows.length; k++) {
+                double x = instance.portX(k);
+                double y = instance.portY(k);
+                int net = netlist.netAt(x, y);
+                if (net >= 0) {
+                    rows[k] = top.row(net);
+                    continue;
+                }
+                String key = Netlist.nodeKey(Math.round(x / Netlist.SNAP) * Netlist.SNAP, Math.round(y / Netlist.SNAP) * Netlist.SNAP);
+                if (needReference) {
+                    referenceKey = key;
+                    needReference = false;
+                }
+                if (key.equals(referenceKey)) {
+                    rows[k] = -1;
+                } else {
+                    Integer row = extraRows.get(key);
+                    if (row == null) {
+                        row = size++;
+                        extraRows.put(key, row);
+                    }
+                    rows[k] = row;
+                }
+            }
+            portRows.put(instance, rows);
+        }
+
+        SparseMatrix flat = top.getMatrix();
+        SparseMatrix.Builder builder = new SparseMatrix.Builder(size, flat.nonZeros() + 8 * instances.size() + size);
+        for (int col = 0; col < flat.n; col++) {
+            for (int p = flat.colPtr[col]; p < flat.colPtr[col + 1]; p++) {
+                builder.add(flat.rowIdx[p], col, flat.values[p]);
+            }
+        }
+        for (int row : extraRows.values()) {
+            builder.add(row, row, MnaSystem.GMIN);
+        }
+        double[] rhs = new double[size];
+        System.arraycopy(top.getRhs(), 0, rhs, 0, top.size());
+
+        // Each definition is reduced, or found unchanged, once per solve however often it is placed
+        Map<Subcircuit, Subcircuit.MacroModel> models = new IdentityHashMap<>();
+        for (Subcircuit.Instance instance : instances) {
+            Subcircuit.MacroModel model = models.computeIfAbsent(instance.getDefinition(), Subcircuit::macroModel);
+            int[] rows = portRows.get(instance);
+            for (int k = 0; k < rows.length; k++) {
+                if (rows[k] < 0) continue;
+                rhs[rows[k]] += model.current(k);
+                for (int j = 0; j < rows.length; j++) {
+                    builder.add(rows[k], rows[j], model.admittance(k, j));
+                }
+            }
+        }
+
+        double[] solution = size == 0 ? new double[0] : FactorizationCache.shared().solve(builder.build(), rhs);
+        return new Result(top, solution, portRows, models);
+    }
+}
@@ -0,0 +1,298 @@
+package controllers;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * DC operating point of a board solved per island: groups of nets that no element connects to
+ * each other. Islands share no unknowns, so each is split off the compiled board by net into a
+ * system of its own, measured from its own ground or source, shrunk by a {@link NetworkReduction}
+ * pre-pass and solved concurrently with the others on the common ForkJoin pool. Solutions are
+ * remembered by the stamps they were solved from, so after an edit only the island whose stamps
+ * changed is solved again.
+ */
+public class IslandSolver {
+    private static final int MAX_REMEMBERED = 64;
+    private static final Map<StampKey, double[]> SOLVED = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<StampKey, double[]> eldest) {
+            return size() > MAX_REMEMBERED;
+        }
+    };
+    private static long solves;
+    private static long remembered;
+
+    private final List<Island> islands = new ArrayList<>();
+
+    // One electrically separate part of the board
+    public static class Island {
+        private final Netlist netlist;
+        private final List<ComponentsController.Drawable> components;
+        private MnaSystem system;
+        private double[] solution;
+        private String error;
+
+        Island(Netlist netlist) {
+            this.netlist = netlist;
+            this.components = new ArrayList<>(netlist.elementCount());
+            for (int i = 0; i < netlist.elementCount(); i++) {
+                components.add(netlist.element(i));
+            }
+        }
+
+        public List<ComponentsController.Drawable> getComponents() {
+            return components;
+        }
+
+        public Netlist getNetlist() {
+            return netlist;
+        }
+
+        // Null until solved, and when the island could not be solved
+        public double[] getSolution() {
+            return solution;
+        }
+
+        public MnaSystem getSystem() {
+            return system;
+        }
+
+        // Why the island could not be solved, null when it was
+        public String getError() {
+            return error;
+        }
+
+        public boolean hasSource() {
+            for (int i = 0; i < netlist.elementCount(); i++) {
+                if (netlist.kind(i) == Netlist.VOLTAGE_SOURCE || netlist.kind(i) == Netlist.CURRENT_SOURCE) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private void solve() {
+            system = new MnaSystem(netlist);
+            if (system.size() == 0) {
+                solution = new double[0];
+                return;
+            }
+            StampKey key = new StampKey(system);
+            synchronized (SOLVED) {
+                double[] known = SOLVED.get(key);
+                if (known != null) {
+                    remembered++;
+                    solution = known;
+                    return;
+                }
+            }
+            try {
+                solution = new NetworkReduction(netlist).solve(system);
+            } catch (ArithmeticException e) {
+                error = e.getMessage();
+                return;
+            }
+            synchronized (SOLVED) {
+                solves++;
+                SOLVED.put(key, solution);
+            }
+        }
+    }
+
+    // Everything a solution depends on: the stamps, and the diode models Newton relinearizes
+    private static final class StampKey {
+        private final int[] colPtr;
+        private final int[] rowIdx;
+        private final double[] values;
+        private final double[] rhs;
+        private final double[] diodes;
+        private final int hash;
+
+        StampKey(MnaSystem system) {
+            SparseMatrix matrix = system.getMatrix();
+            Netlist netlist = system.getNetlist();
+            this.colPtr = matrix.colPtr;
+            this.rowIdx = matrix.rowIdx;
+            this.values = matrix.values;
+            this.rhs = system.getRhs();
+            double[] diodeModels = new double[0];
+            if (netlist.hasDiodes()) {
+                diodeModels = new double[3 * netlist.elementCount()];
+                for (int i = 0; i < netlist.elementCount(); i++) {
+                    diodeModels[3 * i] = netlist.value(i);
+                    diodeModels[3 * i + 1] = netlist.emissionVoltage(i);
+                    diodeModels[3 * i + 2] = netlist.breakdownVoltage(i);
+                }
+            }
+            this.diodes = diodeModels;
+            this.hash = 31 * (31 * (31 * (31 * Arrays.hashCode(colPtr) + Arrays.hashCode(rowIdx))
+                    + Arrays.hashCode(values)) + Arrays.hashCode(rhs)) + Arrays.hashCode(diodes);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof StampKey)) return false;
+            StampKey other = (StampKey) o;
+            return hash == other.hash && Arrays.equals(colPtr, other.colPtr) && Arrays.equals(rowIdx, other.rowIdx)
+                    && Arrays.equals(values, other.values) && Arrays.equals(rhs, other.rhs)
+                    && Arrays.equals(diodes, other.diodes);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    // Splits the compiled board into islands by net, each keeping the board's order of its elements
+    public IslandSolver(Netlist netlist) {
+        int nets = netlist.netCount();
+        int count = netlist.elementCount();
+        int[] parent = new int[nets];
+        for (int net = 0; net < nets; net++) {
+            parent[net] = net;
+        }
+        for (int i = 0; i < count; i++) {
+            int a = find(parent, netlist.from(i));
+            int b = find(parent, netlist.to(i));
+            if (a != b) {
+                parent[a] = b;
+            }
+        }
+        // Islands numbered by their first element
+        int[] islandOfRoot = new int[nets];
+        Arrays.fill(islandOfRoot, -1);
+        int[] islandOf = new int[count];
+        int islandTotal = 0;
+        for (int i = 0; i < count; i++) {
+            int root = find(parent, netlist.from(i));
+            if (islandOfRoot[root] < 0) {
+                islandOfRoot[root] = islandTotal++;
+            }
+            islandOf[i] = islandOfRoot[root];
+        }
+
+        // Elements and nets grouped by island, in board order
+        int[] elementStart = new int[islandTotal + 1];
+        for (int i = 0; i < count; i++) {
+            elementStart[islandOf[i] + 1]++;
+        }
+        int[] netStart = new int[islandTotal + 1];
+        for (int net = 0; net < nets; net++) {
+            int island = islandOfRoot[find(parent, net)];
+            if (island >= 0) netStart[island + 1]++;
+        }
+        for (int s = 0; s < islandTotal; s++) {
+            elementStart[s + 1] += elementStart[s];
+            netStart[s + 1] += netStart[s];
+        }
+        int[] elements = new int[count];
+        int[] next = Arrays.copyOf(elementStart, islandTotal);
+        for (int i = 0; i < count; i++) {
+            elements[next[islandOf[i]]++] = i;
+        }
+        int[] islandNets = new int[netStart[islandTotal]];
+        next = Arrays.copyOf(netStart, islandTotal);
+        for (int net = 0; net < nets; net++) {
+            int island = islandOfRoot[find(parent, net)];
+            if (island >= 0) islandNets[next[island]++] = net;
+        }
+
+        // One net map serves every island, cleared again after each
+        int[] netMap = new int[nets];
+        Arrays.fill(netMap, -1);
+        int[] noNets = new int[0];
+        for (int s = 0; s < islandTotal; s++) {
+            for (int p = netStart[s]; p < netStart[s + 1]; p++) {
+                netMap[islandNets[p]] = p - netStart[s];
+            }
+            int[] kept = Arrays.copyOfRange(elements, elementStart[s], elementStart[s + 1]);
+            islands.add(new Island(new Netlist(netlist, kept, netMap, netStart[s + 1] - netStart[s], noNets, noNets, new double[0])));
+            for (int p = netStart[s]; p < netStart[s + 1]; p++) {
+                netMap[islandNets[p]] = -1;
+            }
+        }
+    }
+
+    private static int find(int[] parent, int net) {
+        while (parent[net] != net) {
+            parent[net] = parent[parent[net]];
+            net = parent[net];
+        }
+        return net;
+    }
+
+    public int islandCount() {
+        return islands.size();
+    }
+
+    public List<Island> getIslands() {
+        return islands;
+    }
+
+    // Solves every island, concurrently when there is more than one
+    public void solve() {
+        if (islands.size() == 1) {
+            islands.get(0).solve();
+        } else if (!islands.isEmpty()) {
+            ForkJoinPool.commonPool().invoke(new SolveTask(0, islands.size()));
+        }
+    }
+
+    // Islands [from, to), split in halves down to single islands
+    private final class SolveTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final int from;
+        private final int to;
+
+        SolveTask(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new SolveTask(from, mid), new SolveTask(mid, to));
+                return;
+            }
+            islands.get(from).solve();
+        }
+    }
+
+    // Writes every solved island back to the maps and its components, on the calling thread
+    public void storeResults(Map<String, Double> nodeVoltages, Map<String, Double> branchCurrents) {
+        for (Island island : islands) {
+            if (island.solution != null) {
+                island.system.storeResults(island.solution, nodeVoltages, branchCurrents);
+            }
+        }
+    }
+
+    // Islands solved since the program started
+    public static long getSolves() {
+        synchronized (SOLVED) {
+            return solves;
+        }
+    }
+
+    // Islands answered from a remembered solution since the program started
+    public static long getRemembered() {
+        synchronized (SOLVED) {
+            return remembered;
+        }
+    }
+
+    public static void clear() {
+        synchronized (SOLVED) {
+            SOLVED.clear();
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package controllers;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * DC operating point of a grounded resistive board by {@link ConjugateGradientSolver}. The
+ * node block of the nodal matrix is symmetric positive definite once the nets pinned by voltage
+ * sources are taken out: each source must have one terminal on the reference net, so the net on
+ * its other side has a known voltage and moves to the right-hand side, and its current comes
+ * back from KCL at that net. Every topology remembers its last solution, which the next solve
+ * after an edit starts from.
+ */
+public class IterativeDcSolver {
+    private static final int MAX_REMEMBERED = 8;
+    private static final Map<FactorizationCache.TopologyKey, double[]> LAST = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<FactorizationCache.TopologyKey, double[]> eldest) {
+            return size() > MAX_REMEMBERED;
+        }
+    };
+
+    private final MnaSystem system;
+    private final int nodeRows;
+    // Node row of the full system -> unknown of the reduced one, -1 when pinned by a source
+    private final int[] unknown;
+    private final double[] pinned;
+    // Per element, the node row its voltage source pins, -1 for other elements
+    private final int[] sourceRow;
+    private final SparseMatrix conductance;
+    private final double[] rhs;
+    private final FactorizationCache.TopologyKey key;
+    private boolean warmStarted;
+    private int iterations;
+    private double relativeResidual;
+
+    private IterativeDcSolver(MnaSystem system, int[] unknown, double[] pinned, int[] sourceRow) {
+        this.system = system;
+        this.nodeRows = unknown.length;
+        this.unknown = unknown;
+        this.pinned = pinned;
+        this.sourceRow = sourceRow;
+
+        int free = 0;
+        for (int row : unknown) {
+            if (row >= 0) free++;
+        }
+        SparseMatrix matrix = system.getMatrix();
+        double[] fullRhs = system.getRhs();
+        SparseMatrix.Builder builder = new SparseMatrix.Builder(free, matrix.nonZeros());
+        rhs = new double[free];
+        for (int r = 0; r < nodeRows; r++) {
+            if (unknown[r] >= 0) rhs[unknown[r]] = fullRhs[r];
+        }
+        for (int j = 0; j < nodeRows; j++) {
+            for (int p = matrix.colPtr[j]; p < matrix.colPtr[j + 1]; p++) {
+                int i = matrix.rowIdx[p];
+                if (i >= nodeRows || unknown[i] < 0) continue;
+                if (unknown[j] >= 0) {
+                    builder.add(unknown[i], unknown[j], matrix.values[p]);
+                } else {
+                    rhs[unknown[i]] -= matrix.values[p] * pinned[j];
+                }
+            }
+        }
+        conductance = builder.build();
+        key = new FactorizationCache.TopologyKey(conductance);
+    }
+
+    /**
+     * Solver for the DC system, or null when the board is not a resistive network whose
+     * voltage sources each stand on the reference net with a net of their own.
+     */
+    public static IterativeDcSolver of(MnaSystem system) {
+        Netlist netlist = system.getNetlist();
+        int nodeRows = Math.max(netlist.netCount() - 1, 0);
+        int[] unknown = new int[nodeRows];
+        double[] pinned = new double[nodeRows];
+        int[] sourceRow = new int[netlist.elementCount()];
+        Arrays.fill(sourceRow, -1);
+        boolean[] taken = new boolean[nodeRows];
+        for (int i = 0; i < netlist.elementCount(); i++) {
+            switch (netlist.kind(i)) {
+                case Netlist.WIRE:
+                case Netlist.CAPACITOR:
+                case Netlist.CURRENT_SOURCE:
+                    break;
+                case Netlist.CONDUCTANCE:
+                    if (netlist.isLogicGate(i)) return null;
+                    break;
+                case Netlist.VOLTAGE_SOURCE: {
+                    int a = system.row(netlist.from(i));
+                    int b = system.row(netlist.to(i));
+                    if ((a >= 0) == (b >= 0)) return null;
+                    int row = a >= 0 ? a : b;
+                    if (taken[row]) return null;
+                    taken[row] = true;
+                    pinned[row] = a >= 0 ? netlist.value(i) : -netlist.value(i);
+                    sourceRow[i] = row;
+                    break;
+                }
+                default:
+                    return null;
+            }
+        }
+        int free = 0;
+        for (int r = 0; r < nodeRows; r++) {
+            unknown[r] = taken[r] ? -1 : free++;
+        }
+        return new IterativeDcSolver(system, unknown, pinned, sourceRow);
+    }
+
+    public SparseMatrix getConductanceMatrix() {
+        return conductance;
+    }
+
+    /**
+     * Solves with the given preconditioner and relative tolerance, starting from this topology's
+     * last solution when there is one, and returns the solution in the layout of the full
+     * {@link MnaSystem}. Throws ArithmeticException when the iteration does not converge.
+     */
+    public double[] solve(ConjugateGradientSolver.Preconditioner preconditioner, double tolerance) {
+        double[] start;
+        synchronized (LAST) {
+            start = LAST.get(key);
+        }
+        warmStarted = start != null;
+        double[] x = new double[0];
+        if (conductance.size() > 0) {
+            ConjugateGradientSolver cg = new ConjugateGradientSolver(conductance, preconditioner);
+            cg.setTolerance(tolerance);
+            x = cg.solve(rhs, start);
+            iterations = cg.getIterations();
+            relativeResidual = cg.getRelativeResidual();
+        }
+        synchronized (LAST) {
+            LAST.put(key, x);
+        }
+
+        double[] solution = new double[system.size()];
+        for (int r = 0; r < nodeRows; r++) {
+            solution[r] = unknown[r] >= 0 ? x[unknown[r]] : pinned[r];
+        }
+        // Source current from KCL at the pinned net: G v + s * i = b, s = +1 at the start terminal
+        SparseMatrix matrix = system.getMatrix();
+        double[] gv = new double[nodeRows];
+        for (int j = 0; j < nodeRows; j++) {
+            for (int p = matrix.colPtr[j]; p < matrix.colPtr[j + 1]; p++) {
+                if (matrix.rowIdx[p] < nodeRows) {
+                    gv[matrix.rowIdx[p]] += matrix.values[p] * solution[j];
+                }
+            }
+        }
+        double[] fullRhs = system.getRhs();
+        Netlist netlist = system.getNetlist();
+        for (int i = 0; i < sourceRow.length; i++) {
+            int row = sourceRow[i];
+            if (row < 0) continue;
+            double sign = system.row(netlist.from(i)) == row ? 1.0 : -1.0;
+            solution[system.branchRow(i)] = (fullRhs[row] - gv[row]) / sign;
+        }
+        return solution;
+    }
+
+    // Whether the last solve started from a remembered solution
+    public boolean wasWarmStarted() {
+        return warmStarted;
+    }
+
+    public int getIterations() {
+        return iterations;
+    }
+
+    public double getRelativeResidual() {
+        return relativeResidual;
+    }
+
+    public static void clear() {
+        synchronized (LAST) {
+            LAST.clear();
+        }
+    }
+}
@@ -0,0 +1,314 @@
+package controllers;
+
+import java.util.Arrays;
+
+/**
+ * Event-driven simulation of a {@link GateNetwork}. A signal change is an event at a tick;
+ * processing it updates the count of high inputs of every gate it fans out to, and only those
+ * gates are evaluated. A gate whose output would change schedules the new value one propagation
+ * delay later. Events within the next {@code WHEEL_SIZE} ticks sit in a timing wheel, one list
+ * per tick, and later ones wait in a binary heap until the wheel reaches them. Events are plain
+ * array slots from a free list, so a long run allocates nothing per event.
+ */
+public class LogicSimulator {
+    private static final int WHEEL_BITS = 12;
+    private static final int WHEEL_SIZE = 1 << WHEEL_BITS;
+    private static final int WHEEL_MASK = WHEEL_SIZE - 1;
+    // Zero-delay rounds within one tick before the network is treated as oscillating
+    private static final int MAX_DELTA_CYCLES = 1000;
+
+    private final GateNetwork network;
+    private final int[] inputStart;
+    private final int[] inputSignal;
+    private final int[] fanoutStart;
+    private final int[] fanoutGate;
+
+    private final boolean[] value;
+    // Last value scheduled for each gate output, so unchanged outputs schedule nothing
+    private final boolean[] projected;
+    private final int[] high;
+
+    // Event pool
+    private long[] eventTime = new long[1024];
+    private int[] eventSignal = new int[1024];
+    private boolean[] eventValue = new boolean[1024];
+    private int[] eventNext = new int[1024];
+    // Scheduling order, so events for the same tick leave the heap in the order they were made
+    private long[] eventOrder = new long[1024];
+    private long scheduled;
+    private int poolSize;
+    private int freeEvent = -1;
+
+    private final int[] wheelHead = new int[WHEEL_SIZE];
+    private final int[] wheelTail = new int[WHEEL_SIZE];
+    private int wheelCount;
+    private int[] heap = new int[64];
+    private int heapSize;
+
+    // Gates to evaluate after the current round of events
+    private final int[] dirty;
+    private final int[] dirtyStamp;
+    private int dirtyCount;
+    private int stamp = 1;
+
+    private long now;
+    private long processedEvents;
+    private long evaluations;
+
+    public LogicSimulator(GateNetwork network) {
+        this.network = network;
+        this.inputStart = network.inputStart();
+        this.inputSignal = network.inputSignals();
+        this.fanoutStart = network.fanoutStart();
+        this.fanoutGate = network.fanoutGates();
+        this.value = new boolean[network.signalCount()];
+        this.projected = new boolean[network.gateCount()];
+        this.high = new int[network.gateCount()];
+        this.dirty = new int[network.gateCount()];
+        this.dirtyStamp = new int[network.gateCount()];
+        Arrays.fill(wheelHead, -1);
+        Arrays.fill(wheelTail, -1);
+
+        // Everything starts low; gates that are high on low inputs switch one delay in
+        for (int g = 0; g < network.gateCount(); g++) {
+            markDirty(g);
+        }
+        evaluateDirty();
+    }
+
+    // Drive a primary input to the value now
+    public void setInput(int signal, boolean level) {
+        schedule(now, signal, level);
+    }
+
+    // Drive a signal to the value at a later tick, for stimulus or values coming from outside
+    public void schedule(long time, int signal, boolean level) {
+        if (time < now) {
+            throw new IllegalArgumentException("Cannot schedule an event in the past: " + time + " < " + now);
+        }
+        int e = allocateEvent();
+        eventTime[e] = time;
+        eventSignal[e] = signal;
+        eventValue[e] = level;
+        eventOrder[e] = scheduled++;
+        if (time - now < WHEEL_SIZE) {
+            addToWheel(e);
+        } else {
+            pushHeap(e);
+        }
+    }
+
+    /**
+     * Process every event up to and including the given tick, then stop there.
+     * Returns false when zero-delay gates kept oscillating within one tick.
+     */
+    public boolean run(long until) {
+        boolean settled = true;
+        while (true) {
+            long next = nextEventTime();
+            if (next < 0 || next > until) {
+                break;
+            }
+            advanceTo(next);
+            int slot = (int) (next & WHEEL_MASK);
+            int deltas = 0;
+            while (wheelHead[slot] >= 0) {
+                if (++deltas > MAX_DELTA_CYCLES) {
+                    settled = false;
+                    dropSlot(slot);
+                    break;
+                }
+                int e = wheelHead[slot];
+                wheelHead[slot] = -1;
+                wheelTail[slot] = -1;
+                while (e >= 0) {
+                    int following = eventNext[e];
+                    wheelCount--;
+                    apply(eventSignal[e], eventValue[e]);
+                    freeEvent(e);
+                    e = following;
+                }
+                evaluateDirty();
+            }
+        }
+        if (until != Long.MAX_VALUE && until > now) {
+            advanceTo(until);
+        }
+        return settled;
+    }
+
+    // Run until no events are left, or until the time limit for networks that never settle
+    public boolean runUntilIdle(long maxTicks) {
+        long limit = maxTicks > Long.MAX_VALUE - now ? Long.MAX_VALUE : now + maxTicks;
+        boolean settled = run(limit);
+        return settled && isIdle();
+    }
+
+    public boolean isIdle() {
+        return wheelCount == 0 && heapSize == 0;
+    }
+
+    private void apply(int signal, boolean level) {
+        processedEvents++;
+        if (value[signal] == level) {
+            return;
+        }
+        value[signal] = level;
+        int step = level ? 1 : -1;
+        for (int p = fanoutStart[signal]; p < fanoutStart[signal + 1]; p++) {
+            int g = fanoutGate[p];
+            high[g] += step;
+            markDirty(g);
+        }
+    }
+
+    private void markDirty(int gate) {
+        if (dirtyStamp[gate] != stamp) {
+            dirtyStamp[gate] = stamp;
+            dirty[dirtyCount++] = gate;
+        }
+    }
+
+    private void evaluateDirty() {
+        int count = dirtyCount;
+        dirtyCount = 0;
+        if (++stamp == 0) {
+            Arrays.fill(dirtyStamp, 0);
+            stamp = 1;
+        }
+        for (int k = 0; k < count; k++) {
+            int g = dirty[k];
+            evaluations++;
+            int inputs = inputStart[g + 1] - inputStart[g];
+            boolean first = inputs > 0 && value[inputSignal[inputStart[g]]];
+            boolean out = GateNetwork.evaluate(network.type(g), inputs, high[g], first);
+            if (out != projected[g]) {
+                projected[g] = out;
+                schedule(now + network.delay(g), network.output(g), out);
+            }
+        }
+    }
+
+    // Tick of the earliest pending event, -1 when there is none
+    public long nextEventTime() {
+        if (wheelCount > 0) {
+            for (long t = now; ; t++) {
+                if (wheelHead[(int) (t & WHEEL_MASK)] >= 0) {
+                    return t;
+                }
+            }
+        }
+        return heapSize > 0 ? eventTime[heap[0]] : -1;
+    }
+
+    // Move the clock and pull heap events that are now within the wheel's reach
+    private void advanceTo(long time) {
+        now = time;
+        while (heapSize > 0 && eventTime[heap[0]] - now < WHEEL_SIZE) {
+            addToWheel(popHeap());
+        }
+    }
+
+    private void addToWheel(int e) {
+        int slot = (int) (eventTime[e] & WHEEL_MASK);
+        eventNext[e] = -1;
+        if (wheelTail[slot] < 0) {
+            wheelHead[slot] = e;
+        } else {
+            eventNext[wheelTail[slot]] = e;
+        }
+        wheelTail[slot] = e;
+        wheelCount++;
+    }
+
+    private void dropSlot(int slot) {
+        for (int e = wheelHead[slot]; e >= 0; ) {
+            int following = eventNext[e];
+            wheelCount--;
+            freeEvent(e);
+            e = following;
+        }
+        wheelHead[slot] = -1;
+        wheelTail[slot] = -1;
+        dirtyCount = 0;
+        stamp++;
+    }
+
+    private int allocateEvent() {
+        if (freeEvent >= 0) {
+            int e = freeEvent;
+            freeEvent = eventNext[e];
+            return e;
+        }
+        if (poolSize == eventTime.length) {
+            int capacity = poolSize * 2;
+            eventTime = Arrays.copyOf(eventTime, capacity);
+            eventSignal = Arrays.copyOf(eventSignal, capacity);
+            eventValue = Arrays.copyOf(eventValue, capacity);
+            eventNext = Arrays.copyOf(eventNext, capacity);
+            eventOrder = Arrays.copyOf(eventOrder, capacity);
+        }
+        return poolSize++;
+    }
+
+    private void freeEvent(int e) {
+        eventNext[e] = freeEvent;
+        freeEvent = e;
+    }
+
+    private void pushHeap(int e) {
+        if (heapSize == heap.length) {
+            heap = Arrays.copyOf(heap, heapSize * 2);
+        }
+        int k = heapSize++;
+        while (k > 0) {
+            int parent = (k - 1) >>> 1;
+            if (!earlier(e, heap[parent])) break;
+            heap[k] = heap[parent];
+            k = parent;
+        }
+        heap[k] = e;
+    }
+
+    private int popHeap() {
+        int top = heap[0];
+        int last = heap[--heapSize];
+        int k = 0;
+        while (true) {
+            int child = 2 * k + 1;
+            if (child >= heapSize) break;
+            if (child + 1 < heapSize && earlier(heap[child + 1], heap[child])) child++;
+            if (!earlier(heap[child], last)) break;
+            heap[k] = heap[child];
+            k = child;
+        }
+        heap[k] = last;
+        return top;
+    }
+
+    private boolean earlier(int a, int b) {
+        return eventTime[a] < eventTime[b] || (eventTime[a] == eventTime[b] && eventOrder[a] < eventOrder[b]);
+    }
+
+    public GateNetwork getNetwork() {
+        return network;
+    }
+
+    public boolean value(int signal) {
+        return value[signal];
+    }
+
+    // Current time in ticks
+    public long getTime() {
+        return now;
+    }
+
+    // Events taken off the queue, including ones that did not change their signal
+    public long getProcessedEvents() {
+        return processedEvents;
+    }
+
+    public long getEvaluations() {
+        return evaluations;
+    }
+}
@@ -0,0 +1,187 @@
+package controllers;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Sherman-Morrison-Woodbury solve on top of an existing LU factorization. Toggling a switch
+ * or moving a potentiometer wiper only changes the matrix in a couple of columns, so instead
+ * of refactorizing, the edited matrix is written as A + U * E' where U holds the changed
+ * columns and E picks their indices. Then
+ *     x = y - W * S^-1 * y[cols],  with y = A^-1 b, W = A^-1 U and S = I + W[cols, :].
+ */
+final class LowRankUpdate {
+    private final SparseLU base;
+    private final int[] columns;
+    // Change of each updated column, aligned with the matrix pattern positions of that column
+    private final double[][] deltas;
+    // W = A^-1 * U, one dense column per updated matrix column
+    private final double[][] w;
+    // Dense LU of the m x m capacitance matrix S, row-major with pivots
+    private final double[] capacitance;
+    private final int[] pivots;
+
+    private LowRankUpdate(SparseLU base, int[] columns, double[][] deltas, double[][] w,
+                          double[] capacitance, int[] pivots) {
+        this.base = base;
+        this.columns = columns;
+        this.deltas = deltas;
+        this.w = w;
+        this.capacitance = capacitance;
+        this.pivots = pivots;
+    }
+
+    /**
+     * Builds the update from the values the base LU was factorized with to the values of the
+     * given matrix. Columns already handled by the previous update are reused when their change
+     * is the same. Returns null when more than maxRank columns differ or the capacitance matrix
+     * is singular, which means a refactorization is the better deal.
+     */
+    static LowRankUpdate build(SparseLU base, SparseMatrix matrix, double[] baseValues,
+                               LowRankUpdate previous, int maxRank) {
+        List<Integer> changed = new ArrayList<>();
+        for (int j = 0; j < matrix.n; j++) {
+            for (int p = matrix.colPtr[j]; p < matrix.colPtr[j + 1]; p++) {
+                if (matrix.values[p] != baseValues[p]) {
+                    changed.add(j);
+                    break;
+                }
+            }
+            if (changed.size() > maxRank) {
+                return null;
+            }
+        }
+
+        int m = changed.size();
+        int n = matrix.n;
+        int[] columns = new int[m];
+        double[][] deltas = new double[m][];
+        double[][] w = new double[m][];
+        for (int t = 0; t < m; t++) {
+            int j = changed.get(t);
+            int from = matrix.colPtr[j];
+            int to = matrix.colPtr[j + 1];
+            double[] delta = new double[to - from];
+            for (int p = from; p < to; p++) {
+                delta[p - from] = matrix.values[p] - baseValues[p];
+            }
+            columns[t] = j;
+            deltas[t] = delta;
+
+            double[] reused = previous == null ? null : previous.columnSolution(j, delta);
+            if (reused != null) {
+                w[t] = reused;
+            } else {
+                double[] u = new double[n];
+                for (int p = from; p < to; p++) {
+                    u[matrix.rowIdx[p]] = delta[p - from];
+                }
+                w[t] = base.solve(u);
+            }
+        }
+
+        // S = I + E' * W
+        double[] s = new double[m * m];
+        for (int r = 0; r < m; r++) {
+            for (int c = 0; c < m; c++) {
+                s[r * m + c] = w[c][columns[r]] + (r == c ? 1.0 : 0.0);
+            }
+        }
+        int[] pivots = new int[m];
+        if (!denseFactor(s, m, pivots)) {
+            return null;
+        }
+        return new LowRankUpdate(base, columns, deltas, w, s, pivots);
+    }
+
+    private double[] columnSolution(int column, double[] delta) {
+        for (int t = 0; t < columns.length; t++) {
+            if (columns[t] == column && Arrays.equals(deltas[t], delta)) {
+                return w[t];
+            }
+        }
+        return null;
+    }
+
+    int rank() {
+        return columns.length;
+    }
+
+    double[] solve(double[] b) {
+        double[] x = base.solve(b);
+        int m = columns.length;
+        if (m == 0) {
+            return x;
+        }
+        double[] z = new double[m];
+        for (int r = 0; r < m; r++) {
+            z[r] = x[columns[r]];
+        }
+        denseSolve(capacitance, m, pivots, z);
+        for (int t = 0; t < m; t++) {
+            double zt = z[t];
+            if (zt == 0) continue;
+            double[] wt = w[t];
+            for (int i = 0; i < x.length; i++) {
+                x[i] -= wt[i] * zt;
+            }
+        }
+        return x;
+    }
+
+    // In-place LU with partial pivoting of a small row-major matrix
+    private static boolean denseFactor(double[] a, int m, int[] pivots) {
+        for (int k = 0; k < m; k++) {
+            int pivot = k;
+            for (int r = k + 1; r < m; r++) {
+                if (Math.abs(a[r * m + k]) > Math.abs(a[pivot * m + k])) {
+                    pivot = r;
+                }
+            }
+            pivots[k] = pivot;
+            if (Math.abs(a[pivot * m + k]) < 1e-12) {
+                return false;
+            }
+            if (pivot != k) {
+                for (int c = 0; c < m; c++) {
+                    double t = a[k * m + c];
+                    a[k * m + c] = a[pivot * m + c];
+                    a[pivot * m + c] = t;
+                }
+            }
+            for (int r = k + 1; r < m; r++) {
+                double factor = a[r * m + k] / a[k * m + k];
+                a[r * m + k] = factor;
+                for (int c = k + 1; c < m; c++) {
+                    a[r * m + c] -= factor * a[k * m + c];
+                }
+            }
+        }
+        return true;
+    }
+
+    private static void denseSolve(double[] lu, int m, int[] pivots, double[] b) {
+        // denseFactor swapped whole rows, so every swap applies to b before the forward solve
+        for (int k = 0; k < m; k++) {
+            int pivot = pivots[k];
+            if (pivot != k) {
+                double t = b[k];
+                b[k] = b[pivot];
+                b[pivot] = t;
+            }
+        }
+        for (int k = 0; k < m; k++) {
+            for (int r = k + 1; r < m; r++) {
+                b[r] -= lu[r * m + k] * b[k];
+            }
+        }
+        for (int k = m - 1; k >= 0; k--) {
+            double sum = b[k];
+            for (int c = k + 1; c < m; c++) {
+                sum -= lu[k * m + c] * b[c];
+            }
+            b[k] = sum / lu[k * m + k];
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package controllers;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Solves A x = b with single-precision LU factors and recovers double accuracy by iterative
+ * refinement: the residual r = b - A x is formed in double, the correction A d = r is solved
+ * with the single-precision factors, and x += d until the normwise backward error reaches double
+ * precision. Refinement contracts by roughly cond(A) times the single-precision unit roundoff
+ * per step, so boards mixing open switches with ammeters can be out of its reach. Those are
+ * spotted by a stalled step or by the estimated condition number, and factorized in double.
+ * The fallback is remembered per topology, so later solves of that board skip the single
+ * factorization and its condition estimate.
+ */
+public class MixedPrecisionSolver {
+    // Normwise backward error at which x is as good as a double factorization would give
+    private static final double BACKWARD_ERROR = 1e-14;
+    private static final int MAX_REFINEMENTS = 10;
+    // A step that does not at least halve the residual has stalled
+    private static final double STALL_RATIO = 0.5;
+    // Past this condition number single-precision factors cannot be refined
+    private static final double SINGLE_PRECISION_LIMIT = 1.0 / Math.ulp(1.0f);
+    // Topologies whose refinement fell back, most recently used last
+    private static final int MAX_REMEMBERED = 8;
+    private static final Map<FactorizationCache.TopologyKey, Boolean> FELL_BACK = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<FactorizationCache.TopologyKey, Boolean> eldest) {
+            return size() > MAX_REMEMBERED;
+        }
+    };
+
+    private final SparseMatrix a;
+    private final SparseLU.Symbolic symbolic;
+    private final FactorizationCache.TopologyKey key;
+    private SparseLU single;
+    private double conditionEstimate;
+    private int refinements;
+    private boolean fellBack;
+    private boolean skippedSingle;
+
+    public MixedPrecisionSolver(SparseMatrix a) {
+        this.a = a;
+        this.symbolic = FactorizationCache.shared().symbolicFor(a);
+        this.key = new FactorizationCache.TopologyKey(a);
+    }
+
+    /**
+     * Solution of A x = b accurate to double precision. Throws ArithmeticException when even
+     * the double factorization finds the matrix singular.
+     */
+    public double[] solve(double[] b) {
+        refinements = 0;
+        fellBack = false;
+        synchronized (FELL_BACK) {
+            skippedSingle = FELL_BACK.containsKey(key);
+        }
+        if (single == null && !skippedSingle) {
+            try {
+                single = SparseLU.factorSingle(a, symbolic);
+                conditionEstimate = estimateCondition(single);
+            } catch (ArithmeticException e) {
+                // Singular once rounded, the double factorization decides
+                conditionEstimate = Double.POSITIVE_INFINITY;
+            }
+        }
+        if (single != null && conditionEstimate < SINGLE_PRECISION_LIMIT) {
+            double[] x = refine(b);
+            if (x != null) {
+                return x;
+            }
+        }
+        fellBack = true;
+        synchronized (FELL_BACK) {
+            FELL_BACK.put(key, Boolean.TRUE);
+        }
+        SparseLU full = SparseLU.factor(a, symbolic);
+        // Single-precision factors of a matrix this badly conditioned give a poor estimate
+        conditionEstimate = estimateCondition(full);
+        return full.solve(b);
+    }
+
+    // x refined from the single-precision solve, null when the refinement stalls
+    private double[] refine(double[] b) {
+        double aNorm = infinityNorm(a);
+        double bNorm = 0.0;
+        for (double v : b) {
+            bNorm = Math.max(bNorm, Math.abs(v));
+        }
+        double[] x = single.solve(b);
+        double previous = Double.POSITIVE_INFINITY;
+        while (true) {
+            double[] r = a.multiply(x);
+            double rNorm = 0.0;
+            double xNorm = 0.0;
+            for (int i = 0; i < r.length; i++) {
+                r[i] = b[i] - r[i];
+                rNorm = Math.max(rNorm, Math.abs(r[i]));
+                xNorm = Math.max(xNorm, Math.abs(x[i]));
+            }
+            double scale = aNorm * xNorm + bNorm;
+            if (scale == 0 || rNorm <= BACKWARD_ERROR * scale) {
+                return x;
+            }
+            if (refinements == MAX_REFINEMENTS || rNorm > STALL_RATIO * previous) {
+                return null;
+            }
+            previous = rNorm;
+            double[] d = single.solve(r);
+            for (int i = 0; i < x.length; i++) {
+                x[i] += d[i];
+            }
+            refinements++;
+        }
+    }
+
+    // Hager's estimate of ||A^-1||_1 from a few solves with A and A', times ||A||_1
+    private double estimateCondition(SparseLU lu) {
+        int n = a.size();
+        if (n == 0) {
+            return 1.0;
+        }
+        double[] x = new double[n];
+        Arrays.fill(x, 1.0 / n);
+        double inverseNorm = 0.0;
+        int previous = -1;
+        for (int step = 0; step < 5; step++) {
+            double[] y = lu.solve(x);
+            inverseNorm = 0.0;
+            double[] sign = new double[n];
+            for (int i = 0; i < n; i++) {
+                inverseNorm += Math.abs(y[i]);
+                sign[i] = y[i] >= 0 ? 1.0 : -1.0;
+            }
+            double[] z = lu.solveTranspose(sign);
+            int largest = 0;
+            double zx = 0.0;
+            for (int i = 0; i < n; i++) {
+                zx += z[i] * x[i];
+                if (Math.abs(z[i]) > Math.abs(z[largest])) largest = i;
+            }
+            if (Math.abs(z[largest]) <= zx || largest == previous) {
+                break;
+            }
+            Arrays.fill(x, 0.0);
+            x[largest] = 1.0;
+            previous = largest;
+        }
+        double oneNorm = 0.0;
+        for (int j = 0; j < n; j++) {
+            double column = 0.0;
+            for (int p = a.colPtr[j]; p < a.colPtr[j + 1]; p++) {
+                column += Math.abs(a.values[p]);
+            }
+            oneNorm = Math.max(oneNorm, column);
+        }
+        return oneNorm * inverseNorm;
+    }
+
+    private static double infinityNorm(SparseMatrix a) {
+        double[] rows = new double[a.size()];
+        for (int j = 0; j < a.size(); j++) {
+            for (int p = a.colPtr[j]; p < a.colPtr[j + 1]; p++) {
+                rows[a.rowIdx[p]] += Math.abs(a.values[p]);
+            }
+        }
+        double norm = 0.0;
+        for (double row : rows) {
+            norm = Math.max(norm, row);
+        }
+        return norm;
+    }
+
+    // Estimated 1-norm condition number of A
+    public double getConditionEstimate() {
+        return conditionEstimate;
+    }
+
+    // Refinement steps taken by the last solve
+    public int getRefinements() {
+        return refinements;
+    }
+
+    // Whether the last solve needed the double factorization
+    public boolean fellBack() {
+        return fellBack;
+    }
+
+    // Whether the last solve went straight to double because this topology fell back before
+    public boolean skippedSingle() {
+        return skippedSingle;
+    }
+
+    public static void clear() {
+        synchronized (FELL_BACK) {
+            FELL_BACK.clear();
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package controllers;
+
+/**
+ * Co-simulation of the analog board and its logic gates. The {@link TransientSimulator} runs
+ * with the gates as driven outputs (their resistance to a 0 V or 5 V level) and the
+ * {@link LogicSimulator} runs the gate network with its propagation delays. Each side only
+ * works when it has to: the analog side takes its own adaptive steps up to the next pending
+ * digital event, and every watched net that crosses the logic threshold ends an analog step
+ * and becomes a digital event at that time. Digital events are processed at their tick, and
+ * a gate output that changes becomes a breakpoint where the analog side restarts with the new
+ * level. Between events the analog steps are as long as the analog waveforms allow.
+ */
+public class MixedSignalSimulator {
+    // Same 5 V logic as the analyzer
+    static final double LOGIC_THRESHOLD = 2.5;
+    static final double LOGIC_HIGH = 5.0;
+    private static final double TICKS_PER_SECOND = GateNetwork.TICKS_PER_NANOSECOND * 1e9;
+
+    private final Netlist netlist;
+    private final TransientSimulator analog;
+    private final GateNetwork network;
+    private final LogicSimulator logic;
+    // Signals that are not driven by a gate but feed one, with the level the digital side has for them
+    private final int[] watched;
+    private final boolean[] watchedLevel;
+    // Level each gate output currently drives into the analog side
+    private final boolean[] drivenLevel;
+    private long crossings;
+    private long gateTransitions;
+
+    public MixedSignalSimulator(Netlist netlist, TransientSimulator.Integration integration) {
+        this(netlist, integration, null);
+    }
+
+    // Continue the analog state of a previous run after an edit, the gates settle again from low
+    public MixedSignalSimulator(Netlist netlist, TransientSimulator.Integration integration, MixedSignalSimulator previous) {
+        this.netlist = netlist;
+        this.analog = previous == null ? new TransientSimulator(netlist, integration, true)
+                : new TransientSimulator(netlist, integration, previous.analog);
+        this.network = GateNetwork.fromNetlist(netlist);
+        this.logic = new LogicSimulator(network);
+        this.watched = network.primaryInputs();
+        this.watchedLevel = new boolean[watched.length];
+        this.drivenLevel = new boolean[network.gateCount()];
+
+        // A watched signal is the level at its element's end terminal
+        int[] nets = new int[watched.length];
+        for (int w = 0; w < watched.length; w++) {
+            nets[w] = netlist.to(watched[w]);
+        }
+        analog.watchCrossings(nets, LOGIC_THRESHOLD);
+        for (int g = 0; g < network.gateCount(); g++) {
+            analog.setGateLevel(network.output(g), 0.0);
+        }
+        if (previous != null) {
+            // The gates start low, so carry the analog levels over as input events
+            sampleCrossings();
+        }
+    }
+
+    // Advance both sides by duration seconds
+    public void advance(double duration) {
+        double end = analog.getTime() + duration;
+        while (true) {
+            long next = logic.nextEventTime();
+            double digitalTime = next < 0 ? Double.POSITIVE_INFINITY : next / TICKS_PER_SECOND;
+            if (digitalTime <= analog.getTime()) {
+                runDigital(next);
+                continue;
+            }
+            if (end - analog.getTime() <= Math.max(Math.ulp(end) * 4, 1e-15)) {
+                break;
+            }
+            analog.stepAdaptive(Math.min(end, digitalTime));
+            sampleCrossings();
+        }
+    }
+
+    // Digital events of watched nets that changed level in the last analog step
+    private void sampleCrossings() {
+        long tick = Math.max(logic.getTime(), Math.round(analog.getTime() * TICKS_PER_SECOND));
+        for (int w = 0; w < watched.length; w++) {
+            boolean level = analog.netVoltage(netlist.to(watched[w])) >= LOGIC_THRESHOLD;
+            if (level != watchedLevel[w]) {
+                watchedLevel[w] = level;
+                logic.schedule(tick, watched[w], level);
+                crossings++;
+            }
+        }
+    }
+
+    // Process the digital events at the tick and hand changed gate outputs to the analog side
+    private void runDigital(long tick) {
+        logic.run(tick);
+        for (int g = 0; g < network.gateCount(); g++) {
+            boolean level = logic.value(network.output(g));
+            if (level != drivenLevel[g]) {
+                drivenLevel[g] = level;
+                analog.setGateLevel(network.output(g), level ? LOGIC_HIGH : 0.0);
+                gateTransitions++;
+            }
+        }
+    }
+
+    public TransientSimulator getAnalog() {
+        return analog;
+    }
+
+    public LogicSimulator getLogic() {
+        return logic;
+    }
+
+    public double getTime() {
+        return analog.getTime();
+    }
+
+    // Threshold crossings handed from the analog to the digital side
+    public long getCrossings() {
+        return crossings;
+    }
+
+    // Gate output changes handed from the digital to the analog side
+    public long getGateTransitions() {
+        return gateTransitions;
+    }
+}
@@ -0,0 +1,308 @@
+package controllers;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Modified Nodal Analysis system built from a compiled {@link Netlist}.
+ * Unknowns are the voltages of every net except the reference net,
+ * followed by one branch current per voltage source and inductor. Wires were
+ * already merged into nets by the netlist compiler, so they add no unknowns. The
+ * matrix is stamped straight into sparse form and solved with {@link SparseLU}.
+ * At DC capacitors are open and inductors are shorts. With a time step the
+ * capacitors and inductors are stamped as the companion models of the chosen
+ * integration rule, and {@link TransientSimulator} supplies their history terms.
+ * Diodes are stamped as their small-signal conductance at zero bias; {@link NewtonSolver}
+ * relinearizes them around the operating point.
+ */
+public class MnaSystem {
+    // Tiny leak from every node to ground so floating nodes do not make the matrix singular
+    static final double GMIN = 1e-12;
+    // Exponent where the diode characteristic continues as a straight line instead of overflowing
+    private static final double MAX_EXPONENT = 80.0;
+
+    private final Netlist netlist;
+    // Time step of the companion models, 0 for a DC system
+    private final double timeStep;
+    private final boolean trapezoidal;
+    // Logic gates drive their output net through their resistance instead of joining input and output
+    private final boolean drivenGates;
+    // Index of the branch current unknown for voltage sources and inductors, -1 for everything else
+    private int[] branchRow;
+    private int referenceNet;
+    private int nodeUnknowns;
+    private int size;
+
+    private SparseMatrix matrix;
+    private double[] rhs;
+
+    public MnaSystem(List<ComponentsController.Drawable> components) {
+        this(Netlist.compile(components));
+    }
+
+    public MnaSystem(Netlist netlist) {
+        this(netlist, 0.0, false, false);
+    }
+
+    /**
+     * Companion model system for one step of length timeStep with backward Euler or the trapezoidal
+     * rule. With drivenGates the gate outputs are sources whose values the caller adds to the
+     * right-hand side, see {@link #gateDrive}.
+     */
+    MnaSystem(Netlist netlist, double timeStep, boolean trapezoidal, boolean drivenGates) {
+        this.netlist = netlist;
+        this.timeStep = timeStep;
+        this.trapezoidal = trapezoidal;
+        this.drivenGates = drivenGates;
+        // Reference net: an explicit ground, otherwise the negative side of the first source
+        assignUnknowns(netlist.groundNet() >= 0 ? netlist.groundNet() : Math.max(netlist.firstSourceNegativeNet(), 0));
+        stamp();
+    }
+
+    // DC system measured from the given net, for blocks whose reference is one of their ports
+    MnaSystem(Netlist netlist, int referenceNet) {
+        this.netlist = netlist;
+        this.timeStep = 0.0;
+        this.trapezoidal = false;
+        this.drivenGates = false;
+        assignUnknowns(referenceNet);
+        stamp();
+    }
+
+    private void assignUnknowns(int reference) {
+        referenceNet = reference;
+        nodeUnknowns = Math.max(netlist.netCount() - 1, 0);
+
+        int count = netlist.elementCount();
+        branchRow = new int[count];
+        int nextBranch = nodeUnknowns;
+        for (int i = 0; i < count; i++) {
+            byte kind = netlist.kind(i);
+            branchRow[i] = kind == Netlist.VOLTAGE_SOURCE || kind == Netlist.INDUCTOR ? nextBranch++ : -1;
+        }
+        size = nextBranch;
+    }
+
+    // Matrix row of a net, -1 for the reference net
+    int row(int net) {
+        if (net == referenceNet) return -1;
+        return net < referenceNet ? net : net - 1;
+    }
+
+    private void stamp() {
+        SparseMatrix.Builder builder = new SparseMatrix.Builder(size);
+        rhs = new double[size];
+
+        for (int net = 0; net < netlist.netCount(); net++) {
+            int r = row(net);
+            builder.add(r, r, GMIN);
+        }
+
+        for (int i = 0; i < netlist.elementCount(); i++) {
+            int a = row(netlist.from(i));
+            int b = row(netlist.to(i));
+
+            switch (netlist.kind(i)) {
+                case Netlist.VOLTAGE_SOURCE:
+                case Netlist.INDUCTOR: {
+                    // V(start) - V(end) = source voltage, branch current enters at the start terminal
+                    int k = branchRow[i];
+                    builder.add(a, k, 1);
+                    builder.add(b, k, -1);
+                    builder.add(k, a, 1);
+                    builder.add(k, b, -1);
+                    if (netlist.kind(i) == Netlist.VOLTAGE_SOURCE) {
+                        rhs[k] = netlist.value(i);
+                    } else if (timeStep > 0) {
+                        // V(start) - V(end) - Req * i = history term
+                        builder.add(k, k, -companionResistance(i));
+                    }
+                    break;
+                }
+                case Netlist.CAPACITOR:
+                    builder.addConductance(a, b, timeStep > 0 ? companionConductance(i) : Netlist.OPEN_CONDUCTANCE);
+                    break;
+                case Netlist.CURRENT_SOURCE:
+                    // Current is driven out of the start terminal into the circuit
+                    if (a >= 0) rhs[a] += netlist.value(i);
+                    if (b >= 0) rhs[b] -= netlist.value(i);
+                    if (netlist.conductance(i) > 0) {
+                        builder.addConductance(a, b, netlist.conductance(i));
+                    }
+                    break;
+                case Netlist.CONDUCTANCE:
+                    if (drivenGates && netlist.isLogicGate(i)) {
+                        // Output stage: the gate's resistance from the output net to the driven level
+                        if (b >= 0) builder.add(b, b, netlist.conductance(i));
+                    } else {
+                        builder.addConductance(a, b, netlist.conductance(i));
+                    }
+                    break;
+                case Netlist.DIODE:
+                    builder.addConductance(a, b, diodeConductance(i, 0.0));
+                    break;
+                default:
+                    break; // Wires are already merged into their nets
+            }
+        }
+        matrix = builder.build();
+    }
+
+    // Conductance of a capacitor's companion model, C/h for backward Euler and 2C/h for trapezoidal
+    double companionConductance(int i) {
+        return (trapezoidal ? 2.0 : 1.0) * netlist.value(i) / timeStep;
+    }
+
+    // Resistance of an inductor's companion model, L/h for backward Euler and 2L/h for trapezoidal
+    double companionResistance(int i) {
+        return (trapezoidal ? 2.0 : 1.0) * netlist.value(i) / timeStep;
+    }
+
+    // Add the right-hand side of a driven gate output at the given level in volts
+    void gateDrive(double[] rhs, int i, double level) {
+        int b = row(netlist.to(i));
+        if (b >= 0) rhs[b] += netlist.conductance(i) * level;
+    }
+
+    // Shockley current of diode i at junction voltage v, with reverse breakdown when it has one
+    double diodeCurrent(int i, double v) {
+        double is = netlist.value(i);
+        double vt = netlist.emissionVoltage(i);
+        double current = is * expm1Linear(v / vt) + GMIN * v;
+        double breakdown = netlist.breakdownVoltage(i);
+        if (breakdown > 0) {
+            current -= is * expLinear(-(v + breakdown) / vt);
+        }
+        return current;
+    }
+
+    // Derivative of the diode current, the conductance stamped by each Newton iteration
+    double diodeConductance(int i, double v) {
+        double is = netlist.value(i);
+        double vt = netlist.emissionVoltage(i);
+        double conductance = is / vt * expDerivative(v / vt) + GMIN;
+        double breakdown = netlist.breakdownVoltage(i);
+        if (breakdown > 0) {
+            conductance += is / vt * expDerivative(-(v + breakdown) / vt);
+        }
+        return conductance;
+    }
+
+    private static double expLinear(double x) {
+        return x <= MAX_EXPONENT ? Math.exp(x) : Math.exp(MAX_EXPONENT) * (1 + x - MAX_EXPONENT);
+    }
+
+    private static double expm1Linear(double x) {
+        return x <= MAX_EXPONENT ? Math.expm1(x) : expLinear(x) - 1;
+    }
+
+    private static double expDerivative(double x) {
+        return Math.exp(Math.min(x, MAX_EXPONENT));
+    }
+
+    // Branch current unknown of a voltage source or inductor, -1 for other elements
+    int branchRow(int i) {
+        return branchRow[i];
+    }
+
+    public Netlist getNetlist() {
+        return netlist;
+    }
+
+    public SparseMatrix getMatrix() {
+        return matrix;
+    }
+
+    public double[] getRhs() {
+        return rhs;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int nodeCount() {
+        return netlist.netCount();
+    }
+
+    public double[] solve() {
+        if (size == 0) {
+            return new double[0];
+        }
+        return FactorizationCache.shared().solve(matrix, rhs);
+    }
+
+    public double nodeVoltage(double[] solution, int net) {
+        int r = row(net);
+        return r < 0 ? 0.0 : solution[r];
+    }
+
+    // Current through element i flowing from its start terminal to its end terminal
+    public double elementCurrent(double[] solution, int i) {
+        if (netlist.kind(i) == Netlist.INDUCTOR) {
+            return solution[branchRow[i]];
+        }
+        if (branchRow[i] >= 0) {
+            return -solution[branchRow[i]]; // Current delivered out of the positive terminal
+        }
+        double voltage = nodeVoltage(solution, netlist.from(i)) - nodeVoltage(solution, netlist.to(i));
+        switch (netlist.kind(i)) {
+            case Netlist.CURRENT_SOURCE:
+                return voltage * netlist.conductance(i) - netlist.value(i);
+            case Netlist.CONDUCTANCE:
+                return voltage * netlist.conductance(i);
+            case Netlist.DIODE:
+                return diodeCurrent(i, voltage);
+            case Netlist.CAPACITOR:
+                return timeStep > 0 ? Double.NaN : voltage * Netlist.OPEN_CONDUCTANCE; // Transient current needs the history
+            default:
+                return 0.0; // A merged wire carries whatever KCL at its net leaves over
+        }
+    }
+
+    public double[] elementCurrents(double[] solution) {
+        double[] currents = new double[netlist.elementCount()];
+        for (int i = 0; i < currents.length; i++) {
+            currents[i] = elementCurrent(solution, i);
+        }
+        return currents;
+    }
+
+    // Write node voltages, branch currents and per-component values back like the analyzer always has
+    public void storeResults(double[] solution, Map<String, Double> nodeVoltages, Map<String, Double> branchCurrents) {
+        storeResults(solution, elementCurrents(solution), nodeVoltages, branchCurrents);
+    }
+
+    // Same, with the element currents already worked out (the transient engine knows the capacitor
+    // currents). Null maps are skipped, so only the components are updated.
+    void storeResults(double[] solution, double[] currents, Map<String, Double> nodeVoltages, Map<String, Double> branchCurrents) {
+        if (nodeVoltages != null) {
+            for (int t = 0; t < netlist.terminalCount(); t++) {
+                // Terminals of other islands are left to their own systems
+                if (netlist.netOf(t) < 0) continue;
+                nodeVoltages.put(netlist.terminalKey(t), nodeVoltage(solution, netlist.netOf(t)));
+            }
+        }
+        for (int i = 0; i < netlist.elementCount(); i++) {
+            if (netlist.kind(i) == Netlist.WIRE) {
+                continue;
+            }
+            double voltage = nodeVoltage(solution, netlist.from(i)) - nodeVoltage(solution, netlist.to(i));
+            double current = currents[i];
+            if (branchCurrents != null) {
+                branchCurrents.put(netlist.terminalKey(netlist.fromTerminal(i)) + "->"
+                        + netlist.terminalKey(netlist.toTerminal(i)), current);
+            }
+
+            ComponentsController.ImageComponent component = (ComponentsController.ImageComponent) netlist.element(i);
+            if (component instanceof ComponentsController.Voltmeter) {
+                component.voltage = voltage;
+            } else if (component instanceof ComponentsController.Ammeter) {
+                component.current = current;
+            } else {
+                component.voltage = voltage;
+                component.current = current;
+            }
+        }
+    }
+}
@@ -0,0 +1,336 @@
+package controllers;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Yield of a board under component tolerances. Every sample draws a factor for each toleranced
+ * part, solves the DC operating point of the perturbed board and adds the probe values to
+ * running statistics and fixed-bin histograms, so nothing per sample is kept. Samples are
+ * split across the common ForkJoin pool in fixed blocks; every block owns an
+ * {@link OperatingPointWorkspace} and a {@link SplittableRandom} split off along the same tree
+ * every time, so a seed gives the same result on any number of cores.
+ */
+public class MonteCarloAnalysis {
+    // Samples drawn by one task, fixed so the random streams do not depend on the core count
+    private static final int SAMPLES_PER_TASK = 64;
+    private static final int HISTOGRAM_BINS = 40;
+
+    public enum Distribution {
+        // Anywhere within the tolerance with equal probability
+        UNIFORM,
+        // Normal with the tolerance as three standard deviations
+        GAUSSIAN
+    }
+
+    private final Netlist netlist;
+    private final List<Integer> toleranced = new ArrayList<>();
+    private final List<Double> tolerances = new ArrayList<>();
+    private final List<Distribution> distributions = new ArrayList<>();
+    private final List<Probe> probes = new ArrayList<>();
+
+    private static final class Probe {
+        final int element;
+        final ProbeQuantity quantity;
+        final double low;
+        final double high;
+
+        Probe(int element, ProbeQuantity quantity, double low, double high) {
+            this.element = element;
+            this.quantity = quantity;
+            this.low = low;
+            this.high = high;
+        }
+    }
+
+    /**
+     * Streaming statistics of one probe: count, mean and variance (Welford, merged with Chan's
+     * formula), extremes, and a histogram over the probe's limits with under- and overflow.
+     */
+    public static class Histogram {
+        private final double low;
+        private final double high;
+        private final long[] bins;
+        private long underflow;
+        private long overflow;
+        private long count;
+        private double mean;
+        private double sumSquares;
+        private double min = Double.POSITIVE_INFINITY;
+        private double max = Double.NEGATIVE_INFINITY;
+
+        Histogram(double low, double high, int binCount) {
+            this.low = low;
+            this.high = high;
+            this.bins = new long[binCount];
+        }
+
+        void add(double x) {
+            count++;
+            double delta = x - mean;
+            mean += delta / count;
+            sumSquares += delta * (x - mean);
+            min = Math.min(min, x);
+            max = Math.max(max, x);
+            if (x < low) {
+                underflow++;
+            } else if (x > high) {
+                overflow++;
+            } else {
+                int bin = (int) ((x - low) / (high - low) * bins.length);
+                bins[Math.min(bin, bins.length - 1)]++;
+            }
+        }
+
+        void merge(Histogram other) {
+            if (other.count == 0) {
+                return;
+            }
+            long total = count + other.count;
+            double delta = other.mean - mean;
+            sumSquares += other.sumSquares + delta * delta * count * other.count / total;
+            mean += delta * other.count / total;
+            count = total;
+            min = Math.min(min, other.min);
+            max = Math.max(max, other.max);
+            underflow += other.underflow;
+            overflow += other.overflow;
+            for (int b = 0; b < bins.length; b++) {
+                bins[b] += other.bins[b];
+            }
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public double getMean() {
+            return mean;
+        }
+
+        public double getStandardDeviation() {
+            return count > 1 ? Math.sqrt(sumSquares / (count - 1)) : 0.0;
+        }
+
+        public double getMin() {
+            return min;
+        }
+
+        public double getMax() {
+            return max;
+        }
+
+        public int binCount() {
+            return bins.length;
+        }
+
+        public long bin(int b) {
+            return bins[b];
+        }
+
+        // Centre of a bin on the probe's scale
+        public double binCentre(int b) {
+            return low + (b + 0.5) * (high - low) / bins.length;
+        }
+
+        public long getUnderflow() {
+            return underflow;
+        }
+
+        public long getOverflow() {
+            return overflow;
+        }
+    }
+
+    // Totals of a run, also what every task hands back to be merged
+    public static class Summary {
+        private final Histogram[] histograms;
+        private long samples;
+        private long failed;
+        private long passed;
+
+        Summary(List<Probe> probes) {
+            histograms = new Histogram[probes.size()];
+            for (int p = 0; p < histograms.length; p++) {
+                histograms[p] = new Histogram(probes.get(p).low, probes.get(p).high, HISTOGRAM_BINS);
+            }
+        }
+
+        void merge(Summary other) {
+            samples += other.samples;
+            failed += other.failed;
+            passed += other.passed;
+            for (int p = 0; p < histograms.length; p++) {
+                histograms[p].merge(other.histograms[p]);
+            }
+        }
+
+        public long getSamples() {
+            return samples;
+        }
+
+        // Samples whose operating point could not be solved, they count as failing
+        public long getFailed() {
+            return failed;
+        }
+
+        // Samples with every probe inside its limits
+        public long getPassed() {
+            return passed;
+        }
+
+        public double getYield() {
+            return samples == 0 ? 0.0 : (double) passed / samples;
+        }
+
+        public Histogram histogram(int probe) {
+            return histograms[probe];
+        }
+    }
+
+    public MonteCarloAnalysis(Netlist netlist) {
+        this.netlist = netlist;
+    }
+
+    /**
+     * Relative tolerance of a part, 0.05 for a 5% resistor. Resistive parts vary their resistance,
+     * sources, capacitors and inductors their value. Diodes have no single value to vary.
+     */
+    public void setTolerance(ComponentsController.ImageComponent component, double tolerance, Distribution distribution) {
+        int element = netlist.indexOf(component);
+        if (element < 0) {
+            throw new IllegalArgumentException(component.componentType + " is not on the analyzed board");
+        }
+        if (netlist.kind(element) == Netlist.DIODE || netlist.kind(element) == Netlist.WIRE) {
+            throw new IllegalArgumentException(component.componentType + " has no value to put a tolerance on");
+        }
+        if (!(tolerance >= 0 && tolerance < 1)) {
+            throw new IllegalArgumentException("Tolerance must be between 0 and 1, got " + tolerance);
+        }
+        int existing = toleranced.indexOf(element);
+        if (existing >= 0) {
+            tolerances.set(existing, tolerance);
+            distributions.set(existing, distribution);
+            return;
+        }
+        toleranced.add(element);
+        tolerances.add(tolerance);
+        distributions.add(distribution);
+    }
+
+    // Adds a probe whose value must stay within [low, high] for a sample to pass, returns its index
+    public int addProbe(ComponentsController.ImageComponent component, ProbeQuantity quantity, double low, double high) {
+        int element = netlist.indexOf(component);
+        if (element < 0) {
+            throw new IllegalArgumentException(component.componentType + " is not on the analyzed board");
+        }
+        if (!(high > low)) {
+            throw new IllegalArgumentException("Probe limits must satisfy low < high");
+        }
+        probes.add(new Probe(element, quantity, low, high));
+        return probes.size() - 1;
+    }
+
+    // Probe quantity of a component on the board with every part at its nominal value
+    public double nominal(ComponentsController.ImageComponent component, ProbeQuantity quantity) {
+        int element = netlist.indexOf(component);
+        MnaSystem system = new MnaSystem(netlist);
+        double[] solution = new OperatingPointWorkspace().solve(system);
+        if (solution == null) {
+            throw new ArithmeticException("Nominal operating point could not be solved");
+        }
+        return probeValue(system, solution, element, quantity);
+    }
+
+    private static double probeValue(MnaSystem system, double[] solution, int element, ProbeQuantity quantity) {
+        Netlist board = system.getNetlist();
+        return quantity == ProbeQuantity.VOLTAGE
+                ? system.nodeVoltage(solution, board.from(element)) - system.nodeVoltage(solution, board.to(element))
+                : system.elementCurrent(solution, element);
+    }
+
+    // Solves the given number of samples, the same seed always giving the same summary
+    public Summary run(int samples, long seed) {
+        return ForkJoinPool.commonPool().invoke(new SampleTask(0, samples, new SplittableRandom(seed)));
+    }
+
+    // Samples [from, to), split in halves down to fixed blocks with the random stream split alongside
+    private final class SampleTask extends RecursiveTask<Summary> {
+        private static final long serialVersionUID = 1L;
+        private final int from;
+        private final int to;
+        private final SplittableRandom random;
+
+        SampleTask(int from, int to, SplittableRandom random) {
+            this.from = from;
+            this.to = to;
+            this.random = random;
+        }
+
+        @Override
+        protected Summary compute() {
+            if (to - from > SAMPLES_PER_TASK) {
+                int mid = (from + to) >>> 1;
+                SampleTask right = new SampleTask(mid, to, random.split());
+                right.fork();
+                Summary summary = new SampleTask(from, mid, random).compute();
+                summary.merge(right.join());
+                return summary;
+            }
+
+            Summary summary = new Summary(probes);
+            OperatingPointWorkspace workspace = new OperatingPointWorkspace();
+            for (int k = from; k < to; k++) {
+                double[] value = new double[netlist.elementCount()];
+                double[] conductance = new double[netlist.elementCount()];
+                for (int i = 0; i < value.length; i++) {
+                    value[i] = netlist.value(i);
+                    conductance[i] = netlist.conductance(i);
+                }
+                for (int t = 0; t < toleranced.size(); t++) {
+                    int i = toleranced.get(t);
+                    double factor = factor(tolerances.get(t), distributions.get(t));
+                    if (netlist.kind(i) == Netlist.CONDUCTANCE) {
+                        conductance[i] /= factor;
+                    } else {
+                        value[i] *= factor;
+                    }
+                }
+                MnaSystem system = new MnaSystem(netlist.withValues(value, conductance));
+                double[] solution = workspace.solve(system);
+
+                summary.samples++;
+                if (solution == null) {
+                    summary.failed++;
+                    continue;
+                }
+                boolean pass = true;
+                for (int p = 0; p < probes.size(); p++) {
+                    Probe probe = probes.get(p);
+                    double x = probeValue(system, solution, probe.element, probe.quantity);
+                    summary.histograms[p].add(x);
+                    pass &= x >= probe.low && x <= probe.high;
+                }
+                if (pass) {
+                    summary.passed++;
+                }
+            }
+            return summary;
+        }
+
+        // Multiplier of a part's value, kept positive so no sample flips a part's sign
+        private double factor(double tolerance, Distribution distribution) {
+            double offset = distribution == Distribution.UNIFORM
+                    ? tolerance * (2 * random.nextDouble() - 1)
+                    : tolerance / 3 * random.nextGaussian();
+            return Math.max(1 + offset, 1e-6);
+        }
+    }
+
+    public Netlist getNetlist() {
+        return netlist;
+    }
+}
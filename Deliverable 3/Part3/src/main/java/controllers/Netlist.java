@@ -0,0 +1,606 @@
+package controllers;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable primitive netlist compiled once from the drawables on the board.
+ * Terminal coordinates are snapped through a spatial hash into dense terminal ids,
+ * terminals joined by wires are merged into nets with union-find, and every element
+ * is reduced to its kind, its terminals/nets and its electrical values. The analyses
+ * work on these arrays instead of building "x,y" strings over and over.
+ */
+public final class Netlist {
+    // Element kinds
+    public static final byte WIRE = 0;
+    public static final byte CONDUCTANCE = 1;
+    public static final byte VOLTAGE_SOURCE = 2;
+    public static final byte CURRENT_SOURCE = 3;
+    public static final byte CAPACITOR = 4;
+    public static final byte INDUCTOR = 5;
+    public static final byte DIODE = 6;
+
+    // Conductances used by the circuit analyzer for ideal-ish parts
+    static final double OPEN_CONDUCTANCE = 1e-9;
+    static final double CLOSED_SWITCH_CONDUCTANCE = 1000.0;
+    static final double AMMETER_CONDUCTANCE = 1e9;
+    static final double WIRE_RESISTANCE = 0.001;
+    static final double LOGIC_GATE_RESISTANCE = 1e3;
+    // Shockley diode model: forward voltage is reached at the reference current (the LED's own forward current)
+    static final double THERMAL_VOLTAGE = 0.025852;
+    static final double DIODE_REFERENCE_CURRENT = 0.01;
+    static final double DIODE_EMISSION = 1.0;
+    static final double LED_EMISSION = 2.0;
+    // Terminals closer than this (in canvas units) are the same point
+    static final double SNAP = 1e-3;
+
+    private final List<ComponentsController.Drawable> components;
+    private final Map<ComponentsController.Drawable, Integer> elementIndex;
+
+    private final double[] terminalX;
+    private final double[] terminalY;
+    private final int[] netOfTerminal;
+    private final int netCount;
+
+    private final byte[] kind;
+    private final int[] fromTerminal;
+    private final int[] toTerminal;
+    private final int[] from;
+    private final int[] to;
+    // Source voltage or current, capacitance or inductance, diode saturation current, 0 for resistive parts
+    private final double[] value;
+    // Diode emission coefficient times thermal voltage, and offset of the reverse breakdown branch (0 for none)
+    private final double[] emissionVoltage;
+    private final double[] breakdownVoltage;
+    // Conductance of passive parts, internal conductance of current sources
+    private final double[] conductance;
+    private final boolean[] logicGate;
+    private final int groundNet;
+    private final int firstSourceNegativeNet;
+
+    private Netlist(Compiler compiler) {
+        this.components = compiler.components;
+        this.elementIndex = compiler.elementIndex;
+        this.terminalX = Arrays.copyOf(compiler.terminalX, compiler.terminalCount);
+        this.terminalY = Arrays.copyOf(compiler.terminalY, compiler.terminalCount);
+        this.netOfTerminal = compiler.netOfTerminal;
+        this.netCount = compiler.netCount;
+        this.kind = compiler.kind;
+        this.fromTerminal = compiler.fromTerminal;
+        this.toTerminal = compiler.toTerminal;
+        this.from = compiler.from;
+        this.to = compiler.to;
+        this.value = compiler.value;
+        this.emissionVoltage = compiler.emissionVoltage;
+        this.breakdownVoltage = compiler.breakdownVoltage;
+        this.conductance = compiler.conductance;
+        this.logicGate = compiler.logicGate;
+        this.groundNet = compiler.groundNet;
+        this.firstSourceNegativeNet = compiler.firstSourceNegativeNet;
+    }
+
+    // Same board with other element values, used for sweeps that only change numbers
+    private Netlist(Netlist base, double[] value, double[] emissionVoltage, double[] breakdownVoltage, double[] conductance) {
+        this.components = base.components;
+        this.elementIndex = base.elementIndex;
+        this.terminalX = base.terminalX;
+        this.terminalY = base.terminalY;
+        this.netOfTerminal = base.netOfTerminal;
+        this.netCount = base.netCount;
+        this.kind = base.kind;
+        this.fromTerminal = base.fromTerminal;
+        this.toTerminal = base.toTerminal;
+        this.from = base.from;
+        this.to = base.to;
+        this.value = value;
+        this.emissionVoltage = emissionVoltage;
+        this.breakdownVoltage = breakdownVoltage;
+        this.conductance = conductance;
+        this.logicGate = base.logicGate;
+        this.groundNet = base.groundNet;
+        this.firstSourceNegativeNet = base.firstSourceNegativeNet;
+    }
+
+    /**
+     * Smaller board left by a network reduction or split off as an island: the kept elements of
+     * base, then extra conductances with no part behind them. Nets are renumbered through netMap,
+     * -1 for nets reduced away or belonging to another island.
+     */
+    Netlist(Netlist base, int[] kept, int[] netMap, int newNetCount, int[] extraFrom, int[] extraTo, double[] extraConductance) {
+        int count = kept.length + extraFrom.length;
+        this.components = new ArrayList<>(count);
+        this.elementIndex = new IdentityHashMap<>();
+        this.terminalX = base.terminalX;
+        this.terminalY = base.terminalY;
+        this.netOfTerminal = new int[base.netOfTerminal.length];
+        for (int t = 0; t < netOfTerminal.length; t++) {
+            netOfTerminal[t] = base.netOfTerminal[t] < 0 ? -1 : netMap[base.netOfTerminal[t]];
+        }
+        this.netCount = newNetCount;
+        this.kind = new byte[count];
+        this.fromTerminal = new int[count];
+        this.toTerminal = new int[count];
+        this.from = new int[count];
+        this.to = new int[count];
+        this.value = new double[count];
+        this.emissionVoltage = new double[count];
+        this.breakdownVoltage = new double[count];
+        this.conductance = new double[count];
+        this.logicGate = new boolean[count];
+        for (int k = 0; k < kept.length; k++) {
+            int i = kept[k];
+            components.add(base.components.get(i));
+            elementIndex.put(base.components.get(i), k);
+            kind[k] = base.kind[i];
+            fromTerminal[k] = base.fromTerminal[i];
+            toTerminal[k] = base.toTerminal[i];
+            from[k] = netMap[base.from[i]];
+            to[k] = netMap[base.to[i]];
+            value[k] = base.value[i];
+            emissionVoltage[k] = base.emissionVoltage[i];
+            breakdownVoltage[k] = base.breakdownVoltage[i];
+            conductance[k] = base.conductance[i];
+            logicGate[k] = base.logicGate[i];
+        }
+        for (int e = 0; e < extraFrom.length; e++) {
+            int k = kept.length + e;
+            components.add(null);
+            kind[k] = CONDUCTANCE;
+            fromTerminal[k] = -1;
+            toTerminal[k] = -1;
+            from[k] = extraFrom[e];
+            to[k] = extraTo[e];
+            conductance[k] = extraConductance[e];
+        }
+        // An island without the board's ground or first source is measured from its own, as compiled alone
+        int ground = base.groundNet < 0 ? -1 : netMap[base.groundNet];
+        int sourceNegative = base.firstSourceNegativeNet < 0 ? -1 : netMap[base.firstSourceNegativeNet];
+        for (int k = 0; k < kept.length; k++) {
+            if (ground < 0 && components.get(k) instanceof ComponentsController.EarthGround) {
+                ground = from[k];
+            }
+            if (sourceNegative < 0 && (kind[k] == VOLTAGE_SOURCE || kind[k] == INDUCTOR)) {
+                sourceNegative = to[k];
+            }
+        }
+        this.groundNet = ground;
+        this.firstSourceNegativeNet = sourceNegative;
+    }
+
+    public static Netlist compile(List<ComponentsController.Drawable> components) {
+        return new Compiler(components).compile();
+    }
+
+    // Compiles the same drawables again, picking up edited component values
+    public Netlist recompile() {
+        return compile(components);
+    }
+
+    /**
+     * Electrical values of a part as the compiler would describe it right now: value, conductance,
+     * emission voltage and breakdown offset. Sweeps read a part at every point with this and
+     * apply the values with {@link #withElement}.
+     */
+    static double[] describe(ComponentsController.Drawable drawable) {
+        Compiler compiler = new Compiler(List.of(drawable));
+        compiler.describe(0, drawable);
+        return new double[] {compiler.value[0], compiler.conductance[0], compiler.emissionVoltage[0], compiler.breakdownVoltage[0]};
+    }
+
+    // This netlist with element i set to a description from describe, wiring and kinds unchanged
+    Netlist withElement(int i, double[] description) {
+        double[] newValue = value.clone();
+        double[] newConductance = conductance.clone();
+        double[] newEmission = emissionVoltage.clone();
+        double[] newBreakdown = breakdownVoltage.clone();
+        newValue[i] = description[0];
+        newConductance[i] = description[1];
+        newEmission[i] = description[2];
+        newBreakdown[i] = description[3];
+        return new Netlist(this, newValue, newEmission, newBreakdown, newConductance);
+    }
+
+    // This netlist with every element's value and conductance replaced, wiring and kinds unchanged
+    Netlist withValues(double[] newValue, double[] newConductance) {
+        if (newValue.length != value.length || newConductance.length != conductance.length) {
+            throw new IllegalArgumentException("Value arrays do not match the netlist");
+        }
+        return new Netlist(this, newValue, emissionVoltage, breakdownVoltage, newConductance);
+    }
+
+    public static String nodeKey(double x, double y) {
+        return x + "," + y;
+    }
+
+    // Single pass builder, thrown away once the netlist exists
+    private static final class Compiler {
+        final List<ComponentsController.Drawable> components;
+        final Map<ComponentsController.Drawable, Integer> elementIndex = new IdentityHashMap<>();
+        double[] terminalX;
+        double[] terminalY;
+        long[] terminalCell;
+        int terminalCount;
+        // Open addressing table from snapped cell to terminal id, -1 when empty
+        int[] table;
+
+        int[] netOfTerminal;
+        int netCount;
+        byte[] kind;
+        int[] fromTerminal;
+        int[] toTerminal;
+        int[] from;
+        int[] to;
+        double[] value;
+        double[] emissionVoltage;
+        double[] breakdownVoltage;
+        double[] conductance;
+        boolean[] logicGate;
+        int groundNet = -1;
+        int firstSourceNegativeNet = -1;
+
+        Compiler(List<ComponentsController.Drawable> components) {
+            // Own copy, the board list keeps changing while analyses hold this netlist
+            this.components = new ArrayList<>(components);
+            int count = components.size();
+            int capacity = Math.max(4, 2 * count);
+            terminalX = new double[capacity];
+            terminalY = new double[capacity];
+            terminalCell = new long[capacity];
+            table = new int[Integer.highestOneBit(Math.max(8, 4 * capacity - 1)) << 1];
+            Arrays.fill(table, -1);
+            kind = new byte[count];
+            fromTerminal = new int[count];
+            toTerminal = new int[count];
+            value = new double[count];
+            emissionVoltage = new double[count];
+            breakdownVoltage = new double[count];
+            conductance = new double[count];
+            logicGate = new boolean[count];
+        }
+
+        Netlist compile() {
+            int count = components.size();
+            for (int i = 0; i < count; i++) {
+                ComponentsController.Drawable drawable = components.get(i);
+                elementIndex.put(drawable, i);
+                fromTerminal[i] = terminal(drawable.getXStart(), drawable.getYStart());
+                toTerminal[i] = terminal(drawable.getXEnd(), drawable.getYEnd());
+                describe(i, drawable);
+            }
+            mergeWires();
+
+            from = new int[count];
+            to = new int[count];
+            for (int i = 0; i < count; i++) {
+                from[i] = netOfTerminal[fromTerminal[i]];
+                to[i] = netOfTerminal[toTerminal[i]];
+                ComponentsController.Drawable drawable = components.get(i);
+                if (groundNet < 0 && drawable instanceof ComponentsController.EarthGround) {
+                    groundNet = from[i];
+                }
+                if (firstSourceNegativeNet < 0 && (kind[i] == VOLTAGE_SOURCE || kind[i] == INDUCTOR)) {
+                    firstSourceNegativeNet = to[i];
+                }
+            }
+            return new Netlist(this);
+        }
+
+        private static long cellKey(long cx, long cy) {
+            return (cx << 32) ^ (cy & 0xffffffffL);
+        }
+
+        private int slot(long key) {
+            long h = key * 0x9E3779B97F4A7C15L;
+            return (int) (h >>> 33) & (table.length - 1);
+        }
+
+        // Terminal id of the point, snapping to a terminal already seen in this or a neighbouring cell
+        private int terminal(double x, double y) {
+            long cx = Math.round(x / SNAP);
+            long cy = Math.round(y / SNAP);
+            int found = lookup(cellKey(cx, cy));
+            if (found >= 0) {
+                return found;
+            }
+            for (long dx = -1; dx <= 1; dx++) {
+                for (long dy = -1; dy <= 1; dy++) {
+                    if (dx == 0 && dy == 0) continue;
+                    int near = lookup(cellKey(cx + dx, cy + dy));
+                    if (near >= 0 && Math.abs(terminalX[near] - x) <= SNAP && Math.abs(terminalY[near] - y) <= SNAP) {
+                        return near;
+                    }
+                }
+            }
+            return insert(cellKey(cx, cy), x, y);
+        }
+
+        private int lookup(long key) {
+            int mask = table.length - 1;
+            for (int s = slot(key); table[s] >= 0; s = (s + 1) & mask) {
+                if (terminalCell[table[s]] == key) {
+                    return table[s];
+                }
+            }
+            return -1;
+        }
+
+        private int insert(long key, double x, double y) {
+            if (terminalCount == terminalX.length) {
+                int capacity = terminalCount * 2;
+                terminalX = Arrays.copyOf(terminalX, capacity);
+                terminalY = Arrays.copyOf(terminalY, capacity);
+                terminalCell = Arrays.copyOf(terminalCell, capacity);
+            }
+            int id = terminalCount++;
+            terminalX[id] = x;
+            terminalY[id] = y;
+            terminalCell[id] = key;
+            if (2 * terminalCount > table.length) {
+                rehash();
+            }
+            int mask = table.length - 1;
+            int s = slot(key);
+            while (table[s] >= 0) {
+                s = (s + 1) & mask;
+            }
+            table[s] = id;
+            return id;
+        }
+
+        private void rehash() {
+            table = new int[table.length * 2];
+            Arrays.fill(table, -1);
+            int mask = table.length - 1;
+            for (int id = 0; id < terminalCount - 1; id++) {
+                int s = slot(terminalCell[id]);
+                while (table[s] >= 0) {
+                    s = (s + 1) & mask;
+                }
+                table[s] = id;
+            }
+        }
+
+        // Union-find over terminals joined by wires, then dense net ids in order of first appearance
+        private void mergeWires() {
+            int[] parent = new int[terminalCount];
+            for (int t = 0; t < terminalCount; t++) {
+                parent[t] = t;
+            }
+            for (int i = 0; i < kind.length; i++) {
+                if (kind[i] == WIRE) {
+                    int a = find(parent, fromTerminal[i]);
+                    int b = find(parent, toTerminal[i]);
+                    if (a != b) {
+                        parent[Math.max(a, b)] = Math.min(a, b);
+                    }
+                }
+            }
+            netOfTerminal = new int[terminalCount];
+            int[] netOfRoot = new int[terminalCount];
+            Arrays.fill(netOfRoot, -1);
+            for (int t = 0; t < terminalCount; t++) {
+                int root = find(parent, t);
+                if (netOfRoot[root] < 0) {
+                    netOfRoot[root] = netCount++;
+                }
+                netOfTerminal[t] = netOfRoot[root];
+            }
+        }
+
+        private static int find(int[] parent, int t) {
+            while (parent[t] != t) {
+                parent[t] = parent[parent[t]];
+                t = parent[t];
+            }
+            return t;
+        }
+
+        private void describe(int i, ComponentsController.Drawable drawable) {
+            if (!(drawable instanceof ComponentsController.ImageComponent)) {
+                kind[i] = WIRE;
+                return;
+            }
+            ComponentsController.ImageComponent component = (ComponentsController.ImageComponent) drawable;
+            logicGate[i] = component.isLogicGate();
+            if (component instanceof ComponentsController.Capacitor) {
+                kind[i] = CAPACITOR;
+                value[i] = ((ComponentsController.Capacitor) component).capacitance;
+            } else if (component instanceof ComponentsController.Inductor) {
+                kind[i] = INDUCTOR;
+                value[i] = ((ComponentsController.Inductor) component).inductance;
+            } else if (isVoltageSource(component)) {
+                kind[i] = VOLTAGE_SOURCE;
+                value[i] = sourceVoltage(component);
+            } else if (component instanceof ComponentsController.CurrentSource) {
+                ComponentsController.CurrentSource source = (ComponentsController.CurrentSource) component;
+                kind[i] = CURRENT_SOURCE;
+                value[i] = source.current;
+                conductance[i] = source.internalResistance > 0 ? 1.0 / source.internalResistance : 0.0;
+            } else if (component instanceof ComponentsController.Diode) {
+                ComponentsController.Diode diode = (ComponentsController.Diode) component;
+                describeDiode(i, component, diode.forwardVoltage, DIODE_REFERENCE_CURRENT, DIODE_EMISSION);
+            } else if (component instanceof ComponentsController.LED) {
+                ComponentsController.LED led = (ComponentsController.LED) component;
+                describeDiode(i, component, led.forwardVoltage, led.forwardCurrent > 0 ? led.forwardCurrent : DIODE_REFERENCE_CURRENT,
+                        LED_EMISSION);
+            } else {
+                kind[i] = CONDUCTANCE;
+                conductance[i] = conductance(component);
+            }
+        }
+
+        // Saturation current chosen so the diode carries the reference current at its forward voltage
+        private void describeDiode(int i, ComponentsController.ImageComponent component, double forwardVoltage,
+                                   double referenceCurrent, double emission) {
+            kind[i] = DIODE;
+            emissionVoltage[i] = emission * THERMAL_VOLTAGE;
+            value[i] = referenceCurrent / Math.expm1(Math.max(forwardVoltage, emissionVoltage[i]) / emissionVoltage[i]);
+            // The reverse exponential is shifted so the reference current also flows at the rated breakdown voltage
+            double breakdown = component.zenerVoltage > 0 ? component.zenerVoltage : component.reverseBreakdownVoltage;
+            breakdownVoltage[i] = breakdown > 0 ? Math.max(breakdown - forwardVoltage, emissionVoltage[i]) : 0.0;
+        }
+    }
+
+    // Conductance model for two-terminal parts, mirroring the values used by the analyzer
+    static double conductance(ComponentsController.ImageComponent component) {
+        if (component instanceof ComponentsController.Voltmeter) {
+            return OPEN_CONDUCTANCE;
+        } else if (component instanceof ComponentsController.Ammeter) {
+            return AMMETER_CONDUCTANCE;
+        } else if (component instanceof ComponentsController.SPSTToggleSwitch) {
+            return ((ComponentsController.SPSTToggleSwitch) component).isClosed ? CLOSED_SWITCH_CONDUCTANCE : OPEN_CONDUCTANCE;
+        } else if (component instanceof ComponentsController.ResistorIEEE) {
+            return component.resistance > 0 ? 1.0 / component.resistance : 1.0 / WIRE_RESISTANCE;
+        } else if (component instanceof ComponentsController.PotentiometerIEEE) {
+            // Used as a rheostat: the resistance between the ends follows the wiper
+            ComponentsController.PotentiometerIEEE pot = (ComponentsController.PotentiometerIEEE) component;
+            return 1.0 / Math.max(pot.resistance * pot.wiperPosition, WIRE_RESISTANCE);
+        } else if (component instanceof ComponentsController.Ohmmeter) {
+            return OPEN_CONDUCTANCE;
+        } else if (component instanceof ComponentsController.Fuse) {
+            return ((ComponentsController.Fuse) component).isBlown ? OPEN_CONDUCTANCE : 1.0 / WIRE_RESISTANCE;
+        } else if (component.isLogicGate()) {
+            return 1.0 / LOGIC_GATE_RESISTANCE;
+        }
+        return 1.0 / WIRE_RESISTANCE;
+    }
+
+    static boolean isVoltageSource(ComponentsController.ImageComponent component) {
+        return component instanceof ComponentsController.Battery
+                || component instanceof ComponentsController.VoltageSource;
+    }
+
+    static double sourceVoltage(ComponentsController.ImageComponent component) {
+        if (component instanceof ComponentsController.Battery) {
+            return ((ComponentsController.Battery) component).voltage;
+        } else if (component instanceof ComponentsController.VoltageSource) {
+            return ((ComponentsController.VoltageSource) component).voltage;
+        }
+        return 0.0;
+    }
+
+    public int elementCount() {
+        return kind.length;
+    }
+
+    public int terminalCount() {
+        return terminalX.length;
+    }
+
+    public int netCount() {
+        return netCount;
+    }
+
+    public ComponentsController.Drawable element(int i) {
+        return components.get(i);
+    }
+
+    // Index of the drawable in the netlist, -1 if it was not compiled into it
+    public int indexOf(ComponentsController.Drawable drawable) {
+        Integer index = elementIndex.get(drawable);
+        return index == null ? -1 : index;
+    }
+
+    public byte kind(int i) {
+        return kind[i];
+    }
+
+    public int fromTerminal(int i) {
+        return fromTerminal[i];
+    }
+
+    public int toTerminal(int i) {
+        return toTerminal[i];
+    }
+
+    public int from(int i) {
+        return from[i];
+    }
+
+    public int to(int i) {
+        return to[i];
+    }
+
+    public double value(int i) {
+        return value[i];
+    }
+
+    // Emission coefficient times thermal voltage of a diode
+    public double emissionVoltage(int i) {
+        return emissionVoltage[i];
+    }
+
+    // Offset of a diode's reverse breakdown branch (Zener voltage minus forward voltage), 0 when it does not break down
+    public double breakdownVoltage(int i) {
+        return breakdownVoltage[i];
+    }
+
+    public double conductance(int i) {
+        return conductance[i];
+    }
+
+    public boolean isLogicGate(int i) {
+        return logicGate[i];
+    }
+
+    public boolean hasReactiveElements() {
+        for (byte k : kind) {
+            if (k == CAPACITOR || k == INDUCTOR) return true;
+        }
+        return false;
+    }
+
+    public boolean hasLogicGates() {
+        for (boolean gate : logicGate) {
+            if (gate) return true;
+        }
+        return false;
+    }
+
+    public boolean hasDiodes() {
+        for (byte k : kind) {
+            if (k == DIODE) return true;
+        }
+        return false;
+    }
+
+    public int netOf(int terminal) {
+        return netOfTerminal[terminal];
+    }
+
+    public double terminalX(int terminal) {
+        return terminalX[terminal];
+    }
+
+    public double terminalY(int terminal) {
+        return terminalY[terminal];
+    }
+
+    // Net of the terminal at a point, within the snapping distance, -1 when nothing ends there
+    public int netAt(double x, double y) {
+        for (int t = 0; t < terminalX.length; t++) {
+            if (Math.abs(terminalX[t] - x) <= SNAP && Math.abs(terminalY[t] - y) <= SNAP) {
+                return netOfTerminal[t];
+            }
+        }
+        return -1;
+    }
+
+    // "x,y" key of a terminal, only built when results are handed back to string keyed maps
+    public String terminalKey(int terminal) {
+        return nodeKey(terminalX[terminal], terminalY[terminal]);
+    }
+
+    // Net of the first earth ground, -1 when the board has none
+    public int groundNet() {
+        return groundNet;
+    }
+
+    // Net of the negative terminal of the first voltage source, -1 when there is none
+    public int firstSourceNegativeNet() {
+        return firstSourceNegativeNet;
+    }
+}
@@ -0,0 +1,264 @@
+package controllers;
+
+import java.util.Arrays;
+
+/**
+ * Topological pre-pass that shrinks a board before the matrix solve. Conductances in parallel
+ * are merged, and a net touched only by conductances is eliminated when it has one, two or
+ * three of them: a dangling end, a series joint, or a star turned into its equivalent delta.
+ * Each elimination is recorded, so once the smaller system is solved the eliminated nets get
+ * their voltages back in reverse order from V = sum(G_k V_k) / sum(G_k), and the solution is
+ * handed back in the layout of the full {@link MnaSystem}. Sources, diodes, reactive parts and
+ * logic gates are never reduced, and neither is the reference net.
+ */
+public class NetworkReduction {
+    // Largest star turned into a delta, bigger stars would add more edges than they remove
+    private static final int MAX_STAR = 3;
+
+    private final Netlist netlist;
+    private final Netlist reduced;
+    private final int[] netMap;
+    private final int[] reducedElement;
+    // Eliminated nets in order, with the nets and conductances they were joined to
+    private final int[] eliminated;
+    private final int[][] neighbours;
+    private final double[][] weights;
+
+    // Working graph of reducible edges in growable primitive arrays, growing as stars become deltas
+    private int edgeCount;
+    private int[] edgeFrom;
+    private int[] edgeTo;
+    private double[] edgeConductance;
+    private boolean[] alive;
+    // Per net, the edges incident to it, the first incidentCount[net] entries are in use
+    private int[][] incident;
+    private int[] incidentCount;
+
+    public NetworkReduction(Netlist netlist) {
+        this.netlist = netlist;
+        int nets = netlist.netCount();
+        int count = netlist.elementCount();
+        int reference = netlist.groundNet() >= 0 ? netlist.groundNet() : Math.max(netlist.firstSourceNegativeNet(), 0);
+
+        edgeFrom = new int[Math.max(count, 4)];
+        edgeTo = new int[edgeFrom.length];
+        edgeConductance = new double[edgeFrom.length];
+        alive = new boolean[edgeFrom.length];
+        incident = new int[nets][];
+        incidentCount = new int[nets];
+        int[] fixed = new int[nets];
+        int[] kept = new int[count];
+        int keptCount = 0;
+        for (int i = 0; i < count; i++) {
+            int a = netlist.from(i);
+            int b = netlist.to(i);
+            if (netlist.kind(i) == Netlist.WIRE) {
+                continue;
+            }
+            if (netlist.kind(i) == Netlist.CONDUCTANCE && !netlist.isLogicGate(i)) {
+                if (a != b) {
+                    addEdge(a, b, netlist.conductance(i));
+                }
+                continue;
+            }
+            kept[keptCount++] = i;
+            fixed[a]++;
+            fixed[b]++;
+        }
+
+        // A net is eliminated at most once, so the records fit in arrays sized by the net count
+        int[] order = new int[nets];
+        int[][] orderNeighbours = new int[nets][];
+        double[][] orderWeights = new double[nets][];
+        int eliminatedCount = 0;
+        boolean[] gone = new boolean[nets];
+        // Ring of queued nets, each net is queued at most once at a time
+        int[] work = new int[Math.max(nets, 1)];
+        int head = 0;
+        int queuedCount = nets;
+        boolean[] queued = new boolean[nets];
+        for (int net = 0; net < nets; net++) {
+            work[net] = net;
+            queued[net] = true;
+        }
+        // Edge to each neighbour of the net being visited, -1 elsewhere, cleared after every visit
+        int[] edgeToNeighbour = new int[nets];
+        Arrays.fill(edgeToNeighbour, -1);
+        while (queuedCount > 0) {
+            int net = work[head];
+            head = (head + 1) % work.length;
+            queuedCount--;
+            queued[net] = false;
+            if (gone[net]) continue;
+
+            // Parallel bundles become one edge, dead edges are dropped from the list
+            int[] edges = incident[net];
+            int degree = 0;
+            for (int k = 0; k < incidentCount[net]; k++) {
+                int e = edges[k];
+                if (!alive[e]) continue;
+                int other = edgeFrom[e] == net ? edgeTo[e] : edgeFrom[e];
+                int first = edgeToNeighbour[other];
+                if (first >= 0) {
+                    edgeConductance[first] += edgeConductance[e];
+                    alive[e] = false;
+                    continue;
+                }
+                edgeToNeighbour[other] = e;
+                edges[degree++] = e;
+            }
+            incidentCount[net] = degree;
+            for (int k = 0; k < degree; k++) {
+                int e = edges[k];
+                edgeToNeighbour[edgeFrom[e] == net ? edgeTo[e] : edgeFrom[e]] = -1;
+            }
+
+            if (net == reference || fixed[net] > 0 || degree == 0 || degree > MAX_STAR) continue;
+            int[] others = new int[degree];
+            double[] g = new double[degree];
+            double total = 0.0;
+            for (int k = 0; k < degree; k++) {
+                int e = edges[k];
+                others[k] = edgeFrom[e] == net ? edgeTo[e] : edgeFrom[e];
+                g[k] = edgeConductance[e];
+                total += g[k];
+                alive[e] = false;
+            }
+            // Star-mesh: every pair of neighbours is joined by G_i G_j / sum(G)
+            for (int i = 0; i < degree; i++) {
+                for (int j = i + 1; j < degree; j++) {
+                    addEdge(others[i], others[j], g[i] * g[j] / total);
+                }
+            }
+            incidentCount[net] = 0;
+            gone[net] = true;
+            order[eliminatedCount] = net;
+            orderNeighbours[eliminatedCount] = others;
+            orderWeights[eliminatedCount] = g;
+            eliminatedCount++;
+            for (int other : others) {
+                if (!queued[other]) {
+                    work[(head + queuedCount) % work.length] = other;
+                    queuedCount++;
+                    queued[other] = true;
+                }
+            }
+        }
+
+        // Remaining nets keep their order, so the reference net stays where MnaSystem looks for it
+        netMap = new int[nets];
+        int newNets = 0;
+        for (int net = 0; net < nets; net++) {
+            netMap[net] = gone[net] ? -1 : newNets++;
+        }
+        int extras = 0;
+        for (int e = 0; e < edgeCount; e++) {
+            if (alive[e]) extras++;
+        }
+        int[] extraFrom = new int[extras];
+        int[] extraTo = new int[extras];
+        double[] extraConductance = new double[extras];
+        for (int e = 0, x = 0; e < edgeCount; e++) {
+            if (!alive[e]) continue;
+            extraFrom[x] = netMap[edgeFrom[e]];
+            extraTo[x] = netMap[edgeTo[e]];
+            extraConductance[x] = edgeConductance[e];
+            x++;
+        }
+        int[] keptElements = Arrays.copyOf(kept, keptCount);
+        reducedElement = new int[count];
+        Arrays.fill(reducedElement, -1);
+        for (int k = 0; k < keptElements.length; k++) {
+            reducedElement[keptElements[k]] = k;
+        }
+        reduced = new Netlist(netlist, keptElements, netMap, newNets, extraFrom, extraTo, extraConductance);
+        eliminated = Arrays.copyOf(order, eliminatedCount);
+        neighbours = Arrays.copyOf(orderNeighbours, eliminatedCount);
+        weights = Arrays.copyOf(orderWeights, eliminatedCount);
+        // The working graph is only needed while reducing
+        edgeFrom = null;
+        edgeTo = null;
+        edgeConductance = null;
+        alive = null;
+        incident = null;
+        incidentCount = null;
+    }
+
+    private void addEdge(int a, int b, double g) {
+        if (edgeCount == edgeFrom.length) {
+            int capacity = edgeCount * 2;
+            edgeFrom = Arrays.copyOf(edgeFrom, capacity);
+            edgeTo = Arrays.copyOf(edgeTo, capacity);
+            edgeConductance = Arrays.copyOf(edgeConductance, capacity);
+            alive = Arrays.copyOf(alive, capacity);
+        }
+        int e = edgeCount++;
+        edgeFrom[e] = a;
+        edgeTo[e] = b;
+        edgeConductance[e] = g;
+        alive[e] = true;
+        addIncident(a, e);
+        addIncident(b, e);
+    }
+
+    private void addIncident(int net, int e) {
+        int[] edges = incident[net];
+        if (edges == null) {
+            edges = incident[net] = new int[4];
+        } else if (incidentCount[net] == edges.length) {
+            edges = incident[net] = Arrays.copyOf(edges, edges.length * 2);
+        }
+        edges[incidentCount[net]++] = e;
+    }
+
+    public Netlist getReducedNetlist() {
+        return reduced;
+    }
+
+    // Nets reduced away
+    public int getEliminatedNets() {
+        return eliminated.length;
+    }
+
+    /**
+     * Solves the reduced board and returns the solution in the layout of the full system.
+     * Throws ArithmeticException like the full solve would.
+     */
+    public double[] solve(MnaSystem full) {
+        MnaSystem small = new MnaSystem(reduced);
+        double[] x = small.size() == 0 ? new double[0]
+                : reduced.hasDiodes() ? new NewtonSolver(small).solve() : small.solve();
+
+        double[] voltage = new double[netlist.netCount()];
+        for (int net = 0; net < voltage.length; net++) {
+            if (netMap[net] >= 0) {
+                voltage[net] = small.nodeVoltage(x, netMap[net]);
+            }
+        }
+        // Back-substitution: a net's neighbours outlived it, so their voltages are known by now
+        for (int k = eliminated.length - 1; k >= 0; k--) {
+            double sum = 0.0;
+            double total = 0.0;
+            for (int j = 0; j < neighbours[k].length; j++) {
+                sum += weights[k][j] * voltage[neighbours[k][j]];
+                total += weights[k][j];
+            }
+            voltage[eliminated[k]] = sum / total;
+        }
+
+        double[] solution = new double[full.size()];
+        for (int net = 0; net < voltage.length; net++) {
+            int row = full.row(net);
+            if (row >= 0) {
+                solution[row] = voltage[net];
+            }
+        }
+        for (int i = 0; i < netlist.elementCount(); i++) {
+            int branch = full.branchRow(i);
+            if (branch >= 0) {
+                solution[branch] = x[small.branchRow(reducedElement[i])];
+            }
+        }
+        return solution;
+    }
+}
@@ -0,0 +1,214 @@
+package controllers;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * DC operating point of boards with diodes and LEDs, by Newton-Raphson on a {@link MnaSystem}.
+ * Every iteration replaces each diode by the tangent of its Shockley curve at the current
+ * junction voltage (a conductance plus a parallel current source) and solves the linear system.
+ * Junction voltages are limited between iterations the way SPICE does, so the exponential never
+ * runs away, and the factorization is kept while the iterations converge quickly. Each solve
+ * starts from the junction voltages the same diodes had last time, so re-solving after an edit
+ * takes a couple of iterations.
+ */
+public class NewtonSolver {
+    private static final int MAX_ITERATIONS = 100;
+    private static final double RELATIVE_TOLERANCE = 1e-6;
+    private static final double VOLTAGE_TOLERANCE = 1e-9;
+    // Keep the factorization for the next iteration when the last one shrank the update this much
+    private static final double REUSE_CONTRACTION = 0.1;
+    // Junction voltages of the last converged solve, weakly keyed so deleted parts drop out
+    private static final Map<ComponentsController.Drawable, Double> lastJunctionVoltage =
+            Collections.synchronizedMap(new WeakHashMap<>());
+
+    private final MnaSystem system;
+    private final Netlist netlist;
+    private final int[] diodes;
+    // Positions of each diode's conductance stamp in the value array (aa, bb, ab, ba), -1 on the reference net
+    private final int[][] stampPositions;
+    // Matrix values without the diodes
+    private final double[] linearValues;
+    private int iterations;
+    private int factorizations;
+    // Junction voltages of the last converged solve, in the order of the diodes in the netlist
+    private double[] junctionVoltages;
+
+    public NewtonSolver(MnaSystem system) {
+        this.system = system;
+        this.netlist = system.getNetlist();
+        int count = 0;
+        for (int i = 0; i < netlist.elementCount(); i++) {
+            if (netlist.kind(i) == Netlist.DIODE) count++;
+        }
+        diodes = new int[count];
+        for (int i = 0, d = 0; i < netlist.elementCount(); i++) {
+            if (netlist.kind(i) == Netlist.DIODE) diodes[d++] = i;
+        }
+
+        SparseMatrix matrix = system.getMatrix();
+        stampPositions = new int[count][];
+        linearValues = matrix.getValues().clone();
+        for (int d = 0; d < count; d++) {
+            int a = system.row(netlist.from(diodes[d]));
+            int b = system.row(netlist.to(diodes[d]));
+            stampPositions[d] = new int[] {
+                    matrix.position(a, a), matrix.position(b, b), matrix.position(a, b), matrix.position(b, a)
+            };
+            addStamp(linearValues, stampPositions[d], -system.diodeConductance(diodes[d], 0.0));
+        }
+    }
+
+    private static void addStamp(double[] values, int[] positions, double g) {
+        if (positions[0] >= 0) values[positions[0]] += g;
+        if (positions[1] >= 0) values[positions[1]] += g;
+        if (positions[2] >= 0) values[positions[2]] -= g;
+        if (positions[3] >= 0) values[positions[3]] -= g;
+    }
+
+    /**
+     * Solves for the operating point and remembers the junction voltages for the next solve.
+     * Throws ArithmeticException when the iterations do not converge, like a singular matrix.
+     */
+    public double[] solve() {
+        return solve(null);
+    }
+
+    /**
+     * Same, starting from the given junction voltages, one per diode in netlist order, instead of
+     * the remembered ones. Sweeps pass the result of the neighbouring point.
+     */
+    double[] solve(double[] junctionGuess) {
+        iterations = 0;
+        factorizations = 0;
+        if (system.size() == 0) {
+            return new double[0];
+        }
+
+        double[] junction = new double[diodes.length];
+        for (int d = 0; d < diodes.length; d++) {
+            Double warm = junctionGuess == null ? lastJunctionVoltage.get(netlist.element(diodes[d])) : null;
+            junction[d] = junctionGuess != null ? junctionGuess[d] : warm != null ? warm : 0.0;
+        }
+        // Conductance each diode has in the factorized matrix, which may be from an earlier iteration
+        double[] factoredConductance = new double[diodes.length];
+        double[] rhs = new double[system.size()];
+        SparseLU lu = null;
+        boolean reuse = false;
+        double lastUpdate = Double.POSITIVE_INFINITY;
+
+        while (iterations < MAX_ITERATIONS) {
+            iterations++;
+            if (lu == null || !reuse) {
+                lu = factor(lu, junction, factoredConductance);
+            }
+
+            // Tangent current source of each diode, on top of the conductance already in the matrix
+            System.arraycopy(system.getRhs(), 0, rhs, 0, rhs.length);
+            for (int d = 0; d < diodes.length; d++) {
+                int i = diodes[d];
+                double source = system.diodeCurrent(i, junction[d]) - factoredConductance[d] * junction[d];
+                int a = system.row(netlist.from(i));
+                int b = system.row(netlist.to(i));
+                if (a >= 0) rhs[a] -= source;
+                if (b >= 0) rhs[b] += source;
+            }
+            double[] solution = lu.solve(rhs);
+
+            boolean converged = true;
+            boolean limited = false;
+            double update = 0.0;
+            for (int d = 0; d < diodes.length; d++) {
+                int i = diodes[d];
+                double v = system.nodeVoltage(solution, netlist.from(i)) - system.nodeVoltage(solution, netlist.to(i));
+                double next = limitJunction(i, v, junction[d]);
+                limited |= next != v;
+                if (Math.abs(v - junction[d]) > RELATIVE_TOLERANCE * Math.max(Math.abs(v), Math.abs(junction[d])) + VOLTAGE_TOLERANCE) {
+                    converged = false;
+                }
+                update = Math.max(update, Math.abs(next - junction[d]));
+                junction[d] = next;
+            }
+            if (converged && !limited) {
+                for (int d = 0; d < diodes.length; d++) {
+                    lastJunctionVoltage.put(netlist.element(diodes[d]), junction[d]);
+                }
+                junctionVoltages = junction;
+                return solution;
+            }
+            // Close to the solution the Jacobian hardly changes, so the old factors still converge
+            reuse = !limited && update < REUSE_CONTRACTION * lastUpdate;
+            lastUpdate = update;
+        }
+        throw new ArithmeticException("Diode operating point did not converge in " + MAX_ITERATIONS + " iterations");
+    }
+
+    // Factorize the Jacobian at the given junction voltages, refactorizing the previous LU when possible
+    private SparseLU factor(SparseLU previous, double[] junction, double[] factoredConductance) {
+        double[] values = linearValues.clone();
+        for (int d = 0; d < diodes.length; d++) {
+            factoredConductance[d] = system.diodeConductance(diodes[d], junction[d]);
+            addStamp(values, stampPositions[d], factoredConductance[d]);
+        }
+        SparseMatrix jacobian = system.getMatrix().withValues(values);
+        factorizations++;
+        if (previous != null && previous.refactor(jacobian)) {
+            return previous;
+        }
+        return SparseLU.factor(jacobian, FactorizationCache.shared().symbolicFor(jacobian));
+    }
+
+    // Jacobian of the circuit equations at a solution, each diode at its tangent conductance
+    SparseMatrix jacobianAt(double[] solution) {
+        double[] values = linearValues.clone();
+        for (int d = 0; d < diodes.length; d++) {
+            int i = diodes[d];
+            double v = system.nodeVoltage(solution, netlist.from(i)) - system.nodeVoltage(solution, netlist.to(i));
+            addStamp(values, stampPositions[d], system.diodeConductance(i, v));
+        }
+        return system.getMatrix().withValues(values);
+    }
+
+    // Limit the step of a junction voltage on the steep part of the exponential (SPICE pnjlim)
+    private double limitJunction(int i, double next, double previous) {
+        double vt = netlist.emissionVoltage(i);
+        double critical = vt * Math.log(vt / (Math.sqrt(2) * netlist.value(i)));
+        double breakdown = netlist.breakdownVoltage(i);
+        if (breakdown > 0 && next < -breakdown / 2) {
+            // Mirror the reverse breakdown branch onto the forward one
+            return -limitExponential(-(next + breakdown), -(previous + breakdown), vt, critical) - breakdown;
+        }
+        return limitExponential(next, previous, vt, critical);
+    }
+
+    private static double limitExponential(double next, double previous, double vt, double critical) {
+        if (next > critical && Math.abs(next - previous) > 2 * vt) {
+            if (previous > 0) {
+                double arg = 1 + (next - previous) / vt;
+                return arg > 0 ? previous + vt * Math.log(arg) : critical;
+            }
+            return vt * Math.log(next / vt);
+        }
+        return next;
+    }
+
+    // Junction voltages of the last converged solve, null before the first one
+    double[] getJunctionVoltages() {
+        return junctionVoltages;
+    }
+
+    public MnaSystem getSystem() {
+        return system;
+    }
+
+    // Iterations taken by the last solve
+    public int getIterations() {
+        return iterations;
+    }
+
+    // Jacobian factorizations done by the last solve, fewer than iterations when factors were reused
+    public int getFactorizations() {
+        return factorizations;
+    }
+}
@@ -0,0 +1,46 @@
+package controllers;
+
+import java.util.Arrays;
+
+/**
+ * Solver state carried from one DC operating point to the next by analyses that solve many
+ * variants of the same board, one workspace per thread. Linear boards keep their LU factors and
+ * refactor them while the sparsity pattern stays the same; diode boards start each Newton solve
+ * from the junction voltages of the previous solve.
+ */
+class OperatingPointWorkspace {
+    private SparseLU lu;
+    private SparseMatrix factored;
+    private double[] junctions;
+
+    /**
+     * Operating point of the system, or null when it is singular or Newton does not converge.
+     * A failure clears the workspace so the next solve starts fresh.
+     */
+    double[] solve(MnaSystem system) {
+        try {
+            if (system.size() == 0) {
+                return new double[0];
+            }
+            if (system.getNetlist().hasDiodes()) {
+                NewtonSolver newton = new NewtonSolver(system);
+                double[] solution = newton.solve(junctions);
+                junctions = newton.getJunctionVoltages();
+                return solution;
+            }
+            SparseMatrix matrix = system.getMatrix();
+            boolean samePattern = factored != null && Arrays.equals(factored.colPtr, matrix.colPtr)
+                    && Arrays.equals(factored.rowIdx, matrix.rowIdx);
+            if (!samePattern || !lu.refactor(matrix)) {
+                lu = SparseLU.factor(matrix, FactorizationCache.shared().symbolicFor(matrix));
+            }
+            factored = matrix;
+            return lu.solve(system.getRhs());
+        } catch (ArithmeticException e) {
+            lu = null;
+            factored = null;
+            junctions = null;
+            return null;
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package controllers;
+
+// What an analysis reads off a probed component
+public enum ProbeQuantity {
+    // Voltage from the start terminal to the end terminal
+    VOLTAGE,
+    // Current through the part from its start terminal to its end terminal
+    CURRENT
+}
@@ -0,0 +1,231 @@
+package controllers;
+
+/**
+ * Derivative of one probe with respect to every resistance, source value and switch on the
+ * board, from the forward factorization plus a single transpose solve. For a probe c'x of the
+ * solution of A x = b, the adjoint A' y = c gives dProbe/dp = y'(db/dp - dA/dp x) for all
+ * parameters p at once, instead of one re-solve per parameter. Diode boards use the Jacobian at
+ * the operating point as A. Switches are reported as the change of the probe when toggled,
+ * worked out exactly from the same factors as a rank-one update.
+ */
+public class SensitivityAnalysis {
+    // Parameter names, what a sensitivity is the derivative with respect to
+    public static final String RESISTANCE = "resistance";
+    public static final String VOLTAGE = "voltage";
+    public static final String CURRENT = "current";
+    public static final String TOGGLE = "toggle";
+
+    private final MnaSystem system;
+    private final Netlist netlist;
+    private final SparseLU lu;
+    private final double[] solution;
+
+    /**
+     * Sensitivities of one probe. Elements without a parameter (wires, capacitors and inductors
+     * at DC, diodes, gates) have none; for switches the value is the change when toggled.
+     */
+    public static class Result {
+        private final double probeValue;
+        private final String[] parameter;
+        private final double[] parameterValue;
+        private final double[] sensitivity;
+
+        Result(double probeValue, int elements) {
+            this.probeValue = probeValue;
+            this.parameter = new String[elements];
+            this.parameterValue = new double[elements];
+            this.sensitivity = new double[elements];
+        }
+
+        public double getProbeValue() {
+            return probeValue;
+        }
+
+        public boolean has(int element) {
+            return parameter[element] != null;
+        }
+
+        // Name of the element's parameter, null when it has none
+        public String parameter(int element) {
+            return parameter[element];
+        }
+
+        public double parameterValue(int element) {
+            return parameterValue[element];
+        }
+
+        public double sensitivity(int element) {
+            return sensitivity[element];
+        }
+
+        // Percent change of the probe per percent change of the parameter, NaN for switches
+        public double relative(int element) {
+            if (TOGGLE.equals(parameter[element]) || probeValue == 0) {
+                return Double.NaN;
+            }
+            return sensitivity[element] * parameterValue[element] / probeValue;
+        }
+    }
+
+    /**
+     * Solves the operating point and keeps its factors for the adjoint solves.
+     * Throws ArithmeticException when the board cannot be solved.
+     */
+    public SensitivityAnalysis(Netlist netlist) {
+        this.netlist = netlist;
+        this.system = new MnaSystem(netlist);
+        if (system.size() == 0) {
+            lu = null;
+            solution = new double[0];
+            return;
+        }
+        SparseMatrix matrix = system.getMatrix();
+        double[] operatingPoint = null;
+        if (netlist.hasDiodes()) {
+            NewtonSolver newton = new NewtonSolver(system);
+            operatingPoint = newton.solve();
+            matrix = newton.jacobianAt(operatingPoint);
+        }
+        lu = SparseLU.factor(matrix, FactorizationCache.shared().symbolicFor(matrix));
+        solution = operatingPoint != null ? operatingPoint : lu.solve(system.getRhs());
+    }
+
+    // Sensitivities of the voltage across or the current through the probed component
+    public Result analyze(ComponentsController.ImageComponent probe, ProbeQuantity quantity) {
+        int element = netlist.indexOf(probe);
+        if (element < 0) {
+            throw new IllegalArgumentException(probe.componentType + " is not on the analyzed board");
+        }
+        if (quantity == ProbeQuantity.CURRENT && netlist.kind(element) == Netlist.WIRE) {
+            throw new IllegalArgumentException("A merged wire has no current of its own");
+        }
+        Result result = new Result(probeValue(solution, element, quantity, Double.NaN), netlist.elementCount());
+        if (lu == null) {
+            return result;
+        }
+        double[] adjoint = lu.solveTranspose(probeGradient(element, quantity));
+
+        for (int i = 0; i < netlist.elementCount(); i++) {
+            int a = system.row(netlist.from(i));
+            int b = system.row(netlist.to(i));
+            double adjointAcross = entry(adjoint, a) - entry(adjoint, b);
+            switch (netlist.kind(i)) {
+                case Netlist.VOLTAGE_SOURCE:
+                    result.parameter[i] = VOLTAGE;
+                    result.parameterValue[i] = netlist.value(i);
+                    result.sensitivity[i] = adjoint[system.branchRow(i)];
+                    break;
+                case Netlist.CURRENT_SOURCE:
+                    result.parameter[i] = CURRENT;
+                    result.parameterValue[i] = netlist.value(i);
+                    // The source's own current reads -I on top of its internal conductance
+                    result.sensitivity[i] = adjointAcross - (i == element && quantity == ProbeQuantity.CURRENT ? 1 : 0);
+                    break;
+                case Netlist.CONDUCTANCE: {
+                    if (netlist.isLogicGate(i)) {
+                        break;
+                    }
+                    ComponentsController.Drawable part = netlist.element(i);
+                    if (part instanceof ComponentsController.SPSTToggleSwitch) {
+                        result.parameter[i] = TOGGLE;
+                        result.parameterValue[i] = ((ComponentsController.SPSTToggleSwitch) part).isClosed ? 1 : 0;
+                        result.sensitivity[i] = toggleChange(i, element, quantity, result.probeValue);
+                        break;
+                    }
+                    double g = netlist.conductance(i);
+                    double across = entry(solution, a) - entry(solution, b);
+                    double byConductance = -adjointAcross * across
+                            + (i == element && quantity == ProbeQuantity.CURRENT ? across : 0);
+                    result.parameter[i] = RESISTANCE;
+                    result.parameterValue[i] = 1.0 / g;
+                    result.sensitivity[i] = -byConductance * g * g; // dG/dR = -G^2
+                    break;
+                }
+                default:
+                    break;
+            }
+        }
+        return result;
+    }
+
+    // c with probe = c' x near the operating point
+    private double[] probeGradient(int element, ProbeQuantity quantity) {
+        double[] c = new double[system.size()];
+        int a = system.row(netlist.from(element));
+        int b = system.row(netlist.to(element));
+        double scale = 1.0;
+        if (quantity == ProbeQuantity.CURRENT) {
+            switch (netlist.kind(element)) {
+                case Netlist.VOLTAGE_SOURCE:
+                    c[system.branchRow(element)] = -1.0;
+                    return c;
+                case Netlist.INDUCTOR:
+                    c[system.branchRow(element)] = 1.0;
+                    return c;
+                case Netlist.DIODE:
+                    scale = system.diodeConductance(element, entry(solution, a) - entry(solution, b));
+                    break;
+                case Netlist.CAPACITOR:
+                    scale = Netlist.OPEN_CONDUCTANCE;
+                    break;
+                default:
+                    scale = netlist.conductance(element);
+                    break;
+            }
+        }
+        if (a >= 0) c[a] += scale;
+        if (b >= 0) c[b] -= scale;
+        return c;
+    }
+
+    // Probe value for a solution, with the probed element's conductance replaced unless it is NaN
+    private double probeValue(double[] x, int element, ProbeQuantity quantity, double conductance) {
+        double across = system.nodeVoltage(x, netlist.from(element)) - system.nodeVoltage(x, netlist.to(element));
+        if (quantity == ProbeQuantity.VOLTAGE) {
+            return across;
+        }
+        if (!Double.isNaN(conductance)) {
+            return across * conductance;
+        }
+        return system.elementCurrent(x, element);
+    }
+
+    /**
+     * Change of the probe when switch s is toggled. The toggle adds d * u u' to A, with u the
+     * switch's incidence vector, so by Sherman-Morrison the new solution is
+     * x - d z (u'x) / (1 + d u'z) with A z = u: one more solve with the same factors.
+     */
+    private double toggleChange(int s, int element, ProbeQuantity quantity, double probeValue) {
+        ComponentsController.SPSTToggleSwitch toggle = (ComponentsController.SPSTToggleSwitch) netlist.element(s);
+        double toggled = toggle.isClosed ? Netlist.OPEN_CONDUCTANCE : Netlist.CLOSED_SWITCH_CONDUCTANCE;
+        double delta = toggled - netlist.conductance(s);
+        int a = system.row(netlist.from(s));
+        int b = system.row(netlist.to(s));
+        double[] u = new double[system.size()];
+        if (a >= 0) u[a] += 1.0;
+        if (b >= 0) u[b] -= 1.0;
+        double[] z = lu.solve(u);
+        double denominator = 1 + delta * (entry(z, a) - entry(z, b));
+        double scale = delta * (entry(solution, a) - entry(solution, b)) / denominator;
+        double[] x = solution.clone();
+        for (int r = 0; r < x.length; r++) {
+            x[r] -= scale * z[r];
+        }
+        double conductance = s == element ? toggled
+                : netlist.kind(element) == Netlist.CONDUCTANCE ? netlist.conductance(element) : Double.NaN;
+        return probeValue(x, element, quantity, conductance) - probeValue;
+    }
+
+    private static double entry(double[] vector, int row) {
+        return row < 0 ? 0.0 : vector[row];
+    }
+
+    // Operating point the sensitivities are taken at
+    public double[] getSolution() {
+        return solution;
+    }
+
+    public MnaSystem getSystem() {
+        return system;
+    }
+}
@@ -0,0 +1,396 @@
+package controllers;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Series-parallel decomposition of a board with one voltage source driving resistive parts.
+ * Leaves are the parts, internal nodes combine their two children in series (resistances add)
+ * or in parallel (conductances add), and every node keeps its equivalent. Series chains and
+ * parallel bundles are balanced when the tree is built, so changing one part's value only
+ * recomputes the O(log n) equivalents on its path to the root. The current through any part
+ * is read back down the same path, and {@link #storeResults} writes every part in one pass.
+ */
+public class SeriesParallelTree {
+    private static final byte LEAF = 0;
+    private static final byte SERIES = 1;
+    private static final byte PARALLEL = 2;
+
+    private static final class Node {
+        final byte type;
+        final List<Node> children = new ArrayList<>();
+        Node parent;
+        Node left;
+        Node right;
+        // Orientation against the parent's, a leaf's own orientation is its start to its end
+        boolean flip;
+        double resistance;
+        double conductance;
+        ComponentsController.Drawable component;
+        // Ends while the tree is being built
+        int u;
+        int v;
+
+        Node(byte type, int u, int v) {
+            this.type = type;
+            this.u = u;
+            this.v = v;
+        }
+
+        void recompute() {
+            if (type == SERIES) {
+                resistance = left.resistance + right.resistance;
+                conductance = 1.0 / resistance;
+            } else if (type == PARALLEL) {
+                conductance = left.conductance + right.conductance;
+                resistance = 1.0 / conductance;
+            }
+        }
+    }
+
+    private final ComponentsController.Drawable[] board;
+    // Where every drawable's ends were, four coordinates each
+    private final double[] ends;
+    private final ComponentsController.Drawable source;
+    private final Node root;
+    private final Map<ComponentsController.Drawable, Node> leaves = new IdentityHashMap<>();
+    // Parts carrying no current: dangling ends and parts shorted by a wire
+    private final List<ComponentsController.Drawable> idle;
+    private double sourceVoltage;
+
+    private SeriesParallelTree(ComponentsController.Drawable[] board, ComponentsController.Drawable source, double sourceVoltage,
+                               Node root, List<ComponentsController.Drawable> idle) {
+        this.board = board;
+        this.ends = ends(board);
+        this.source = source;
+        this.sourceVoltage = sourceVoltage;
+        this.root = root;
+        this.idle = idle;
+    }
+
+    /**
+     * Tree of the board, or null when it is not one voltage source across a series-parallel
+     * network of resistive parts.
+     */
+    public static SeriesParallelTree build(Netlist netlist) {
+        int sourceElement = -1;
+        for (int i = 0; i < netlist.elementCount(); i++) {
+            byte kind = netlist.kind(i);
+            if (kind == Netlist.VOLTAGE_SOURCE && sourceElement < 0) {
+                sourceElement = i;
+            } else if (kind != Netlist.WIRE && (kind != Netlist.CONDUCTANCE || netlist.isLogicGate(i))) {
+                return null;
+            }
+        }
+        if (sourceElement < 0 || netlist.from(sourceElement) == netlist.to(sourceElement)) {
+            return null;
+        }
+        int a = netlist.from(sourceElement);
+        int b = netlist.to(sourceElement);
+
+        List<Node> all = new ArrayList<>();
+        List<List<Node>> incident = new ArrayList<>();
+        for (int net = 0; net < netlist.netCount(); net++) {
+            incident.add(new ArrayList<>());
+        }
+        List<ComponentsController.Drawable> idle = new ArrayList<>();
+        List<Node> leafNodes = new ArrayList<>();
+        for (int i = 0; i < netlist.elementCount(); i++) {
+            if (netlist.kind(i) != Netlist.CONDUCTANCE) continue;
+            if (netlist.from(i) == netlist.to(i)) {
+                idle.add(netlist.element(i));
+                continue;
+            }
+            Node leaf = new Node(LEAF, netlist.from(i), netlist.to(i));
+            leaf.component = netlist.element(i);
+            leaf.conductance = netlist.conductance(i);
+            leaf.resistance = 1.0 / leaf.conductance;
+            leafNodes.add(leaf);
+            all.add(leaf);
+            incident.get(leaf.u).add(leaf);
+            incident.get(leaf.v).add(leaf);
+        }
+
+        // Merge parallel bundles and series joints until nothing more combines
+        ArrayDeque<Integer> work = new ArrayDeque<>();
+        for (int net = 0; net < netlist.netCount(); net++) {
+            work.add(net);
+        }
+        Map<Node, Boolean> merged = new IdentityHashMap<>();
+        while (!work.isEmpty()) {
+            int net = work.poll();
+            List<Node> edges = incident.get(net);
+            edges.removeIf(merged::containsKey);
+            Map<Integer, Node> byOther = new HashMap<>();
+            for (Node edge : new ArrayList<>(edges)) {
+                int other = edge.u == net ? edge.v : edge.u;
+                Node bundle = byOther.get(other);
+                if (bundle == null) {
+                    byOther.put(other, edge);
+                    continue;
+                }
+                if (bundle.type != PARALLEL) {
+                    Node first = bundle;
+                    bundle = new Node(PARALLEL, first.u, first.v);
+                    absorb(bundle, first, false);
+                    replace(incident, first, bundle, merged);
+                    byOther.put(other, bundle);
+                }
+                absorb(bundle, edge, edge.u != bundle.u);
+                merged.put(edge, true);
+                edges.remove(edge);
+                incident.get(other).remove(edge);
+                work.add(other);
+            }
+            if (net == a || net == b) continue;
+            if (edges.size() == 1) {
+                // A dangling branch carries no current
+                Node dangling = edges.get(0);
+                collect(dangling, idle);
+                merged.put(dangling, true);
+                int other = dangling.u == net ? dangling.v : dangling.u;
+                incident.get(other).remove(dangling);
+                edges.clear();
+                work.add(other);
+            } else if (edges.size() == 2) {
+                Node first = edges.get(0);
+                Node second = edges.get(1);
+                int p = first.u == net ? first.v : first.u;
+                int q = second.u == net ? second.v : second.u;
+                Node chain = new Node(SERIES, p, q);
+                absorb(chain, first, first.u != p);
+                absorb(chain, second, second.u != net);
+                merged.put(first, true);
+                merged.put(second, true);
+                incident.get(p).remove(first);
+                incident.get(q).remove(second);
+                incident.get(p).add(chain);
+                incident.get(q).add(chain);
+                edges.clear();
+                work.add(p);
+                work.add(q);
+            }
+        }
+
+        List<Node> left = new ArrayList<>();
+        for (int net = 0; net < netlist.netCount(); net++) {
+            for (Node edge : incident.get(net)) {
+                if (!merged.containsKey(edge) && !left.contains(edge)) left.add(edge);
+            }
+        }
+        if (left.size() != 1 || !((left.get(0).u == a && left.get(0).v == b) || (left.get(0).u == b && left.get(0).v == a))) {
+            return null;
+        }
+        Node root = balance(left.get(0));
+        root.flip = root.u != a;
+        root.parent = null;
+
+        ComponentsController.Drawable[] board = new ComponentsController.Drawable[netlist.elementCount()];
+        for (int i = 0; i < board.length; i++) {
+            board[i] = netlist.element(i);
+        }
+        SeriesParallelTree tree = new SeriesParallelTree(board, netlist.element(sourceElement),
+                netlist.value(sourceElement), root, idle);
+        for (Node leaf : leafNodes) {
+            if (!idle.contains(leaf.component)) {
+                tree.leaves.put(leaf.component, leaf);
+            }
+        }
+        return tree;
+    }
+
+    // Adds child to a group being built, flattening a child of the same type into the group
+    private static void absorb(Node group, Node child, boolean flip) {
+        if (child.type == group.type) {
+            for (Node grandchild : child.children) {
+                grandchild.flip ^= flip;
+                group.children.add(grandchild);
+            }
+        } else {
+            child.flip = flip;
+            group.children.add(child);
+        }
+    }
+
+    private static void replace(List<List<Node>> incident, Node old, Node replacement, Map<Node, Boolean> merged) {
+        merged.put(old, true);
+        incident.get(old.u).set(incident.get(old.u).indexOf(old), replacement);
+        incident.get(old.v).set(incident.get(old.v).indexOf(old), replacement);
+    }
+
+    private static void collect(Node node, List<ComponentsController.Drawable> into) {
+        if (node.type == LEAF) {
+            into.add(node.component);
+        }
+        for (Node child : node.children) {
+            collect(child, into);
+        }
+    }
+
+    // Turns the flat groups into balanced binary nodes and works out every equivalent
+    private static Node balance(Node node) {
+        if (node.type == LEAF) {
+            return node;
+        }
+        List<Node> children = new ArrayList<>(node.children.size());
+        for (Node child : node.children) {
+            Node balanced = balance(child);
+            balanced.flip = child.flip;
+            children.add(balanced);
+        }
+        Node top = pair(node.type, children, 0, children.size());
+        top.u = node.u;
+        top.v = node.v;
+        return top;
+    }
+
+    private static Node pair(byte type, List<Node> children, int from, int to) {
+        if (to - from == 1) {
+            return children.get(from);
+        }
+        int mid = (from + to) >>> 1;
+        Node node = new Node(type, -1, -1);
+        node.left = pair(type, children, from, mid);
+        node.right = pair(type, children, mid, to);
+        node.left.parent = node;
+        node.right.parent = node;
+        node.recompute();
+        return node;
+    }
+
+    private static double[] ends(ComponentsController.Drawable[] drawables) {
+        double[] ends = new double[4 * drawables.length];
+        for (int i = 0; i < drawables.length; i++) {
+            ends[4 * i] = drawables[i].getXStart();
+            ends[4 * i + 1] = drawables[i].getYStart();
+            ends[4 * i + 2] = drawables[i].getXEnd();
+            ends[4 * i + 3] = drawables[i].getYEnd();
+        }
+        return ends;
+    }
+
+    // Same drawables in the same order and places as the board the tree was built from
+    public boolean matches(List<ComponentsController.Drawable> drawables) {
+        if (drawables.size() != board.length) return false;
+        for (int i = 0; i < board.length; i++) {
+            if (drawables.get(i) != board[i]) return false;
+        }
+        return Arrays.equals(ends, ends(board));
+    }
+
+    /**
+     * Picks up a new value of one part, recomputing only the equivalents on its path to the
+     * root. Returns false when the part is not a leaf of this tree or the source.
+     */
+    public boolean update(ComponentsController.Drawable component) {
+        if (component == source) {
+            sourceVoltage = Netlist.describe(component)[0];
+            return true;
+        }
+        Node leaf = leaves.get(component);
+        if (leaf == null) {
+            return false;
+        }
+        leaf.conductance = Netlist.describe(component)[1];
+        leaf.resistance = 1.0 / leaf.conductance;
+        for (Node node = leaf.parent; node != null; node = node.parent) {
+            node.recompute();
+        }
+        return true;
+    }
+
+    // Longest path from the root to a part
+    public int getDepth() {
+        int depth = 0;
+        for (Node leaf : leaves.values()) {
+            int d = 0;
+            for (Node node = leaf; node.parent != null; node = node.parent) {
+                d++;
+            }
+            depth = Math.max(depth, d);
+        }
+        return depth;
+    }
+
+    public double getEquivalentResistance() {
+        return root.resistance;
+    }
+
+    // Current delivered by the source
+    public double getSourceCurrent() {
+        return sourceVoltage / root.resistance;
+    }
+
+    // Current through a part from its start to its end, walking down from the root
+    public double current(ComponentsController.Drawable component) {
+        Node leaf = leaves.get(component);
+        if (leaf == null) {
+            if (idle.contains(component)) return 0.0;
+            throw new IllegalArgumentException("Component is not part of the series-parallel network");
+        }
+        List<Node> path = new ArrayList<>();
+        for (Node node = leaf; node != null; node = node.parent) {
+            path.add(node);
+        }
+        double current = getSourceCurrent();
+        Node parent = null;
+        for (int k = path.size() - 1; k >= 0; k--) {
+            current = childCurrent(parent, path.get(k), current);
+            parent = path.get(k);
+        }
+        return current;
+    }
+
+    public double voltage(ComponentsController.Drawable component) {
+        Node leaf = leaves.get(component);
+        return leaf == null ? 0.0 : current(component) * leaf.resistance;
+    }
+
+    // Current through child along its own orientation, given its parent's current along the parent's
+    private static double childCurrent(Node parent, Node child, double parentCurrent) {
+        double current = parent == null || parent.type == SERIES ? parentCurrent
+                : parentCurrent * parent.resistance * child.conductance;
+        return child.flip ? -current : current;
+    }
+
+    // Writes the voltage and current of every part, as the nodal analysis would
+    public void storeResults() {
+        store(root, childCurrent(null, root, getSourceCurrent()));
+        for (ComponentsController.Drawable component : idle) {
+            write(component, 0.0, 0.0);
+        }
+        if (source instanceof ComponentsController.ImageComponent) {
+            ((ComponentsController.ImageComponent) source).voltage = sourceVoltage;
+            ((ComponentsController.ImageComponent) source).current = getSourceCurrent();
+        }
+    }
+
+    private void store(Node node, double current) {
+        if (node.type == LEAF) {
+            write(node.component, current * node.resistance, current);
+            return;
+        }
+        store(node.left, childCurrent(node, node.left, current));
+        store(node.right, childCurrent(node, node.right, current));
+    }
+
+    private static void write(ComponentsController.Drawable drawable, double voltage, double current) {
+        if (!(drawable instanceof ComponentsController.ImageComponent)) {
+            return;
+        }
+        ComponentsController.ImageComponent component = (ComponentsController.ImageComponent) drawable;
+        if (component instanceof ComponentsController.Voltmeter) {
+            component.voltage = voltage;
+        } else if (component instanceof ComponentsController.Ammeter) {
+            component.current = current;
+        } else {
+            component.voltage = voltage;
+            component.current = current;
+        }
+    }
+}
@@ -21,13 +21,16 @@ import javafx.scene.input.MouseEvent;
 import javafx.scene.layout.*;
 import javafx.scene.paint.Color;
 import javafx.scene.shape.Circle;
+import javafx.stage.FileChooser;
 import javafx.stage.Stage;
 import app.saveLoadExtender;
 
+import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.PrintStream;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.*;
 import javafx.scene.chart.LineChart;
@@ -112,6 +115,27 @@ public class SimulationController {
     private double currentTime = 0;
     private Map<ComponentsController.ImageComponent, List<XYChart.Data<Number, Number>>> voltageHistory = new HashMap<>();
     private Map<ComponentsController.ImageComponent, List<XYChart.Data<Number, Number>>> currentHistory = new HashMap<>();
+    // Time-domain simulation of capacitors and inductors, null when the board has none
+    private TransientSimulator transientSimulator;
+    // Set when the board also has logic gates, transientSimulator is then its analog side
+    private MixedSignalSimulator mixedSignalSimulator;
+    // Series-parallel tree of the board as last analyzed, null when it is not a single-source resistive network
+    private SeriesParallelTree seriesParallelTree;
+    private static final double TRANSIENT_MAX_STEP = 1e-3; // Longest adaptive step in seconds
+    private static final int SAMPLES_PER_UPDATE = 5; // Chart points added per graph update
+    private static final double STEP_REPORT_INTERVAL = 5.0; // Simulated seconds between step reports
+    private double lastStepReport = 0;
+    private static final double AC_SWEEP_START = 1.0; // Hz
+    private static final double AC_SWEEP_STOP = 1e6; // Hz
+    private static final int AC_SWEEP_POINTS = 400;
+    // DC solver picked in the Settings menu, null for the direct solve
+    private ConjugateGradientSolver.Preconditioner iterativePreconditioner;
+    // Relative residual conjugate gradients stop at, set from the Settings menu
+    private double iterativeTolerance = 1e-10;
+    // Single-precision factors refined to double accuracy instead of the double factorization
+    private boolean mixedPrecision;
+    private static final int MONTE_CARLO_SAMPLES = 2000;
+    private static final double MONTE_CARLO_LIMIT = 0.1; // Probe must stay within 10% of nominal
 
     // Initialization
     @FXML
@@ -924,6 +948,7 @@ public class SimulationController {
     @FXML
     private void handleVerifyCircuit(ActionEvent event) {
         verifyCircuit();
+        reportIslands();
         temporaryAnalysis();
         startGraphUpdates(); // Start the graph updates when circuit is verified
     }
@@ -931,6 +956,8 @@ public class SimulationController {
     @FXML
     private void handleReset(ActionEvent event) {
         stopGraphUpdates(); // Stop the graph updates when circuit is reset
+        transientSimulator = null;
+        mixedSignalSimulator = null;
         currentTime = 0;
         voltageHistory.clear();
         currentHistory.clear();
@@ -1018,6 +1045,20 @@ public class SimulationController {
 
     }
 
+    // The traversal above follows the first supply only, the netlist sees every separate circuit
+    private void reportIslands() {
+        IslandSolver islands = new IslandSolver(Netlist.compile(drawables));
+        if (islands.islandCount() < 2) {
+            return;
+        }
+        int unpowered = 0;
+        for (IslandSolver.Island island : islands.getIslands()) {
+            if (!island.hasSource()) unpowered++;
+        }
+        addFeedbackMessage(islands.islandCount() + " separate circuits found, each is solved on its own"
+                + (unpowered > 0 ? " (" + unpowered + " without a power supply)" : ""), unpowered > 0 ? "error" : "info");
+    }
+
     private boolean traverseCircuit(double startX, double startY, double initialX, double initialY, ComponentsController.Drawable currentDraw, Set<ComponentsController.Drawable> visited) {
         // If we've reached the initial point and visited at least one component, we've found a closed circuit
         if (positiveConnected && negativeConnected) {
@@ -1482,6 +1523,293 @@ public class SimulationController {
             addFeedbackMessage("Graph minimized", "info");
         }
     }
+    @FXML private void handleAcSweep(ActionEvent event) {
+        if (selectedComponent == null) {
+            addFeedbackMessage("Select the component to probe before running an AC sweep", "error");
+            return;
+        }
+        Netlist netlist = Netlist.compile(drawables);
+        int output = netlist.indexOf(selectedComponent);
+        // The first source on the board is the AC input
+        int source = -1;
+        for (int i = 0; i < netlist.elementCount() && source < 0; i++) {
+            if (netlist.kind(i) == Netlist.VOLTAGE_SOURCE || netlist.kind(i) == Netlist.CURRENT_SOURCE) {
+                source = i;
+            }
+        }
+        if (output < 0 || source < 0) {
+            addFeedbackMessage("AC sweep needs a source and a probed component on the board", "error");
+            return;
+        }
+        try {
+            AcSweep.Response response = new AcSweep(netlist).sweep(
+                    AcSweep.logFrequencies(AC_SWEEP_START, AC_SWEEP_STOP, AC_SWEEP_POINTS), source, output);
+            showBodePlot(selectedComponent, response);
+            addFeedbackMessage("AC sweep of " + selectedComponent.componentType + " done, " + AC_SWEEP_POINTS + " points", "success");
+        } catch (ArithmeticException e) {
+            addFeedbackMessage("AC sweep failed: " + e.getMessage(), "error");
+        }
+    }
+    @FXML private void handleDcSweep(ActionEvent event) {
+        if (selectedComponent == null) {
+            addFeedbackMessage("Select the component to sweep before running a DC sweep", "error");
+            return;
+        }
+        TextInputDialog dialog = new TextInputDialog("voltage 0 24 0.1");
+        dialog.setTitle("DC Sweep");
+        dialog.setHeaderText("Sweep a field of " + selectedComponent.componentType);
+        dialog.setContentText("Field, start, stop and step:");
+        Optional<String> input = dialog.showAndWait();
+        if (input.isEmpty()) {
+            return;
+        }
+        String[] parts = input.get().trim().split("\\s+");
+        try {
+            if (parts.length != 4) {
+                throw new IllegalArgumentException("Expected a field name, start, stop and step");
+            }
+            double start = Double.parseDouble(parts[1]);
+            double stop = Double.parseDouble(parts[2]);
+            DcSweep.Parameter parameter = new DcSweep.Parameter(selectedComponent, parts[0], start, stop,
+                    Double.parseDouble(parts[3]));
+            // Every other part on the board is probed
+            List<ComponentsController.ImageComponent> probes = new ArrayList<>();
+            for (ComponentsController.Drawable drawable : drawables) {
+                if (drawable instanceof ComponentsController.ImageComponent component && component != selectedComponent) {
+                    probes.add(component);
+                }
+            }
+            DcSweep.Result result = new DcSweep(Netlist.compile(drawables)).run(parameter, null,
+                    probes.toArray(new ComponentsController.ImageComponent[0]));
+            showDcSweepPlot(parameter, probes, result);
+            addFeedbackMessage(String.format("DC sweep of %s: %d points, %d failed",
+                    parameter.getName(), result.size(), result.getFailedPoints()), "success");
+
+            // The table is only written where the user asks for it
+            FileChooser chooser = new FileChooser();
+            chooser.setTitle("Save DC Sweep Table");
+            chooser.setInitialFileName("dcSweep.txt");
+            chooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("Text files", "*.txt"));
+            File table = chooser.showSaveDialog(graphContainer.getScene().getWindow());
+            if (table != null) {
+                Files.writeString(table.toPath(), result.toTable());
+                addFeedbackMessage("DC sweep table saved to " + table, "info");
+            }
+        } catch (IllegalArgumentException e) {
+            addFeedbackMessage("DC sweep: " + e.getMessage(), "error");
+        } catch (IOException e) {
+            addFeedbackMessage("DC sweep table could not be written: " + e.getMessage(), "error");
+        }
+    }
+
+    // Current through every probe against the swept value
+    private void showDcSweepPlot(DcSweep.Parameter parameter, List<ComponentsController.ImageComponent> probes,
+                                 DcSweep.Result result) {
+        String title = parameter.getName() + " - DC Sweep";
+        graphContainer.getChildren().removeIf(node -> node instanceof Button button
+                && button.getGraphic() instanceof VBox vbox && !vbox.getChildren().isEmpty()
+                && vbox.getChildren().get(0) instanceof Label label && label.getText().startsWith(title));
+
+        List<XYChart.Series<Number, Number>> series = new ArrayList<>();
+        for (int p = 0; p < probes.size(); p++) {
+            XYChart.Series<Number, Number> probeSeries = new XYChart.Series<>();
+            probeSeries.setName(probes.get(p).componentType);
+            for (int k = 0; k < result.size(); k++) {
+                if (!Double.isNaN(result.current(p, k))) {
+                    probeSeries.getData().add(new XYChart.Data<>(result.first(k), result.current(p, k)));
+                }
+            }
+            series.add(probeSeries);
+        }
+
+        Button graphButton = new Button();
+        graphButton.setPrefHeight(264.0);
+        graphButton.setPrefWidth(437.0);
+        graphButton.getStyleClass().add("graph-button");
+        VBox graphVBox = new VBox();
+        graphVBox.setPrefHeight(270.0);
+        graphVBox.setPrefWidth(419.0);
+        graphVBox.getStyleClass().add("graph-vbox");
+        double first = result.first(0);
+        double last = result.first(result.size() - 1);
+        graphVBox.getChildren().addAll(analysisLabel(title),
+                analysisChart(parameter.getName(), Math.min(first, last), Math.max(first, last), "Current (A)", series));
+        graphButton.setGraphic(graphVBox);
+        graphContainer.getChildren().add(graphButton);
+    }
+    @FXML private void handleMonteCarlo(ActionEvent event) {
+        if (selectedComponent == null) {
+            addFeedbackMessage("Select the component to probe before running a Monte Carlo analysis", "error");
+            return;
+        }
+        MonteCarloAnalysis analysis = new MonteCarloAnalysis(Netlist.compile(drawables));
+        // Common part tolerances: 5% resistors, 20% capacitors and inductors
+        for (ComponentsController.Drawable drawable : drawables) {
+            if (drawable instanceof ComponentsController.ResistorIEEE || drawable instanceof ComponentsController.PotentiometerIEEE) {
+                analysis.setTolerance((ComponentsController.ImageComponent) drawable, 0.05, MonteCarloAnalysis.Distribution.UNIFORM);
+            } else if (drawable instanceof ComponentsController.Capacitor || drawable instanceof ComponentsController.Inductor) {
+                analysis.setTolerance((ComponentsController.ImageComponent) drawable, 0.2, MonteCarloAnalysis.Distribution.GAUSSIAN);
+            }
+        }
+        try {
+            double nominal = analysis.nominal(selectedComponent, ProbeQuantity.VOLTAGE);
+            double margin = Math.max(Math.abs(nominal) * MONTE_CARLO_LIMIT, 1e-6);
+            analysis.addProbe(selectedComponent, ProbeQuantity.VOLTAGE, nominal - margin, nominal + margin);
+            MonteCarloAnalysis.Summary summary = analysis.run(MONTE_CARLO_SAMPLES, 1L);
+            MonteCarloAnalysis.Histogram histogram = summary.histogram(0);
+            showHistogram(selectedComponent.componentType + " - Monte Carlo", histogram);
+            addFeedbackMessage(String.format("Monte Carlo of %s voltage: yield %.1f%% within ±%.0f%%, mean %.4f V, sigma %.4f V",
+                    selectedComponent.componentType, 100 * summary.getYield(), 100 * MONTE_CARLO_LIMIT,
+                    histogram.getMean(), histogram.getStandardDeviation()), "success");
+        } catch (ArithmeticException e) {
+            addFeedbackMessage("Monte Carlo failed: " + e.getMessage(), "error");
+        }
+    }
+
+    // Sample count per bin of a Monte Carlo histogram
+    private void showHistogram(String title, MonteCarloAnalysis.Histogram histogram) {
+        graphContainer.getChildren().removeIf(node -> node instanceof Button button
+                && button.getGraphic() instanceof VBox vbox && !vbox.getChildren().isEmpty()
+                && vbox.getChildren().get(0) instanceof Label label && label.getText().startsWith(title));
+
+        XYChart.Series<Number, Number> series = new XYChart.Series<>();
+        series.setName("Samples");
+        for (int b = 0; b < histogram.binCount(); b++) {
+            series.getData().add(new XYChart.Data<>(histogram.binCentre(b), histogram.bin(b)));
+        }
+
+        Button graphButton = new Button();
+        graphButton.setPrefHeight(264.0);
+        graphButton.setPrefWidth(437.0);
+        graphButton.getStyleClass().add("graph-button");
+        VBox graphVBox = new VBox();
+        graphVBox.setPrefHeight(270.0);
+        graphVBox.setPrefWidth(419.0);
+        graphVBox.getStyleClass().add("graph-vbox");
+        graphVBox.getChildren().addAll(analysisLabel(title), analysisChart("Voltage (V)",
+                histogram.binCentre(0), histogram.binCentre(histogram.binCount() - 1), "Samples", List.of(series)));
+        graphButton.setGraphic(graphVBox);
+        graphContainer.getChildren().add(graphButton);
+    }
+    // Sensitivity of the selected component's voltage to every part, shown in each part's parameters
+    @FXML private void handleSensitivity(ActionEvent event) {
+        if (selectedComponent == null) {
+            addFeedbackMessage("Select the component to probe before computing sensitivities", "error");
+            return;
+        }
+        Netlist netlist = Netlist.compile(drawables);
+        SensitivityAnalysis.Result result;
+        try {
+            result = new SensitivityAnalysis(netlist).analyze(selectedComponent, ProbeQuantity.VOLTAGE);
+        } catch (ArithmeticException e) {
+            addFeedbackMessage("Sensitivity analysis failed: " + e.getMessage(), "error");
+            return;
+        }
+        for (int i = 0; i < netlist.elementCount(); i++) {
+            if (!(netlist.element(i) instanceof ComponentsController.ImageComponent component)
+                    || component.parameterControls == null) {
+                continue;
+            }
+            VBox controls = component.parameterControls;
+            controls.getChildren().removeIf(node -> node.getProperties().containsKey("sensitivityLabel"));
+            if (!result.has(i)) {
+                continue;
+            }
+            String text = SensitivityAnalysis.TOGGLE.equals(result.parameter(i))
+                    ? String.format("Toggling changes %s by %+.4g V", selectedComponent.componentType, result.sensitivity(i))
+                    : String.format("d%s/d%s = %.4g (%+.3f %%/%%)", selectedComponent.componentType,
+                            result.parameter(i), result.sensitivity(i), result.relative(i));
+            Label label = new Label(text);
+            label.setStyle("-fx-text-fill: #CCCCCC;");
+            label.setWrapText(true);
+            label.getProperties().put("sensitivityLabel", Boolean.TRUE);
+            controls.getChildren().add(label);
+        }
+        addFeedbackMessage(String.format("Sensitivities of %s voltage (%.4f V) shown in the parameters pane",
+                selectedComponent.componentType, result.getProbeValue()), "success");
+    }
+    @FXML private void handleDirectSolver(ActionEvent event) {
+        iterativePreconditioner = null;
+        mixedPrecision = false;
+        addFeedbackMessage("DC operating point solved by sparse LU factorization", "info");
+        if (!drawables.isEmpty()) {
+            updateCircuitAnalysis();
+        }
+    }
+    @FXML private void handleIterativeSolver(ActionEvent event) {
+        pickIterativeSolver(ConjugateGradientSolver.Preconditioner.INCOMPLETE_CHOLESKY);
+    }
+    @FXML private void handleJacobiSolver(ActionEvent event) {
+        pickIterativeSolver(ConjugateGradientSolver.Preconditioner.JACOBI);
+    }
+    private void pickIterativeSolver(ConjugateGradientSolver.Preconditioner preconditioner) {
+        iterativePreconditioner = preconditioner;
+        mixedPrecision = false;
+        addFeedbackMessage("DC operating point solved by conjugate gradients (" + preconditioner
+                + ") where the board allows it", "info");
+        if (!drawables.isEmpty()) {
+            updateCircuitAnalysis();
+        }
+    }
+    @FXML private void handleSolverTolerance(ActionEvent event) {
+        TextInputDialog dialog = new TextInputDialog(String.valueOf(iterativeTolerance));
+        dialog.setTitle("Solver Tolerance");
+        dialog.setHeaderText("Conjugate gradients stop once the residual drops below this fraction of the sources");
+        dialog.setContentText("Relative tolerance:");
+        Optional<String> input = dialog.showAndWait();
+        if (input.isEmpty()) {
+            return;
+        }
+        double tolerance;
+        try {
+            tolerance = Double.parseDouble(input.get().trim());
+        } catch (NumberFormatException e) {
+            tolerance = Double.NaN;
+        }
+        if (!(tolerance > 0 && tolerance < 1)) {
+            addFeedbackMessage("Solver tolerance must be a number between 0 and 1", "error");
+            return;
+        }
+        iterativeTolerance = tolerance;
+        addFeedbackMessage(String.format("Conjugate gradient tolerance set to %.1e", tolerance), "info");
+        if (iterativePreconditioner != null && !drawables.isEmpty()) {
+            updateCircuitAnalysis();
+        }
+    }
+    @FXML private void handleMixedPrecisionSolver(ActionEvent event) {
+        iterativePreconditioner = null;
+        mixedPrecision = true;
+        addFeedbackMessage("DC operating point solved with single-precision factors refined to double accuracy", "info");
+        if (!drawables.isEmpty()) {
+            updateCircuitAnalysis();
+        }
+    }
+
+    // Show how the picked DC solver did in the feedback pane, as the transient step counts are
+    private void reportDcSolver() {
+        if (mixedPrecision) {
+            MixedPrecisionSolver solver = circuitAnalyzer.getMixedPrecisionSolver();
+            if (solver == null) {
+                addFeedbackMessage("Mixed precision could not take this board, solved directly instead", "info");
+            } else {
+                addFeedbackMessage(String.format("Mixed precision: %d refinement steps, condition estimate %.3g%s",
+                        solver.getRefinements(), solver.getConditionEstimate(),
+                        solver.skippedSingle() ? ", solved in double as before"
+                                : solver.fellBack() ? ", refactorized in double" : ""), "info");
+            }
+        }
+        if (iterativePreconditioner == null) {
+            return;
+        }
+        IterativeDcSolver solver = circuitAnalyzer.getIterativeSolver();
+        if (solver == null) {
+            addFeedbackMessage("Conjugate gradients need a resistive board with grounded sources, solved directly instead", "info");
+            return;
+        }
+        addFeedbackMessage(String.format("Conjugate gradients (%s): %d iterations, relative residual %.2e%s",
+                iterativePreconditioner, solver.getIterations(), solver.getRelativeResidual(),
+                solver.wasWarmStarted() ? ", warm start" : ""), "info");
+    }
     @FXML public void handleOpenSettings(ActionEvent event) {
         settingsOverlay.setVisible(true);
     }
@@ -1504,12 +1832,64 @@ public class SimulationController {
 
     public void updateCircuitAnalysis() {
         circuitAnalyzer = new CircuitAnalyzer(drawables);
+        circuitAnalyzer.useIterativeSolver(iterativePreconditioner, iterativeTolerance);
+        circuitAnalyzer.useMixedPrecision(mixedPrecision);
         circuitAnalyzer.analyzeCircuit();
+        reportDcSolver();
+        seriesParallelTree = circuitAnalyzer.seriesParallelTree();
+
+        // Keep a running transient simulation going with the edited values
+        if (transientSimulator != null) {
+            Netlist netlist = Netlist.compile(drawables);
+            TransientSimulator.Integration integration = transientSimulator.getIntegration();
+            if (!netlist.hasReactiveElements()) {
+                transientSimulator = null;
+                mixedSignalSimulator = null;
+            } else if (netlist.hasLogicGates()) {
+                mixedSignalSimulator = new MixedSignalSimulator(netlist, integration, mixedSignalSimulator);
+                transientSimulator = mixedSignalSimulator.getAnalog();
+            } else {
+                mixedSignalSimulator = null;
+                transientSimulator = new TransientSimulator(netlist, integration, transientSimulator);
+            }
+            if (transientSimulator != null) {
+                reportTransientSteps();
+            }
+        }
 
         // Print debug information about the circuit analysis
         circuitAnalyzer.debugPrintState();
 
         // Update all meter measurements and display them in feedback
+        reportMeters(true);
+    }
+
+    // Picks up one edited value, only walking the series-parallel tree when the wiring is unchanged
+    public void updateComponentValue(ComponentsController.ImageComponent component) {
+        if (transientSimulator == null && seriesParallelTree != null && seriesParallelTree.matches(drawables)
+                && seriesParallelTree.update(component)) {
+            seriesParallelTree.storeResults();
+            circuitAnalyzer.updateValue(component);
+            // A Thevenin solve per voltmeter would cost more than the tree update saved
+            reportMeters(false);
+            return;
+        }
+        updateCircuitAnalysis();
+    }
+
+    // Thevenin equivalent the voltmeter's probes see, empty when it cannot be worked out
+    private String sourceBehind(ComponentsController.Voltmeter voltmeter) {
+        try {
+            TheveninEquivalent equivalent = circuitAnalyzer.theveninAcross(voltmeter);
+            return String.format(" (source %.2f V behind %.2f Ω)", equivalent.getVoltage(), equivalent.getResistance());
+        } catch (ArithmeticException | IllegalArgumentException e) {
+            return "";
+        }
+    }
+
+    // Points every meter at the current analyzer and shows its reading in the feedback pane,
+    // with the source behind each voltmeter when withSource is set
+    private void reportMeters(boolean withSource) {
         for (ComponentsController.Drawable drawable : drawables) {
             if (drawable instanceof ComponentsController.ImageComponent) {
                 ComponentsController.ImageComponent component = (ComponentsController.ImageComponent) drawable;
@@ -1518,11 +1898,12 @@ public class SimulationController {
                     voltmeter.setAnalyzer(circuitAnalyzer);
                     // Find the component being measured
                     ComponentsController.ImageComponent measuredComponent = circuitAnalyzer.findMeasuredComponent(voltmeter);
+                    String reading = String.format("%.2f V", voltmeter.getVoltage())
+                            + (withSource ? sourceBehind(voltmeter) : "");
                     if (measuredComponent != null) {
-                        addFeedbackMessage("Voltmeter measuring " + measuredComponent.componentType + ": " +
-                                String.format("%.2f V", voltmeter.getVoltage()), "info");
+                        addFeedbackMessage("Voltmeter measuring " + measuredComponent.componentType + ": " + reading, "info");
                     } else {
-                        addFeedbackMessage("Voltmeter: " + String.format("%.2f V", voltmeter.getVoltage()), "info");
+                        addFeedbackMessage("Voltmeter: " + reading, "info");
                     }
                 } else if (component instanceof ComponentsController.Ammeter) {
                     ComponentsController.Ammeter ammeter = (ComponentsController.Ammeter) component;
@@ -1537,24 +1918,6 @@ public class SimulationController {
         }
     }
 
-    private void displayMeterMeasurements() {
-        for (ComponentsController.Drawable drawable : drawables) {
-            if (drawable instanceof ComponentsController.ImageComponent) {
-                ComponentsController.ImageComponent component = (ComponentsController.ImageComponent) drawable;
-                if (component instanceof ComponentsController.Voltmeter) {
-                    ComponentsController.Voltmeter voltmeter = (ComponentsController.Voltmeter) component;
-                    addFeedbackMessage("Voltmeter: " + String.format("%.2f V", voltmeter.getVoltage()), "info");
-                } else if (component instanceof ComponentsController.Ammeter) {
-                    ComponentsController.Ammeter ammeter = (ComponentsController.Ammeter) component;
-                    addFeedbackMessage("Ammeter: " + String.format("%.2f A", ammeter.getCurrent()), "info");
-                } else if (component instanceof ComponentsController.Ohmmeter) {
-                    ComponentsController.Ohmmeter ohmmeter = (ComponentsController.Ohmmeter) component;
-                    addFeedbackMessage("Ohmmeter: " + String.format("%.2f Ω", ohmmeter.getResistance()), "info");
-                }
-            }
-        }
-    }
-
     private void addZoomFunctionality() {
         builder.setOnScroll(event -> {
             if (event.isControlDown()) {
@@ -1897,6 +2260,85 @@ public class SimulationController {
         graphContainer.getChildren().add(graphButton);
     }
 
+    // Bode magnitude and phase of a sweep, replacing an earlier plot of the same component
+    private void showBodePlot(ComponentsController.ImageComponent component, AcSweep.Response response) {
+        String title = component.componentType + " - Bode";
+        graphContainer.getChildren().removeIf(node -> node instanceof Button button
+                && button.getGraphic() instanceof VBox vbox && !vbox.getChildren().isEmpty()
+                && vbox.getChildren().get(0) instanceof Label label && label.getText().startsWith(title));
+
+        Button graphButton = new Button();
+        graphButton.setPrefHeight(500.0);
+        graphButton.setPrefWidth(437.0);
+        graphButton.getStyleClass().add("graph-button");
+
+        VBox graphVBox = new VBox();
+        graphVBox.setPrefHeight(490.0);
+        graphVBox.setPrefWidth(419.0);
+        graphVBox.getStyleClass().add("graph-vbox");
+
+        XYChart.Series<Number, Number> magnitudeSeries = new XYChart.Series<>();
+        magnitudeSeries.setName("Magnitude");
+        XYChart.Series<Number, Number> phaseSeries = new XYChart.Series<>();
+        phaseSeries.setName("Phase");
+        double[] phase = response.phaseDegrees();
+        for (int k = 0; k < response.size(); k++) {
+            double decade = Math.log10(response.frequency(k));
+            magnitudeSeries.getData().add(new XYChart.Data<>(decade, response.magnitudeDb(k)));
+            phaseSeries.getData().add(new XYChart.Data<>(decade, phase[k]));
+        }
+
+        // The frequency axis is in decades, NumberAxis has no log scale
+        double low = Math.log10(AC_SWEEP_START);
+        double high = Math.log10(AC_SWEEP_STOP);
+        graphVBox.getChildren().addAll(
+                analysisLabel(title + " Magnitude"), analysisChart("Frequency (log10 Hz)", low, high, "Gain (dB)", List.of(magnitudeSeries)),
+                analysisLabel(title + " Phase"), analysisChart("Frequency (log10 Hz)", low, high, "Phase (deg)", List.of(phaseSeries)));
+        graphButton.setGraphic(graphVBox);
+        graphContainer.getChildren().add(graphButton);
+    }
+
+    private Label analysisLabel(String text) {
+        Label label = new Label(text);
+        label.setAlignment(Pos.CENTER);
+        label.setPrefHeight(17.0);
+        label.setPrefWidth(510.0);
+        label.getStyleClass().add("graph-label");
+        return label;
+    }
+
+    // Chart of analysis results over a fixed x range
+    private LineChart<Number, Number> analysisChart(String xLabel, double lower, double upper, String yLabel,
+                                                    List<XYChart.Series<Number, Number>> series) {
+        NumberAxis xAxis = new NumberAxis();
+        NumberAxis yAxis = new NumberAxis();
+        xAxis.setLabel(xLabel);
+        yAxis.setLabel(yLabel);
+        xAxis.setAutoRanging(false);
+        xAxis.setLowerBound(lower);
+        xAxis.setUpperBound(upper);
+        xAxis.setTickUnit(niceTickUnit(upper - lower));
+
+        LineChart<Number, Number> chart = new LineChart<>(xAxis, yAxis);
+        chart.setPrefHeight(200.0);
+        chart.setPrefWidth(462.0);
+        chart.getStyleClass().add("graph-chart");
+        chart.setAnimated(false);
+        chart.setCreateSymbols(false);
+        chart.getData().addAll(series);
+        return chart;
+    }
+
+    // 1, 2 or 5 times a power of ten, giving about ten ticks over the range
+    private static double niceTickUnit(double range) {
+        if (!(range > 0)) {
+            return 1.0;
+        }
+        double magnitude = Math.pow(10, Math.floor(Math.log10(range / 10)));
+        double unit = range / 10 / magnitude;
+        return magnitude * (unit < 1.5 ? 1 : unit < 3.5 ? 2 : unit < 7.5 ? 5 : 10);
+    }
+
     private void removeGraphButton(ComponentsController.ImageComponent component) {
         Iterator<Node> iterator = graphContainer.getChildren().iterator();
         while (iterator.hasNext()) {
@@ -1917,21 +2359,74 @@ public class SimulationController {
         if (graphUpdateTimer != null) {
             graphUpdateTimer.cancel();
         }
+        // Capacitors and inductors get a time-domain simulation, everything else keeps its DC value
+        Netlist netlist = Netlist.compile(drawables);
+        // Boards that also have logic gates co-simulate the gates with their propagation delays
+        mixedSignalSimulator = netlist.hasReactiveElements() && netlist.hasLogicGates()
+                ? new MixedSignalSimulator(netlist, TransientSimulator.Integration.TRAPEZOIDAL)
+                : null;
+        if (mixedSignalSimulator != null) {
+            transientSimulator = mixedSignalSimulator.getAnalog();
+        } else {
+            transientSimulator = netlist.hasReactiveElements()
+                    ? new TransientSimulator(netlist, TransientSimulator.Integration.TRAPEZOIDAL)
+                    : null;
+        }
+        if (transientSimulator != null) {
+            transientSimulator.setStepLimits(1e-7, TRANSIENT_MAX_STEP);
+        }
+        lastStepReport = 0;
         graphUpdateTimer = new Timer();
         graphUpdateTimer.scheduleAtFixedRate(new TimerTask() {
             @Override
             public void run() {
                 Platform.runLater(() -> {
-                    currentTime += UPDATE_INTERVAL / 1000.0; // Convert to seconds
+                    double interval = UPDATE_INTERVAL / 1000.0; // Convert to seconds
                     // Only update graphs if the circuit is verified
-                    if (positiveConnected && negativeConnected) {
-                        updateAllGraphs();
+                    if (transientSimulator != null && positiveConnected && negativeConnected) {
+                        streamTransient(interval);
+                    } else {
+                        currentTime += interval;
+                        if (positiveConnected && negativeConnected) {
+                            updateAllGraphs();
+                        }
                     }
                 });
             }
         }, 0, UPDATE_INTERVAL);
     }
 
+    // Simulate the next interval and add a few points of it to the charts
+    private void streamTransient(double interval) {
+        double sample = interval / SAMPLES_PER_UPDATE;
+        for (int k = 0; k < SAMPLES_PER_UPDATE; k++) {
+            if (mixedSignalSimulator != null) {
+                mixedSignalSimulator.advance(sample);
+            } else {
+                transientSimulator.advanceAdaptive(sample);
+            }
+            transientSimulator.storeResults(null, null);
+            currentTime += sample;
+            updateAllGraphs();
+        }
+        if (transientSimulator.getTime() - lastStepReport >= STEP_REPORT_INTERVAL) {
+            reportTransientSteps();
+        }
+    }
+
+    // Show how hard the adaptive step control is working in the feedback pane
+    private void reportTransientSteps() {
+        lastStepReport = transientSimulator.getTime();
+        String message = String.format("Transient t = %.2f s: %d steps accepted, %d rejected, %d breakpoints",
+                transientSimulator.getTime(), transientSimulator.getStepCount(),
+                transientSimulator.getRejectedSteps(), transientSimulator.getBreakpointsHit());
+        if (mixedSignalSimulator != null) {
+            message += String.format(", %d threshold crossings, %d gate transitions",
+                    mixedSignalSimulator.getCrossings(), mixedSignalSimulator.getGateTransitions());
+        }
+        addFeedbackMessage(message, "info");
+    }
+
     private void stopGraphUpdates() {
         if (graphUpdateTimer != null) {
             graphUpdateTimer.cancel();
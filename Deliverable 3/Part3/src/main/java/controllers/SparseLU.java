@@ -0,0 +1,504 @@
+package controllers;
+
+import java.util.Arrays;
+
+/**
+ * Left-looking sparse LU factorization (Gilbert-Peierls) with threshold partial pivoting,
+ * so that P * A * Q = L * U. Each column of L is found by a sparse triangular solve whose
+ * nonzero pattern comes from a depth-first search, keeping the work proportional to the
+ * arithmetic actually performed instead of n^3.
+ *
+ * The column ordering and elimination tree live in a {@link Symbolic} analysis that only
+ * depends on the sparsity pattern, with the columns in a fill-reducing {@link ColumnOrdering}
+ * so it is computed once per topology. Once a matrix has been factorized, {@link #refactor}
+ * recomputes the numbers for a matrix with the same pattern, reusing the pivot sequence
+ * and the fill pattern of L and U.
+ */
+public class SparseLU {
+    // Prefer the diagonal as pivot as long as it is within this factor of the column maximum
+    private static final double PIVOT_TOLERANCE = 0.1;
+    // A reused pivot smaller than this fraction of its column means the old pivot order went bad
+    private static final double REFACTOR_PIVOT_TOLERANCE = 1e-3;
+
+    /**
+     * Pattern-only analysis of a matrix: the column ordering, the elimination tree of the
+     * symmetrized pattern under that ordering, and the fill it predicts for L.
+     */
+    public static class Symbolic {
+        final int n;
+        // Column k of the factorization is column q[k] of A
+        final int[] q;
+        final int[] parent;
+        final int estimatedFill;
+
+        private Symbolic(int n, int[] q, int[] parent, int estimatedFill) {
+            this.n = n;
+            this.q = q;
+            this.parent = parent;
+            this.estimatedFill = estimatedFill;
+        }
+
+        public int[] getOrdering() {
+            return q.clone();
+        }
+
+        public int[] getEliminationTree() {
+            return parent.clone();
+        }
+
+        public int getEstimatedFill() {
+            return estimatedFill;
+        }
+    }
+
+    private final int n;
+    private final Symbolic symbolic;
+    // L is unit lower triangular with the diagonal stored first in each column
+    private int[] lColPtr;
+    private int[] lRowIdx;
+    private double[] lValues;
+    // U is upper triangular with the diagonal stored last in each column
+    private int[] uColPtr;
+    private int[] uRowIdx;
+    private double[] uValues;
+    // Row i of A becomes row pinv[i] of P * A
+    private int[] pinv;
+    // Single-precision factors, in place of lValues and uValues after factorSingle
+    private float[] lSingle;
+    private float[] uSingle;
+
+    private SparseLU(Symbolic symbolic) {
+        this.n = symbolic.n;
+        this.symbolic = symbolic;
+    }
+
+    public static SparseLU factor(SparseMatrix a) {
+        return factor(a, analyze(a));
+    }
+
+    public static SparseLU factor(SparseMatrix a, Symbolic symbolic) {
+        if (symbolic.n != a.n) {
+            throw new IllegalArgumentException("Symbolic analysis does not match the matrix size");
+        }
+        SparseLU lu = new SparseLU(symbolic);
+        lu.factorize(a);
+        return lu;
+    }
+
+    /**
+     * Factorization of A rounded to single precision, with L and U kept as floats so that a
+     * solve streams half the bytes. Solves are then only as accurate as single precision allows,
+     * {@link MixedPrecisionSolver} refines them back to double accuracy.
+     */
+    public static SparseLU factorSingle(SparseMatrix a, Symbolic symbolic) {
+        double[] rounded = new double[a.values.length];
+        for (int p = 0; p < rounded.length; p++) {
+            rounded[p] = (float) a.values[p];
+        }
+        SparseLU lu = factor(a.withValues(rounded), symbolic);
+        lu.lSingle = toSingle(lu.lValues);
+        lu.uSingle = toSingle(lu.uValues);
+        lu.lValues = null;
+        lu.uValues = null;
+        return lu;
+    }
+
+    private static float[] toSingle(double[] values) {
+        float[] single = new float[values.length];
+        for (int p = 0; p < values.length; p++) {
+            single[p] = (float) values[p];
+        }
+        return single;
+    }
+
+    public boolean isSinglePrecision() {
+        return lSingle != null;
+    }
+
+    // Symbolic analysis of the pattern of A, columns in approximate minimum degree order
+    public static Symbolic analyze(SparseMatrix a) {
+        return analyze(a, ColumnOrdering.APPROXIMATE_MINIMUM_DEGREE);
+    }
+
+    public static Symbolic analyze(SparseMatrix a, ColumnOrdering ordering) {
+        int n = a.n;
+        int[] q = ordering.order(a);
+        int[] qinv = new int[n];
+        for (int k = 0; k < n; k++) {
+            qinv[q[k]] = k;
+        }
+
+        // Pattern of Q' * (A + A') * Q, each column holding the rows above the diagonal
+        int[] count = new int[n + 1];
+        for (int j = 0; j < n; j++) {
+            for (int p = a.colPtr[j]; p < a.colPtr[j + 1]; p++) {
+                int i = a.rowIdx[p];
+                if (i != j) {
+                    count[Math.max(qinv[i], qinv[j]) + 1]++;
+                }
+            }
+        }
+        for (int k = 0; k < n; k++) {
+            count[k + 1] += count[k];
+        }
+        int[] upper = new int[count[n]];
+        int[] next = Arrays.copyOf(count, n);
+        for (int j = 0; j < n; j++) {
+            for (int p = a.colPtr[j]; p < a.colPtr[j + 1]; p++) {
+                int i = a.rowIdx[p];
+                if (i != j) {
+                    int lo = Math.min(qinv[i], qinv[j]);
+                    int hi = Math.max(qinv[i], qinv[j]);
+                    upper[next[hi]++] = lo;
+                }
+            }
+        }
+
+        // Elimination tree with path compression
+        int[] parent = new int[n];
+        int[] ancestor = new int[n];
+        for (int k = 0; k < n; k++) {
+            parent[k] = -1;
+            ancestor[k] = -1;
+            for (int p = count[k]; p < count[k + 1]; p++) {
+                int i = upper[p];
+                while (i != -1 && i < k) {
+                    int nextAncestor = ancestor[i];
+                    ancestor[i] = k;
+                    if (nextAncestor == -1) {
+                        parent[i] = k;
+                    }
+                    i = nextAncestor;
+                }
+            }
+        }
+
+        // Row k of the Cholesky factor of the symmetrized pattern is the union of the
+        // tree paths from each entry up to k; counting them gives the expected fill
+        int[] marks = new int[n];
+        Arrays.fill(marks, -1);
+        int fill = n;
+        for (int k = 0; k < n; k++) {
+            marks[k] = k;
+            for (int p = count[k]; p < count[k + 1]; p++) {
+                for (int i = upper[p]; marks[i] != k; i = parent[i]) {
+                    marks[i] = k;
+                    fill++;
+                }
+            }
+        }
+        return new Symbolic(n, q, parent, fill);
+    }
+
+    public Symbolic getSymbolic() {
+        return symbolic;
+    }
+
+    public int size() {
+        return n;
+    }
+
+    public int factorNonZeros() {
+        return lColPtr[n] + uColPtr[n];
+    }
+
+    private void factorize(SparseMatrix a) {
+        int[] aColPtr = a.colPtr;
+        int[] aRowIdx = a.rowIdx;
+        double[] aValues = a.values;
+
+        int[] q = symbolic.q;
+        int lCapacity = symbolic.estimatedFill + n;
+        int uCapacity = lCapacity;
+        lColPtr = new int[n + 1];
+        uColPtr = new int[n + 1];
+        lRowIdx = new int[lCapacity];
+        lValues = new double[lCapacity];
+        uRowIdx = new int[uCapacity];
+        uValues = new double[uCapacity];
+        pinv = new int[n];
+        Arrays.fill(pinv, -1);
+
+        double[] x = new double[n];
+        int[] xi = new int[2 * n];
+        int[] marks = new int[n];
+        int lnz = 0;
+        int unz = 0;
+
+        for (int k = 0; k < n; k++) {
+            lColPtr[k] = lnz;
+            uColPtr[k] = unz;
+            if (lnz + n > lRowIdx.length) {
+                int capacity = 2 * lRowIdx.length + n;
+                lRowIdx = Arrays.copyOf(lRowIdx, capacity);
+                lValues = Arrays.copyOf(lValues, capacity);
+            }
+            if (unz + n > uRowIdx.length) {
+                int capacity = 2 * uRowIdx.length + n;
+                uRowIdx = Arrays.copyOf(uRowIdx, capacity);
+                uValues = Arrays.copyOf(uValues, capacity);
+            }
+
+            // x = L \ A(:,col), restricted to the reach of that column
+            int col = q[k];
+            int top = reach(aColPtr, aRowIdx, col, xi, marks, k + 1);
+            for (int p = top; p < n; p++) {
+                x[xi[p]] = 0;
+            }
+            for (int p = aColPtr[col]; p < aColPtr[col + 1]; p++) {
+                x[aRowIdx[p]] = aValues[p];
+            }
+            for (int px = top; px < n; px++) {
+                int j = xi[px];
+                int lCol = pinv[j];
+                if (lCol < 0) continue;
+                double xj = x[j];
+                for (int p = lColPtr[lCol] + 1; p < lColPtr[lCol + 1]; p++) {
+                    x[lRowIdx[p]] -= lValues[p] * xj;
+                }
+            }
+
+            // Pick the pivot among the rows that are not pivotal yet
+            int pivotRow = -1;
+            double largest = -1;
+            for (int p = top; p < n; p++) {
+                int i = xi[p];
+                if (pinv[i] < 0) {
+                    double t = Math.abs(x[i]);
+                    if (t > largest) {
+                        largest = t;
+                        pivotRow = i;
+                    }
+                } else {
+                    uRowIdx[unz] = pinv[i];
+                    uValues[unz++] = x[i];
+                }
+            }
+            if (pivotRow == -1 || largest <= 0) {
+                throw new ArithmeticException("Matrix is structurally or numerically singular at column " + k);
+            }
+            if (pinv[col] < 0 && Math.abs(x[col]) >= largest * PIVOT_TOLERANCE) {
+                pivotRow = col;
+            }
+
+            double pivot = x[pivotRow];
+            uRowIdx[unz] = k;
+            uValues[unz++] = pivot;
+            pinv[pivotRow] = k;
+            lRowIdx[lnz] = pivotRow;
+            lValues[lnz++] = 1;
+            for (int p = top; p < n; p++) {
+                int i = xi[p];
+                if (pinv[i] < 0) {
+                    lRowIdx[lnz] = i;
+                    lValues[lnz++] = x[i] / pivot;
+                }
+                x[i] = 0;
+            }
+        }
+        lColPtr[n] = lnz;
+        uColPtr[n] = unz;
+
+        // L was built with original row indices, move them into pivot order
+        for (int p = 0; p < lnz; p++) {
+            lRowIdx[p] = pinv[lRowIdx[p]];
+        }
+        lRowIdx = Arrays.copyOf(lRowIdx, lnz);
+        lValues = Arrays.copyOf(lValues, lnz);
+        uRowIdx = Arrays.copyOf(uRowIdx, unz);
+        uValues = Arrays.copyOf(uValues, unz);
+    }
+
+    // Nonzero pattern of L \ A(:,k) in topological order, returned in xi[top..n-1]
+    private int reach(int[] aColPtr, int[] aRowIdx, int k, int[] xi, int[] marks, int stamp) {
+        int top = n;
+        for (int p = aColPtr[k]; p < aColPtr[k + 1]; p++) {
+            if (marks[aRowIdx[p]] != stamp) {
+                top = depthFirst(aRowIdx[p], top, xi, marks, stamp);
+            }
+        }
+        return top;
+    }
+
+    // Non-recursive DFS through the columns of L, the stack lives in xi[0..] and xi[n..]
+    private int depthFirst(int start, int top, int[] xi, int[] marks, int stamp) {
+        int head = 0;
+        xi[0] = start;
+        while (head >= 0) {
+            int j = xi[head];
+            int col = pinv[j];
+            if (marks[j] != stamp) {
+                marks[j] = stamp;
+                xi[n + head] = col < 0 ? 0 : lColPtr[col];
+            }
+            boolean done = true;
+            int end = col < 0 ? 0 : lColPtr[col + 1];
+            for (int p = xi[n + head]; p < end; p++) {
+                int i = lRowIdx[p];
+                if (marks[i] == stamp) continue;
+                xi[n + head] = p;
+                xi[++head] = i;
+                done = false;
+                break;
+            }
+            if (done) {
+                head--;
+                xi[--top] = j;
+            }
+        }
+        return top;
+    }
+
+    /**
+     * Numeric refactorization of a matrix with the same pattern as the one this LU was built
+     * from, keeping the pivot order and the L/U structure. Returns false when a reused pivot
+     * has become too small, in which case the factors are unusable and a fresh
+     * {@link #factor(SparseMatrix, Symbolic)} is needed.
+     */
+    public boolean refactor(SparseMatrix a) {
+        if (lSingle != null) {
+            // Single-precision factors are refactorized from scratch by factorSingle
+            return false;
+        }
+        int[] q = symbolic.q;
+        double[] x = new double[n];
+        for (int k = 0; k < n; k++) {
+            int col = q[k];
+            for (int p = a.colPtr[col]; p < a.colPtr[col + 1]; p++) {
+                x[pinv[a.rowIdx[p]]] = a.values[p];
+            }
+
+            // U entries are stored in topological order with the diagonal last
+            int diag = uColPtr[k + 1] - 1;
+            for (int p = uColPtr[k]; p < diag; p++) {
+                int j = uRowIdx[p];
+                double ujk = x[j];
+                uValues[p] = ujk;
+                x[j] = 0;
+                if (ujk == 0) continue;
+                for (int pl = lColPtr[j] + 1; pl < lColPtr[j + 1]; pl++) {
+                    x[lRowIdx[pl]] -= lValues[pl] * ujk;
+                }
+            }
+
+            double pivot = x[k];
+            x[k] = 0;
+            double largest = Math.abs(pivot);
+            for (int pl = lColPtr[k] + 1; pl < lColPtr[k + 1]; pl++) {
+                largest = Math.max(largest, Math.abs(x[lRowIdx[pl]]));
+            }
+            if (pivot == 0 || Math.abs(pivot) < largest * REFACTOR_PIVOT_TOLERANCE) {
+                return false;
+            }
+            uValues[diag] = pivot;
+            for (int pl = lColPtr[k] + 1; pl < lColPtr[k + 1]; pl++) {
+                int i = lRowIdx[pl];
+                lValues[pl] = x[i] / pivot;
+                x[i] = 0;
+            }
+        }
+        return true;
+    }
+
+    // Solve A * x = b
+    public double[] solve(double[] b) {
+        double[] y = new double[n];
+        for (int i = 0; i < n; i++) {
+            y[pinv[i]] = b[i];
+        }
+        if (lSingle != null) {
+            lowerSolveSingle(y);
+            upperSolveSingle(y);
+        } else {
+            lowerSolve(y);
+            upperSolve(y);
+        }
+        int[] q = symbolic.q;
+        double[] x = new double[n];
+        for (int k = 0; k < n; k++) {
+            x[q[k]] = y[k];
+        }
+        return x;
+    }
+
+    // Solve A' * y = c with the same factors, U' and L' are applied as column dot products
+    public double[] solveTranspose(double[] c) {
+        int[] q = symbolic.q;
+        double[] y = new double[n];
+        for (int k = 0; k < n; k++) {
+            y[k] = c[q[k]];
+        }
+        for (int j = 0; j < n; j++) {
+            int diag = uColPtr[j + 1] - 1;
+            double sum = y[j];
+            for (int p = uColPtr[j]; p < diag; p++) {
+                sum -= uValue(p) * y[uRowIdx[p]];
+            }
+            y[j] = sum / uValue(diag);
+        }
+        for (int j = n - 1; j >= 0; j--) {
+            double sum = y[j];
+            for (int p = lColPtr[j] + 1; p < lColPtr[j + 1]; p++) {
+                sum -= lValue(p) * y[lRowIdx[p]];
+            }
+            y[j] = sum;
+        }
+        double[] x = new double[n];
+        for (int i = 0; i < n; i++) {
+            x[i] = y[pinv[i]];
+        }
+        return x;
+    }
+
+    private void lowerSolve(double[] x) {
+        for (int j = 0; j < n; j++) {
+            double xj = x[j];
+            if (xj == 0) continue;
+            for (int p = lColPtr[j] + 1; p < lColPtr[j + 1]; p++) {
+                x[lRowIdx[p]] -= lValues[p] * xj;
+            }
+        }
+    }
+
+    private void upperSolve(double[] x) {
+        for (int j = n - 1; j >= 0; j--) {
+            int diag = uColPtr[j + 1] - 1;
+            x[j] /= uValues[diag];
+            double xj = x[j];
+            if (xj == 0) continue;
+            for (int p = uColPtr[j]; p < diag; p++) {
+                x[uRowIdx[p]] -= uValues[p] * xj;
+            }
+        }
+    }
+
+    private void lowerSolveSingle(double[] x) {
+        for (int j = 0; j < n; j++) {
+            double xj = x[j];
+            if (xj == 0) continue;
+            for (int p = lColPtr[j] + 1; p < lColPtr[j + 1]; p++) {
+                x[lRowIdx[p]] -= lSingle[p] * xj;
+            }
+        }
+    }
+
+    private void upperSolveSingle(double[] x) {
+        for (int j = n - 1; j >= 0; j--) {
+            int diag = uColPtr[j + 1] - 1;
+            x[j] /= uSingle[diag];
+            double xj = x[j];
+            if (xj == 0) continue;
+            for (int p = uColPtr[j]; p < diag; p++) {
+                x[uRowIdx[p]] -= uSingle[p] * xj;
+            }
+        }
+    }
+
+    private double lValue(int p) {
+        return lSingle != null ? lSingle[p] : lValues[p];
+    }
+
+    private double uValue(int p) {
+        return uSingle != null ? uSingle[p] : uValues[p];
+    }
+}
@@ -0,0 +1,180 @@
+package controllers;
+
+import java.util.Arrays;
+
+/**
+ * Square sparse matrix in compressed sparse column (CSC) form.
+ * Entries are stamped through a {@link Builder} and compressed once; duplicate
+ * stamps on the same position are summed the way nodal analysis expects.
+ */
+public class SparseMatrix {
+    final int n;
+    final int[] colPtr;
+    final int[] rowIdx;
+    final double[] values;
+
+    SparseMatrix(int n, int[] colPtr, int[] rowIdx, double[] values) {
+        this.n = n;
+        this.colPtr = colPtr;
+        this.rowIdx = rowIdx;
+        this.values = values;
+    }
+
+    public int size() {
+        return n;
+    }
+
+    public int nonZeros() {
+        return colPtr[n];
+    }
+
+    // Value at (row, col), zero when the position is not stored
+    public double get(int row, int col) {
+        for (int p = colPtr[col]; p < colPtr[col + 1]; p++) {
+            if (rowIdx[p] == row) {
+                return values[p];
+            }
+        }
+        return 0.0;
+    }
+
+    // Index of (row, col) in the value array, -1 when the position is not stored
+    int position(int row, int col) {
+        if (row < 0 || col < 0) {
+            return -1;
+        }
+        for (int p = colPtr[col]; p < colPtr[col + 1]; p++) {
+            if (rowIdx[p] == row) {
+                return p;
+            }
+        }
+        return -1;
+    }
+
+    // y = A * x
+    public double[] multiply(double[] x) {
+        double[] y = new double[n];
+        for (int j = 0; j < n; j++) {
+            double xj = x[j];
+            if (xj == 0) continue;
+            for (int p = colPtr[j]; p < colPtr[j + 1]; p++) {
+                y[rowIdx[p]] += values[p] * xj;
+            }
+        }
+        return y;
+    }
+
+    // Same matrix structure with a different set of values
+    public SparseMatrix withValues(double[] newValues) {
+        if (newValues.length != values.length) {
+            throw new IllegalArgumentException("Value array does not match the sparsity pattern");
+        }
+        return new SparseMatrix(n, colPtr, rowIdx, newValues);
+    }
+
+    public double[] getValues() {
+        return values;
+    }
+
+    // Accumulates (row, col, value) stamps and compresses them into CSC form
+    public static class Builder {
+        private final int n;
+        private int count;
+        private int[] rows;
+        private int[] cols;
+        private double[] vals;
+
+        public Builder(int n) {
+            this(n, 4 * Math.max(n, 1));
+        }
+
+        public Builder(int n, int capacity) {
+            this.n = n;
+            this.rows = new int[capacity];
+            this.cols = new int[capacity];
+            this.vals = new double[capacity];
+        }
+
+        public void add(int row, int col, double value) {
+            if (row < 0 || col < 0) {
+                return; // Ground reference is not part of the system
+            }
+            if (count == rows.length) {
+                int capacity = Math.max(16, count * 2);
+                rows = Arrays.copyOf(rows, capacity);
+                cols = Arrays.copyOf(cols, capacity);
+                vals = Arrays.copyOf(vals, capacity);
+            }
+            rows[count] = row;
+            cols[count] = col;
+            vals[count] = value;
+            count++;
+        }
+
+        // Two-terminal conductance stamp between nodes a and b
+        public void addConductance(int a, int b, double g) {
+            add(a, a, g);
+            add(b, b, g);
+            add(a, b, -g);
+            add(b, a, -g);
+        }
+
+        public SparseMatrix build() {
+            // Counting sort by column
+            int[] colPtr = new int[n + 1];
+            for (int k = 0; k < count; k++) {
+                colPtr[cols[k] + 1]++;
+            }
+            for (int j = 0; j < n; j++) {
+                colPtr[j + 1] += colPtr[j];
+            }
+            int[] next = Arrays.copyOf(colPtr, n);
+            int[] rowIdx = new int[count];
+            double[] values = new double[count];
+            for (int k = 0; k < count; k++) {
+                int p = next[cols[k]]++;
+                rowIdx[p] = rows[k];
+                values[p] = vals[k];
+            }
+
+            // Sum duplicates and sort rows inside each column
+            int[] lastSeen = new int[n];
+            Arrays.fill(lastSeen, -1);
+            int nz = 0;
+            int[] outPtr = new int[n + 1];
+            for (int j = 0; j < n; j++) {
+                int start = nz;
+                for (int p = colPtr[j]; p < colPtr[j + 1]; p++) {
+                    int i = rowIdx[p];
+                    if (lastSeen[i] >= start) {
+                        values[lastSeen[i]] += values[p];
+                    } else {
+                        lastSeen[i] = nz;
+                        rowIdx[nz] = i;
+                        values[nz] = values[p];
+                        nz++;
+                    }
+                }
+                sortColumn(rowIdx, values, start, nz);
+                outPtr[j + 1] = nz;
+            }
+            return new SparseMatrix(n, outPtr, Arrays.copyOf(rowIdx, nz), Arrays.copyOf(values, nz));
+        }
+
+        // Insertion sort, columns of a nodal matrix only hold a handful of entries
+        private static void sortColumn(int[] rowIdx, double[] values, int from, int to) {
+            for (int p = from + 1; p < to; p++) {
+                int row = rowIdx[p];
+                double value = values[p];
+                int q = p - 1;
+                while (q >= from && rowIdx[q] > row) {
+                    rowIdx[q + 1] = rowIdx[q];
+                    values[q + 1] = values[q];
+                    q--;
+                }
+                rowIdx[q + 1] = row;
+                values[q + 1] = value;
+            }
+        }
+    }
+}
@@ -0,0 +1,293 @@
+package controllers;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Reusable block definition: a set of components in its own coordinates with some of its points
+ * marked as ports. Placed as {@link Instance}s on a {@link HierarchicalCircuit}, the block is
+ * seen only through its ports. Its interior is reduced once to a port-level Norton model, the
+ * Schur complement Y = A_PP - A_PI A_II^-1 A_IP with J = b_P - A_PI A_II^-1 b_I, which every
+ * instance shares. The model is kept until the definition's stamped matrix or sources change, so
+ * editing one definition only rebuilds that definition's model.
+ */
+public class Subcircuit {
+    private final String name;
+    private final List<ComponentsController.Drawable> components;
+    private final double[] portX;
+    private final double[] portY;
+    private MacroModel model;
+    private long reductions;
+
+    // One placement of a definition, its ports shifted by the placement offset
+    public static class Instance {
+        private final Subcircuit definition;
+        private final double x;
+        private final double y;
+
+        Instance(Subcircuit definition, double x, double y) {
+            this.definition = definition;
+            this.x = x;
+            this.y = y;
+        }
+
+        public Subcircuit getDefinition() {
+            return definition;
+        }
+
+        public double portX(int port) {
+            return x + definition.portX[port];
+        }
+
+        public double portY(int port) {
+            return y + definition.portY[port];
+        }
+    }
+
+    /**
+     * Norton model of the interior at its ports: port currents into the block are
+     * Y * v - J for port voltages v. Keeps the interior factorization to recover interior
+     * voltages once the port voltages are known. Port 0 is the interior's reference.
+     */
+    public static class MacroModel {
+        private final MnaSystem system;
+        private final int ports;
+        private final double[] admittance;
+        private final double[] current;
+        // Interior system row of every port, -1 for port 0
+        private final int[] portRows;
+        private final int[] interiorRows;
+        private final SparseLU interior;
+
+        MacroModel(MnaSystem system, int[] portRows, int[] interiorRows, SparseLU interior, double[] admittance, double[] current) {
+            this.system = system;
+            this.ports = portRows.length;
+            this.portRows = portRows;
+            this.interiorRows = interiorRows;
+            this.interior = interior;
+            this.admittance = admittance;
+            this.current = current;
+        }
+
+        public int portCount() {
+            return ports;
+        }
+
+        public double admittance(int row, int col) {
+            return admittance[row * ports + col];
+        }
+
+        public double current(int port) {
+            return current[port];
+        }
+
+        // Interior unknowns relative to port 0 for the given port voltages, laid out as the interior system
+        double[] interiorSolution(double[] portVoltages) {
+            double[] x = new double[system.size()];
+            for (int k = 1; k < ports; k++) {
+                x[portRows[k]] = portVoltages[k] - portVoltages[0];
+            }
+            if (interior == null) {
+                return x;
+            }
+            // A_II x_I = b_I - A_IP x_P
+            double[] ax = system.getMatrix().multiply(x);
+            double[] rhs = new double[interiorRows.length];
+            for (int q = 0; q < interiorRows.length; q++) {
+                rhs[q] = system.getRhs()[interiorRows[q]] - ax[interiorRows[q]];
+            }
+            double[] xi = interior.solve(rhs);
+            for (int q = 0; q < interiorRows.length; q++) {
+                x[interiorRows[q]] = xi[q];
+            }
+            return x;
+        }
+
+        MnaSystem getSystem() {
+            return system;
+        }
+    }
+
+    // ports holds the {x, y} of every port in the definition's coordinates
+    public Subcircuit(String name, List<ComponentsController.Drawable> components, double[][] ports) {
+        if (ports.length == 0) {
+            throw new IllegalArgumentException("Subcircuit " + name + " needs at least one port");
+        }
+        this.name = name;
+        this.components = new ArrayList<>(components);
+        this.portX = new double[ports.length];
+        this.portY = new double[ports.length];
+        for (int k = 0; k < ports.length; k++) {
+            portX[k] = ports[k][0];
+            portY[k] = ports[k][1];
+        }
+    }
+
+    public Instance place(double x, double y) {
+        return new Instance(this, x, y);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int portCount() {
+        return portX.length;
+    }
+
+    public List<ComponentsController.Drawable> getComponents() {
+        return components;
+    }
+
+    // How many times the interior has been reduced, for checking that instances share the model
+    public synchronized long getReductions() {
+        return reductions;
+    }
+
+    public synchronized void invalidate() {
+        model = null;
+    }
+
+    /**
+     * Port-level model of the interior as it is now. The interior is stamped again on every call,
+     * which is cheap; the reduction only runs again when the stamps differ from the cached ones.
+     */
+    public synchronized MacroModel macroModel() {
+        Netlist netlist = Netlist.compile(components);
+        if (netlist.hasDiodes()) {
+            throw new IllegalArgumentException("Subcircuit " + name + " has diodes, which have no linear port model");
+        }
+        int[] portNets = new int[portX.length];
+        for (int k = 0; k < portNets.length; k++) {
+            portNets[k] = netlist.netAt(portX[k], portY[k]);
+            if (portNets[k] < 0) {
+                throw new IllegalArgumentException("Port " + k + " of " + name + " is not connected inside");
+            }
+            for (int j = 0; j < k; j++) {
+                if (portNets[j] == portNets[k]) {
+                    throw new IllegalArgumentException("Ports " + j + " and " + k + " of " + name + " are shorted inside");
+                }
+            }
+        }
+        MnaSystem system = new MnaSystem(netlist, portNets[0]);
+        if (model != null && sameStamps(model.system, system)) {
+            return model;
+        }
+        model = reduce(system, portNets);
+        reductions++;
+        return model;
+    }
+
+    private static boolean sameStamps(MnaSystem cached, MnaSystem fresh) {
+        SparseMatrix a = cached.getMatrix();
+        SparseMatrix b = fresh.getMatrix();
+        return a.n == b.n && Arrays.equals(a.colPtr, b.colPtr) && Arrays.equals(a.rowIdx, b.rowIdx)
+                && Arrays.equals(a.values, b.values) && Arrays.equals(cached.getRhs(), fresh.getRhs());
+    }
+
+    // Schur complement onto the ports, taken relative to port 0 and then completed by KCL
+    private static MacroModel reduce(MnaSystem system, int[] portNets) {
+        int p = portNets.length;
+        int m = system.size();
+        SparseMatrix a = system.getMatrix();
+        double[] b = system.getRhs();
+
+        int[] portRows = new int[p];
+        int[] portOfRow = new int[m];
+        Arrays.fill(portOfRow, -1);
+        for (int k = 0; k < p; k++) {
+            portRows[k] = system.row(portNets[k]);
+            if (portRows[k] >= 0) {
+                portOfRow[portRows[k]] = k;
+            }
+        }
+        int[] interiorIndex = new int[m];
+        int[] interiorRows = new int[m - (p - 1)];
+        int count = 0;
+        for (int r = 0; r < m; r++) {
+            interiorIndex[r] = portOfRow[r] >= 0 ? -1 : count;
+            if (portOfRow[r] < 0) {
+                interiorRows[count++] = r;
+            }
+        }
+
+        SparseLU interior = null;
+        if (count > 0) {
+            SparseMatrix.Builder builder = new SparseMatrix.Builder(count, a.nonZeros());
+            for (int col = 0; col < m; col++) {
+                for (int q = a.colPtr[col]; q < a.colPtr[col + 1]; q++) {
+                    builder.add(interiorIndex[a.rowIdx[q]], interiorIndex[col], a.values[q]);
+                }
+            }
+            SparseMatrix aii = builder.build();
+            interior = SparseLU.factor(aii, FactorizationCache.shared().symbolicFor(aii));
+        }
+
+        // Reduced model over ports 1..p-1, one interior solve per port column and one for the sources
+        double[] admittance = new double[p * p];
+        double[] current = new double[p];
+        for (int k = 1; k < p; k++) {
+            current[k] = b[portRows[k]];
+        }
+        if (interior != null) {
+            double[] bi = new double[count];
+            for (int q = 0; q < count; q++) {
+                bi[q] = b[interiorRows[q]];
+            }
+            double[] coupled = portCoupling(a, portOfRow, interiorIndex, interior.solve(bi), p);
+            for (int k = 1; k < p; k++) {
+                current[k] -= coupled[k];
+            }
+        }
+        for (int j = 1; j < p; j++) {
+            int col = portRows[j];
+            double[] column = new double[count];
+            for (int q = a.colPtr[col]; q < a.colPtr[col + 1]; q++) {
+                int row = a.rowIdx[q];
+                if (portOfRow[row] >= 0) {
+                    admittance[portOfRow[row] * p + j] += a.values[q];
+                } else {
+                    column[interiorIndex[row]] = a.values[q];
+                }
+            }
+            if (interior != null) {
+                double[] coupled = portCoupling(a, portOfRow, interiorIndex, interior.solve(column), p);
+                for (int k = 1; k < p; k++) {
+                    admittance[k * p + j] -= coupled[k];
+                }
+            }
+        }
+
+        // Every stamp is balanced, so port 0 carries what the other ports do not
+        for (int k = 1; k < p; k++) {
+            double rowSum = 0.0;
+            double colSum = 0.0;
+            for (int j = 1; j < p; j++) {
+                rowSum += admittance[k * p + j];
+                colSum += admittance[j * p + k];
+            }
+            admittance[k * p] = -rowSum;
+            admittance[k] = -colSum;
+            admittance[0] += rowSum;
+            current[0] -= current[k];
+        }
+        return new MacroModel(system, portRows, Arrays.copyOf(interiorRows, count), interior, admittance, current);
+    }
+
+    // A_PI * z for an interior vector z, indexed by port
+    private static double[] portCoupling(SparseMatrix a, int[] portOfRow, int[] interiorIndex, double[] z, int p) {
+        double[] out = new double[p];
+        for (int col = 0; col < a.n; col++) {
+            int q = interiorIndex[col];
+            if (q < 0 || z[q] == 0.0) continue;
+            for (int e = a.colPtr[col]; e < a.colPtr[col + 1]; e++) {
+                int port = portOfRow[a.rowIdx[e]];
+                if (port >= 0) {
+                    out[port] += a.values[e] * z[q];
+                }
+            }
+        }
+        return out;
+    }
+}
@@ -0,0 +1,199 @@
+package controllers;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Thevenin/Norton equivalent of a board seen from two nets: the open-circuit voltage and the
+ * resistance behind it. Both come from the factorization the board is solved with: the operating
+ * point gives the voltage, and one more solve with a unit current injected at the port gives the
+ * resistance. Equivalents of linear boards are cached on the matrix and sources they were computed
+ * from, so changing only the load of a port answers from the two numbers without a solve.
+ */
+public class TheveninEquivalent {
+    private static final int MAX_CACHED = 32;
+    private static final Map<PortKey, TheveninEquivalent> CACHE = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<PortKey, TheveninEquivalent> eldest) {
+            return size() > MAX_CACHED;
+        }
+    };
+
+    private final double voltage;
+    private final double resistance;
+
+    // A port on one linear system, the arrays are compared so equal boards share an equivalent
+    private static final class PortKey {
+        private final int[] colPtr;
+        private final int[] rowIdx;
+        private final double[] values;
+        private final double[] rhs;
+        private final int positive;
+        private final int negative;
+        private final int hash;
+
+        PortKey(MnaSystem system, int positive, int negative) {
+            SparseMatrix matrix = system.getMatrix();
+            this.colPtr = matrix.colPtr;
+            this.rowIdx = matrix.rowIdx;
+            this.values = matrix.values;
+            this.rhs = system.getRhs();
+            this.positive = positive;
+            this.negative = negative;
+            this.hash = 31 * (31 * (31 * (31 * Arrays.hashCode(colPtr) + Arrays.hashCode(rowIdx))
+                    + Arrays.hashCode(values)) + Arrays.hashCode(rhs)) + 31 * positive + negative;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof PortKey)) return false;
+            PortKey other = (PortKey) o;
+            return hash == other.hash && positive == other.positive && negative == other.negative
+                    && Arrays.equals(colPtr, other.colPtr) && Arrays.equals(rowIdx, other.rowIdx)
+                    && Arrays.equals(values, other.values) && Arrays.equals(rhs, other.rhs);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    public TheveninEquivalent(double voltage, double resistance) {
+        this.voltage = voltage;
+        this.resistance = resistance;
+    }
+
+    /**
+     * Equivalent between two nets of the board as it is, positive net first. Diode boards are
+     * linearized at their operating point, so the resistance is the small-signal one.
+     */
+    public static TheveninEquivalent between(Netlist netlist, int positiveNet, int negativeNet) {
+        return of(new MnaSystem(netlist), positiveNet, negativeNet, 0.0);
+    }
+
+    /**
+     * Equivalent of the rest of the board seen from a load's terminals, the load taken out.
+     * The load must be a resistive part; it is left in as an open circuit, whose leak is
+     * taken back out of the result.
+     */
+    public static TheveninEquivalent across(Netlist netlist, ComponentsController.ImageComponent load) {
+        int element = netlist.indexOf(load);
+        if (element < 0) {
+            throw new IllegalArgumentException(load.componentType + " is not on the board");
+        }
+        if (netlist.kind(element) != Netlist.CONDUCTANCE) {
+            throw new IllegalArgumentException(load.componentType + " is not a resistive load");
+        }
+        double[] value = new double[netlist.elementCount()];
+        double[] conductance = new double[netlist.elementCount()];
+        for (int i = 0; i < value.length; i++) {
+            value[i] = netlist.value(i);
+            conductance[i] = netlist.conductance(i);
+        }
+        conductance[element] = Netlist.OPEN_CONDUCTANCE;
+        MnaSystem opened = new MnaSystem(netlist.withValues(value, conductance));
+        return of(opened, netlist.from(element), netlist.to(element), Netlist.OPEN_CONDUCTANCE);
+    }
+
+    // Equivalent of the system at a port, minus a conductance the system has across the port
+    private static TheveninEquivalent of(MnaSystem system, int positiveNet, int negativeNet, double across) {
+        int a = system.row(positiveNet);
+        int b = system.row(negativeNet);
+        if (a == b) {
+            return new TheveninEquivalent(0.0, 0.0);
+        }
+        boolean linear = !system.getNetlist().hasDiodes();
+        PortKey key = linear ? new PortKey(system, a, b) : null;
+        if (linear) {
+            synchronized (CACHE) {
+                TheveninEquivalent cached = CACHE.get(key);
+                if (cached != null) {
+                    return cached;
+                }
+            }
+        }
+
+        double[] solution;
+        SparseMatrix matrix = system.getMatrix();
+        if (linear) {
+            solution = system.solve();
+        } else {
+            NewtonSolver newton = new NewtonSolver(system);
+            solution = newton.solve();
+            matrix = newton.jacobianAt(solution);
+        }
+        double[] unit = new double[system.size()];
+        if (a >= 0) unit[a] += 1.0;
+        if (b >= 0) unit[b] -= 1.0;
+        // Same matrix as the operating point, so the cache hands back the same factors
+        double[] response = FactorizationCache.shared().solve(matrix, unit);
+
+        double portVoltage = entry(solution, a) - entry(solution, b);
+        double portResistance = entry(response, a) - entry(response, b);
+        // Take the conductance across the port back out: 1/R = 1/r - g and V = v (1 + R g)
+        double resistance = across > 0 ? 1.0 / (1.0 / portResistance - across) : portResistance;
+        double voltage = across > 0 ? portVoltage * (1.0 + resistance * across) : portVoltage;
+        TheveninEquivalent equivalent = new TheveninEquivalent(voltage, resistance);
+        if (linear) {
+            synchronized (CACHE) {
+                CACHE.put(key, equivalent);
+            }
+        }
+        return equivalent;
+    }
+
+    private static double entry(double[] vector, int row) {
+        return row < 0 ? 0.0 : vector[row];
+    }
+
+    public static void clearCache() {
+        synchronized (CACHE) {
+            CACHE.clear();
+        }
+    }
+
+    // Open-circuit voltage
+    public double getVoltage() {
+        return voltage;
+    }
+
+    public double getResistance() {
+        return resistance;
+    }
+
+    // Norton current, what a short across the port would carry
+    public double getNortonCurrent() {
+        return voltage / resistance;
+    }
+
+    public double getNortonConductance() {
+        return 1.0 / resistance;
+    }
+
+    // Voltage across a load resistance connected to the port
+    public double loadVoltage(double loadResistance) {
+        return voltage * loadResistance / (resistance + loadResistance);
+    }
+
+    public double loadCurrent(double loadResistance) {
+        return voltage / (resistance + loadResistance);
+    }
+
+    public double loadPower(double loadResistance) {
+        double current = loadCurrent(loadResistance);
+        return current * current * loadResistance;
+    }
+
+    // Power into a matched load, R = Rth
+    public double getMaximumPower() {
+        return voltage * voltage / (4.0 * resistance);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%.4f V behind %.4f Ω", voltage, resistance);
+    }
+}
@@ -0,0 +1,569 @@
+package controllers;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Time-domain simulation of the board on top of the nodal solver. Every step replaces
+ * capacitors and inductors by their companion models (a conductance or resistance plus
+ * a history source) for backward Euler or the trapezoidal rule and solves the resulting
+ * resistive system. The companion matrix only depends on the step size and the rule, so
+ * it is factorized once per step size and every further step with that size is a single
+ * forward/back substitution with a new right-hand side.
+ * Steps are either fixed ({@link #advance}) or chosen from an estimate of the local
+ * truncation error ({@link #advanceAdaptive}). Adaptive steps land exactly on breakpoints,
+ * where the integration restarts with a small backward Euler step; edits to a running
+ * board (a switch toggle, a new source value) and blown fuses are handled the same way.
+ * Capacitors start discharged and inductors start without current, so the first steps
+ * show the charging curves. For mixed-signal runs the logic gates can be driven outputs whose
+ * levels are set from outside, and steps can be made to land on threshold crossings of chosen
+ * nets, see {@link MixedSignalSimulator}.
+ */
+public class TransientSimulator {
+    public enum Integration {
+        BACKWARD_EULER,
+        TRAPEZOIDAL
+    }
+
+    // Factorized companion systems kept per step size
+    private static final int MAX_STEP_SIZES = 8;
+    // Error tolerances of the adaptive steps, relative plus absolute (volts for capacitors, amps for inductors)
+    private static final double RELATIVE_TOLERANCE = 1e-3;
+    private static final double VOLTAGE_TOLERANCE = 1e-6;
+    private static final double CURRENT_TOLERANCE = 1e-9;
+    private static final double MIN_STEP = 1e-12;
+    private static final double DEFAULT_INITIAL_STEP = 1e-7;
+    private static final double DEFAULT_MAX_STEP = 1e-2;
+    // Adaptive steps snap down to this ratio ladder so companion factorizations get reused
+    private static final double STEP_LADDER = Math.pow(2, 0.25);
+    // A step that crosses a watched threshold is retried to end this close after the crossing
+    private static final double CROSSING_TOLERANCE = 1e-9;
+
+    // Companion system and its factorization for one step size and rule
+    private static final class Stepper {
+        final MnaSystem system;
+        final SparseLU lu;
+        final double[] rhs;
+
+        Stepper(MnaSystem system) {
+            this.system = system;
+            SparseMatrix matrix = system.getMatrix();
+            this.lu = SparseLU.factor(matrix, FactorizationCache.shared().symbolicFor(matrix));
+            this.rhs = new double[system.size()];
+        }
+    }
+
+    private Netlist netlist;
+    private final Integration integration;
+    private final Map<Double, Stepper> eulerSteppers = stepperCache();
+    private final Map<Double, Stepper> trapezoidalSteppers = stepperCache();
+    // Capacitors and inductors, the elements with state
+    private final int[] reactive;
+    // Logic gates driving their output net with the level in gateLevel, empty unless drivenGates
+    private final boolean drivenGates;
+    private final int[] gates;
+    private final double[] gateLevel;
+
+    private double time;
+    private long stepCount;
+    private long rejectedSteps;
+    private long breakpointsHit;
+    private MnaSystem lastSystem;
+    private double[] solution;
+    // Voltage across and current through the capacitors and inductors, indexed like the netlist
+    private final double[] voltage;
+    private final double[] current;
+
+    // Result of the last trial step, committed once accepted
+    private MnaSystem trialSystem;
+    private double[] trialSolution;
+    private final double[] trialVoltage;
+    private final double[] trialCurrent;
+
+    // State variable (capacitor voltage, inductor current) at the last accepted points, newest last
+    private static final int HISTORY = 3;
+    private final double[][] pastState;
+    private final double[] pastTime = new double[HISTORY];
+    private int historyLength;
+    // Set after a discontinuity, the next step is a small backward Euler step
+    private boolean restart = true;
+
+    private final TreeSet<Double> breakpoints = new TreeSet<>();
+    private double initialStep = DEFAULT_INITIAL_STEP;
+    private double maxStep = DEFAULT_MAX_STEP;
+    private double nextStep = DEFAULT_INITIAL_STEP;
+    // Length of the retry after a step jumped over a watched crossing, 0 when none is pending
+    private double crossingStep;
+
+    // Nets whose threshold crossings the steps land on, and their voltages at the current time
+    private int[] watchedNets = new int[0];
+    private double[] watchedVoltage = new double[0];
+    private double watchThreshold;
+
+    public TransientSimulator(Netlist netlist, Integration integration) {
+        this(netlist, integration, false);
+    }
+
+    public TransientSimulator(Netlist netlist, Integration integration, boolean drivenGates) {
+        this.netlist = netlist;
+        this.integration = integration;
+        this.drivenGates = drivenGates;
+        int count = netlist.elementCount();
+        this.voltage = new double[count];
+        this.current = new double[count];
+        this.trialVoltage = new double[count];
+        this.trialCurrent = new double[count];
+
+        int reactiveCount = 0;
+        for (int i = 0; i < count; i++) {
+            if (isReactive(i)) reactiveCount++;
+        }
+        this.reactive = new int[reactiveCount];
+        for (int i = 0, r = 0; i < count; i++) {
+            if (isReactive(i)) reactive[r++] = i;
+        }
+        this.pastState = new double[HISTORY][reactiveCount];
+        recordHistory();
+
+        int gateCount = 0;
+        for (int i = 0; i < count; i++) {
+            if (drivenGates && netlist.isLogicGate(i)) gateCount++;
+        }
+        this.gates = new int[gateCount];
+        for (int i = 0, g = 0; i < count && g < gateCount; i++) {
+            if (netlist.isLogicGate(i)) gates[g++] = i;
+        }
+        this.gateLevel = new double[count];
+    }
+
+    /**
+     * Picks up the state of a previous run when the board was only edited, not rewired.
+     * The edit is a discontinuity, so the adaptive steps restart small from here.
+     */
+    public TransientSimulator(Netlist netlist, Integration integration, TransientSimulator previous) {
+        this(netlist, integration, previous != null && previous.drivenGates);
+        if (previous != null && sameElements(previous.netlist, netlist)) {
+            System.arraycopy(previous.voltage, 0, voltage, 0, voltage.length);
+            System.arraycopy(previous.current, 0, current, 0, current.length);
+            System.arraycopy(previous.gateLevel, 0, gateLevel, 0, gateLevel.length);
+            time = previous.time;
+            stepCount = previous.stepCount;
+            rejectedSteps = previous.rejectedSteps;
+            breakpointsHit = previous.breakpointsHit;
+            initialStep = previous.initialStep;
+            maxStep = previous.maxStep;
+            breakpoints.addAll(previous.breakpoints.tailSet(time, false));
+            historyLength = 0;
+            recordHistory();
+        }
+    }
+
+    private static boolean sameElements(Netlist a, Netlist b) {
+        if (a.elementCount() != b.elementCount() || a.netCount() != b.netCount()) {
+            return false;
+        }
+        for (int i = 0; i < a.elementCount(); i++) {
+            if (a.kind(i) != b.kind(i) || a.from(i) != b.from(i) || a.to(i) != b.to(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean isReactive(int i) {
+        return netlist.kind(i) == Netlist.CAPACITOR || netlist.kind(i) == Netlist.INDUCTOR;
+    }
+
+    private static Map<Double, Stepper> stepperCache() {
+        return new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Double, Stepper> eldest) {
+                return size() > MAX_STEP_SIZES;
+            }
+        };
+    }
+
+    private Stepper stepper(double step, boolean trapezoidal) {
+        Map<Double, Stepper> cache = trapezoidal ? trapezoidalSteppers : eulerSteppers;
+        Stepper stepper = cache.get(step);
+        if (stepper == null) {
+            stepper = new Stepper(new MnaSystem(netlist, step, trapezoidal, drivenGates));
+            cache.put(step, stepper);
+        }
+        return stepper;
+    }
+
+    // Solve one step of the given length from the current state into the trial arrays
+    private void trial(double step, boolean trapezoidal) {
+        Stepper stepper = stepper(step, trapezoidal);
+        MnaSystem system = stepper.system;
+        double[] rhs = stepper.rhs;
+        System.arraycopy(system.getRhs(), 0, rhs, 0, rhs.length);
+
+        // History sources of the companion models
+        for (int i : reactive) {
+            if (netlist.kind(i) == Netlist.CAPACITOR) {
+                double history = system.companionConductance(i) * voltage[i] + (trapezoidal ? current[i] : 0.0);
+                int a = system.row(netlist.from(i));
+                int b = system.row(netlist.to(i));
+                if (a >= 0) rhs[a] += history;
+                if (b >= 0) rhs[b] -= history;
+            } else {
+                rhs[system.branchRow(i)] = -system.companionResistance(i) * current[i] - (trapezoidal ? voltage[i] : 0.0);
+            }
+        }
+        for (int i : gates) {
+            system.gateDrive(rhs, i, gateLevel[i]);
+        }
+
+        double[] x = stepper.lu.solve(rhs);
+
+        for (int i : reactive) {
+            double v = system.nodeVoltage(x, netlist.from(i)) - system.nodeVoltage(x, netlist.to(i));
+            if (netlist.kind(i) == Netlist.CAPACITOR) {
+                double history = system.companionConductance(i) * voltage[i] + (trapezoidal ? current[i] : 0.0);
+                trialCurrent[i] = system.companionConductance(i) * v - history;
+            } else {
+                trialCurrent[i] = x[system.branchRow(i)];
+            }
+            trialVoltage[i] = v;
+        }
+        trialSystem = system;
+        trialSolution = x;
+    }
+
+    private void commit(double step) {
+        for (int i : reactive) {
+            voltage[i] = trialVoltage[i];
+            current[i] = trialCurrent[i];
+        }
+        solution = trialSolution;
+        lastSystem = trialSystem;
+        for (int w = 0; w < watchedNets.length; w++) {
+            watchedVoltage[w] = lastSystem.nodeVoltage(solution, watchedNets[w]);
+        }
+        time += step;
+        stepCount++;
+        restart = false;
+        recordHistory();
+    }
+
+    private double state(int i) {
+        return netlist.kind(i) == Netlist.CAPACITOR ? voltage[i] : current[i];
+    }
+
+    private double trialState(int i) {
+        return netlist.kind(i) == Netlist.CAPACITOR ? trialVoltage[i] : trialCurrent[i];
+    }
+
+    private void recordHistory() {
+        if (historyLength == HISTORY) {
+            double[] oldest = pastState[0];
+            System.arraycopy(pastState, 1, pastState, 0, HISTORY - 1);
+            System.arraycopy(pastTime, 1, pastTime, 0, HISTORY - 1);
+            pastState[HISTORY - 1] = oldest;
+            historyLength--;
+        }
+        for (int r = 0; r < reactive.length; r++) {
+            pastState[historyLength][r] = state(reactive[r]);
+        }
+        pastTime[historyLength] = time;
+        historyLength++;
+    }
+
+    // Forget the past points after a discontinuity, they no longer describe a smooth solution
+    private void markDiscontinuity() {
+        restart = true;
+        historyLength = 0;
+        recordHistory();
+        nextStep = initialStep;
+    }
+
+    // Advance the simulation by one step of the given length
+    public void step(double step) {
+        // The trapezoidal rule needs the capacitor currents of the previous point, so start with backward Euler
+        trial(step, integration == Integration.TRAPEZOIDAL && !restart);
+        commit(step);
+        if (blowOverloadedFuses()) {
+            breakpointsHit++;
+            markDiscontinuity();
+        }
+    }
+
+    // Advance by duration in equal steps no longer than maxStep
+    public void advance(double duration, double maxStep) {
+        int steps = Math.max(1, (int) Math.ceil(duration / maxStep - 1e-9));
+        double step = duration / steps;
+        for (int k = 0; k < steps; k++) {
+            step(step);
+        }
+    }
+
+    /**
+     * Advance by duration with steps chosen from the local truncation error: a step is
+     * rejected and retried shorter when the estimated error of any capacitor voltage or
+     * inductor current is above tolerance, and the next step grows when it is well below.
+     */
+    public void advanceAdaptive(double duration) {
+        double end = time + duration;
+        while (end - time > landing(end)) {
+            stepAdaptive(end);
+        }
+    }
+
+    // Remaining time below which a run counts as having arrived
+    private static double landing(double end) {
+        return Math.max(Math.ulp(end) * 4, 1e-15);
+    }
+
+    /**
+     * Takes one accepted adaptive step, ending at end at the latest. Breakpoints on the way are
+     * landed on exactly, and a step that carries a watched net across the threshold is retried
+     * so it ends just after the crossing.
+     */
+    public void stepAdaptive(double end) {
+        double landing = landing(end);
+        while (true) {
+            Double breakpoint = breakpoints.higher(time + landing);
+            double limit = breakpoint != null && breakpoint < end ? breakpoint : end;
+
+            double step;
+            boolean lands = false;
+            if (crossingStep > 0) {
+                step = crossingStep;
+                crossingStep = 0;
+                if (time + step >= limit - landing) {
+                    step = limit - time;
+                    lands = true;
+                }
+            } else {
+                step = Math.max(Math.min(nextStep, maxStep), MIN_STEP);
+                if (time + step >= limit - landing) {
+                    step = limit - time;
+                    lands = true;
+                } else {
+                    step = Math.max(snapToLadder(step), MIN_STEP);
+                    if (time + 2 * step > limit) {
+                        step = (limit - time) / 2; // Avoid a sliver of a step right before the limit
+                    }
+                }
+            }
+
+            boolean trapezoidal = integration == Integration.TRAPEZOIDAL && !restart;
+            trial(step, trapezoidal);
+            int order = trapezoidal && historyLength >= 3 ? 2 : 1;
+            double ratio = errorRatio(step, order);
+            if (ratio > 1 && step > MIN_STEP) {
+                rejectedSteps++;
+                nextStep = step * Math.max(0.2, 0.9 * Math.pow(ratio, -1.0 / (order + 1)));
+                continue;
+            }
+            double crossing = firstCrossing(step);
+            if (crossing + CROSSING_TOLERANCE < step) {
+                rejectedSteps++;
+                crossingStep = crossing + CROSSING_TOLERANCE / 2;
+                continue;
+            }
+            commit(step);
+            nextStep = step * (ratio == 0 ? 2.0 : Math.min(2.0, Math.max(0.2, 0.9 * Math.pow(ratio, -1.0 / (order + 1)))));
+
+            if (lands && breakpoint != null && limit == breakpoint) {
+                breakpoints.remove(breakpoint);
+                breakpointsHit++;
+                markDiscontinuity();
+            }
+            if (blowOverloadedFuses()) {
+                breakpointsHit++;
+                markDiscontinuity();
+            }
+            return;
+        }
+    }
+
+    // Time into the trial step where a watched net first crosses the threshold, by linear interpolation
+    private double firstCrossing(double step) {
+        double first = Double.POSITIVE_INFINITY;
+        for (int w = 0; w < watchedNets.length; w++) {
+            double before = watchedVoltage[w] - watchThreshold;
+            double after = trialSystem.nodeVoltage(trialSolution, watchedNets[w]) - watchThreshold;
+            if ((before < 0) != (after < 0)) {
+                first = Math.min(first, step * before / (before - after));
+            }
+        }
+        return first;
+    }
+
+    // Watch the given nets: adaptive steps end right after any of them crosses the threshold
+    public void watchCrossings(int[] nets, double threshold) {
+        watchedNets = nets.clone();
+        watchedVoltage = new double[nets.length];
+        watchThreshold = threshold;
+        for (int w = 0; w < nets.length; w++) {
+            watchedVoltage[w] = netVoltage(nets[w]);
+        }
+    }
+
+    // Level in volts driven by logic gate i, a discontinuity when it changes
+    public void setGateLevel(int i, double level) {
+        if (!drivenGates || !netlist.isLogicGate(i)) {
+            throw new IllegalArgumentException("Element " + i + " is not a driven logic gate");
+        }
+        if (gateLevel[i] != level) {
+            gateLevel[i] = level;
+            markDiscontinuity();
+        }
+    }
+
+    // Largest ladder step not above the given one
+    private static double snapToLadder(double step) {
+        double rungs = Math.floor(Math.log(step) / Math.log(STEP_LADDER) + 1e-9);
+        return Math.pow(STEP_LADDER, rungs);
+    }
+
+    /**
+     * Estimated local truncation error of the trial step over the tolerance, worst element.
+     * The derivatives come from divided differences of the past points and the trial point:
+     * backward Euler makes an error of h^2/2 x'' per step, the trapezoidal rule h^3/12 x'''.
+     * Returns 0 when there are not enough past points to estimate it.
+     */
+    private double errorRatio(double step, int order) {
+        if (historyLength < order + 1) {
+            return 0.0;
+        }
+        int n = historyLength;
+        double worst = 0.0;
+        for (int r = 0; r < reactive.length; r++) {
+            int i = reactive[r];
+            double newState = trialState(i);
+            double error;
+            if (order == 1) {
+                double second = secondDifference(pastTime[n - 2], pastState[n - 2][r], pastTime[n - 1], pastState[n - 1][r],
+                        time + step, newState);
+                error = step * step * Math.abs(second);
+            } else {
+                double older = secondDifference(pastTime[n - 3], pastState[n - 3][r], pastTime[n - 2], pastState[n - 2][r],
+                        pastTime[n - 1], pastState[n - 1][r]);
+                double newer = secondDifference(pastTime[n - 2], pastState[n - 2][r], pastTime[n - 1], pastState[n - 1][r],
+                        time + step, newState);
+                double third = (newer - older) / (time + step - pastTime[n - 3]);
+                error = step * step * step * Math.abs(third) / 2;
+            }
+            double scale = netlist.kind(i) == Netlist.CAPACITOR ? VOLTAGE_TOLERANCE : CURRENT_TOLERANCE;
+            double tolerance = RELATIVE_TOLERANCE * Math.max(Math.abs(newState), Math.abs(state(i))) + scale;
+            worst = Math.max(worst, error / tolerance);
+        }
+        return worst;
+    }
+
+    // Second divided difference f[t0, t1, t2], which is x''/2
+    private static double secondDifference(double t0, double x0, double t1, double x1, double t2, double x2) {
+        double d01 = (x1 - x0) / (t1 - t0);
+        double d12 = (x2 - x1) / (t2 - t1);
+        return (d12 - d01) / (t2 - t0);
+    }
+
+    // Blow every good fuse carrying more than its rating, returns true when the circuit changed
+    private boolean blowOverloadedFuses() {
+        boolean blown = false;
+        for (int i = 0; i < netlist.elementCount(); i++) {
+            if (netlist.element(i) instanceof ComponentsController.Fuse) {
+                ComponentsController.Fuse fuse = (ComponentsController.Fuse) netlist.element(i);
+                if (!fuse.isBlown && Math.abs(lastSystem.elementCurrent(solution, i)) > fuse.currentRating) {
+                    fuse.isBlown = true;
+                    // Same elements and nets, only the fuse conductance changes so the state arrays stay valid
+                    netlist = netlist.withElement(i, Netlist.describe(fuse));
+                    blown = true;
+                }
+            }
+        }
+        if (blown) {
+            eulerSteppers.clear();
+            trapezoidalSteppers.clear();
+        }
+        return blown;
+    }
+
+    // Discontinuity at the given time, for example a source switching; adaptive steps land on it
+    public void addBreakpoint(double at) {
+        if (at > time) {
+            breakpoints.add(at);
+        }
+    }
+
+    // First adaptive step after a start or discontinuity, and the largest step allowed
+    public void setStepLimits(double initialStep, double maxStep) {
+        this.initialStep = initialStep;
+        this.maxStep = maxStep;
+        if (restart) {
+            nextStep = initialStep;
+        }
+    }
+
+    /**
+     * Writes the state at the current time back to the components, and to the maps when they
+     * are not null, the same way the DC analysis does.
+     */
+    public void storeResults(Map<String, Double> nodeVoltages, Map<String, Double> branchCurrents) {
+        if (solution == null) {
+            return;
+        }
+        double[] currents = lastSystem.elementCurrents(solution);
+        for (int i : reactive) {
+            if (netlist.kind(i) == Netlist.CAPACITOR) {
+                currents[i] = current[i];
+            }
+        }
+        for (int i : gates) {
+            currents[i] = (gateLevel[i] - lastSystem.nodeVoltage(solution, netlist.to(i))) * netlist.conductance(i);
+        }
+        lastSystem.storeResults(solution, currents, nodeVoltages, branchCurrents);
+    }
+
+    public Netlist getNetlist() {
+        return netlist;
+    }
+
+    public Integration getIntegration() {
+        return integration;
+    }
+
+    public double getTime() {
+        return time;
+    }
+
+    // Accepted steps
+    public long getStepCount() {
+        return stepCount;
+    }
+
+    public long getRejectedSteps() {
+        return rejectedSteps;
+    }
+
+    // Breakpoints landed on and fuses blown
+    public long getBreakpointsHit() {
+        return breakpointsHit;
+    }
+
+    // Voltage of a net at the current time
+    public double netVoltage(int net) {
+        return solution == null ? 0.0 : lastSystem.nodeVoltage(solution, net);
+    }
+
+    // Voltage across element i (start minus end terminal) at the current time
+    public double elementVoltage(int i) {
+        if (isReactive(i) || solution == null) {
+            return voltage[i];
+        }
+        return lastSystem.nodeVoltage(solution, netlist.from(i)) - lastSystem.nodeVoltage(solution, netlist.to(i));
+    }
+
+    // Current through element i from its start to its end terminal at the current time
+    public double elementCurrent(int i) {
+        if (isReactive(i) || solution == null) {
+            return current[i];
+        }
+        return lastSystem.elementCurrent(solution, i);
+    }
+}
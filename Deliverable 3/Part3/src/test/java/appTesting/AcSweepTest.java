@@ -0,0 +1,67 @@
+package appTesting;
+
+import controllers.AcSweep;
+import controllers.ComponentsController;
+import controllers.Netlist;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+import java.util.*;
+
+public class AcSweepTest {
+
+    @Test
+    public void testRcLowPassAndRlHighPass() {
+        ComponentsController.Capacitor capacitor = new ComponentsController.Capacitor();
+        capacitor.capacitance = 1e-6;
+        Netlist lowPass = Netlist.compile(TestBoards.seriesCircuit(5.0, 1000.0, capacitor)); // Corner at 159 Hz
+        double[] frequencies = AcSweep.logFrequencies(1.0, 1e5, 101);
+        AcSweep.Response response = new AcSweep(lowPass).sweep(frequencies, 0, 2);
+
+        double[] phase = response.phaseDegrees();
+        for (int k = 0; k < response.size(); k++) {
+            double wrc = 2 * Math.PI * frequencies[k] * 1e-3;
+            assertEquals(1.0 / Math.sqrt(1 + wrc * wrc), response.magnitude(k), 1e-6, "RC magnitude at " + frequencies[k] + " Hz.");
+            assertEquals(-Math.toDegrees(Math.atan(wrc)), phase[k], 1e-4, "RC phase at " + frequencies[k] + " Hz.");
+        }
+
+        ComponentsController.Inductor inductor = new ComponentsController.Inductor();
+        inductor.inductance = 1e-3;
+        Netlist highPass = Netlist.compile(TestBoards.seriesCircuit(5.0, 100.0, inductor)); // Corner at 15.9 kHz
+        response = new AcSweep(highPass).sweep(AcSweep.linearFrequencies(1e3, 1e5, 50), 0, 2);
+        for (int k = 0; k < response.size(); k++) {
+            double wl = 2 * Math.PI * response.frequency(k) * 1e-3;
+            assertEquals(wl / Math.hypot(100.0, wl), response.magnitude(k), 1e-6, "RL magnitude at " + response.frequency(k) + " Hz.");
+        }
+    }
+
+    @Test
+    public void testLadderSweepMatchesSinglePoints() {
+        // 200 RC sections: series resistor along the top, capacitor down to the return line
+        List<ComponentsController.Drawable> components = new ArrayList<>();
+        ComponentsController.VoltageSource source = TestBoards.place(new ComponentsController.VoltageSource(), 0, 0, 0, 100);
+        source.voltage = 1.0;
+        components.add(source);
+        ComponentsController.Capacitor last = null;
+        for (int s = 0; s < 200; s++) {
+            ComponentsController.ResistorIEEE resistor = TestBoards.resistor(10 * s, 0, 10 * (s + 1), 0, 10.0);
+            ComponentsController.Capacitor capacitor = TestBoards.place(new ComponentsController.Capacitor(), 10 * (s + 1), 0, 0, 100);
+            capacitor.capacitance = 1e-9;
+            components.add(resistor);
+            components.add(capacitor);
+            last = capacitor;
+        }
+        Netlist netlist = Netlist.compile(components);
+        int output = netlist.indexOf(last);
+        AcSweep sweep = new AcSweep(netlist);
+
+        double[] frequencies = AcSweep.logFrequencies(0.01, 1e8, 1000);
+        AcSweep.Response response = sweep.sweep(frequencies, 0, output);
+        assertEquals(1.0, response.magnitude(0), 1e-6, "Ladder passes DC.");
+        assertTrue(response.magnitudeDb(999) < -100, "Ladder blocks high frequencies.");
+        for (int k = 0; k < frequencies.length; k += 111) {
+            AcSweep.Response single = sweep.sweep(new double[] {frequencies[k]}, 0, output);
+            assertEquals(single.real(0), response.real(k), 1e-12, "Parallel point " + k + " should match a lone solve.");
+            assertEquals(single.imaginary(0), response.imaginary(k), 1e-12, "Parallel point " + k + " should match a lone solve.");
+        }
+    }
+}
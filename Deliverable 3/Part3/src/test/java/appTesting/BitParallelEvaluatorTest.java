@@ -0,0 +1,64 @@
+package appTesting;
+
+import controllers.BitParallelEvaluator;
+import controllers.GateNetwork;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+import java.time.Duration;
+
+public class BitParallelEvaluatorTest {
+
+    @Test
+    public void testRippleCarryAdderTruthTable() {
+        // Two 10-bit operands: signals 0-9 are a, 10-19 are b, the sum bits and carry come after
+        int bits = 10;
+        GateNetwork.Builder builder = new GateNetwork.Builder(20 + 5 * bits);
+        int next = 2 * bits;
+        int carry = -1;
+        int[] sum = new int[bits + 1];
+        for (int k = 0; k < bits; k++) {
+            int a = k;
+            int b = bits + k;
+            int half = next++;
+            builder.addGate(GateNetwork.XOR, 0, half, a, b);
+            int generate = next++;
+            builder.addGate(GateNetwork.AND, 0, generate, a, b);
+            if (carry < 0) {
+                sum[k] = half;
+                carry = generate;
+                continue;
+            }
+            sum[k] = next++;
+            builder.addGate(GateNetwork.XOR, 0, sum[k], half, carry);
+            int propagate = next++;
+            builder.addGate(GateNetwork.AND, 0, propagate, half, carry);
+            int carryOut = next++;
+            builder.addGate(GateNetwork.OR, 0, carryOut, generate, propagate);
+            carry = carryOut;
+        }
+        sum[bits] = carry;
+        int[] inputs = new int[2 * bits];
+        for (int k = 0; k < inputs.length; k++) {
+            inputs[k] = k;
+        }
+        BitParallelEvaluator evaluator = new BitParallelEvaluator(builder.build());
+
+        long[][] table = assertTimeout(Duration.ofSeconds(10), () -> evaluator.truthTable(inputs, sum));
+        int mask = (1 << bits) - 1;
+        for (int row = 0; row < 1 << (2 * bits); row++) {
+            int expected = (row & mask) + (row >>> bits);
+            for (int k = 0; k <= bits; k++) {
+                boolean bit = (table[k][row >>> 6] >>> (row & 63) & 1) != 0;
+                assertEquals((expected >>> k & 1) != 0, bit, "Sum bit " + k + " wrong for row " + row);
+            }
+        }
+    }
+
+    @Test
+    public void testFeedbackIsRejected() {
+        GateNetwork.Builder builder = new GateNetwork.Builder(2);
+        builder.addGate(GateNetwork.NOT, 0, 0, 1);
+        builder.addGate(GateNetwork.NOT, 0, 1, 0);
+        assertThrows(IllegalArgumentException.class, () -> new BitParallelEvaluator(builder.build()));
+    }
+}
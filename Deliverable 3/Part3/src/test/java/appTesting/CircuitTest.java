@@ -4,6 +4,7 @@ import controllers.CircuitAnalyzer;
 import controllers.ComponentsController;
 import org.junit.jupiter.api.Test;
 import static org.junit.jupiter.api.Assertions.*;
+import java.time.Duration;
 import java.util.*;
 
 public class CircuitTest {
@@ -73,4 +74,43 @@ public class CircuitTest {
         // Print circuit values
         analyzer.printCircuitValues();
     }
+
+    @Test
+    public void testAnalyzeCircuitSolvesLoopByNodalAnalysis() {
+        // A divider closed through a wire is a loop, its elements share the battery current
+        ComponentsController.Battery battery = TestBoards.battery(0, 0, 1, 0, 9.0);
+        ComponentsController.ResistorIEEE upper = TestBoards.resistor(1, 0, 2, 0, 100.0);
+        ComponentsController.ResistorIEEE lower = TestBoards.resistor(2, 0, 3, 0, 200.0);
+        ComponentsController.Wire wire = new ComponentsController.Wire(3, 0, 0, 0);
+
+        List<ComponentsController.Drawable> components = new ArrayList<>(List.of(battery, upper, lower, wire));
+        CircuitAnalyzer analyzer = new CircuitAnalyzer(components);
+        analyzer.analyzeCircuit();
+
+        assertEquals(3.0, Math.abs(upper.voltage), 1e-6, "Upper resistor drops a third of the battery.");
+        assertEquals(6.0, Math.abs(lower.voltage), 1e-6, "Lower resistor drops two thirds of the battery.");
+        assertEquals(0.03, Math.abs(upper.current), 1e-9, "Loop current is 9 V over 300 ohms.");
+        assertEquals(0.03, Math.abs(lower.current), 1e-9, "Series elements carry the same current.");
+    }
+
+    @Test
+    public void testGridLoopBasis() {
+        // 20x20 grid of wires, the old exhaustive loop search never finished on this
+        int side = 20;
+        List<ComponentsController.Drawable> components = new ArrayList<>();
+        for (int r = 0; r < side; r++) {
+            for (int c = 0; c < side; c++) {
+                if (c + 1 < side) components.add(new ComponentsController.Wire(c * 10, r * 10, (c + 1) * 10, r * 10));
+                if (r + 1 < side) components.add(new ComponentsController.Wire(c * 10, r * 10, c * 10, (r + 1) * 10));
+            }
+        }
+
+        assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+            CircuitAnalyzer analyzer = new CircuitAnalyzer(components);
+            // Independent loops of a connected grid: edges - nodes + 1
+            int expected = components.size() - side * side + 1;
+            assertEquals(expected, analyzer.findAllLoops().size(), "Grid should have one independent loop per cell.");
+            assertEquals(25, analyzer.findLoops(25).size(), "Bounded enumeration should stop at the limit.");
+        });
+    }
 }
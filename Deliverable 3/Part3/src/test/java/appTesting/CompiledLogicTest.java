@@ -0,0 +1,51 @@
+package appTesting;
+
+import controllers.BitParallelEvaluator;
+import controllers.CompiledLogic;
+import controllers.GateNetwork;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+import java.util.*;
+
+public class CompiledLogicTest {
+
+    // Random feedback-free network, every gate reads earlier signals only
+    private GateNetwork randomNetwork(int inputs, int gates, long seed, long delay) {
+        Random random = new Random(seed);
+        GateNetwork.Builder builder = new GateNetwork.Builder(inputs + gates);
+        for (int g = 0; g < gates; g++) {
+            int output = inputs + g;
+            byte type = (byte) random.nextInt(6);
+            int arity = type == GateNetwork.NOT ? 1 : 1 + random.nextInt(4);
+            int[] in = new int[arity];
+            for (int k = 0; k < arity; k++) {
+                in[k] = random.nextInt(output);
+            }
+            builder.addGate(type, delay, output, in);
+        }
+        return builder.build();
+    }
+
+    @Test
+    public void testMatchesBitParallelEvaluation() {
+        GateNetwork network = randomNetwork(32, 20_000, 11, 10_000);
+        CompiledLogic compiled = CompiledLogic.compile(network);
+        assertNotNull(compiled, "Feedback-free network should compile.");
+        BitParallelEvaluator reference = new BitParallelEvaluator(network);
+
+        Random random = new Random(5);
+        for (int cycle = 0; cycle < 20; cycle++) {
+            long[] signals = new long[network.signalCount()];
+            for (int s = 0; s < 32; s++) {
+                signals[s] = random.nextLong();
+            }
+            long[] expected = signals.clone();
+            reference.evaluate(expected, 1);
+            compiled.evaluate(signals);
+            assertArrayEquals(expected, signals, "Compiled evaluation differs in cycle " + cycle);
+        }
+
+        // Same topology with other delays reuses the compiled program
+        assertSame(compiled, CompiledLogic.compile(randomNetwork(32, 20_000, 11, 3_000)));
+    }
+}
@@ -0,0 +1,83 @@
+package appTesting;
+
+import controllers.ComponentsController;
+import controllers.ConjugateGradientSolver;
+import controllers.IterativeDcSolver;
+import controllers.MnaSystem;
+import controllers.Netlist;
+import controllers.SparseLU;
+import controllers.SparseMatrix;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+import java.util.*;
+
+public class ConjugateGradientSolverTest {
+
+    @Test
+    public void testPreconditionersMatchDirectSolve() {
+        SparseMatrix mesh = TestBoards.mesh(40);
+        double[] b = new double[mesh.size()];
+        b[0] = 1.0;
+        b[mesh.size() / 2] = -0.25;
+        double[] expected = SparseLU.factor(mesh).solve(b);
+
+        ConjugateGradientSolver jacobi = new ConjugateGradientSolver(mesh, ConjugateGradientSolver.Preconditioner.JACOBI);
+        ConjugateGradientSolver cholesky = new ConjugateGradientSolver(mesh, ConjugateGradientSolver.Preconditioner.INCOMPLETE_CHOLESKY);
+        jacobi.setTolerance(1e-12);
+        cholesky.setTolerance(1e-12);
+        double[] x = jacobi.solve(b, null);
+        double[] y = cholesky.solve(b, null);
+        for (int i = 0; i < b.length; i++) {
+            assertEquals(expected[i], x[i], 1e-6 * (1 + Math.abs(expected[i])), "Jacobi solution differs at row " + i);
+            assertEquals(expected[i], y[i], 1e-6 * (1 + Math.abs(expected[i])), "IC(0) solution differs at row " + i);
+        }
+        assertTrue(cholesky.getIterations() < jacobi.getIterations(),
+                "IC(0) took " + cholesky.getIterations() + " iterations, Jacobi " + jacobi.getIterations());
+
+        // Starting from the answer leaves nothing to do
+        cholesky.solve(b, y);
+        assertEquals(0, cholesky.getIterations(), "A converged start needs no iterations.");
+    }
+
+    @Test
+    public void testGroundedBoardMatchesNodalSolveAndWarmStarts() {
+        // A battery from ground driving one corner of a resistor grid whose far corner is grounded
+        int side = 12;
+        List<ComponentsController.Drawable> board = new ArrayList<>();
+        board.add(TestBoards.battery(0, 0, -10, -10, 5.0));
+        List<ComponentsController.ResistorIEEE> resistors = new ArrayList<>();
+        for (int r = 0; r < side; r++) {
+            for (int c = 0; c < side; c++) {
+                if (c + 1 < side) resistors.add(TestBoards.resistor(c * 10, r * 10, (c + 1) * 10, r * 10, 100.0 + r + c));
+                if (r + 1 < side) resistors.add(TestBoards.resistor(c * 10, r * 10, c * 10, (r + 1) * 10, 220.0));
+            }
+        }
+        board.addAll(resistors);
+        board.add(TestBoards.resistor((side - 1) * 10, (side - 1) * 10, -10, -10, 10.0));
+
+        IterativeDcSolver.clear();
+        MnaSystem system = new MnaSystem(Netlist.compile(board));
+        double[] expected = system.solve();
+        IterativeDcSolver solver = IterativeDcSolver.of(system);
+        assertNotNull(solver, "A battery standing on the reference net can be pinned.");
+        double[] solution = solver.solve(ConjugateGradientSolver.Preconditioner.INCOMPLETE_CHOLESKY, 1e-12);
+        assertFalse(solver.wasWarmStarted(), "First solve of this topology starts from zero.");
+        for (int r = 0; r < expected.length; r++) {
+            assertEquals(expected[r], solution[r], 1e-7, "Unknown " + r + " differs, including the battery current.");
+        }
+        int coldIterations = solver.getIterations();
+
+        // A small edit starts from the last solution
+        resistors.get(side).setResistance(150.0);
+        MnaSystem edited = new MnaSystem(Netlist.compile(board));
+        IterativeDcSolver again = IterativeDcSolver.of(edited);
+        double[] resolved = again.solve(ConjugateGradientSolver.Preconditioner.INCOMPLETE_CHOLESKY, 1e-12);
+        assertTrue(again.wasWarmStarted(), "Same topology, so the last solution is the start.");
+        assertTrue(again.getIterations() <= coldIterations,
+                "Warm start took " + again.getIterations() + " iterations, cold " + coldIterations);
+        double[] direct = edited.solve();
+        for (int r = 0; r < direct.length; r++) {
+            assertEquals(direct[r], resolved[r], 1e-7, "Unknown " + r + " differs after the edit.");
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package appTesting;
+
+import controllers.ComponentsController;
+import controllers.DcSweep;
+import controllers.MnaSystem;
+import controllers.Netlist;
+import controllers.NewtonSolver;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+import java.util.*;
+
+public class DcSweepTest {
+
+    @Test
+    public void testNestedBatteryAndResistanceSweep() {
+        ComponentsController.Battery battery = new ComponentsController.Battery();
+        battery.voltage = 9.0;
+        ComponentsController.ResistorIEEE resistor = new ComponentsController.ResistorIEEE();
+        resistor.setResistance(100.0);
+        ComponentsController.ResistorIEEE load = new ComponentsController.ResistorIEEE();
+        load.setResistance(100.0);
+        Netlist netlist = Netlist.compile(TestBoards.seriesCircuit(battery, resistor, load));
+
+        DcSweep.Parameter voltage = new DcSweep.Parameter(battery, "voltage", 0.0, 24.0, 0.01);
+        DcSweep.Parameter resistance = new DcSweep.Parameter(load, "resistance", 100.0, 500.0, 100.0);
+        assertEquals(2401, voltage.count(), "0 to 24 V in 0.01 V steps.");
+        DcSweep.Result result = new DcSweep(netlist).run(voltage, resistance, resistor);
+
+        assertEquals(2401 * 5, result.size(), "One point per voltage and resistance.");
+        assertEquals(0, result.getFailedPoints(), "Every point should solve.");
+        for (int k = 0; k < result.size(); k += 37) {
+            double expected = result.first(k) / (100.0 + result.second(k));
+            assertEquals(expected, result.current(0, k), 1e-6, "Series current at point " + k);
+        }
+        assertEquals(9.0, battery.voltage, "Swept fields are restored.");
+        assertEquals(100.0, load.getResistance(), "Swept fields are restored.");
+    }
+
+    @Test
+    public void testDiodeSweepMatchesSingleSolves() {
+        ComponentsController.Battery battery = new ComponentsController.Battery();
+        ComponentsController.ResistorIEEE resistor = new ComponentsController.ResistorIEEE();
+        resistor.setResistance(1000.0);
+        ComponentsController.Diode diode = new ComponentsController.Diode();
+        List<ComponentsController.Drawable> components = TestBoards.seriesCircuit(battery, resistor, diode);
+
+        DcSweep.Parameter voltage = new DcSweep.Parameter(battery, "voltage", -5.0, 10.0, 0.05);
+        DcSweep.Result result = new DcSweep(Netlist.compile(components)).run(voltage, null, diode);
+        assertEquals(0, result.getFailedPoints(), "Every point should converge.");
+        for (int k = 1; k < result.size(); k++) {
+            assertTrue(result.current(0, k) >= result.current(0, k - 1), "Diode current rises with the battery voltage.");
+        }
+
+        for (int k = 0; k < result.size(); k += 50) {
+            battery.voltage = result.first(k);
+            Netlist netlist = Netlist.compile(components);
+            MnaSystem system = new MnaSystem(netlist);
+            double[] solution = new NewtonSolver(system).solve();
+            assertEquals(system.elementCurrent(solution, 2), result.current(0, k), 1e-9, "Sweep point " + k + " should match a lone solve.");
+        }
+    }
+
+    @Test
+    public void testUnknownFieldIsRejected() {
+        ComponentsController.Battery battery = new ComponentsController.Battery();
+        assertThrows(IllegalArgumentException.class, () -> new DcSweep.Parameter(battery, "componentType", 0, 1, 0.1));
+        assertThrows(IllegalArgumentException.class, () -> new DcSweep.Parameter(battery, "voltage", 0, 1, -0.1));
+    }
+}
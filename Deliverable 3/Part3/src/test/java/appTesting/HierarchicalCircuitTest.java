@@ -0,0 +1,52 @@
+package appTesting;
+
+import controllers.ComponentsController;
+import controllers.HierarchicalCircuit;
+import controllers.Subcircuit;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+import java.util.*;
+
+public class HierarchicalCircuitTest {
+
+    @Test
+    public void testInstancesMatchFlatBoard() {
+        // Definition: a T of three resistors, ports at the three outer ends
+        ComponentsController.ResistorIEEE left = TestBoards.resistor(0, 0, 10, 0, 1000.0);
+        ComponentsController.ResistorIEEE right = TestBoards.resistor(10, 0, 20, 0, 2200.0);
+        ComponentsController.ResistorIEEE leg = TestBoards.resistor(10, 0, 10, 10, 4700.0);
+        Subcircuit tee = new Subcircuit("Tee", List.of(left, right, leg), new double[][] {{0, 0}, {20, 0}, {10, 10}});
+
+        // 12 V across two tees in a chain, the second one meets the first only through a port-only net
+        ComponentsController.Battery battery = TestBoards.battery(0, 0, 0, 10, 12.0);
+        ComponentsController.Wire ground = new ComponentsController.Wire(0, 10, 40, 10);
+        ComponentsController.ResistorIEEE load = TestBoards.resistor(40, 0, 40, 10, 3300.0);
+        List<ComponentsController.Drawable> top = new ArrayList<>(List.of(battery, ground, load));
+
+        HierarchicalCircuit circuit = new HierarchicalCircuit(top);
+        Subcircuit.Instance first = circuit.place(tee, 0, 0);
+        Subcircuit.Instance second = circuit.place(tee, 20, 0);
+        HierarchicalCircuit.Result result = circuit.solve();
+        assertEquals(1, tee.getReductions(), "Both instances share one reduction.");
+
+        // The same board drawn flat
+        List<ComponentsController.Drawable> flat = new ArrayList<>(top);
+        ComponentsController.ResistorIEEE secondRight = TestBoards.resistor(30, 0, 40, 0, 2200.0);
+        flat.addAll(List.of(TestBoards.resistor(0, 0, 10, 0, 1000.0), TestBoards.resistor(10, 0, 20, 0, 2200.0), TestBoards.resistor(10, 0, 10, 10, 4700.0),
+                TestBoards.resistor(20, 0, 30, 0, 1000.0), secondRight, TestBoards.resistor(30, 0, 30, 10, 4700.0)));
+
+        assertEquals(TestBoards.across(flat, load), result.voltageAcross(load), 1e-6, "Load voltage matches the flat board.");
+        assertEquals(TestBoards.across(flat, secondRight), result.voltageAcross(second, right), 1e-6, "Interior voltage matches the flat board.");
+        assertEquals(result.portVoltage(first, 1), result.portVoltage(second, 0), 1e-12, "Chained ports share a net.");
+
+        // Solving again reuses the model, editing the definition rebuilds it once
+        circuit.solve();
+        assertEquals(1, tee.getReductions(), "An unchanged definition is not reduced again.");
+        leg.setResistance(1000.0);
+        HierarchicalCircuit.Result edited = circuit.solve();
+        assertEquals(2, tee.getReductions(), "Editing the definition rebuilds its model.");
+        ((ComponentsController.ResistorIEEE) flat.get(5)).setResistance(1000.0);
+        ((ComponentsController.ResistorIEEE) flat.get(8)).setResistance(1000.0);
+        assertEquals(TestBoards.across(flat, load), edited.voltageAcross(load), 1e-6, "Edited load voltage matches the flat board.");
+    }
+}
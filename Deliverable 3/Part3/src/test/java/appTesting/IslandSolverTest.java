@@ -0,0 +1,59 @@
+package appTesting;
+
+import controllers.ComponentsController;
+import controllers.IslandSolver;
+import controllers.Netlist;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+import java.util.*;
+
+public class IslandSolverTest {
+
+    // Battery across two resistors in series, drawn at height y
+    private static List<ComponentsController.Drawable> divider(double y, double voltage, double upper, double lower) {
+        ComponentsController.Battery battery = TestBoards.battery(0, y, 20, y, voltage);
+        ComponentsController.ResistorIEEE top = TestBoards.resistor(0, y, 10, y, upper);
+        ComponentsController.ResistorIEEE bottom = TestBoards.resistor(10, y, 20, y, lower);
+        return List.of(battery, top, bottom);
+    }
+
+    @Test
+    public void testSeparateCircuitsSolveOnTheirOwn() {
+        List<ComponentsController.Drawable> first = divider(0, 9.0, 1000.0, 2000.0);
+        List<ComponentsController.Drawable> second = divider(100, 12.0, 470.0, 470.0);
+        List<ComponentsController.Drawable> board = new ArrayList<>(first);
+        board.addAll(second);
+
+        IslandSolver.clear();
+        IslandSolver islands = new IslandSolver(Netlist.compile(board));
+        assertEquals(2, islands.islandCount(), "Two batteries with their own loops are two islands.");
+        assertEquals(first, islands.getIslands().get(0).getComponents(), "Islands keep the board order.");
+        Netlist firstNetlist = islands.getIslands().get(0).getNetlist();
+        assertEquals(3, firstNetlist.elementCount(), "An island holds only its own elements.");
+        assertEquals(3, firstNetlist.netCount(), "An island numbers only its own nets.");
+        islands.solve();
+        Map<String, Double> nodeVoltages = new HashMap<>();
+        islands.storeResults(nodeVoltages, new HashMap<>());
+        assertEquals(6, nodeVoltages.size(), "Every terminal is reported once.");
+        assertEquals(6.0, Math.abs(nodeVoltages.get(Netlist.nodeKey(10, 0))), 1e-6,
+                "The second island leaves the first one's node voltages alone.");
+
+        ComponentsController.ImageComponent firstLower = (ComponentsController.ImageComponent) first.get(2);
+        ComponentsController.ImageComponent secondLower = (ComponentsController.ImageComponent) second.get(2);
+        assertEquals(6.0, Math.abs(firstLower.voltage), 1e-6, "First divider output.");
+        assertEquals(6.0, Math.abs(secondLower.voltage), 1e-6, "Second divider output.");
+        assertEquals(9.0 / 3000.0, Math.abs(firstLower.current), 1e-9, "First divider current.");
+
+        // Editing the second circuit leaves the first one's solution in place
+        long solves = IslandSolver.getSolves();
+        long remembered = IslandSolver.getRemembered();
+        secondLower.setResistance(1410.0);
+        IslandSolver edited = new IslandSolver(Netlist.compile(board));
+        edited.solve();
+        edited.storeResults(null, null);
+        assertEquals(solves + 1, IslandSolver.getSolves(), "Only the edited island is solved.");
+        assertEquals(remembered + 1, IslandSolver.getRemembered(), "The untouched island is remembered.");
+        assertEquals(9.0, Math.abs(secondLower.voltage), 1e-6, "Edited divider output.");
+        assertEquals(6.0, Math.abs(firstLower.voltage), 1e-6, "Untouched divider output.");
+    }
+}
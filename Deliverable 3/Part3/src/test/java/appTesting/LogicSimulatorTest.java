@@ -0,0 +1,93 @@
+package appTesting;
+
+import controllers.GateNetwork;
+import controllers.LogicSimulator;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+import java.time.Duration;
+import java.util.*;
+
+public class LogicSimulatorTest {
+
+    @Test
+    public void testPropagationDelay() {
+        // Input 0 through three inverters of 10 ns each, then an AND with the input itself
+        GateNetwork.Builder builder = new GateNetwork.Builder(5);
+        builder.addGate(GateNetwork.NOT, 10_000, 1, 0);
+        builder.addGate(GateNetwork.NOT, 10_000, 2, 1);
+        builder.addGate(GateNetwork.NOT, 10_000, 3, 2);
+        builder.addGate(GateNetwork.AND, 5_000, 4, 0, 3);
+        LogicSimulator logic = new LogicSimulator(builder.build());
+        assertTrue(logic.runUntilIdle(1_000_000), "Network should settle.");
+        assertTrue(logic.value(3), "Three inverters of a low input should be high.");
+        assertFalse(logic.value(4), "AND of a low input should be low.");
+
+        // Raising the input makes a 30 ns pulse at the AND output, starting 5 ns later
+        long start = logic.getTime();
+        logic.setInput(0, true);
+        logic.run(start + 4_999);
+        assertFalse(logic.value(4), "AND output should not change before its delay.");
+        logic.run(start + 5_000);
+        assertTrue(logic.value(4), "AND output should rise after its delay.");
+        logic.run(start + 34_999);
+        assertTrue(logic.value(4), "Pulse should last until the inverter chain catches up.");
+        logic.run(start + 35_000);
+        assertFalse(logic.value(4), "Pulse should end 30 ns after it started.");
+    }
+
+    @Test
+    public void testLargeRandomNetwork() {
+        int inputs = 64;
+        int gates = 100_000;
+        Random random = new Random(7);
+        GateNetwork.Builder builder = new GateNetwork.Builder(inputs + gates);
+        for (int g = 0; g < gates; g++) {
+            int output = inputs + g;
+            byte type = (byte) random.nextInt(6);
+            long delay = 1_000 + random.nextInt(10_000);
+            if (type == GateNetwork.NOT) {
+                builder.addGate(type, delay, output, random.nextInt(output));
+            } else {
+                builder.addGate(type, delay, output, random.nextInt(output), random.nextInt(output));
+            }
+        }
+        GateNetwork network = builder.build();
+
+        assertTimeout(Duration.ofSeconds(20), () -> {
+            LogicSimulator logic = new LogicSimulator(network);
+            boolean[] stimulus = new boolean[inputs];
+            for (int round = 0; round < 50; round++) {
+                for (int k = 0; k < 8; k++) {
+                    int input = random.nextInt(inputs);
+                    stimulus[input] = !stimulus[input];
+                    logic.setInput(input, stimulus[input]);
+                }
+                assertTrue(logic.runUntilIdle(Long.MAX_VALUE), "Acyclic network should settle.");
+            }
+
+            // Gates only read earlier signals, so evaluating in order gives the settled values
+            boolean[] expected = new boolean[network.signalCount()];
+            System.arraycopy(stimulus, 0, expected, 0, inputs);
+            for (int g = 0; g < gates; g++) {
+                int high = 0;
+                for (int k = 0; k < network.inputCount(g); k++) {
+                    if (expected[network.input(g, k)]) high++;
+                }
+                boolean first = expected[network.input(g, 0)];
+                boolean out;
+                switch (network.type(g)) {
+                    case GateNetwork.NOT: out = !first; break;
+                    case GateNetwork.AND: out = high == network.inputCount(g); break;
+                    case GateNetwork.NAND: out = high != network.inputCount(g); break;
+                    case GateNetwork.OR: out = high > 0; break;
+                    case GateNetwork.NOR: out = high == 0; break;
+                    default: out = (high & 1) == 1; break;
+                }
+                expected[network.output(g)] = out;
+            }
+            for (int s = 0; s < network.signalCount(); s++) {
+                assertEquals(expected[s], logic.value(s), "Settled value differs at signal " + s);
+            }
+        });
+    }
+}
@@ -0,0 +1,80 @@
+package appTesting;
+
+import controllers.MixedPrecisionSolver;
+import controllers.SparseLU;
+import controllers.SparseMatrix;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MixedPrecisionSolverTest {
+
+    @Test
+    public void testRefinementReachesDoubleAccuracy() {
+        SparseMatrix mesh = TestBoards.mesh(20, 1.0 / 330.0, 1.0);
+        double[] b = new double[mesh.size()];
+        b[0] = 1.0;
+        double[] expected = SparseLU.factor(mesh).solve(b);
+
+        double[] rough = SparseLU.factorSingle(mesh, SparseLU.analyze(mesh)).solve(b);
+        MixedPrecisionSolver.clear();
+        MixedPrecisionSolver solver = new MixedPrecisionSolver(mesh);
+        double[] x = solver.solve(b);
+        assertFalse(solver.fellBack(), "A well conditioned mesh refines without a double factorization.");
+        assertTrue(solver.getRefinements() > 0, "Single-precision factors need at least one correction.");
+        assertTrue(solver.getConditionEstimate() > 1 && solver.getConditionEstimate() < 1e7,
+                "Condition estimate " + solver.getConditionEstimate());
+
+        double roughError = 0.0;
+        for (int i = 0; i < b.length; i++) {
+            assertEquals(expected[i], x[i], 1e-10 * Math.abs(expected[i]), "Refined solution differs at row " + i);
+            roughError = Math.max(roughError, Math.abs(rough[i] - expected[i]) / Math.abs(expected[i]));
+        }
+        assertTrue(roughError > 1e-10, "Unrefined single precision is only accurate to " + roughError);
+    }
+
+    @Test
+    public void testIllConditionedBoardFallsBackToDouble() {
+        // An ammeter-like rung next to open-switch leakage, as the switch model produces
+        SparseMatrix mesh = TestBoards.mesh(8, 1e9, 1e-9);
+        double[] b = new double[mesh.size()];
+        b[0] = 1e-6;
+        MixedPrecisionSolver.clear();
+        MixedPrecisionSolver solver = new MixedPrecisionSolver(mesh);
+        double[] x = solver.solve(b);
+        assertTrue(solver.fellBack(), "Refinement is out of reach, the double factorization is used.");
+        assertFalse(solver.skippedSingle(), "First solve of a topology tries single precision.");
+        assertTrue(solver.getConditionEstimate() > 1e7, "Condition estimate " + solver.getConditionEstimate());
+
+        // Normwise backward error at double precision, the rung makes ||A|| about 2e9
+        double xNorm = 0.0;
+        for (double v : x) {
+            xNorm = Math.max(xNorm, Math.abs(v));
+        }
+        double[] ax = mesh.multiply(x);
+        for (int i = 0; i < b.length; i++) {
+            assertEquals(b[i], ax[i], 1e-14 * (2e9 * xNorm + 1e-6), "Residual too large at row " + i);
+        }
+    }
+
+    @Test
+    public void testFallbackIsRememberedForTheTopology() {
+        SparseMatrix mesh = TestBoards.mesh(8, 1e9, 1e-9);
+        double[] b = new double[mesh.size()];
+        b[0] = 1e-6;
+        MixedPrecisionSolver.clear();
+        double[] first = new MixedPrecisionSolver(mesh).solve(b);
+
+        // The next analysis of the same board goes straight to the double factorization
+        MixedPrecisionSolver again = new MixedPrecisionSolver(mesh);
+        double[] x = again.solve(b);
+        assertTrue(again.skippedSingle(), "Known fallback topology should skip the single factorization.");
+        assertTrue(again.fellBack(), "Skipped solves are double solves.");
+        assertEquals(0, again.getRefinements(), "No refinement without single-precision factors.");
+        assertArrayEquals(first, x, "Same board, same double solution.");
+
+        // Other topologies still try single precision
+        MixedPrecisionSolver other = new MixedPrecisionSolver(TestBoards.mesh(10, 1.0 / 330.0, 1.0));
+        other.solve(new double[100]);
+        assertFalse(other.skippedSingle(), "Unrelated topology should not be skipped.");
+    }
+}
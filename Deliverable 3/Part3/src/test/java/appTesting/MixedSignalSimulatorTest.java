@@ -0,0 +1,42 @@
+package appTesting;
+
+import controllers.ComponentsController;
+import controllers.MixedSignalSimulator;
+import controllers.Netlist;
+import controllers.TransientSimulator;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+import java.util.*;
+
+public class MixedSignalSimulatorTest {
+
+    @Test
+    public void testRcDelayTriggersInverter() {
+        // RC charging node A drives a NOT gate whose output O is loaded by 10 kOhm
+        ComponentsController.Battery battery = TestBoards.battery(0, 0, 20, 0, 5.0);
+        ComponentsController.ResistorIEEE resistor = TestBoards.resistor(0, 0, 10, 0, 1000.0);
+        ComponentsController.Capacitor capacitor = TestBoards.place(new ComponentsController.Capacitor(), 10, 0, 20, 0);
+        capacitor.capacitance = 1e-6; // Crosses 2.5 V at ln(2) ms
+        ComponentsController.NOTGate gate = TestBoards.place(new ComponentsController.NOTGate(), 10, 0, 10, 10);
+        ComponentsController.ResistorIEEE load = TestBoards.resistor(10, 10, 20, 0, 10000.0);
+
+        List<ComponentsController.Drawable> components = new ArrayList<>(
+                List.of(battery, resistor, capacitor, gate, load));
+        Netlist netlist = Netlist.compile(components);
+        MixedSignalSimulator simulator = new MixedSignalSimulator(netlist, TransientSimulator.Integration.TRAPEZOIDAL);
+        int loadIndex = netlist.indexOf(load);
+
+        simulator.advance(0.6e-3);
+        assertEquals(5.0 * 10.0 / 11.0, simulator.getAnalog().elementVoltage(loadIndex), 1e-6,
+                "Inverter output should be high while the capacitor is below threshold.");
+        assertEquals(0, simulator.getCrossings(), "No crossing before ln(2) ms.");
+
+        simulator.advance(0.4e-3);
+        assertEquals(0.0, simulator.getAnalog().elementVoltage(loadIndex), 1e-6,
+                "Inverter output should be low once the capacitor crossed the threshold.");
+        assertEquals(1, simulator.getCrossings(), "One threshold crossing.");
+        assertEquals(2, simulator.getGateTransitions(), "Output rises at start and falls after the crossing.");
+        assertTrue(simulator.getAnalog().getStepCount() < 1000,
+                "Analog side should not step at gate resolution, took " + simulator.getAnalog().getStepCount());
+    }
+}
@@ -0,0 +1,52 @@
+package appTesting;
+
+import controllers.ComponentsController;
+import controllers.MonteCarloAnalysis;
+import controllers.Netlist;
+import controllers.ProbeQuantity;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+import java.util.*;
+
+public class MonteCarloAnalysisTest {
+
+    @Test
+    public void testDividerYieldIsReproducible() {
+        // 10 V across two 1 kOhm resistors in series, the lower one is probed
+        ComponentsController.Battery battery = TestBoards.battery(0, 0, 20, 0, 10.0);
+        ComponentsController.ResistorIEEE upper = TestBoards.resistor(0, 0, 10, 0, 1000.0);
+        ComponentsController.ResistorIEEE lower = TestBoards.resistor(10, 0, 20, 0, 1000.0);
+
+        Netlist netlist = Netlist.compile(new ArrayList<>(List.of(battery, upper, lower)));
+        MonteCarloAnalysis analysis = new MonteCarloAnalysis(netlist);
+        analysis.setTolerance(upper, 0.05, MonteCarloAnalysis.Distribution.UNIFORM);
+        analysis.setTolerance(lower, 0.05, MonteCarloAnalysis.Distribution.UNIFORM);
+        assertEquals(5.0, analysis.nominal(lower, ProbeQuantity.VOLTAGE), 1e-6, "Nominal divider output.");
+        int probe = analysis.addProbe(lower, ProbeQuantity.VOLTAGE, 4.9, 5.1);
+
+        MonteCarloAnalysis.Summary summary = analysis.run(5000, 42L);
+        MonteCarloAnalysis.Histogram histogram = summary.histogram(probe);
+        assertEquals(5000, summary.getSamples(), "Every sample is counted.");
+        assertEquals(0, summary.getFailed(), "A divider always solves.");
+        assertEquals(5000, histogram.getCount(), "Every sample reaches the histogram.");
+        assertEquals(5.0, histogram.getMean(), 0.01, "Symmetric tolerances keep the mean at nominal.");
+        assertTrue(histogram.getMin() >= 10.0 * 0.95 / 2.0 - 1e-9 && histogram.getMax() <= 10.0 * 1.05 / 2.0 + 1e-9,
+                "Output cannot leave the worst-case range.");
+        long inside = 0;
+        for (int b = 0; b < histogram.binCount(); b++) {
+            inside += histogram.bin(b);
+        }
+        assertEquals(summary.getPassed(), inside, "With one probe the passing samples are the binned ones.");
+        assertEquals(5000, inside + histogram.getUnderflow() + histogram.getOverflow(), "Bins and overflow cover every sample.");
+        // A 4% window on a +-5% divider loses some samples but keeps most
+        assertTrue(summary.getYield() > 0.5 && summary.getYield() < 1.0, "Yield was " + summary.getYield());
+
+        MonteCarloAnalysis.Summary again = analysis.run(5000, 42L);
+        assertEquals(summary.getPassed(), again.getPassed(), "Same seed, same yield.");
+        assertEquals(histogram.getMean(), again.histogram(probe).getMean(), 1e-12, "Same seed, same samples.");
+        for (int b = 0; b < histogram.binCount(); b++) {
+            assertEquals(histogram.bin(b), again.histogram(probe).bin(b), "Same seed, same histogram.");
+        }
+        assertEquals(1000.0, upper.getResistance(), "Sampling does not touch the components.");
+    }
+}
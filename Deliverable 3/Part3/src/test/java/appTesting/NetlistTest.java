@@ -0,0 +1,57 @@
+package appTesting;
+
+import controllers.ComponentsController;
+import controllers.MnaSystem;
+import controllers.Netlist;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+import java.util.*;
+
+public class NetlistTest {
+
+    @Test
+    public void testWireMergesSnappedTerminals() {
+        ComponentsController.Battery battery = TestBoards.battery(0, 0, 30, 0, 9.0);
+        ComponentsController.ResistorIEEE resistor1 = TestBoards.resistor(0, 0, 10, 0, 100.0);
+        // Dragged wire ends up a hair away from the resistor terminal
+        ComponentsController.Wire wire = new ComponentsController.Wire(10.0000001, 0, 20, 0);
+        ComponentsController.ResistorIEEE resistor2 = TestBoards.resistor(20, 0, 30, 0, 100.0);
+
+        List<ComponentsController.Drawable> components = new ArrayList<>();
+        components.add(battery);
+        components.add(resistor1);
+        components.add(wire);
+        components.add(resistor2);
+
+        Netlist netlist = Netlist.compile(components);
+        assertEquals(4, netlist.terminalCount(), "Snapped wire end should reuse the resistor terminal.");
+        assertEquals(3, netlist.netCount(), "Wire should merge its two terminals into one net.");
+        assertEquals(netlist.to(1), netlist.from(3), "Resistors joined by the wire should share a net.");
+
+        MnaSystem system = new MnaSystem(netlist);
+        Map<String, Double> nodeVoltages = new HashMap<>();
+        Map<String, Double> branchCurrents = new HashMap<>();
+        system.storeResults(system.solve(), nodeVoltages, branchCurrents);
+
+        assertEquals(4.5, nodeVoltages.get("20.0,0.0"), 1e-6, "Both wire ends should sit at the midpoint voltage.");
+        assertEquals(4.5, nodeVoltages.get("10.0,0.0"), 1e-6, "Both wire ends should sit at the midpoint voltage.");
+        assertEquals(0.045, resistor2.current, 1e-6, "Current should be 0.045 A.");
+    }
+
+    @Test
+    public void testNetlistKeepsItsOwnComponents() {
+        ComponentsController.Battery battery = TestBoards.battery(0, 0, 20, 0, 9.0);
+        ComponentsController.ResistorIEEE upper = TestBoards.resistor(0, 0, 10, 0, 100.0);
+        ComponentsController.ResistorIEEE lower = TestBoards.resistor(10, 0, 20, 0, 200.0);
+        List<ComponentsController.Drawable> components = new ArrayList<>(List.of(battery, upper, lower));
+        Netlist netlist = Netlist.compile(components);
+
+        // Deleting a part from the board must not shift the netlist under a running analysis
+        components.remove(upper);
+        assertSame(lower, netlist.element(2), "Netlist should still see the part it was compiled with.");
+        MnaSystem system = new MnaSystem(netlist);
+        system.storeResults(system.solve(), new HashMap<>(), new HashMap<>());
+        assertEquals(6.0, Math.abs(lower.voltage), 1e-9, "Results should land on the compiled parts.");
+        assertEquals(3, netlist.recompile().elementCount(), "Recompiling should use the compiled parts.");
+    }
+}
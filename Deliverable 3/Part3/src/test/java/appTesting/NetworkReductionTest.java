@@ -0,0 +1,80 @@
+package appTesting;
+
+import controllers.ComponentsController;
+import controllers.MnaSystem;
+import controllers.Netlist;
+import controllers.NetworkReduction;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+import java.util.*;
+
+public class NetworkReductionTest {
+
+    @Test
+    public void testChainReducesAndRestoresEveryNet() {
+        // A battery across a long chain of resistors, fuses and closed switches, some resistors
+        // bridged by a parallel one, and a Wheatstone bridge at the end
+        int links = 120;
+        List<ComponentsController.Drawable> board = new ArrayList<>();
+        board.add(TestBoards.battery(0, 0, links * 10 + 20, 0, 24.0));
+        for (int k = 0; k < links; k++) {
+            double x = k * 10;
+            if (k % 5 == 0) {
+                board.add(TestBoards.place(new ComponentsController.Fuse(), x, 0, x + 10, 0));
+            } else if (k % 7 == 0) {
+                ComponentsController.SPSTToggleSwitch toggle = TestBoards.place(new ComponentsController.SPSTToggleSwitch(), x, 0, x + 10, 0);
+                toggle.isClosed = true;
+                board.add(toggle);
+            } else {
+                board.add(TestBoards.resistor(x, 0, x + 10, 0, 100.0 + k));
+                if (k % 3 == 0) {
+                    board.add(TestBoards.resistor(x, 0, x + 10, 0, 330.0));
+                }
+            }
+        }
+        double end = links * 10;
+        double[][] bridge = {{end, 0, end + 10, 5, 100}, {end, 0, end + 10, -5, 220}, {end + 10, 5, end + 20, 0, 150},
+                {end + 10, -5, end + 20, 0, 470}, {end + 10, 5, end + 10, -5, 1000}};
+        for (double[] arm : bridge) {
+            board.add(TestBoards.resistor(arm[0], arm[1], arm[2], arm[3], arm[4]));
+        }
+
+        Netlist netlist = Netlist.compile(board);
+        MnaSystem full = new MnaSystem(netlist);
+        NetworkReduction reduction = new NetworkReduction(netlist);
+        assertTrue(reduction.getReducedNetlist().netCount() * 10 <= netlist.netCount(),
+                "Reduced " + netlist.netCount() + " nets to " + reduction.getReducedNetlist().netCount());
+
+        double[] expected = full.solve();
+        double[] reduced = reduction.solve(full);
+        assertEquals(expected.length, reduced.length, "Solution comes back in the full layout.");
+        for (int r = 0; r < expected.length; r++) {
+            assertEquals(expected[r], reduced[r], 1e-6 * (1 + Math.abs(expected[r])), "Unknown " + r + " differs.");
+        }
+        for (int i = 0; i < netlist.elementCount(); i++) {
+            assertEquals(full.elementCurrent(expected, i), full.elementCurrent(reduced, i), 1e-7,
+                    "Current through element " + i + " differs.");
+        }
+    }
+
+    @Test
+    public void testSeriesParallelBoardReducesToTheSource() {
+        // 100 ohms in series with 200 || 300 ohms, the joint between them is eliminated
+        List<ComponentsController.Drawable> board = new ArrayList<>();
+        board.add(TestBoards.battery(0, 0, 20, 0, 10.0));
+        double[][] arms = {{0, 0, 10, 0, 100}, {10, 0, 20, 0, 200}, {10, 0, 20, 0, 300}};
+        for (double[] arm : arms) {
+            board.add(TestBoards.resistor(arm[0], arm[1], arm[2], arm[3], arm[4]));
+        }
+
+        Netlist netlist = Netlist.compile(board);
+        MnaSystem full = new MnaSystem(netlist);
+        NetworkReduction reduction = new NetworkReduction(netlist);
+        assertEquals(1, reduction.getEliminatedNets(), "The series joint is reduced away.");
+        double[] solution = reduction.solve(full);
+        int joint = netlist.netAt(10, 0);
+        int negative = netlist.netAt(20, 0);
+        assertEquals(10.0 * 120.0 / 220.0, full.nodeVoltage(solution, joint) - full.nodeVoltage(solution, negative), 1e-9,
+                "Joint voltage over the 120 ohm parallel pair.");
+    }
+}
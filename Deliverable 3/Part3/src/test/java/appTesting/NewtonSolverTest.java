@@ -0,0 +1,39 @@
+package appTesting;
+
+import controllers.ComponentsController;
+import controllers.MnaSystem;
+import controllers.NewtonSolver;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+import java.util.*;
+
+public class NewtonSolverTest {
+
+    @Test
+    public void testDiodeOperatingPoint() {
+        ComponentsController.ResistorIEEE resistor = new ComponentsController.ResistorIEEE();
+        resistor.resistance = 430.0;
+        ComponentsController.Diode diode = new ComponentsController.Diode();
+        List<ComponentsController.Drawable> components = TestBoards.seriesCircuit(TestBoards.battery(0, 0, 20, 0, 5.0), resistor, diode);
+
+        MnaSystem system = new MnaSystem(components);
+        NewtonSolver solver = new NewtonSolver(system);
+        system.storeResults(solver.solve(), null, null);
+
+        // Forward voltage is 0.7 V at 10 mA, so the diode sits just above it at roughly 10 mA
+        assertEquals(resistor.current, diode.current, 1e-9, "Series current should match.");
+        assertEquals(5.0, resistor.voltage + diode.voltage, 1e-6, "Resistor and diode should share the battery voltage.");
+        assertEquals(0.7, diode.voltage, 0.01, "Diode should sit near its forward voltage.");
+        assertEquals(0.01, diode.current, 5e-4, "Diode current should be close to 10 mA.");
+        assertTrue(solver.getIterations() < 30, "Cold start took " + solver.getIterations() + " iterations.");
+
+        // After an edit the solve starts from the previous junction voltage
+        resistor.resistance = 470.0;
+        MnaSystem edited = new MnaSystem(components);
+        NewtonSolver warm = new NewtonSolver(edited);
+        edited.storeResults(warm.solve(), null, null);
+        assertEquals(5.0, resistor.voltage + diode.voltage, 1e-6, "Edited circuit should still satisfy KVL.");
+        assertTrue(warm.getIterations() <= 5, "Warm start took " + warm.getIterations() + " iterations.");
+        assertTrue(warm.getFactorizations() <= warm.getIterations(), "Factorizations cannot exceed iterations.");
+    }
+}
@@ -0,0 +1,72 @@
+package appTesting;
+
+import controllers.ComponentsController;
+import controllers.Netlist;
+import controllers.ProbeQuantity;
+import controllers.SensitivityAnalysis;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+import java.util.*;
+
+public class SensitivityAnalysisTest {
+
+    @Test
+    public void testDividerMatchesFiniteDifferences() {
+        // 10 V across 1 kOhm over 2 kOhm, with a current source feeding the middle node
+        ComponentsController.Battery battery = TestBoards.battery(0, 0, 20, 0, 10.0);
+        ComponentsController.ResistorIEEE upper = TestBoards.resistor(0, 0, 10, 0, 1000.0);
+        ComponentsController.ResistorIEEE lower = TestBoards.resistor(10, 0, 20, 0, 2000.0);
+        ComponentsController.CurrentSource source = TestBoards.place(new ComponentsController.CurrentSource(), 10, 0, 20, 0);
+        source.current = 0.001;
+        source.internalResistance = 5000.0;
+        List<ComponentsController.Drawable> board = new ArrayList<>(List.of(battery, upper, lower, source));
+
+        Netlist netlist = Netlist.compile(board);
+        SensitivityAnalysis.Result result = new SensitivityAnalysis(netlist).analyze(lower, ProbeQuantity.VOLTAGE);
+        double nominal = TestBoards.across(board, lower);
+        assertEquals(nominal, result.getProbeValue(), 1e-9, "Probe value is the operating point.");
+
+        double h = 1e-3;
+        upper.setResistance(1000.0 + h);
+        double byUpper = (TestBoards.across(board, lower) - nominal) / h;
+        upper.setResistance(1000.0);
+        lower.setResistance(2000.0 + h);
+        double byLower = (TestBoards.across(board, lower) - nominal) / h;
+        lower.setResistance(2000.0);
+        battery.voltage = 10.0 + h;
+        double byBattery = (TestBoards.across(board, lower) - nominal) / h;
+        battery.voltage = 10.0;
+        source.current = 0.001 + 1e-6;
+        double bySource = (TestBoards.across(board, lower) - nominal) / 1e-6;
+        source.current = 0.001;
+
+        assertEquals(SensitivityAnalysis.RESISTANCE, result.parameter(netlist.indexOf(upper)), "Resistors vary their resistance.");
+        assertEquals(byUpper, result.sensitivity(netlist.indexOf(upper)), 1e-6, "Sensitivity to the upper resistor.");
+        assertEquals(byLower, result.sensitivity(netlist.indexOf(lower)), 1e-6, "Sensitivity to the lower resistor.");
+        assertEquals(byBattery, result.sensitivity(netlist.indexOf(battery)), 1e-6, "Sensitivity to the battery.");
+        assertEquals(bySource, result.sensitivity(netlist.indexOf(source)), 1e-3, "Sensitivity to the current source.");
+        // With no current source the divider output scales one-for-one with the battery
+        assertEquals(byBattery * 10.0 / nominal, result.relative(netlist.indexOf(battery)), 1e-6, "Relative sensitivity.");
+    }
+
+    @Test
+    public void testSwitchToggleIsExact() {
+        // An open switch across the lower resistor of a divider, closing it pulls the output down
+        ComponentsController.Battery battery = TestBoards.battery(0, 0, 20, 0, 10.0);
+        ComponentsController.ResistorIEEE upper = TestBoards.resistor(0, 0, 10, 0, 1000.0);
+        ComponentsController.ResistorIEEE lower = TestBoards.resistor(10, 0, 20, 0, 1000.0);
+        ComponentsController.SPSTToggleSwitch toggle = TestBoards.place(new ComponentsController.SPSTToggleSwitch(), 10, 0, 20, 0);
+        List<ComponentsController.Drawable> board = new ArrayList<>(List.of(battery, upper, lower, toggle));
+
+        Netlist netlist = Netlist.compile(board);
+        SensitivityAnalysis.Result result = new SensitivityAnalysis(netlist).analyze(lower, ProbeQuantity.VOLTAGE);
+        double open = TestBoards.across(board, lower);
+        toggle.isClosed = true;
+        double closed = TestBoards.across(board, lower);
+
+        int i = netlist.indexOf(toggle);
+        assertEquals(SensitivityAnalysis.TOGGLE, result.parameter(i), "Switches report their toggle.");
+        assertEquals(closed - open, result.sensitivity(i), 1e-9, "Rank-one toggle matches a fresh solve.");
+        assertTrue(Double.isNaN(result.relative(i)), "A toggle has no relative sensitivity.");
+    }
+}
@@ -0,0 +1,82 @@
+package appTesting;
+
+import controllers.CircuitAnalyzer;
+import controllers.ComponentsController;
+import controllers.MnaSystem;
+import controllers.Netlist;
+import controllers.SeriesParallelTree;
+import controllers.TheveninEquivalent;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+import java.util.*;
+
+public class SeriesParallelTreeTest {
+
+    // Every part's current against a fresh nodal solve of the same board
+    private static void assertMatchesNodalSolve(SeriesParallelTree tree, List<ComponentsController.Drawable> board, String when) {
+        Netlist netlist = Netlist.compile(board);
+        MnaSystem system = new MnaSystem(netlist);
+        double[] solution = system.solve();
+        for (int i = 0; i < netlist.elementCount(); i++) {
+            if (netlist.kind(i) != Netlist.CONDUCTANCE) continue;
+            assertEquals(system.elementCurrent(solution, i), tree.current(netlist.element(i)), 1e-9,
+                    "Current through element " + i + " " + when + ".");
+        }
+    }
+
+    @Test
+    public void testLadderMatchesNodalSolveAndUpdatesAlongOnePath() {
+        // A battery across 64 sections in series, each a resistor in parallel with two in series,
+        // with a dangling resistor hanging off the last section
+        int sections = 64;
+        List<ComponentsController.Drawable> board = new ArrayList<>();
+        ComponentsController.Battery battery = TestBoards.battery(0, 0, sections * 10, 0, 12.0);
+        board.add(battery);
+        for (int k = 0; k < sections; k++) {
+            double x = k * 10;
+            board.add(TestBoards.resistor(x, 0, x + 10, 0, 100.0 + k));
+            board.add(TestBoards.resistor(x, 0, x + 5, 5, 50.0 + 2 * k));
+            board.add(TestBoards.resistor(x + 10, 0, x + 5, 5, 75.0));
+        }
+        ComponentsController.ResistorIEEE dangling = TestBoards.resistor(sections * 10, 0, sections * 10, 20, 1000.0);
+        board.add(dangling);
+
+        SeriesParallelTree tree = SeriesParallelTree.build(Netlist.compile(board));
+        assertNotNull(tree, "A ladder of series and parallel sections decomposes.");
+        assertTrue(tree.getDepth() <= 12, "Balanced depth, got " + tree.getDepth());
+        assertEquals(0.0, tree.current(dangling), 0.0, "A dangling resistor carries nothing.");
+        assertMatchesNodalSolve(tree, board, "as built");
+        CircuitAnalyzer analyzer = new CircuitAnalyzer(board);
+
+        // One edited resistance and a new battery voltage, each picked up along its own path
+        ComponentsController.ResistorIEEE edited = (ComponentsController.ResistorIEEE) board.get(3 * 17 + 2);
+        edited.setResistance(5.0);
+        assertTrue(tree.update(edited), "The resistor is a leaf of the tree.");
+        battery.voltage = 9.0;
+        assertTrue(tree.update(battery), "The battery drives the tree.");
+        assertTrue(tree.matches(board), "Nothing was moved.");
+        assertMatchesNodalSolve(tree, board, "after the edit");
+
+        tree.storeResults();
+        assertEquals(5.0 * tree.current(edited), edited.voltage, 1e-12, "Stored voltage follows Ohm's law.");
+        assertEquals(9.0 / tree.getEquivalentResistance(), battery.current, 1e-12, "Battery delivers V / R.");
+
+        // The analyzer the meters read picks up the same edits without compiling the board again
+        analyzer.updateValue(edited);
+        analyzer.updateValue(battery);
+        ComponentsController.ImageComponent load = (ComponentsController.ImageComponent) board.get(1);
+        TheveninEquivalent updated = analyzer.theveninAcross(load);
+        TheveninEquivalent fresh = new CircuitAnalyzer(board).theveninAcross(load);
+        assertEquals(fresh.getVoltage(), updated.getVoltage(), 1e-9, "Thevenin voltage after the edit.");
+        assertEquals(fresh.getResistance(), updated.getResistance(), 1e-9, "Thevenin resistance after the edit.");
+    }
+
+    @Test
+    public void testBridgeIsNotSeriesParallel() {
+        ComponentsController.Battery battery = TestBoards.battery(0, 0, 20, 0, 5.0);
+        List<ComponentsController.Drawable> board = List.of(battery,
+                TestBoards.resistor(0, 0, 10, 5, 100), TestBoards.resistor(0, 0, 10, -5, 220), TestBoards.resistor(10, 5, 20, 0, 150),
+                TestBoards.resistor(10, -5, 20, 0, 470), TestBoards.resistor(10, 5, 10, -5, 1000));
+        assertNull(SeriesParallelTree.build(Netlist.compile(board)), "A Wheatstone bridge has no series-parallel tree.");
+    }
+}
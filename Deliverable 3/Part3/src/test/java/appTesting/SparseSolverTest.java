@@ -0,0 +1,207 @@
+package appTesting;
+
+import controllers.ColumnOrdering;
+import controllers.ComponentsController;
+import controllers.FactorizationCache;
+import controllers.MnaSystem;
+import controllers.SparseLU;
+import controllers.SparseMatrix;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+import java.util.*;
+
+public class SparseSolverTest {
+
+    @Test
+    public void testMeshSolveResidual() {
+        SparseMatrix mesh = TestBoards.mesh(60);
+        double[] b = new double[mesh.size()];
+        b[0] = 1.0;
+
+        double[] x = SparseLU.factor(mesh).solve(b);
+        double[] ax = mesh.multiply(x);
+        for (int i = 0; i < b.length; i++) {
+            assertEquals(b[i], ax[i], 1e-9, "Residual too large at row " + i);
+        }
+    }
+
+    @Test
+    public void testOrderingsReduceFillOnShuffledMesh() {
+        // Mesh nodes numbered at random, the way parts land in the drawable list
+        int side = 30;
+        int n = side * side;
+        List<Integer> labels = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            labels.add(i);
+        }
+        Collections.shuffle(labels, new Random(7));
+        SparseMatrix.Builder builder = new SparseMatrix.Builder(n);
+        for (int r = 0; r < side; r++) {
+            for (int c = 0; c < side; c++) {
+                int node = labels.get(r * side + c);
+                if (c + 1 < side) builder.addConductance(node, labels.get(r * side + c + 1), 1.0 / 100.0);
+                if (r + 1 < side) builder.addConductance(node, labels.get((r + 1) * side + c), 1.0 / 220.0);
+            }
+        }
+        builder.add(labels.get(n - 1), labels.get(n - 1), 1.0);
+        SparseMatrix mesh = builder.build();
+        double[] b = new double[n];
+        b[labels.get(0)] = 1.0;
+
+        SparseLU natural = SparseLU.factor(mesh, SparseLU.analyze(mesh, ColumnOrdering.NATURAL));
+        SparseLU rcm = SparseLU.factor(mesh, SparseLU.analyze(mesh, ColumnOrdering.REVERSE_CUTHILL_MCKEE));
+        SparseLU amd = SparseLU.factor(mesh, SparseLU.analyze(mesh, ColumnOrdering.APPROXIMATE_MINIMUM_DEGREE));
+        assertTrue(rcm.factorNonZeros() * 3 < natural.factorNonZeros(),
+                "RCM fill " + rcm.factorNonZeros() + " against natural " + natural.factorNonZeros());
+        assertTrue(amd.factorNonZeros() < rcm.factorNonZeros(),
+                "AMD fill " + amd.factorNonZeros() + " against RCM " + rcm.factorNonZeros());
+
+        double[] expected = natural.solve(b);
+        double[] banded = rcm.solve(b);
+        double[] minimum = amd.solve(b);
+        for (int i = 0; i < n; i++) {
+            assertEquals(expected[i], banded[i], 1e-9, "RCM solution differs at row " + i);
+            assertEquals(expected[i], minimum[i], 1e-9, "AMD solution differs at row " + i);
+        }
+    }
+
+    @Test
+    public void testRefactorMatchesFreshFactorization() {
+        SparseMatrix mesh = TestBoards.mesh(20);
+        SparseLU lu = SparseLU.factor(mesh);
+
+        double[] scaled = mesh.getValues().clone();
+        for (int p = 0; p < scaled.length; p++) {
+            scaled[p] *= 1.0 + (p % 7) * 0.05;
+        }
+        SparseMatrix edited = mesh.withValues(scaled);
+        assertTrue(lu.refactor(edited), "Same pattern should refactor without new pivots.");
+
+        double[] b = new double[edited.size()];
+        b[0] = 1.0;
+        double[] reused = lu.solve(b);
+        double[] fresh = SparseLU.factor(edited).solve(b);
+        for (int i = 0; i < b.length; i++) {
+            assertEquals(fresh[i], reused[i], 1e-9, "Refactorized solution differs at row " + i);
+        }
+    }
+
+    @Test
+    public void testTransposeSolveResidual() {
+        // A dependent source makes the mesh unsymmetric, so A' differs from A
+        SparseMatrix mesh = TestBoards.mesh(20);
+        SparseMatrix.Builder builder = new SparseMatrix.Builder(mesh.size());
+        for (int col = 0; col < mesh.size(); col++) {
+            for (int row = 0; row < mesh.size(); row++) {
+                double v = mesh.get(row, col);
+                if (v != 0.0) builder.add(row, col, v);
+            }
+        }
+        builder.add(3, 250, 0.004);
+        builder.add(120, 7, -0.002);
+        SparseMatrix unsymmetric = builder.build();
+
+        double[] c = new double[unsymmetric.size()];
+        c[17] = 1.0;
+        c[301] = -1.0;
+        double[] y = SparseLU.factor(unsymmetric).solveTranspose(c);
+        for (int col = 0; col < c.length; col++) {
+            double sum = 0.0;
+            for (int row = 0; row < c.length; row++) {
+                sum += unsymmetric.get(row, col) * y[row];
+            }
+            assertEquals(c[col], sum, 1e-9, "Transpose residual too large at column " + col);
+        }
+    }
+
+    // Same matrix with switches closed between the first count node pairs, the pattern is unchanged for neighbours
+    private static SparseMatrix closeSwitches(SparseMatrix mesh, int[][] pairs, int count) {
+        SparseMatrix.Builder builder = new SparseMatrix.Builder(mesh.size());
+        for (int col = 0; col < mesh.size(); col++) {
+            for (int row = 0; row < mesh.size(); row++) {
+                double value = mesh.get(row, col);
+                if (value != 0) builder.add(row, col, value);
+            }
+        }
+        for (int k = 0; k < count; k++) {
+            builder.addConductance(pairs[k][0], pairs[k][1], 1000.0);
+        }
+        return builder.build();
+    }
+
+    @Test
+    public void testLowRankSwitchToggle() {
+        SparseMatrix mesh = TestBoards.mesh(15);
+        double[] b = new double[mesh.size()];
+        b[0] = 1.0;
+        FactorizationCache cache = FactorizationCache.shared();
+        cache.clear();
+        cache.solve(mesh, b);
+
+        // Each switch between two neighbouring nodes touches two columns, they add up on the same factors
+        int[][] pairs = {{3, 4}, {20, 21}, {50, 51}, {80, 81}, {110, 111}};
+        for (int closed = 1; closed <= pairs.length; closed++) {
+            SparseMatrix edited = closeSwitches(mesh, pairs, closed);
+            long lowRankBefore = cache.getLowRankSolves();
+            double[] updated = cache.solve(edited, b);
+            double[] fresh = SparseLU.factor(edited).solve(b);
+            for (int i = 0; i < b.length; i++) {
+                assertEquals(fresh[i], updated[i], 1e-9 * Math.abs(fresh[i]),
+                        "Low-rank solution differs at row " + i + " with " + closed + " switches");
+            }
+            boolean withinRank = 2 * closed <= FactorizationCache.MAX_UPDATE_RANK;
+            assertEquals(lowRankBefore + (withinRank ? 1 : 0), cache.getLowRankSolves(),
+                    closed + " switches should " + (withinRank ? "" : "not ") + "be solved as a low-rank update.");
+        }
+    }
+
+    @Test
+    public void testLowRankSeveralSwitchesMatchFullFactorization() {
+        // Three switches far apart change six columns, so the capacitance matrix pivots
+        int[][] switches = {{3, 40}, {57, 90}, {120, 7}};
+        SparseMatrix open = TestBoards.mesh(12, switches, 1e-9);
+        double[] b = new double[open.size()];
+        b[0] = 1.0;
+        b[77] = -0.5;
+        FactorizationCache cache = FactorizationCache.shared();
+        cache.clear();
+        cache.solve(open, b);
+
+        for (double closed : new double[] {1e3, 1.0 / 470.0}) {
+            SparseMatrix toggled = TestBoards.mesh(12, switches, closed);
+            long lowRankBefore = cache.getLowRankSolves();
+            double[] updated = cache.solve(toggled, b);
+            assertEquals(lowRankBefore + 1, cache.getLowRankSolves(), "Toggle to " + closed + " S should be a low-rank solve.");
+            double[] fresh = SparseLU.factor(toggled).solve(b);
+            double[] ax = toggled.multiply(updated);
+            for (int i = 0; i < b.length; i++) {
+                assertEquals(fresh[i], updated[i], 1e-9 * Math.abs(fresh[i]) + 1e-12,
+                        "Switched solution differs at row " + i + " with " + closed + " S");
+                assertEquals(b[i], ax[i], 1e-10, "Residual too large at row " + i + " with " + closed + " S");
+            }
+        }
+    }
+
+    @Test
+    public void testVoltageDivider() {
+        ComponentsController.Battery battery = TestBoards.battery(0, 0, 3, 0, 9.0);
+        ComponentsController.ResistorIEEE resistor1 = TestBoards.resistor(0, 0, 1, 0, 100.0);
+        ComponentsController.ResistorIEEE resistor2 = TestBoards.resistor(1, 0, 3, 0, 200.0);
+
+        List<ComponentsController.Drawable> components = new ArrayList<>();
+        components.add(battery);
+        components.add(resistor1);
+        components.add(resistor2);
+
+        MnaSystem system = new MnaSystem(components);
+        Map<String, Double> nodeVoltages = new HashMap<>();
+        Map<String, Double> branchCurrents = new HashMap<>();
+        system.storeResults(system.solve(), nodeVoltages, branchCurrents);
+
+        assertEquals(9.0, nodeVoltages.get("0.0,0.0"), 1e-6, "Positive terminal should sit at the battery voltage.");
+        assertEquals(6.0, nodeVoltages.get("1.0,0.0"), 1e-6, "Divider midpoint should be at 6 V.");
+        assertEquals(0.03, resistor1.current, 1e-6, "Current should be 0.03 A.");
+        assertEquals(3.0, resistor1.voltage, 1e-6, "Voltage across resistor1 should be 3 V.");
+        assertEquals(0.03, battery.current, 1e-6, "Battery should deliver 0.03 A.");
+    }
+}
@@ -0,0 +1,90 @@
+package appTesting;
+
+import controllers.ComponentsController;
+import controllers.MnaSystem;
+import controllers.Netlist;
+import controllers.SparseMatrix;
+import java.util.*;
+
+// Parts, boards and matrices shared by the analysis tests
+final class TestBoards {
+
+    private TestBoards() {
+    }
+
+    // Puts a part between two points
+    static <T extends ComponentsController.ImageComponent> T place(T component, double x1, double y1, double x2, double y2) {
+        component.startX = x1;
+        component.startY = y1;
+        component.endX = x2;
+        component.endY = y2;
+        return component;
+    }
+
+    static ComponentsController.ResistorIEEE resistor(double x1, double y1, double x2, double y2, double resistance) {
+        ComponentsController.ResistorIEEE resistor = place(new ComponentsController.ResistorIEEE(), x1, y1, x2, y2);
+        resistor.setResistance(resistance);
+        return resistor;
+    }
+
+    static ComponentsController.Battery battery(double x1, double y1, double x2, double y2, double voltage) {
+        ComponentsController.Battery battery = place(new ComponentsController.Battery(), x1, y1, x2, y2);
+        battery.voltage = voltage;
+        return battery;
+    }
+
+    // Battery across a resistor in series with a part, the resistor on the battery's positive side
+    static List<ComponentsController.Drawable> seriesCircuit(double voltage, double resistance, ComponentsController.ImageComponent part) {
+        return seriesCircuit(battery(0, 0, 20, 0, voltage), resistor(0, 0, 10, 0, resistance), part);
+    }
+
+    static List<ComponentsController.Drawable> seriesCircuit(ComponentsController.Battery battery,
+            ComponentsController.ResistorIEEE resistor, ComponentsController.ImageComponent part) {
+        place(battery, 0, 0, 20, 0);
+        place(resistor, 0, 0, 10, 0);
+        place(part, 10, 0, 20, 0);
+        return new ArrayList<>(List.of(battery, resistor, part));
+    }
+
+    // Voltage across a part from a nodal solve of the whole board
+    static double across(List<ComponentsController.Drawable> board, ComponentsController.Drawable component) {
+        Netlist netlist = Netlist.compile(board);
+        MnaSystem system = new MnaSystem(netlist);
+        double[] solution = system.solve();
+        int i = netlist.indexOf(component);
+        return system.nodeVoltage(solution, netlist.from(i)) - system.nodeVoltage(solution, netlist.to(i));
+    }
+
+    // Resistor mesh with the last node grounded
+    static SparseMatrix mesh(int side) {
+        return mesh(side, 1.0 / 220.0, 1.0);
+    }
+
+    // Same mesh with its middle column of rungs and the last node's ground given other conductances
+    static SparseMatrix mesh(int side, double rungConductance, double groundConductance) {
+        return mesh(side, rungConductance, groundConductance, new int[0][], 0.0);
+    }
+
+    // Mesh with switches between the given node pairs, each stamped with the same conductance
+    static SparseMatrix mesh(int side, int[][] switches, double switchConductance) {
+        return mesh(side, 1.0 / 220.0, 1.0, switches, switchConductance);
+    }
+
+    private static SparseMatrix mesh(int side, double rungConductance, double groundConductance,
+            int[][] switches, double switchConductance) {
+        int n = side * side;
+        SparseMatrix.Builder builder = new SparseMatrix.Builder(n);
+        for (int r = 0; r < side; r++) {
+            for (int c = 0; c < side; c++) {
+                int node = r * side + c;
+                if (c + 1 < side) builder.addConductance(node, node + 1, 1.0 / 100.0);
+                if (r + 1 < side) builder.addConductance(node, node + side, c == side / 2 ? rungConductance : 1.0 / 220.0);
+            }
+        }
+        for (int[] pair : switches) {
+            builder.addConductance(pair[0], pair[1], switchConductance);
+        }
+        builder.add(n - 1, n - 1, groundConductance);
+        return builder.build();
+    }
+}
@@ -0,0 +1,43 @@
+package appTesting;
+
+import controllers.ComponentsController;
+import controllers.Netlist;
+import controllers.TheveninEquivalent;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+import java.util.*;
+
+public class TheveninEquivalentTest {
+
+    @Test
+    public void testLoadLineFromCachedEquivalent() {
+        // 10 V behind a 1 kOhm / 1 kOhm divider is 5 V behind 500 Ohm, loaded by a third resistor
+        ComponentsController.Battery battery = TestBoards.battery(0, 0, 20, 0, 10.0);
+        ComponentsController.ResistorIEEE upper = TestBoards.resistor(0, 0, 10, 0, 1000.0);
+        ComponentsController.ResistorIEEE lower = TestBoards.resistor(10, 0, 20, 0, 1000.0);
+        ComponentsController.ResistorIEEE load = TestBoards.resistor(10, 0, 20, 0, 3000.0);
+        List<ComponentsController.Drawable> board = new ArrayList<>(List.of(battery, upper, lower, load));
+
+        TheveninEquivalent.clearCache();
+        Netlist netlist = Netlist.compile(board);
+        TheveninEquivalent equivalent = TheveninEquivalent.across(netlist, load);
+        assertEquals(5.0, equivalent.getVoltage(), 1e-6, "Open-circuit voltage of the divider.");
+        assertEquals(500.0, equivalent.getResistance(), 1e-3, "Resistance behind the divider.");
+        assertEquals(0.01, equivalent.getNortonCurrent(), 1e-8, "Norton current is V over R.");
+
+        double loaded = TestBoards.across(board, load);
+        assertEquals(loaded, equivalent.loadVoltage(3000.0), 1e-6, "Equivalent reproduces the loaded voltage.");
+
+        // The whole board seen from the same nets includes the load
+        int i = netlist.indexOf(load);
+        TheveninEquivalent withLoad = TheveninEquivalent.between(netlist, netlist.from(i), netlist.to(i));
+        assertEquals(loaded, withLoad.getVoltage(), 1e-9, "Port voltage of the board as it is.");
+        assertEquals(500.0 * 3000.0 / 3500.0, withLoad.getResistance(), 1e-3, "Load in parallel with the source.");
+
+        // Changing only the load leaves the rest of the board, and so the cached equivalent, alone
+        load.setResistance(100.0);
+        Netlist edited = Netlist.compile(board);
+        assertSame(equivalent, TheveninEquivalent.across(edited, load), "Load edits reuse the equivalent.");
+        assertEquals(TestBoards.across(board, load), equivalent.loadVoltage(100.0), 1e-6, "Load line matches a fresh solve.");
+    }
+}
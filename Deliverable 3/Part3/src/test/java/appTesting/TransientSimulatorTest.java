@@ -0,0 +1,84 @@
+package appTesting;
+
+import controllers.ComponentsController;
+import controllers.Netlist;
+import controllers.TransientSimulator;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+import java.util.*;
+
+public class TransientSimulatorTest {
+
+    @Test
+    public void testCapacitorChargingCurve() {
+        ComponentsController.Capacitor capacitor = new ComponentsController.Capacitor();
+        capacitor.capacitance = 1e-6;
+        Netlist netlist = Netlist.compile(TestBoards.seriesCircuit(5.0, 1000.0, capacitor)); // Time constant 1 ms
+
+        for (TransientSimulator.Integration integration : TransientSimulator.Integration.values()) {
+            TransientSimulator simulator = new TransientSimulator(netlist, integration);
+            simulator.advance(1e-3, 1e-6);
+            double expected = 5.0 * (1 - Math.exp(-1));
+            assertEquals(expected, simulator.elementVoltage(2), 5e-3, integration + " capacitor voltage after one time constant.");
+            assertEquals(1000, simulator.getStepCount(), "Step count should match duration / step.");
+        }
+
+        TransientSimulator simulator = new TransientSimulator(netlist, TransientSimulator.Integration.TRAPEZOIDAL);
+        simulator.advance(1e-3, 1e-5);
+        simulator.storeResults(null, null);
+        assertEquals(5.0 * Math.exp(-1) / 1000.0, capacitor.current, 1e-5, "Charging current should decay with the time constant.");
+    }
+
+    @Test
+    public void testInductorCurrentRise() {
+        ComponentsController.Inductor inductor = new ComponentsController.Inductor();
+        inductor.inductance = 10e-3;
+        Netlist netlist = Netlist.compile(TestBoards.seriesCircuit(5.0, 10.0, inductor)); // Time constant 1 ms
+
+        TransientSimulator simulator = new TransientSimulator(netlist, TransientSimulator.Integration.TRAPEZOIDAL);
+        simulator.advance(1e-3, 1e-5);
+        assertEquals(0.5 * (1 - Math.exp(-1)), simulator.elementCurrent(2), 1e-4, "Inductor current after one time constant.");
+
+        simulator.advance(10e-3, 1e-5);
+        assertEquals(0.5, simulator.elementCurrent(2), 1e-4, "Inductor should settle at V / R.");
+    }
+
+    @Test
+    public void testAdaptiveStepsLandOnBreakpoints() {
+        ComponentsController.Capacitor capacitor = new ComponentsController.Capacitor();
+        capacitor.capacitance = 1e-6;
+        Netlist netlist = Netlist.compile(TestBoards.seriesCircuit(5.0, 1000.0, capacitor)); // Time constant 1 ms
+
+        TransientSimulator simulator = new TransientSimulator(netlist, TransientSimulator.Integration.TRAPEZOIDAL);
+        simulator.addBreakpoint(1e-3);
+        simulator.advanceAdaptive(1e-3);
+        assertEquals(1e-3, simulator.getTime(), 1e-15, "Steps should land exactly on the breakpoint.");
+        assertEquals(1, simulator.getBreakpointsHit(), "Breakpoint should be counted.");
+        assertEquals(5.0 * (1 - Math.exp(-1)), simulator.elementVoltage(2), 5e-3, "Capacitor voltage after one time constant.");
+
+        simulator.advanceAdaptive(9e-3);
+        assertEquals(5.0 * (1 - Math.exp(-10)), simulator.elementVoltage(2), 5e-3, "Capacitor should be charged after ten time constants.");
+        assertTrue(simulator.getStepCount() < 1000, "Adaptive steps should need far fewer steps than 10 us fixed steps, took "
+                + simulator.getStepCount());
+    }
+
+    @Test
+    public void testFixedStepsBlowOverloadedFuse() {
+        // 0.5 A charging current through a 0.1 A fuse, the fuse opens after the first step
+        ComponentsController.Fuse fuse = TestBoards.place(new ComponentsController.Fuse(), 10, 0, 20, 0);
+        fuse.currentRating = 0.1;
+        ComponentsController.Capacitor capacitor = TestBoards.place(new ComponentsController.Capacitor(), 20, 0, 30, 0);
+        capacitor.capacitance = 1e-3;
+        List<ComponentsController.Drawable> components = new ArrayList<>(List.of(
+                TestBoards.battery(0, 0, 30, 0, 5.0), TestBoards.resistor(0, 0, 10, 0, 10.0), fuse, capacitor));
+        Netlist netlist = Netlist.compile(components);
+
+        TransientSimulator simulator = new TransientSimulator(netlist, TransientSimulator.Integration.TRAPEZOIDAL);
+        simulator.advance(1e-3, 1e-5);
+        assertTrue(fuse.isBlown, "Fuse should blow on fixed steps too.");
+        assertEquals(1, simulator.getBreakpointsHit(), "Blowing the fuse is one discontinuity.");
+        assertEquals(0.0, simulator.elementCurrent(netlist.indexOf(fuse)), 1e-6, "Blown fuse should carry no current.");
+        assertTrue(simulator.elementVoltage(netlist.indexOf(capacitor)) < 0.01,
+                "Capacitor should stop charging once the fuse opens.");
+    }
+}